@@ -0,0 +1,85 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.autoconfigure.actuate;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.cloud.servicebroker.service.AdmissionController;
+import org.springframework.cloud.servicebroker.service.CatalogService;
+import org.springframework.cloud.servicebroker.service.OperationStore;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerActivity;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceService;
+import org.springframework.cloud.servicebroker.service.ServiceOffering;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * {@link EnableAutoConfiguration Auto-configuration} for the service broker actuator endpoint and health indicator.
+ * Records the activity of the service broker in a {@link ServiceBrokerActivity} when Spring Boot Actuator is
+ * present.
+ * <p>
+ * The health indicator reports a saturated broker as down. The
+ * {@literal spring.cloud.openservicebroker.health.down-when-saturated} property can be set to {@literal false} to
+ * report it as up, and the {@literal spring.cloud.openservicebroker.health.max-call-age} (in milliseconds) and
+ * {@literal spring.cloud.openservicebroker.health.max-operations} properties change the limits.
+ */
+@Configuration
+@ConditionalOnClass(Endpoint.class)
+@ConditionalOnBean(ServiceInstanceService.class)
+public class ServiceBrokerActuatorAutoConfiguration {
+
+	private static final String HEALTH_PREFIX = "spring.cloud.openservicebroker.health.";
+
+	@Bean
+	@ConditionalOnMissingBean
+	public ServiceBrokerActivity serviceBrokerActivity() {
+		return new ServiceBrokerActivity();
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	public ServiceBrokerEndpoint serviceBrokerEndpoint(ServiceBrokerActivity activity,
+													   ObjectProvider<CatalogService> catalogService,
+													   ObjectProvider<AdmissionController> admissionController,
+													   ObjectProvider<OperationStore> operationStore,
+													   ObjectProvider<List<ServiceOffering>> offerings) {
+		return new ServiceBrokerEndpoint(activity, catalogService.getIfUnique(), admissionController.getIfAvailable(),
+				operationStore.getIfAvailable(), offerings.getIfAvailable());
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(name = "serviceBrokerHealthIndicator")
+	public ServiceBrokerHealthIndicator serviceBrokerHealthIndicator(ServiceBrokerActivity activity,
+			ObjectProvider<AdmissionController> admissionController, Environment environment) {
+		return new ServiceBrokerHealthIndicator(activity, admissionController.getIfAvailable(),
+				Duration.ofMillis(environment.getProperty(HEALTH_PREFIX + "max-call-age", Long.class,
+						ServiceBrokerHealthIndicator.DEFAULT_MAX_CALL_AGE.toMillis())),
+				environment.getProperty(HEALTH_PREFIX + "max-operations", Integer.class,
+						ServiceBrokerHealthIndicator.DEFAULT_MAX_OPERATIONS),
+				environment.getProperty(HEALTH_PREFIX + "down-when-saturated", Boolean.class, true));
+	}
+
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.autoconfigure.actuate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.cloud.servicebroker.model.Catalog;
+import org.springframework.cloud.servicebroker.model.OperationState;
+import org.springframework.cloud.servicebroker.model.Plan;
+import org.springframework.cloud.servicebroker.model.ServiceDefinition;
+import org.springframework.cloud.servicebroker.model.ServiceInstanceOperation;
+import org.springframework.cloud.servicebroker.service.AdmissionController;
+import org.springframework.cloud.servicebroker.service.CatalogService;
+import org.springframework.cloud.servicebroker.service.OperationStore;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerActivity;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerActivity.Call;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerActivity.Operation;
+import org.springframework.cloud.servicebroker.service.ServiceOffering;
+import org.springframework.util.DigestUtils;
+
+/**
+ * {@link Endpoint} that shows what the service broker is doing: the calls in progress grouped by operation,
+ * service, plan and platform instance, the asynchronous operations the platform is following, the slowest recent
+ * calls, the catalog, the state of the {@link AdmissionController} and the calls to each {@link ServiceOffering}.
+ * <p>
+ * All values are collected from a {@link ServiceBrokerActivity} when the endpoint is read. Asynchronous
+ * operations are listed oldest first, up to {@link #MAX_OPERATIONS}, with their state read from the
+ * {@link OperationStore} in one batch if one is configured.
+ */
+@Endpoint(id = "servicebroker")
+public class ServiceBrokerEndpoint {
+	public static final int MAX_OPERATIONS = 100;
+
+	public static final int MAX_SLOWEST_CALLS = 10;
+
+	private final ServiceBrokerActivity activity;
+
+	private final CatalogService catalogService;
+
+	private final AdmissionController admissionController;
+
+	private final OperationStore operationStore;
+
+	private final List<ServiceOffering> offerings;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private volatile CatalogVersion catalogVersion;
+
+	/**
+	 * Construct an endpoint.
+	 *
+	 * @param activity the activity of the service broker
+	 * @param catalogService the catalog service, or {@literal null}
+	 * @param admissionController the admission controller, or {@literal null}
+	 * @param operationStore the operation store, or {@literal null}
+	 */
+	public ServiceBrokerEndpoint(ServiceBrokerActivity activity, CatalogService catalogService,
+								 AdmissionController admissionController, OperationStore operationStore) {
+		this(activity, catalogService, admissionController, operationStore, null);
+	}
+
+	/**
+	 * Construct an endpoint.
+	 *
+	 * @param activity the activity of the service broker
+	 * @param catalogService the catalog service, or {@literal null}
+	 * @param admissionController the admission controller, or {@literal null}
+	 * @param operationStore the operation store, or {@literal null}
+	 * @param offerings the service offerings, or {@literal null}
+	 */
+	public ServiceBrokerEndpoint(ServiceBrokerActivity activity, CatalogService catalogService,
+								 AdmissionController admissionController, OperationStore operationStore,
+								 List<ServiceOffering> offerings) {
+		this.activity = activity;
+		this.catalogService = catalogService;
+		this.admissionController = admissionController;
+		this.operationStore = operationStore;
+		this.offerings = offerings == null ? Collections.emptyList() : offerings;
+	}
+
+	@ReadOperation
+	public Map<String, Object> serviceBroker() {
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("inFlight", inFlight());
+		result.put("operations", operations());
+		result.put("slowestCalls", slowestCalls());
+		result.put("calls", calls());
+		if (catalogService != null) {
+			result.put("catalog", catalog());
+		}
+		if (admissionController != null) {
+			result.put("admission", admission(admissionController));
+		}
+		if (!offerings.isEmpty()) {
+			result.put("offerings", offerings());
+		}
+		return result;
+	}
+
+	private List<Map<String, Object>> inFlight() {
+		Map<List<String>, Map<String, Object>> groups = new LinkedHashMap<>();
+		for (Call call : activity.getInFlightCalls()) {
+			List<String> key = new ArrayList<>(4);
+			key.add(call.getOperation());
+			key.add(call.getServiceDefinitionId());
+			key.add(call.getPlanId());
+			key.add(call.getCfInstanceId());
+
+			long ageMillis = activity.age(call.getStartNanos()).toMillis();
+			Map<String, Object> group = groups.get(key);
+			if (group == null) {
+				group = new LinkedHashMap<>();
+				group.put("operation", call.getOperation());
+				group.put("serviceDefinitionId", call.getServiceDefinitionId());
+				group.put("planId", call.getPlanId());
+				group.put("cfInstanceId", call.getCfInstanceId());
+				group.put("count", 0);
+				group.put("oldestAgeMillis", ageMillis);
+				groups.put(key, group);
+			}
+			group.put("count", (Integer) group.get("count") + 1);
+			group.put("oldestAgeMillis", Math.max(ageMillis, (Long) group.get("oldestAgeMillis")));
+		}
+		return new ArrayList<>(groups.values());
+	}
+
+	private Map<String, Object> operations() {
+		List<Operation> operations = new ArrayList<>(activity.getOperations());
+		operations.sort(Comparator.comparingLong(Operation::getAcceptedNanos));
+
+		List<Operation> oldest = operations.subList(0, Math.min(operations.size(), MAX_OPERATIONS));
+		Map<String, ServiceInstanceOperation> storedOperations = Collections.emptyMap();
+		if (operationStore != null && !oldest.isEmpty()) {
+			List<String> serviceInstanceIds = new ArrayList<>(oldest.size());
+			for (Operation operation : oldest) {
+				serviceInstanceIds.add(operation.getCall().getServiceInstanceId());
+			}
+			storedOperations = operationStore.getOperations(serviceInstanceIds);
+		}
+
+		List<Map<String, Object>> shown = new ArrayList<>();
+		for (Operation operation : oldest) {
+			Call call = operation.getCall();
+			OperationState state = OperationState.IN_PROGRESS;
+			String description = operation.getDescription();
+			ServiceInstanceOperation stored = storedOperations.get(call.getServiceInstanceId());
+			if (stored != null && Objects.equals(stored.getOperation(), operation.getOperation())) {
+				state = stored.getState();
+				description = stored.getDescription();
+			}
+
+			Map<String, Object> details = new LinkedHashMap<>();
+			details.put("serviceInstanceId", call.getServiceInstanceId());
+			details.put("operation", operation.getOperation());
+			details.put("acceptedBy", call.getOperation());
+			details.put("serviceDefinitionId", call.getServiceDefinitionId());
+			details.put("planId", call.getPlanId());
+			details.put("cfInstanceId", call.getCfInstanceId());
+			details.put("state", state);
+			details.put("description", description);
+			details.put("ageMillis", activity.age(operation.getAcceptedNanos()).toMillis());
+			if (operation.getLastPolledNanos() != 0) {
+				details.put("lastPolledMillisAgo", activity.age(operation.getLastPolledNanos()).toMillis());
+			}
+			shown.add(details);
+		}
+
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("count", operations.size());
+		result.put("oldest", shown);
+		return result;
+	}
+
+	private List<Map<String, Object>> slowestCalls() {
+		List<Call> calls = activity.getRecentCalls();
+		calls.sort(Comparator.comparing(Call::getDuration).reversed());
+
+		List<Map<String, Object>> slowest = new ArrayList<>();
+		for (Call call : calls.subList(0, Math.min(calls.size(), MAX_SLOWEST_CALLS))) {
+			Map<String, Object> details = new LinkedHashMap<>();
+			details.put("operation", call.getOperation());
+			details.put("serviceDefinitionId", call.getServiceDefinitionId());
+			details.put("planId", call.getPlanId());
+			details.put("cfInstanceId", call.getCfInstanceId());
+			details.put("serviceInstanceId", call.getServiceInstanceId());
+			details.put("durationMillis", call.getDuration().toMillis());
+			details.put("failed", call.isFailed());
+			slowest.add(details);
+		}
+		return slowest;
+	}
+
+	private Map<String, Object> calls() {
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("completed", activity.getCompletedCalls());
+		result.put("failed", activity.getFailedCalls());
+		return result;
+	}
+
+	private Map<String, Object> catalog() {
+		Catalog catalog = catalogService.getCatalog();
+		CatalogVersion version = this.catalogVersion;
+		if (version == null || version.catalog != catalog) {
+			version = new CatalogVersion(catalog, catalogVersion(catalog));
+			this.catalogVersion = version;
+		}
+
+		int plans = 0;
+		for (ServiceDefinition serviceDefinition : catalog.getServiceDefinitions()) {
+			List<Plan> servicePlans = serviceDefinition.getPlans();
+			plans += servicePlans == null ? 0 : servicePlans.size();
+		}
+
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("version", version.version);
+		result.put("services", catalog.getServiceDefinitions().size());
+		result.put("plans", plans);
+		return result;
+	}
+
+	private String catalogVersion(Catalog catalog) {
+		try {
+			return DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(catalog));
+		} catch (JsonProcessingException e) {
+			return null;
+		}
+	}
+
+	private static Map<String, Object> admission(AdmissionController admissionController) {
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("limit", admissionController.getLimit());
+		result.put("inFlight", admissionController.getInFlight());
+		return result;
+	}
+
+	private List<Map<String, Object>> offerings() {
+		List<Map<String, Object>> result = new ArrayList<>();
+		for (ServiceOffering offering : offerings) {
+			long calls = offering.getCompletedCalls() + offering.getFailedCalls();
+			Map<String, Object> details = new LinkedHashMap<>();
+			details.put("serviceDefinitionId", offering.getServiceDefinitionId());
+			details.put("inFlight", offering.getInFlightCalls());
+			details.put("completed", offering.getCompletedCalls());
+			details.put("failed", offering.getFailedCalls());
+			details.put("rejected", offering.getRejectedCalls());
+			details.put("meanDurationMillis", calls == 0 ? 0 : offering.getTotalDuration().toMillis() / calls);
+			if (offering.getAdmissionController() != null) {
+				details.put("admission", admission(offering.getAdmissionController()));
+			}
+			result.add(details);
+		}
+		return result;
+	}
+
+	private static final class CatalogVersion {
+		private final Catalog catalog;
+
+		private final String version;
+
+		private CatalogVersion(Catalog catalog, String version) {
+			this.catalog = catalog;
+			this.version = version;
+		}
+	}
+}
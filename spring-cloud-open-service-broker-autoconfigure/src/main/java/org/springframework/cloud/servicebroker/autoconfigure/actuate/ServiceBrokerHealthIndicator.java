@@ -0,0 +1,124 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.autoconfigure.actuate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.cloud.servicebroker.service.AdmissionController;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerActivity;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerActivity.Call;
+
+/**
+ * {@link HealthIndicator} that reports the backlog of the service broker: the calls in progress and the age of the
+ * oldest, the asynchronous operations in progress and the state of the {@link AdmissionController}.
+ * <p>
+ * The backlog is reported as {@literal saturated} when a call has been in progress longer than the maximum call
+ * age, when more asynchronous operations are in progress than the maximum, or when the admission controller is
+ * admitting as many operations as its limit allows. A saturated broker is reported as down, so that a load balancer
+ * or orchestrator sends requests to other replicas, unless the indicator is constructed to report it as up while
+ * it sheds load.
+ */
+public class ServiceBrokerHealthIndicator extends AbstractHealthIndicator {
+	public static final Duration DEFAULT_MAX_CALL_AGE = Duration.ofSeconds(60);
+
+	public static final int DEFAULT_MAX_OPERATIONS = 1000;
+
+	private final ServiceBrokerActivity activity;
+
+	private final AdmissionController admissionController;
+
+	private final Duration maxCallAge;
+
+	private final int maxOperations;
+
+	private final boolean downWhenSaturated;
+
+	/**
+	 * Construct a health indicator with the default limits, that reports a saturated broker as down.
+	 *
+	 * @param activity the activity of the service broker
+	 * @param admissionController the admission controller, or {@literal null}
+	 */
+	public ServiceBrokerHealthIndicator(ServiceBrokerActivity activity, AdmissionController admissionController) {
+		this(activity, admissionController, DEFAULT_MAX_CALL_AGE, DEFAULT_MAX_OPERATIONS, true);
+	}
+
+	/**
+	 * Construct a health indicator.
+	 *
+	 * @param activity the activity of the service broker
+	 * @param admissionController the admission controller, or {@literal null}
+	 * @param maxCallAge the longest time a call can be in progress
+	 * @param maxOperations the largest number of asynchronous operations that can be in progress
+	 * @param downWhenSaturated whether to report the broker as down while its backlog exceeds these limits
+	 */
+	public ServiceBrokerHealthIndicator(ServiceBrokerActivity activity, AdmissionController admissionController,
+										Duration maxCallAge, int maxOperations, boolean downWhenSaturated) {
+		this.activity = activity;
+		this.admissionController = admissionController;
+		this.maxCallAge = maxCallAge;
+		this.maxOperations = maxOperations;
+		this.downWhenSaturated = downWhenSaturated;
+	}
+
+	@Override
+	protected void doHealthCheck(Health.Builder builder) {
+		List<String> saturated = new ArrayList<>();
+
+		long oldestCallNanos = 0;
+		int inFlight = 0;
+		for (Call call : activity.getInFlightCalls()) {
+			oldestCallNanos = Math.max(oldestCallNanos, activity.age(call.getStartNanos()).toNanos());
+			inFlight++;
+		}
+		Duration oldestCall = Duration.ofNanos(oldestCallNanos);
+		builder.withDetail("inFlight", inFlight);
+		builder.withDetail("oldestCallMillis", oldestCall.toMillis());
+		if (oldestCall.compareTo(maxCallAge) > 0) {
+			saturated.add("maxCallAge");
+		}
+
+		int operations = activity.getOperations().size();
+		builder.withDetail("operations", operations);
+		if (operations > maxOperations) {
+			saturated.add("maxOperations");
+		}
+
+		if (admissionController != null) {
+			int limit = admissionController.getLimit();
+			int admitted = admissionController.getInFlight();
+			builder.withDetail("admissionLimit", limit);
+			builder.withDetail("admissionInFlight", admitted);
+			if (admitted >= limit) {
+				saturated.add("admissionLimit");
+			}
+		}
+
+		builder.withDetail("saturated", saturated);
+		if (downWhenSaturated && !saturated.isEmpty()) {
+			builder.down();
+		} else {
+			builder.up();
+		}
+	}
+}
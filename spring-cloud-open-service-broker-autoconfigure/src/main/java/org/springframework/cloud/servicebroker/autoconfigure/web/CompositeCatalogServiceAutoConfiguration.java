@@ -0,0 +1,82 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.autoconfigure.web;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnSingleCandidate;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.NoneNestedConditions;
+import org.springframework.cloud.servicebroker.service.CatalogService;
+import org.springframework.cloud.servicebroker.service.CompositeCatalogService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * {@link EnableAutoConfiguration Auto-configuration} that combines several {@link CatalogService} beans.
+ * <p>
+ * If several {@link CatalogService} beans are provided and none of them is primary, provides a primary
+ * {@link CompositeCatalogService} that merges their catalogs, so that the service broker controllers are given a
+ * single {@link CatalogService}. The delegate catalogs are loaded in parallel on the {@link Executor} bean named
+ * {@value #CATALOG_EXECUTOR_BEAN_NAME}, if one is provided.
+ */
+@Configuration
+@Conditional(CompositeCatalogServiceAutoConfiguration.SeveralCatalogServicesCondition.class)
+@AutoConfigureAfter(ServiceBrokerAutoConfiguration.class)
+@ConditionalOnMissingBean(ServiceBrokerBeanRegistrar.class)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.ANY)
+public class CompositeCatalogServiceAutoConfiguration {
+
+	/**
+	 * The name of the {@link Executor} bean that loads the catalogs merged by a {@link CompositeCatalogService}.
+	 */
+	public static final String CATALOG_EXECUTOR_BEAN_NAME = "serviceBrokerCatalogExecutor";
+
+	@Bean
+	@Primary
+	public CompositeCatalogService compositeCatalogService(List<CatalogService> catalogServices,
+			@Qualifier(CATALOG_EXECUTOR_BEAN_NAME) ObjectProvider<Executor> catalogExecutor) {
+		Executor executor = catalogExecutor.getIfAvailable();
+		return executor == null ? new CompositeCatalogService(catalogServices) :
+				new CompositeCatalogService(catalogServices, executor);
+	}
+
+	static class SeveralCatalogServicesCondition extends NoneNestedConditions {
+
+		SeveralCatalogServicesCondition() {
+			super(ConfigurationPhase.REGISTER_BEAN);
+		}
+
+		@ConditionalOnMissingBean(CatalogService.class)
+		static class NoCatalogService {
+		}
+
+		@ConditionalOnSingleCandidate(CatalogService.class)
+		static class SingleCatalogService {
+		}
+	}
+
+}
@@ -16,45 +16,96 @@
 
 package org.springframework.cloud.servicebroker.autoconfigure.web;
 
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import javax.validation.Validator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.cloud.servicebroker.model.Catalog;
+import org.springframework.cloud.servicebroker.model.ParameterTypes;
+import org.springframework.cloud.servicebroker.model.ParameterTypesModule;
+import org.springframework.cloud.servicebroker.model.RequestBodyLimits;
+import org.springframework.cloud.servicebroker.model.RequestBodyLimitsModule;
 import org.springframework.cloud.servicebroker.service.BeanCatalogService;
 import org.springframework.cloud.servicebroker.service.CatalogService;
+import org.springframework.cloud.servicebroker.service.CompositeCatalogService;
 import org.springframework.cloud.servicebroker.service.NonBindableServiceInstanceBindingService;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerDrain;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerEventDispatcher;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerEventListener;
 import org.springframework.cloud.servicebroker.service.ServiceInstanceBindingService;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceLockManager;
 import org.springframework.cloud.servicebroker.service.ServiceInstanceService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import static org.springframework.cloud.servicebroker.autoconfigure.web.CompositeCatalogServiceAutoConfiguration.CATALOG_EXECUTOR_BEAN_NAME;
+
 /**
  * {@link EnableAutoConfiguration Auto-configuration} for the service broker implementation beans.
  * <p>
- * Provides a default {@link CatalogService} bean if a {@link Catalog} bean is provided.
+ * Provides a default {@link CatalogService} bean if a {@link Catalog} bean is provided. If several {@link Catalog}
+ * beans are provided, the default {@link CatalogService} is a {@link CompositeCatalogService} that merges them,
+ * and loads them on the {@link Executor} bean named
+ * {@value CompositeCatalogServiceAutoConfiguration#CATALOG_EXECUTOR_BEAN_NAME} if one is provided.
  * <p>
  * Provides a {@link NonBindableServiceInstanceBindingService} if a {@link ServiceInstanceBindingService}
  * is not provided, indicating that the service broker provides no bindable services.
+ * <p>
+ * Provides a {@link ServiceInstanceLockManager} that serializes operations on the same service instance if one
+ * is not provided, in a servlet application where the
+ * {@literal spring.cloud.openservicebroker.lock-manager.enabled} property is {@literal true}. Waiting for a lock
+ * blocks the request thread, so no default lock manager is provided in a reactive application.
+ * <p>
+ * Provides a {@link ParameterTypesModule} that deserializes request parameters into the types registered in a
+ * {@link ParameterTypes} bean, if one is provided.
+ * <p>
+ * Provides a {@link RequestBodyLimitsModule} that enforces the limits of a {@link RequestBodyLimits} bean on request
+ * bodies as they are parsed, if one is provided.
+ * <p>
+ * Provides a {@link ServiceBrokerModelPreloader} that prepares the serializers, deserializers and validation
+ * metadata of the model types at startup.
+ * <p>
+ * Provides a {@link ServiceBrokerDrainLifecycle} that drains the service broker when the application stops and
+ * resumes its saved operations when it starts, if a {@link ServiceBrokerDrain} bean is provided.
+ * <p>
+ * Provides a {@link ServiceBrokerEventDispatcher} that delivers the events of service broker operations to the
+ * {@link ServiceBrokerEventListener} beans, if any are provided. In a reactive web application the dispatcher
+ * drops events when its queue is full instead of blocking the event loop.
  *
  * @author Scott Frederick
  * @author Roy Clarkson
  */
 @Configuration
 @ConditionalOnBean({Catalog.class, ServiceInstanceService.class})
+@ConditionalOnMissingBean(ServiceBrokerBeanRegistrar.class)
 @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.ANY)
 public class ServiceBrokerAutoConfiguration {
 
-	private Catalog catalog;
+	private List<Catalog> catalogs;
 
-	protected ServiceBrokerAutoConfiguration(Catalog catalog) {
-		this.catalog = catalog;
+	protected ServiceBrokerAutoConfiguration(List<Catalog> catalogs) {
+		this.catalogs = catalogs;
 	}
 
 	@Bean
 	@ConditionalOnMissingBean(CatalogService.class)
-	public CatalogService beanCatalogService() {
-		return new BeanCatalogService(this.catalog);
+	public CatalogService beanCatalogService(
+			@Qualifier(CATALOG_EXECUTOR_BEAN_NAME) ObjectProvider<Executor> catalogExecutor) {
+		if (this.catalogs.size() == 1) {
+			return new BeanCatalogService(this.catalogs.get(0));
+		}
+		Executor executor = catalogExecutor.getIfAvailable();
+		return executor == null ? CompositeCatalogService.of(this.catalogs) :
+				CompositeCatalogService.of(this.catalogs, executor);
 	}
 
 	@Bean
@@ -63,4 +114,55 @@ public class ServiceBrokerAutoConfiguration {
 		return new NonBindableServiceInstanceBindingService();
 	}
 
+	@Bean
+	@ConditionalOnMissingBean(ServiceInstanceLockManager.class)
+	@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+	@ConditionalOnProperty(prefix = "spring.cloud.openservicebroker.lock-manager", name = "enabled",
+			havingValue = "true")
+	public ServiceInstanceLockManager serviceInstanceLockManager() {
+		return new ServiceInstanceLockManager();
+	}
+
+	@Bean
+	public ServiceBrokerModelPreloader serviceBrokerModelPreloader(ObjectProvider<ObjectMapper> objectMapper,
+																   ObjectProvider<Validator> validator) {
+		return new ServiceBrokerModelPreloader(objectMapper.getIfUnique(), validator.getIfUnique());
+	}
+
+	@Bean
+	@ConditionalOnBean(ServiceBrokerDrain.class)
+	@ConditionalOnMissingBean
+	public ServiceBrokerDrainLifecycle serviceBrokerDrainLifecycle(ServiceBrokerDrain drain) {
+		return new ServiceBrokerDrainLifecycle(drain);
+	}
+
+	@Bean
+	@ConditionalOnBean(ServiceBrokerEventListener.class)
+	@ConditionalOnMissingBean(ServiceBrokerEventDispatcher.class)
+	@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+	public ServiceBrokerEventDispatcher serviceBrokerEventDispatcher(List<ServiceBrokerEventListener> listeners) {
+		return new ServiceBrokerEventDispatcher(listeners);
+	}
+
+	@Bean
+	@ConditionalOnBean(ServiceBrokerEventListener.class)
+	@ConditionalOnMissingBean(ServiceBrokerEventDispatcher.class)
+	@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+	public ServiceBrokerEventDispatcher nonBlockingServiceBrokerEventDispatcher(
+			List<ServiceBrokerEventListener> listeners) {
+		return ServiceBrokerEventDispatcher.nonBlocking(listeners);
+	}
+
+	@Bean
+	@ConditionalOnBean(ParameterTypes.class)
+	public ParameterTypesModule serviceBrokerParameterTypesModule(ParameterTypes parameterTypes) {
+		return new ParameterTypesModule(parameterTypes);
+	}
+
+	@Bean
+	@ConditionalOnBean(RequestBodyLimits.class)
+	public RequestBodyLimitsModule serviceBrokerRequestBodyLimitsModule(RequestBodyLimits limits) {
+		return new RequestBodyLimitsModule(limits);
+	}
+
 }
@@ -0,0 +1,331 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.autoconfigure.web;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import javax.validation.Validator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
+import org.springframework.cloud.servicebroker.autoconfigure.web.reactive.TraceContextWebFilter;
+import org.springframework.cloud.servicebroker.autoconfigure.web.servlet.ApiVersionInterceptor;
+import org.springframework.cloud.servicebroker.autoconfigure.web.servlet.ApiVersionWebMvcConfigurerAdapter;
+import org.springframework.cloud.servicebroker.autoconfigure.web.servlet.TraceContextInterceptor;
+import org.springframework.cloud.servicebroker.autoconfigure.web.servlet.TraceContextWebMvcConfigurer;
+import org.springframework.cloud.servicebroker.controller.CatalogController;
+import org.springframework.cloud.servicebroker.controller.CatalogViewController;
+import org.springframework.cloud.servicebroker.controller.ServiceInstanceBindingController;
+import org.springframework.cloud.servicebroker.controller.ServiceInstanceController;
+import org.springframework.cloud.servicebroker.model.BrokerApiVersion;
+import org.springframework.cloud.servicebroker.model.Catalog;
+import org.springframework.cloud.servicebroker.model.ParameterTypes;
+import org.springframework.cloud.servicebroker.model.ParameterTypesModule;
+import org.springframework.cloud.servicebroker.model.RequestBodyLimits;
+import org.springframework.cloud.servicebroker.model.RequestBodyLimitsModule;
+import org.springframework.cloud.servicebroker.router.HostedServiceBroker;
+import org.springframework.cloud.servicebroker.router.MultiServiceBrokerRouterFunction;
+import org.springframework.cloud.servicebroker.service.AdmissionController;
+import org.springframework.cloud.servicebroker.service.BeanCatalogService;
+import org.springframework.cloud.servicebroker.service.CatalogService;
+import org.springframework.cloud.servicebroker.service.CatalogViewService;
+import org.springframework.cloud.servicebroker.service.CatalogVisibility;
+import org.springframework.cloud.servicebroker.service.CompositeCatalogService;
+import org.springframework.cloud.servicebroker.service.IdempotencyCache;
+import org.springframework.cloud.servicebroker.service.NonBindableServiceInstanceBindingService;
+import org.springframework.cloud.servicebroker.service.OperationDeadline;
+import org.springframework.cloud.servicebroker.service.OperationStore;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerActivity;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerDrain;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerEventDispatcher;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerEventListener;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerServices;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceBindingService;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceLockManager;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceParametersStore;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceQuota;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceService;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.util.ClassUtils;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Registers the service broker beans without annotation processing or condition evaluation. Registered by
+ * {@link ServiceBrokerInitializer}, and runs after the application's own bean definitions have been loaded so that
+ * defaults are registered only for beans the application does not provide.
+ * <p>
+ * The controllers are registered as lazy beans, so that they and the services they decorate are built when the
+ * first request is mapped to them rather than while the application context is refreshed.
+ * <p>
+ * If several {@link CatalogService} beans are provided and none of them is primary, a primary
+ * {@link CompositeCatalogService} that merges their catalogs is registered. The catalogs merged by a
+ * {@link CompositeCatalogService} are loaded on the {@link Executor} bean named
+ * {@value CompositeCatalogServiceAutoConfiguration#CATALOG_EXECUTOR_BEAN_NAME}, if one is provided.
+ * <p>
+ * In a reactive application with {@link HostedServiceBroker} beans, a {@link MultiServiceBrokerRouterFunction} is
+ * registered to serve them, in addition to the broker described by any {@link Catalog} bean.
+ * <p>
+ * A default {@link ServiceInstanceLockManager} is registered only in a servlet application, and only when the
+ * {@value #LOCK_MANAGER_PROPERTY} property is {@literal true}, since waiting for a lock blocks the request thread.
+ *
+ * @see ServiceBrokerAutoConfiguration
+ */
+public class ServiceBrokerBeanRegistrar implements BeanDefinitionRegistryPostProcessor, EnvironmentAware {
+	private static final Logger log = getLogger(ServiceBrokerBeanRegistrar.class);
+
+	static final String LOCK_MANAGER_PROPERTY = "spring.cloud.openservicebroker.lock-manager.enabled";
+
+	private static final boolean WEBFLUX_PRESENT = ClassUtils.isPresent("org.springframework.web.server.WebFilter",
+			ServiceBrokerBeanRegistrar.class.getClassLoader());
+
+	private final boolean servlet;
+
+	private ListableBeanFactory beanFactory;
+
+	private Environment environment;
+
+	public ServiceBrokerBeanRegistrar(boolean servlet) {
+		this.servlet = servlet;
+	}
+
+	@Override
+	public void setEnvironment(Environment environment) {
+		this.environment = environment;
+	}
+
+	@Override
+	public void postProcessBeanDefinitionRegistry(BeanDefinitionRegistry registry) throws BeansException {
+		this.beanFactory = (ListableBeanFactory) registry;
+
+		boolean hostedBrokers = !this.servlet && WEBFLUX_PRESENT && containsBean(HostedServiceBroker.class);
+		if (hostedBrokers) {
+			register(registry, "multiServiceBrokerRouterFunction", MultiServiceBrokerRouterFunction.class, false,
+					this::multiServiceBrokerRouterFunction);
+			register(registry, "serviceBrokerTraceContextWebFilter", TraceContextWebFilter.class, false,
+					TraceContextWebFilter::new);
+		}
+
+		boolean catalog = containsBean(Catalog.class) || containsBean(CatalogService.class);
+		if (hostedBrokers || catalog) {
+			registerSharedBeans(registry);
+		}
+		if (!catalog) {
+			log.debug("No Catalog or CatalogService bean found, service broker beans will not be registered");
+			return;
+		}
+
+		if (!containsBean(CatalogService.class)) {
+			register(registry, "beanCatalogService", CatalogService.class, false, this::catalogService);
+		} else if (!containsSingleCandidate(registry, CatalogService.class)) {
+			String[] names = this.beanFactory.getBeanNamesForType(CatalogService.class, true, false);
+			register(registry, "compositeCatalogService", CatalogService.class, false, true,
+					() -> compositeCatalogService(names));
+		}
+		if (!containsBean(ServiceInstanceBindingService.class)) {
+			register(registry, "nonBindableServiceInstanceBindingService", ServiceInstanceBindingService.class, false,
+					NonBindableServiceInstanceBindingService::new);
+		}
+		if (containsBean(ParameterTypes.class)) {
+			register(registry, "serviceBrokerParameterTypesModule", ParameterTypesModule.class, false,
+					() -> new ParameterTypesModule(this.beanFactory.getBean(ParameterTypes.class)));
+		}
+		if (containsBean(RequestBodyLimits.class)) {
+			register(registry, "serviceBrokerRequestBodyLimitsModule", RequestBodyLimitsModule.class, false,
+					() -> new RequestBodyLimitsModule(this.beanFactory.getBean(RequestBodyLimits.class)));
+		}
+		register(registry, "serviceBrokerModelPreloader", ServiceBrokerModelPreloader.class, false,
+				() -> new ServiceBrokerModelPreloader(getIfUnique(ObjectMapper.class), getIfUnique(Validator.class)));
+		if (containsBean(CatalogVisibility.class) && !containsBean(CatalogViewService.class)) {
+			register(registry, "catalogViewService", CatalogViewService.class, true,
+					this::catalogViewService);
+		}
+
+		if (containsBean(CatalogViewService.class)) {
+			register(registry, "catalogViewController", CatalogViewController.class, true,
+					() -> new CatalogViewController(this.beanFactory.getBean(CatalogService.class),
+							this.beanFactory.getBean(CatalogViewService.class),
+							getIfAvailable(BrokerApiVersion.class)));
+		} else {
+			register(registry, "catalogController", CatalogController.class, true,
+					() -> new CatalogController(this.beanFactory.getBean(CatalogService.class)));
+		}
+		register(registry, "serviceInstanceController", ServiceInstanceController.class, true,
+				() -> new ServiceInstanceController(this.beanFactory.getBean(CatalogService.class),
+						serviceInstanceService()));
+		register(registry, "serviceInstanceBindingController", ServiceInstanceBindingController.class, true,
+				() -> new ServiceInstanceBindingController(this.beanFactory.getBean(CatalogService.class),
+						serviceInstanceBindingService()));
+
+		if (this.servlet) {
+			registerApiVersionBeans(registry);
+			register(registry, "serviceBrokerTraceContextWebMvcConfigurer", TraceContextWebMvcConfigurer.class, false,
+					() -> new TraceContextWebMvcConfigurer(new TraceContextInterceptor()));
+		} else if (WEBFLUX_PRESENT && !hostedBrokers) {
+			register(registry, "serviceBrokerTraceContextWebFilter", TraceContextWebFilter.class, false,
+					TraceContextWebFilter::new);
+		}
+	}
+
+	@Override
+	public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+	}
+
+	private void registerSharedBeans(BeanDefinitionRegistry registry) {
+		if (this.servlet && !containsBean(ServiceInstanceLockManager.class) && this.environment != null &&
+				this.environment.getProperty(LOCK_MANAGER_PROPERTY, Boolean.class, false)) {
+			register(registry, "serviceInstanceLockManager", ServiceInstanceLockManager.class, true,
+					ServiceInstanceLockManager::new);
+		}
+		if (containsBean(ServiceBrokerDrain.class)) {
+			register(registry, "serviceBrokerDrainLifecycle", ServiceBrokerDrainLifecycle.class, false,
+					() -> new ServiceBrokerDrainLifecycle(this.beanFactory.getBean(ServiceBrokerDrain.class)));
+		}
+		if (containsBean(ServiceBrokerEventListener.class) && !containsBean(ServiceBrokerEventDispatcher.class)) {
+			register(registry, "serviceBrokerEventDispatcher", ServiceBrokerEventDispatcher.class, false,
+					this::serviceBrokerEventDispatcher);
+		}
+	}
+
+	private ServiceBrokerEventDispatcher serviceBrokerEventDispatcher() {
+		List<ServiceBrokerEventListener> listeners =
+				new ArrayList<>(this.beanFactory.getBeansOfType(ServiceBrokerEventListener.class).values());
+		return this.servlet ? new ServiceBrokerEventDispatcher(listeners) :
+				ServiceBrokerEventDispatcher.nonBlocking(listeners);
+	}
+
+	private void registerApiVersionBeans(BeanDefinitionRegistry registry) {
+		if (!containsBean(BrokerApiVersion.class)) {
+			register(registry, "serviceBrokerApiVersion", BrokerApiVersion.class, false, BrokerApiVersion::new);
+		}
+		register(registry, "serviceBrokerWebMvcConfigurerAdapter", ApiVersionWebMvcConfigurerAdapter.class, false,
+				() -> new ApiVersionWebMvcConfigurerAdapter(
+						new ApiVersionInterceptor(this.beanFactory.getBean(BrokerApiVersion.class))));
+	}
+
+	private MultiServiceBrokerRouterFunction multiServiceBrokerRouterFunction() {
+		return new MultiServiceBrokerRouterFunction(
+				new ArrayList<>(this.beanFactory.getBeansOfType(HostedServiceBroker.class).values()),
+				serviceBrokerServices());
+	}
+
+	private CatalogService catalogService() {
+		List<Catalog> catalogs = new ArrayList<>(this.beanFactory.getBeansOfType(Catalog.class).values());
+		if (catalogs.size() == 1) {
+			return new BeanCatalogService(catalogs.get(0));
+		}
+		Executor executor = catalogExecutor();
+		return executor == null ? CompositeCatalogService.of(catalogs) : CompositeCatalogService.of(catalogs, executor);
+	}
+
+	private CatalogService compositeCatalogService(String[] names) {
+		List<CatalogService> delegates = new ArrayList<>(names.length);
+		for (String name : names) {
+			delegates.add(this.beanFactory.getBean(name, CatalogService.class));
+		}
+		Executor executor = catalogExecutor();
+		return executor == null ? new CompositeCatalogService(delegates) :
+				new CompositeCatalogService(delegates, executor);
+	}
+
+	private Executor catalogExecutor() {
+		String name = CompositeCatalogServiceAutoConfiguration.CATALOG_EXECUTOR_BEAN_NAME;
+		return this.beanFactory.containsBean(name) ? this.beanFactory.getBean(name, Executor.class) : null;
+	}
+
+	private CatalogViewService catalogViewService() {
+		ObjectMapper objectMapper = getIfUnique(ObjectMapper.class);
+		return new CatalogViewService(this.beanFactory.getBean(CatalogService.class),
+				this.beanFactory.getBean(CatalogVisibility.class),
+				objectMapper == null ? new ObjectMapper() : objectMapper);
+	}
+
+	private ServiceInstanceService serviceInstanceService() {
+		return serviceBrokerServices().decorate(this.beanFactory.getBean(ServiceInstanceService.class),
+				getIfAvailable(OperationStore.class));
+	}
+
+	private ServiceInstanceBindingService serviceInstanceBindingService() {
+		return serviceBrokerServices().decorate(this.beanFactory.getBean(ServiceInstanceBindingService.class));
+	}
+
+	private ServiceBrokerServices serviceBrokerServices() {
+		return ServiceBrokerServices.builder()
+				.parametersStore(getIfAvailable(ServiceInstanceParametersStore.class))
+				.quota(getIfAvailable(ServiceInstanceQuota.class))
+				.lockManager(getIfAvailable(ServiceInstanceLockManager.class))
+				.admissionController(getIfAvailable(AdmissionController.class))
+				.operationDeadline(getIfAvailable(OperationDeadline.class))
+				.drain(getIfAvailable(ServiceBrokerDrain.class))
+				.eventDispatcher(getIfAvailable(ServiceBrokerEventDispatcher.class))
+				.idempotencyCache(getIfAvailable(IdempotencyCache.class))
+				.activity(getIfAvailable(ServiceBrokerActivity.class))
+				.nonBlocking(!this.servlet)
+				.build();
+	}
+
+	private <T> void register(BeanDefinitionRegistry registry, String name, Class<T> type, boolean lazy,
+							  Supplier<? extends T> supplier) {
+		register(registry, name, type, lazy, false, supplier);
+	}
+
+	private <T> void register(BeanDefinitionRegistry registry, String name, Class<T> type, boolean lazy,
+							  boolean primary, Supplier<? extends T> supplier) {
+		log.debug("Registering service broker bean: name={}, type={}", name, type.getName());
+		AbstractBeanDefinition definition = BeanDefinitionBuilder
+				.genericBeanDefinition(type, supplier::get)
+				.setLazyInit(lazy)
+				.getBeanDefinition();
+		definition.setPrimary(primary);
+		registry.registerBeanDefinition(name, definition);
+	}
+
+	private boolean containsBean(Class<?> type) {
+		return this.beanFactory.getBeanNamesForType(type, true, false).length > 0;
+	}
+
+	private boolean containsSingleCandidate(BeanDefinitionRegistry registry, Class<?> type) {
+		String[] names = this.beanFactory.getBeanNamesForType(type, true, false);
+		int primary = 0;
+		for (String name : names) {
+			if (registry.containsBeanDefinition(name) && registry.getBeanDefinition(name).isPrimary()) {
+				primary++;
+			}
+		}
+		return names.length == 1 || primary == 1;
+	}
+
+	private <T> T getIfAvailable(Class<T> type) {
+		return containsBean(type) ? this.beanFactory.getBean(type) : null;
+	}
+
+	private <T> T getIfUnique(Class<T> type) {
+		String[] names = this.beanFactory.getBeanNamesForType(type, true, false);
+		return names.length == 1 ? this.beanFactory.getBean(names[0], type) : null;
+	}
+}
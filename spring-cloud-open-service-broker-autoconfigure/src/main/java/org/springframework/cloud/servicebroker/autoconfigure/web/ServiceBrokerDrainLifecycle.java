@@ -0,0 +1,76 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.autoconfigure.web;
+
+import org.springframework.cloud.servicebroker.service.ServiceBrokerDrain;
+import org.springframework.context.SmartLifecycle;
+
+/**
+ * Resumes the operations saved by the previous instance of the service broker when the application context starts,
+ * and drains the {@link ServiceBrokerDrain} when it stops.
+ * <p>
+ * The application context stops its lifecycle beans before it stops the embedded web server, so the broker keeps
+ * answering requests while it drains. This lifecycle is in the last phase, so it is stopped before the other
+ * lifecycle beans of the application.
+ */
+public class ServiceBrokerDrainLifecycle implements SmartLifecycle {
+
+	private final ServiceBrokerDrain drain;
+
+	private volatile boolean running;
+
+	public ServiceBrokerDrainLifecycle(ServiceBrokerDrain drain) {
+		this.drain = drain;
+	}
+
+	@Override
+	public void start() {
+		drain.resume();
+		running = true;
+	}
+
+	@Override
+	public void stop() {
+		try {
+			drain.drain();
+		} finally {
+			running = false;
+		}
+	}
+
+	@Override
+	public void stop(Runnable callback) {
+		stop();
+		callback.run();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	@Override
+	public boolean isAutoStartup() {
+		return true;
+	}
+
+	@Override
+	public int getPhase() {
+		return Integer.MAX_VALUE;
+	}
+}
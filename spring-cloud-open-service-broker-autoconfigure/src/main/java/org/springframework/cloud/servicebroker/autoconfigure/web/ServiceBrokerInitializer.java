@@ -0,0 +1,79 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.autoconfigure.web;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.ClassUtils;
+import org.springframework.web.context.WebApplicationContext;
+
+/**
+ * {@link ApplicationContextInitializer} that registers the service broker beans functionally, as an alternative to
+ * the service broker auto-configuration. The auto-configuration classes back off when this initializer is used.
+ * <p>
+ * Add the initializer to the application before it is run:
+ * <pre>
+ * new SpringApplicationBuilder(Application.class)
+ *         .initializers(new ServiceBrokerInitializer())
+ *         .run(args);
+ * </pre>
+ *
+ * @see ServiceBrokerBeanRegistrar
+ */
+public class ServiceBrokerInitializer implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+
+	private static final String DISPATCHER_SERVLET_CLASS = "org.springframework.web.servlet.DispatcherServlet";
+
+	public static final String REGISTRAR_BEAN_NAME = "serviceBrokerBeanRegistrar";
+
+	@Override
+	public void initialize(ConfigurableApplicationContext context) {
+		boolean servlet = context instanceof WebApplicationContext &&
+				ClassUtils.isPresent(DISPATCHER_SERVLET_CLASS, context.getClassLoader());
+		context.addBeanFactoryPostProcessor(new RegistrarRegistration(servlet));
+	}
+
+	/**
+	 * Registers the {@link ServiceBrokerBeanRegistrar} as a bean before the application's configuration classes
+	 * are processed, so that the auto-configuration can back off and the registrar itself runs after the
+	 * application's bean definitions have been loaded.
+	 */
+	private static final class RegistrarRegistration implements BeanDefinitionRegistryPostProcessor {
+		private final boolean servlet;
+
+		private RegistrarRegistration(boolean servlet) {
+			this.servlet = servlet;
+		}
+
+		@Override
+		public void postProcessBeanDefinitionRegistry(BeanDefinitionRegistry registry) throws BeansException {
+			registry.registerBeanDefinition(REGISTRAR_BEAN_NAME, BeanDefinitionBuilder
+					.genericBeanDefinition(ServiceBrokerBeanRegistrar.class,
+							() -> new ServiceBrokerBeanRegistrar(this.servlet))
+					.getBeanDefinition());
+		}
+
+		@Override
+		public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.autoconfigure.web;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.validation.Validator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.cloud.servicebroker.model.AsyncRequiredErrorMessage;
+import org.springframework.cloud.servicebroker.model.Catalog;
+import org.springframework.cloud.servicebroker.model.CloudFoundryContext;
+import org.springframework.cloud.servicebroker.model.ConcurrencyErrorMessage;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceAppBindingResponse;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRouteBindingResponse;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.ErrorMessage;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationResponse;
+import org.springframework.cloud.servicebroker.model.KubernetesContext;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceResponse;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Builds the Jackson serializers and deserializers and the Bean Validation metadata of the service broker model
+ * types when the application context starts, so that the first requests to the broker do not pay for the
+ * introspection of the model classes.
+ * <p>
+ * Jackson and Bean Validation cache what they build, so preloading does not change how later requests are
+ * processed. Failures are logged and otherwise ignored, leaving the work to the first request that needs it.
+ */
+public class ServiceBrokerModelPreloader implements SmartInitializingSingleton {
+	private static final Logger log = getLogger(ServiceBrokerModelPreloader.class);
+
+	static final List<Class<?>> REQUEST_TYPES = Arrays.asList(
+			CreateServiceInstanceRequest.class,
+			UpdateServiceInstanceRequest.class,
+			CreateServiceInstanceBindingRequest.class,
+			CloudFoundryContext.class,
+			KubernetesContext.class);
+
+	static final List<Class<?>> RESPONSE_TYPES = Arrays.asList(
+			Catalog.class,
+			CreateServiceInstanceResponse.class,
+			UpdateServiceInstanceResponse.class,
+			DeleteServiceInstanceResponse.class,
+			GetLastServiceOperationResponse.class,
+			CreateServiceInstanceAppBindingResponse.class,
+			CreateServiceInstanceRouteBindingResponse.class,
+			ErrorMessage.class,
+			AsyncRequiredErrorMessage.class,
+			ConcurrencyErrorMessage.class);
+
+	private final ObjectMapper objectMapper;
+
+	private final Validator validator;
+
+	/**
+	 * Construct a preloader.
+	 *
+	 * @param objectMapper the object mapper that reads and writes request and response bodies, or {@literal null}
+	 * @param validator the validator of request bodies, or {@literal null}
+	 */
+	public ServiceBrokerModelPreloader(ObjectMapper objectMapper, Validator validator) {
+		this.objectMapper = objectMapper;
+		this.validator = validator;
+	}
+
+	@Override
+	public void afterSingletonsInstantiated() {
+		long start = System.nanoTime();
+
+		for (Class<?> type : REQUEST_TYPES) {
+			if (objectMapper != null && !objectMapper.canDeserialize(objectMapper.constructType(type))) {
+				log.debug("No deserializer found for service broker model type {}", type.getName());
+			}
+			if (validator != null) {
+				preloadConstraints(type);
+			}
+		}
+
+		if (objectMapper != null) {
+			for (Class<?> type : RESPONSE_TYPES) {
+				if (!objectMapper.canSerialize(type)) {
+					log.debug("No serializer found for service broker model type {}", type.getName());
+				}
+			}
+		}
+
+		log.debug("Preloaded service broker model types in {} ms", (System.nanoTime() - start) / 1_000_000);
+	}
+
+	private void preloadConstraints(Class<?> type) {
+		try {
+			validator.getConstraintsForClass(type);
+		} catch (RuntimeException e) {
+			log.debug("Error preloading constraints of service broker model type " + type.getName(), e);
+		}
+	}
+}
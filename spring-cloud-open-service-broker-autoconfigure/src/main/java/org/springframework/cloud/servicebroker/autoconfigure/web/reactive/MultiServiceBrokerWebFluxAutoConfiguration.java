@@ -0,0 +1,110 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.autoconfigure.web.reactive;
+
+import java.util.List;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.web.reactive.WebFluxAutoConfiguration;
+import org.springframework.cloud.servicebroker.autoconfigure.web.ServiceBrokerAutoConfiguration;
+import org.springframework.cloud.servicebroker.autoconfigure.web.ServiceBrokerBeanRegistrar;
+import org.springframework.cloud.servicebroker.autoconfigure.web.ServiceBrokerDrainLifecycle;
+import org.springframework.cloud.servicebroker.router.HostedServiceBroker;
+import org.springframework.cloud.servicebroker.router.MultiServiceBrokerRouterFunction;
+import org.springframework.cloud.servicebroker.service.AdmissionController;
+import org.springframework.cloud.servicebroker.service.IdempotencyCache;
+import org.springframework.cloud.servicebroker.service.OperationDeadline;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerActivity;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerDrain;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerEventDispatcher;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerEventListener;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerServices;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceLockManager;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceParametersStore;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceQuota;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * {@link EnableAutoConfiguration Auto-configuration} for serving several {@link HostedServiceBroker service brokers}
+ * in one reactive application with a {@link MultiServiceBrokerRouterFunction}.
+ * <p>
+ * The services of the brokers are decorated with the same optional beans as those of a single broker, and a
+ * {@link ServiceBrokerDrainLifecycle} and a {@link ServiceBrokerEventDispatcher} are provided for them if the
+ * application does not describe a broker of its own.
+ */
+@Configuration
+@ConditionalOnBean(HostedServiceBroker.class)
+@AutoConfigureAfter({WebFluxAutoConfiguration.class, ServiceBrokerAutoConfiguration.class,
+		ServiceBrokerWebFluxAutoConfiguration.class})
+@ConditionalOnMissingBean(ServiceBrokerBeanRegistrar.class)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class MultiServiceBrokerWebFluxAutoConfiguration {
+
+	@Bean
+	@ConditionalOnMissingBean
+	public MultiServiceBrokerRouterFunction multiServiceBrokerRouterFunction(List<HostedServiceBroker> brokers,
+			ObjectProvider<ServiceInstanceLockManager> lockManager,
+			ObjectProvider<AdmissionController> admissionController,
+			ObjectProvider<OperationDeadline> operationDeadline,
+			ObjectProvider<ServiceBrokerActivity> activity,
+			ObjectProvider<ServiceBrokerDrain> drain,
+			ObjectProvider<ServiceBrokerEventDispatcher> eventDispatcher,
+			ObjectProvider<IdempotencyCache> idempotencyCache,
+			ObjectProvider<ServiceInstanceParametersStore> parametersStore,
+			ObjectProvider<ServiceInstanceQuota> quota) {
+		return new MultiServiceBrokerRouterFunction(brokers, ServiceBrokerServices.builder()
+				.parametersStore(parametersStore.getIfAvailable())
+				.quota(quota.getIfAvailable())
+				.lockManager(lockManager.getIfAvailable())
+				.admissionController(admissionController.getIfAvailable())
+				.operationDeadline(operationDeadline.getIfAvailable())
+				.drain(drain.getIfAvailable())
+				.eventDispatcher(eventDispatcher.getIfAvailable())
+				.idempotencyCache(idempotencyCache.getIfAvailable())
+				.activity(activity.getIfAvailable())
+				.nonBlocking(true)
+				.build());
+	}
+
+	@Bean
+	@ConditionalOnBean(ServiceBrokerDrain.class)
+	@ConditionalOnMissingBean
+	public ServiceBrokerDrainLifecycle serviceBrokerDrainLifecycle(ServiceBrokerDrain drain) {
+		return new ServiceBrokerDrainLifecycle(drain);
+	}
+
+	@Bean
+	@ConditionalOnBean(ServiceBrokerEventListener.class)
+	@ConditionalOnMissingBean
+	public ServiceBrokerEventDispatcher serviceBrokerEventDispatcher(List<ServiceBrokerEventListener> listeners) {
+		return ServiceBrokerEventDispatcher.nonBlocking(listeners);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	public TraceContextWebFilter serviceBrokerTraceContextWebFilter() {
+		return new TraceContextWebFilter();
+	}
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.autoconfigure.web.reactive;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.RequestBodyLimits;
+import org.springframework.cloud.servicebroker.model.RequestBodyLimitsModule;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.router.ServiceBrokerRequestPath;
+import org.springframework.cloud.servicebroker.router.ServiceBrokerRequestPath.Endpoint;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+/**
+ * {@link WebFilter} that enforces the {@literal maxBytes} of {@link RequestBodyLimits} on the bodies of service
+ * instance provision, update and bind requests as they are received.
+ * <p>
+ * The WebFlux JSON decoder hands the tokens of a body to Jackson from a buffer that does not report how many bytes
+ * have been read, so the {@link RequestBodyLimitsModule} can check the depth, keys and strings of a body but not its
+ * size. This filter counts the bytes instead, and fails the body with a {@link DecodingException} once it exceeds
+ * the loosest limit the request could select with its plan, which is reported to the platform as a
+ * {@literal 422 Unprocessable Entity} response like other unreadable bodies.
+ */
+public class RequestBodyLimitsWebFilter implements WebFilter {
+
+	private final RequestBodyLimits limits;
+
+	public RequestBodyLimitsWebFilter(RequestBodyLimits limits) {
+		this.limits = limits;
+	}
+
+	@Override
+	public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+		ServerHttpRequest request = exchange.getRequest();
+		Class<?> requestType = getRequestType(request);
+		if (requestType == null) {
+			return chain.filter(exchange);
+		}
+
+		long maxBytes = limits.resolveLoosest(requestType).getMaxBytes();
+		ServerHttpRequest limited = new ServerHttpRequestDecorator(request) {
+			@Override
+			public Flux<DataBuffer> getBody() {
+				return limit(super.getBody(), maxBytes);
+			}
+		};
+		return chain.filter(exchange.mutate().request(limited).build());
+	}
+
+	private static Class<?> getRequestType(ServerHttpRequest request) {
+		String value = request.getPath().pathWithinApplication().value();
+		ServiceBrokerRequestPath path = ServiceBrokerRequestPath.parse(value);
+		if (path == null) {
+			return null;
+		}
+
+		HttpMethod method = request.getMethod();
+		if (path.getEndpoint() == Endpoint.SERVICE_INSTANCE) {
+			if (method == HttpMethod.PUT) {
+				return CreateServiceInstanceRequest.class;
+			} else if (method == HttpMethod.PATCH) {
+				return UpdateServiceInstanceRequest.class;
+			}
+		} else if (path.getEndpoint() == Endpoint.SERVICE_BINDING && method == HttpMethod.PUT) {
+			return CreateServiceInstanceBindingRequest.class;
+		}
+		return null;
+	}
+
+	private static Flux<DataBuffer> limit(Flux<DataBuffer> body, long maxBytes) {
+		return Flux.defer(() -> {
+			long[] read = new long[1];
+			return body.map(buffer -> {
+				read[0] += buffer.readableByteCount();
+				if (read[0] > maxBytes) {
+					DataBufferUtils.release(buffer);
+					throw new DecodingException("Request body exceeds the maximum size of " + maxBytes + " bytes");
+				}
+				return buffer;
+			});
+		});
+	}
+}
@@ -16,30 +16,59 @@
 
 package org.springframework.cloud.servicebroker.autoconfigure.web.reactive;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.boot.autoconfigure.web.reactive.WebFluxAutoConfiguration;
+import org.springframework.cloud.servicebroker.autoconfigure.web.CompositeCatalogServiceAutoConfiguration;
 import org.springframework.cloud.servicebroker.autoconfigure.web.ServiceBrokerAutoConfiguration;
+import org.springframework.cloud.servicebroker.autoconfigure.web.ServiceBrokerBeanRegistrar;
 import org.springframework.cloud.servicebroker.controller.CatalogController;
+import org.springframework.cloud.servicebroker.controller.CatalogViewController;
 import org.springframework.cloud.servicebroker.controller.ServiceInstanceBindingController;
 import org.springframework.cloud.servicebroker.controller.ServiceInstanceController;
+import org.springframework.cloud.servicebroker.model.BrokerApiVersion;
 import org.springframework.cloud.servicebroker.model.Catalog;
+import org.springframework.cloud.servicebroker.model.RequestBodyLimits;
+import org.springframework.cloud.servicebroker.router.ServiceBrokerRouterFunction;
+import org.springframework.cloud.servicebroker.service.AdmissionController;
 import org.springframework.cloud.servicebroker.service.CatalogService;
+import org.springframework.cloud.servicebroker.service.CatalogViewService;
+import org.springframework.cloud.servicebroker.service.CatalogVisibility;
+import org.springframework.cloud.servicebroker.service.IdempotencyCache;
+import org.springframework.cloud.servicebroker.service.OperationDeadline;
+import org.springframework.cloud.servicebroker.service.OperationStore;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerActivity;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerDrain;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerEventDispatcher;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerServices;
 import org.springframework.cloud.servicebroker.service.ServiceInstanceBindingService;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceLockManager;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceParametersStore;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceQuota;
 import org.springframework.cloud.servicebroker.service.ServiceInstanceService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 /**
  * {@link EnableAutoConfiguration Auto-configuration} for the service broker REST API endpoints.
+ * <p>
+ * The endpoints are served by annotated controllers by default. When the
+ * {@literal spring.cloud.openservicebroker.webflux.router-function} property is {@literal true}, they are served
+ * by a {@link ServiceBrokerRouterFunction} instead.
  *
  * @author Roy Clarkson
  */
 @Configuration
 @ConditionalOnBean({CatalogService.class, ServiceInstanceService.class, ServiceInstanceBindingService.class})
-@AutoConfigureAfter({WebFluxAutoConfiguration.class, ServiceBrokerAutoConfiguration.class})
+@AutoConfigureAfter({WebFluxAutoConfiguration.class, ServiceBrokerAutoConfiguration.class,
+		CompositeCatalogServiceAutoConfiguration.class})
+@ConditionalOnMissingBean(ServiceBrokerBeanRegistrar.class)
 @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
 public class ServiceBrokerWebFluxAutoConfiguration {
 
@@ -51,25 +80,104 @@ public class ServiceBrokerWebFluxAutoConfiguration {
 
 	protected ServiceBrokerWebFluxAutoConfiguration(
 			CatalogService catalogService, ServiceInstanceService serviceInstanceService,
-			ServiceInstanceBindingService serviceInstanceBindingService) {
+			ServiceInstanceBindingService serviceInstanceBindingService,
+			ObjectProvider<OperationStore> operationStore,
+			ObjectProvider<ServiceInstanceLockManager> lockManager,
+			ObjectProvider<AdmissionController> admissionController,
+			ObjectProvider<OperationDeadline> operationDeadline,
+			ObjectProvider<ServiceBrokerActivity> activity,
+			ObjectProvider<ServiceBrokerDrain> drain,
+			ObjectProvider<ServiceBrokerEventDispatcher> eventDispatcher,
+			ObjectProvider<IdempotencyCache> idempotencyCache,
+			ObjectProvider<ServiceInstanceParametersStore> parametersStore,
+			ObjectProvider<ServiceInstanceQuota> quota) {
 		this.catalogService = catalogService;
-		this.serviceInstanceService = serviceInstanceService;
-		this.serviceInstanceBindingService = serviceInstanceBindingService;
+
+		ServiceBrokerServices services = ServiceBrokerServices.builder()
+				.parametersStore(parametersStore.getIfAvailable())
+				.quota(quota.getIfAvailable())
+				.lockManager(lockManager.getIfAvailable())
+				.admissionController(admissionController.getIfAvailable())
+				.operationDeadline(operationDeadline.getIfAvailable())
+				.drain(drain.getIfAvailable())
+				.eventDispatcher(eventDispatcher.getIfAvailable())
+				.idempotencyCache(idempotencyCache.getIfAvailable())
+				.activity(activity.getIfAvailable())
+				.nonBlocking(true)
+				.build();
+		this.serviceInstanceService = services.decorate(serviceInstanceService, operationStore.getIfAvailable());
+		this.serviceInstanceBindingService = services.decorate(serviceInstanceBindingService);
+	}
+
+	@Bean
+	@ConditionalOnBean(CatalogVisibility.class)
+	@ConditionalOnMissingBean(CatalogViewService.class)
+	public CatalogViewService catalogViewService(CatalogVisibility catalogVisibility,
+												 ObjectProvider<ObjectMapper> objectMapper) {
+		return new CatalogViewService(this.catalogService, catalogVisibility,
+				objectMapper.getIfUnique(ObjectMapper::new));
 	}
 
 	@Bean
+	@ConditionalOnProperty(prefix = "spring.cloud.openservicebroker.webflux", name = "router-function",
+			havingValue = "false", matchIfMissing = true)
+	@ConditionalOnMissingBean(CatalogViewService.class)
 	public CatalogController catalogController() {
 		return new CatalogController(this.catalogService);
 	}
 
 	@Bean
+	@ConditionalOnProperty(prefix = "spring.cloud.openservicebroker.webflux", name = "router-function",
+			havingValue = "false", matchIfMissing = true)
+	@ConditionalOnBean(CatalogViewService.class)
+	public CatalogViewController catalogViewController(CatalogViewService catalogViewService,
+													   ObjectProvider<BrokerApiVersion> brokerApiVersion) {
+		return new CatalogViewController(this.catalogService, catalogViewService, brokerApiVersion.getIfAvailable());
+	}
+
+	@Bean
+	@ConditionalOnProperty(prefix = "spring.cloud.openservicebroker.webflux", name = "router-function",
+			havingValue = "false", matchIfMissing = true)
 	public ServiceInstanceController serviceInstanceController() {
 		return new ServiceInstanceController(this.catalogService, this.serviceInstanceService);
 	}
 
 	@Bean
+	@ConditionalOnProperty(prefix = "spring.cloud.openservicebroker.webflux", name = "router-function",
+			havingValue = "false", matchIfMissing = true)
 	public ServiceInstanceBindingController serviceInstanceBindingController() {
 		return new ServiceInstanceBindingController(this.catalogService, this.serviceInstanceBindingService);
 	}
 
+	@Bean
+	@ConditionalOnProperty(prefix = "spring.cloud.openservicebroker.webflux", name = "router-function",
+			havingValue = "true")
+	public ServiceBrokerRouterFunction serviceBrokerRouterFunction(
+			ObjectProvider<CatalogViewService> catalogViewService,
+			ObjectProvider<BrokerApiVersion> brokerApiVersion) {
+		CatalogViewService views = catalogViewService.getIfAvailable();
+		ServiceInstanceController serviceInstanceController =
+				new ServiceInstanceController(this.catalogService, this.serviceInstanceService);
+		ServiceInstanceBindingController serviceInstanceBindingController =
+				new ServiceInstanceBindingController(this.catalogService, this.serviceInstanceBindingService);
+		if (views == null) {
+			return new ServiceBrokerRouterFunction(new CatalogController(this.catalogService),
+					serviceInstanceController, serviceInstanceBindingController);
+		}
+		return new ServiceBrokerRouterFunction(
+				new CatalogViewController(this.catalogService, views, brokerApiVersion.getIfAvailable()),
+				serviceInstanceController, serviceInstanceBindingController, null, null);
+	}
+
+	@Bean
+	public TraceContextWebFilter serviceBrokerTraceContextWebFilter() {
+		return new TraceContextWebFilter();
+	}
+
+	@Bean
+	@ConditionalOnBean(RequestBodyLimits.class)
+	public RequestBodyLimitsWebFilter serviceBrokerRequestBodyLimitsWebFilter(RequestBodyLimits limits) {
+		return new RequestBodyLimitsWebFilter(limits);
+	}
+
 }
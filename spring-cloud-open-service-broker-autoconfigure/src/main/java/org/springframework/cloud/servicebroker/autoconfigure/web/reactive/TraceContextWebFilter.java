@@ -0,0 +1,74 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.autoconfigure.web.reactive;
+
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import org.springframework.cloud.servicebroker.router.ServiceBrokerRequestPath;
+import org.springframework.cloud.servicebroker.trace.TraceContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+/**
+ * {@link WebFilter} that stores the {@link TraceContext} of each service broker request in the Reactor context
+ * under the {@code TraceContext.class} key and in the {@link TraceContext#ATTRIBUTE} exchange attribute. The context
+ * is built from the {@literal traceparent} or {@literal X-Broker-API-Request-Identity} header, the request path and
+ * the {@literal service_id} and {@literal plan_id} query parameters. Requests for other paths are passed on
+ * unchanged.
+ */
+public class TraceContextWebFilter implements WebFilter {
+
+	@Override
+	public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+		ServerHttpRequest request = exchange.getRequest();
+		ServiceBrokerRequestPath path = ServiceBrokerRequestPath.parse(request.getPath().pathWithinApplication().value());
+		if (path == null) {
+			return chain.filter(exchange);
+		}
+
+		HttpHeaders headers = request.getHeaders();
+		MultiValueMap<String, String> queryParams = request.getQueryParams();
+		TraceContext traceContext = TraceContext.of(
+				TraceContext.resolveTraceId(headers.getFirst(TraceContext.TRACEPARENT_HEADER),
+						headers.getFirst(TraceContext.REQUEST_IDENTITY_HEADER)),
+				path.getCfInstanceId(),
+				path.getInstanceId(),
+				path.getBindingId(),
+				queryParams.getFirst("service_id"),
+				queryParams.getFirst("plan_id"));
+
+		exchange.getAttributes().put(TraceContext.ATTRIBUTE, traceContext);
+		return chain.filter(exchange)
+				.subscriberContext(Context.of(TraceContext.class, traceContext));
+	}
+
+	/**
+	 * Get the {@link TraceContext} of the current request from the Reactor context.
+	 *
+	 * @return the trace context, or an empty {@link Mono} outside of a service broker request
+	 */
+	public static Mono<TraceContext> currentTraceContext() {
+		return Mono.subscriberContext()
+				.filter(context -> context.hasKey(TraceContext.class))
+				.map(context -> context.get(TraceContext.class));
+	}
+}
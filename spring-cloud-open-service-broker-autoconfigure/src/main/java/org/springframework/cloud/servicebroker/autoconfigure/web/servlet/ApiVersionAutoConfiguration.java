@@ -22,6 +22,7 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.cloud.servicebroker.autoconfigure.web.ServiceBrokerBeanRegistrar;
 import org.springframework.cloud.servicebroker.model.BrokerApiVersion;
 import org.springframework.cloud.servicebroker.model.Catalog;
 import org.springframework.cloud.servicebroker.service.ServiceInstanceService;
@@ -37,6 +38,7 @@ import org.springframework.context.annotation.Configuration;
  * @author Scott Frederick
  */
 @Configuration
+@ConditionalOnMissingBean(ServiceBrokerBeanRegistrar.class)
 @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @ConditionalOnBean({Catalog.class, ServiceInstanceService.class})
 @AutoConfigureAfter(WebMvcAutoConfiguration.class)
@@ -31,7 +31,7 @@ public class ApiVersionWebMvcConfigurerAdapter implements WebMvcConfigurer {
 
 	private ApiVersionInterceptor apiVersionInterceptor;
 
-	protected ApiVersionWebMvcConfigurerAdapter(ApiVersionInterceptor apiVersionInterceptor) {
+	public ApiVersionWebMvcConfigurerAdapter(ApiVersionInterceptor apiVersionInterceptor) {
 		this.apiVersionInterceptor = apiVersionInterceptor;
 	}
 
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.autoconfigure.web.servlet;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnSingleCandidate;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.cloud.servicebroker.security.CachingDaoAuthenticationProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * {@link EnableAutoConfiguration Auto-configuration} for authenticating service broker requests. Configures a
+ * {@link CachingDaoAuthenticationProvider} for the application's {@link UserDetailsService}, so that the
+ * basic authentication credentials sent by the platform are not verified with a slow password hash on every
+ * request.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnSingleCandidate(UserDetailsService.class)
+@ConditionalOnMissingBean({AuthenticationManager.class, AuthenticationProvider.class})
+public class ServiceBrokerSecurityAutoConfiguration {
+
+	@Bean
+	public CachingDaoAuthenticationProvider serviceBrokerAuthenticationProvider(
+			UserDetailsService userDetailsService, ObjectProvider<PasswordEncoder> passwordEncoder) {
+		CachingDaoAuthenticationProvider provider = new CachingDaoAuthenticationProvider();
+		provider.setUserDetailsService(userDetailsService);
+		PasswordEncoder encoder = passwordEncoder.getIfUnique();
+		if (encoder != null) {
+			provider.setPasswordEncoder(encoder);
+		}
+		return provider;
+	}
+
+}
@@ -16,18 +16,38 @@
 
 package org.springframework.cloud.servicebroker.autoconfigure.web.servlet;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.cloud.servicebroker.autoconfigure.web.CompositeCatalogServiceAutoConfiguration;
 import org.springframework.cloud.servicebroker.autoconfigure.web.ServiceBrokerAutoConfiguration;
+import org.springframework.cloud.servicebroker.autoconfigure.web.ServiceBrokerBeanRegistrar;
 import org.springframework.cloud.servicebroker.controller.CatalogController;
+import org.springframework.cloud.servicebroker.controller.CatalogViewController;
 import org.springframework.cloud.servicebroker.controller.ServiceInstanceBindingController;
 import org.springframework.cloud.servicebroker.controller.ServiceInstanceController;
+import org.springframework.cloud.servicebroker.model.BrokerApiVersion;
 import org.springframework.cloud.servicebroker.model.Catalog;
+import org.springframework.cloud.servicebroker.service.AdmissionController;
 import org.springframework.cloud.servicebroker.service.CatalogService;
+import org.springframework.cloud.servicebroker.service.CatalogViewService;
+import org.springframework.cloud.servicebroker.service.CatalogVisibility;
+import org.springframework.cloud.servicebroker.service.IdempotencyCache;
+import org.springframework.cloud.servicebroker.service.OperationDeadline;
+import org.springframework.cloud.servicebroker.service.OperationStore;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerActivity;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerDrain;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerEventDispatcher;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerServices;
 import org.springframework.cloud.servicebroker.service.ServiceInstanceBindingService;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceLockManager;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceParametersStore;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceQuota;
 import org.springframework.cloud.servicebroker.service.ServiceInstanceService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -40,7 +60,9 @@ import org.springframework.context.annotation.Configuration;
  */
 @Configuration
 @ConditionalOnBean({CatalogService.class, ServiceInstanceService.class, ServiceInstanceBindingService.class})
-@AutoConfigureAfter({WebMvcAutoConfiguration.class, ServiceBrokerAutoConfiguration.class})
+@AutoConfigureAfter({WebMvcAutoConfiguration.class, ServiceBrokerAutoConfiguration.class,
+		CompositeCatalogServiceAutoConfiguration.class})
+@ConditionalOnMissingBean(ServiceBrokerBeanRegistrar.class)
 @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class ServiceBrokerWebMvcAutoConfiguration {
 
@@ -52,17 +74,56 @@ public class ServiceBrokerWebMvcAutoConfiguration {
 
 	protected ServiceBrokerWebMvcAutoConfiguration(
 			CatalogService catalogService, ServiceInstanceService serviceInstanceService,
-			ServiceInstanceBindingService serviceInstanceBindingService) {
+			ServiceInstanceBindingService serviceInstanceBindingService,
+			ObjectProvider<OperationStore> operationStore,
+			ObjectProvider<ServiceInstanceLockManager> lockManager,
+			ObjectProvider<AdmissionController> admissionController,
+			ObjectProvider<OperationDeadline> operationDeadline,
+			ObjectProvider<ServiceBrokerActivity> activity,
+			ObjectProvider<ServiceBrokerDrain> drain,
+			ObjectProvider<ServiceBrokerEventDispatcher> eventDispatcher,
+			ObjectProvider<IdempotencyCache> idempotencyCache,
+			ObjectProvider<ServiceInstanceParametersStore> parametersStore,
+			ObjectProvider<ServiceInstanceQuota> quota) {
 		this.catalogService = catalogService;
-		this.serviceInstanceService = serviceInstanceService;
-		this.serviceInstanceBindingService = serviceInstanceBindingService;
+
+		ServiceBrokerServices services = ServiceBrokerServices.builder()
+				.parametersStore(parametersStore.getIfAvailable())
+				.quota(quota.getIfAvailable())
+				.lockManager(lockManager.getIfAvailable())
+				.admissionController(admissionController.getIfAvailable())
+				.operationDeadline(operationDeadline.getIfAvailable())
+				.drain(drain.getIfAvailable())
+				.eventDispatcher(eventDispatcher.getIfAvailable())
+				.idempotencyCache(idempotencyCache.getIfAvailable())
+				.activity(activity.getIfAvailable())
+				.build();
+		this.serviceInstanceService = services.decorate(serviceInstanceService, operationStore.getIfAvailable());
+		this.serviceInstanceBindingService = services.decorate(serviceInstanceBindingService);
 	}
 
 	@Bean
+	@ConditionalOnBean(CatalogVisibility.class)
+	@ConditionalOnMissingBean(CatalogViewService.class)
+	public CatalogViewService catalogViewService(CatalogVisibility catalogVisibility,
+												 ObjectProvider<ObjectMapper> objectMapper) {
+		return new CatalogViewService(this.catalogService, catalogVisibility,
+				objectMapper.getIfUnique(ObjectMapper::new));
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(CatalogViewService.class)
 	public CatalogController catalogController() {
 		return new CatalogController(this.catalogService);
 	}
 
+	@Bean
+	@ConditionalOnBean(CatalogViewService.class)
+	public CatalogViewController catalogViewController(CatalogViewService catalogViewService,
+													   ObjectProvider<BrokerApiVersion> brokerApiVersion) {
+		return new CatalogViewController(this.catalogService, catalogViewService, brokerApiVersion.getIfAvailable());
+	}
+
 	@Bean
 	public ServiceInstanceController serviceInstanceController() {
 		return new ServiceInstanceController(this.catalogService, this.serviceInstanceService);
@@ -73,4 +134,9 @@ public class ServiceBrokerWebMvcAutoConfiguration {
 		return new ServiceInstanceBindingController(this.catalogService, this.serviceInstanceBindingService);
 	}
 
+	@Bean
+	public TraceContextWebMvcConfigurer serviceBrokerTraceContextWebMvcConfigurer() {
+		return new TraceContextWebMvcConfigurer(new TraceContextInterceptor());
+	}
+
 }
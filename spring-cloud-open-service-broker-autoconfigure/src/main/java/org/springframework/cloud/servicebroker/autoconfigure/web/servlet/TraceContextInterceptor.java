@@ -0,0 +1,74 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.autoconfigure.web.servlet;
+
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.cloud.servicebroker.trace.MdcScope;
+import org.springframework.cloud.servicebroker.trace.TraceContext;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+/**
+ * {@link HandlerInterceptor} that puts the {@link TraceContext} of each service broker request in the SLF4J MDC
+ * from before the controller is called until the request completes. The context is built from the
+ * {@literal traceparent} or {@literal X-Broker-API-Request-Identity} header, the path variables and the
+ * {@literal service_id} and {@literal plan_id} request parameters, and is also stored in the
+ * {@link TraceContext#ATTRIBUTE} request attribute.
+ */
+public class TraceContextInterceptor extends HandlerInterceptorAdapter {
+
+	private static final String SCOPE_ATTRIBUTE = TraceContextInterceptor.class.getName() + ".scope";
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		@SuppressWarnings("unchecked")
+		Map<String, String> pathVariables =
+				(Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+
+		TraceContext traceContext = TraceContext.of(
+				TraceContext.resolveTraceId(request.getHeader(TraceContext.TRACEPARENT_HEADER),
+						request.getHeader(TraceContext.REQUEST_IDENTITY_HEADER)),
+				pathVariable(pathVariables, "cfInstanceId"),
+				pathVariable(pathVariables, "instanceId"),
+				pathVariable(pathVariables, "bindingId"),
+				request.getParameter("service_id"),
+				request.getParameter("plan_id"));
+
+		request.setAttribute(TraceContext.ATTRIBUTE, traceContext);
+		request.setAttribute(SCOPE_ATTRIBUTE, traceContext.putInMdc());
+		return true;
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+								Exception ex) {
+		Object scope = request.getAttribute(SCOPE_ATTRIBUTE);
+		if (scope instanceof MdcScope) {
+			((MdcScope) scope).close();
+			request.removeAttribute(SCOPE_ATTRIBUTE);
+		}
+	}
+
+	private static String pathVariable(Map<String, String> pathVariables, String name) {
+		return pathVariables == null ? null : pathVariables.get(name);
+	}
+}
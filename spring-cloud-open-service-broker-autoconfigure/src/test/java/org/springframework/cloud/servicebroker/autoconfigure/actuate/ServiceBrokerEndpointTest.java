@@ -0,0 +1,178 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.autoconfigure.actuate;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.cloud.servicebroker.autoconfigure.web.servlet.fixture.CatalogFixture;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.OperationState;
+import org.springframework.cloud.servicebroker.service.AdmissionController;
+import org.springframework.cloud.servicebroker.service.BeanCatalogService;
+import org.springframework.cloud.servicebroker.service.MonitoredServiceInstanceService;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerActivity;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerActivity.Call;
+import org.springframework.cloud.servicebroker.service.RoutingServiceInstanceService;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceService;
+import org.springframework.cloud.servicebroker.service.ServiceOffering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ServiceBrokerEndpointTest {
+
+	private final ServiceBrokerActivity activity = new ServiceBrokerActivity();
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void inFlightCallsAreGrouped() {
+		activity.start("createServiceInstance", "service-one-id", "plan-one-id", "cf-1", "instance-1");
+		activity.start("createServiceInstance", "service-one-id", "plan-one-id", "cf-1", "instance-2");
+		activity.start("deleteServiceInstance", "service-one-id", "plan-one-id", "cf-1", "instance-3");
+
+		Map<String, Object> result = endpoint().serviceBroker();
+
+		List<Map<String, Object>> inFlight = (List<Map<String, Object>>) result.get("inFlight");
+		assertEquals(2, inFlight.size());
+		Map<String, Object> creates = inFlight.stream()
+				.filter(group -> "createServiceInstance".equals(group.get("operation")))
+				.findFirst()
+				.orElseThrow(AssertionError::new);
+		assertEquals(2, creates.get("count"));
+		assertEquals("plan-one-id", creates.get("planId"));
+		assertEquals("cf-1", creates.get("cfInstanceId"));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void asyncOperationsAndSlowestCallsAreShown() {
+		ServiceInstanceService delegate = mock(ServiceInstanceService.class);
+		when(delegate.createServiceInstance(any())).thenReturn(CreateServiceInstanceResponse.builder()
+				.async(true)
+				.operation("provisioning")
+				.build());
+		ServiceInstanceService service = new MonitoredServiceInstanceService(delegate, activity);
+		CreateServiceInstanceRequest request = CreateServiceInstanceRequest.builder()
+				.serviceDefinitionId("service-one-id")
+				.planId("plan-one-id")
+				.build();
+		request.setServiceInstanceId("instance-1");
+		request.setAsyncAccepted(true);
+
+		service.createServiceInstance(request);
+
+		Map<String, Object> result = endpoint().serviceBroker();
+
+		Map<String, Object> operations = (Map<String, Object>) result.get("operations");
+		assertEquals(1, operations.get("count"));
+		Map<String, Object> operation = ((List<Map<String, Object>>) operations.get("oldest")).get(0);
+		assertEquals("instance-1", operation.get("serviceInstanceId"));
+		assertEquals("provisioning", operation.get("operation"));
+		assertEquals(OperationState.IN_PROGRESS, operation.get("state"));
+
+		List<Map<String, Object>> slowestCalls = (List<Map<String, Object>>) result.get("slowestCalls");
+		assertEquals(1, slowestCalls.size());
+		assertEquals("createServiceInstance", slowestCalls.get(0).get("operation"));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void catalogAndAdmissionAreShown() {
+		Map<String, Object> result = endpoint().serviceBroker();
+
+		Map<String, Object> catalog = (Map<String, Object>) result.get("catalog");
+		assertEquals(CatalogFixture.getCatalog().getServiceDefinitions().size(), catalog.get("services"));
+		assertNotNull(catalog.get("version"));
+		Map<String, Object> admission = (Map<String, Object>) result.get("admission");
+		assertEquals(AdmissionController.DEFAULT_INITIAL_LIMIT, admission.get("limit"));
+		assertEquals(0, admission.get("inFlight"));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void callsToEachOfferingAreShown() {
+		ServiceInstanceService delegate = mock(ServiceInstanceService.class);
+		when(delegate.createServiceInstance(any())).thenReturn(CreateServiceInstanceResponse.builder().build());
+		ServiceOffering offering = ServiceOffering.builder()
+				.serviceDefinitionId("service-one-id")
+				.serviceInstanceService(delegate)
+				.concurrencyLimit(5)
+				.build();
+		CreateServiceInstanceRequest request = CreateServiceInstanceRequest.builder()
+				.serviceDefinitionId("service-one-id")
+				.planId("plan-one-id")
+				.build();
+		new RoutingServiceInstanceService(Collections.singletonList(offering)).createServiceInstance(request);
+
+		Map<String, Object> result = new ServiceBrokerEndpoint(activity, null, null, null,
+				Collections.singletonList(offering)).serviceBroker();
+
+		Map<String, Object> details = ((List<Map<String, Object>>) result.get("offerings")).get(0);
+		assertEquals("service-one-id", details.get("serviceDefinitionId"));
+		assertEquals(1L, details.get("completed"));
+		assertEquals(0L, details.get("rejected"));
+		assertEquals(5, ((Map<String, Object>) details.get("admission")).get("limit"));
+	}
+
+	@Test
+	public void healthReportsCallsThatAreTooOld() throws InterruptedException {
+		ServiceBrokerHealthIndicator healthIndicator =
+				new ServiceBrokerHealthIndicator(activity, null, Duration.ofMillis(1), 10, false);
+
+		Call call = activity.start("createServiceInstance", null, null, null, "instance-1");
+		Thread.sleep(10);
+		Health health = healthIndicator.health();
+		assertEquals(Status.UP, health.getStatus());
+		assertEquals(Collections.singletonList("maxCallAge"), health.getDetails().get("saturated"));
+
+		activity.finish(call, false);
+		assertEquals(Collections.emptyList(), healthIndicator.health().getDetails().get("saturated"));
+	}
+
+	@Test
+	public void healthIsDownWhenCallsAreTooOldIfRequested() throws InterruptedException {
+		ServiceBrokerHealthIndicator healthIndicator =
+				new ServiceBrokerHealthIndicator(activity, null, Duration.ofMillis(1), 10, true);
+		assertEquals(Status.UP, healthIndicator.health().getStatus());
+
+		Call call = activity.start("createServiceInstance", null, null, null, "instance-1");
+		Thread.sleep(10);
+		Health health = healthIndicator.health();
+		assertEquals(Status.DOWN, health.getStatus());
+		assertEquals(1, health.getDetails().get("inFlight"));
+
+		activity.finish(call, false);
+		assertEquals(Status.UP, healthIndicator.health().getStatus());
+	}
+
+	private ServiceBrokerEndpoint endpoint() {
+		return new ServiceBrokerEndpoint(activity, new BeanCatalogService(CatalogFixture.getCatalog()),
+				new AdmissionController(), null);
+	}
+}
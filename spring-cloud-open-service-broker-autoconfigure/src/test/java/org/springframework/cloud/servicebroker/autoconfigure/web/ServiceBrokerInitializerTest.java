@@ -0,0 +1,173 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.autoconfigure.web;
+
+import org.junit.Test;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.WebApplicationContextRunner;
+import org.springframework.cloud.servicebroker.autoconfigure.web.servlet.ApiVersionAutoConfiguration;
+import org.springframework.cloud.servicebroker.autoconfigure.web.servlet.ApiVersionWebMvcConfigurerAdapter;
+import org.springframework.cloud.servicebroker.autoconfigure.web.servlet.ServiceBrokerWebMvcAutoConfiguration;
+import org.springframework.cloud.servicebroker.autoconfigure.web.servlet.fixture.CatalogFixture;
+import org.springframework.cloud.servicebroker.controller.CatalogController;
+import org.springframework.cloud.servicebroker.controller.ServiceInstanceBindingController;
+import org.springframework.cloud.servicebroker.controller.ServiceInstanceController;
+import org.springframework.cloud.servicebroker.model.BrokerApiVersion;
+import org.springframework.cloud.servicebroker.model.Catalog;
+import org.springframework.cloud.servicebroker.model.Plan;
+import org.springframework.cloud.servicebroker.model.ServiceDefinition;
+import org.springframework.cloud.servicebroker.service.BeanCatalogService;
+import org.springframework.cloud.servicebroker.service.CatalogService;
+import org.springframework.cloud.servicebroker.service.CompositeCatalogService;
+import org.springframework.cloud.servicebroker.service.NonBindableServiceInstanceBindingService;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceBindingService;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class ServiceBrokerInitializerTest {
+
+	private final WebApplicationContextRunner contextRunner = new WebApplicationContextRunner()
+			.withInitializer(new ServiceBrokerInitializer()::initialize)
+			.withConfiguration(AutoConfigurations.of(ServiceBrokerAutoConfiguration.class,
+					ServiceBrokerWebMvcAutoConfiguration.class, ApiVersionAutoConfiguration.class));
+
+	@Test
+	public void servicesAndControllersAreRegistered() {
+		contextRunner.withUserConfiguration(BrokerConfiguration.class)
+				.run(context -> {
+					assertThat(context).doesNotHaveBean(ServiceBrokerAutoConfiguration.class);
+					assertThat(context).doesNotHaveBean(ServiceBrokerWebMvcAutoConfiguration.class);
+					assertThat(context).doesNotHaveBean(ApiVersionAutoConfiguration.class);
+
+					assertThat(context).getBean(CatalogService.class).isInstanceOf(BeanCatalogService.class);
+					assertThat(context).getBean(ServiceInstanceBindingService.class)
+							.isInstanceOf(NonBindableServiceInstanceBindingService.class);
+					assertThat(context).hasSingleBean(BrokerApiVersion.class);
+					assertThat(context).hasSingleBean(ApiVersionWebMvcConfigurerAdapter.class);
+					assertThat(context).hasSingleBean(ServiceBrokerModelPreloader.class);
+
+					assertThat(context).hasSingleBean(CatalogController.class);
+					assertThat(context).hasSingleBean(ServiceInstanceController.class);
+					assertThat(context).hasSingleBean(ServiceInstanceBindingController.class);
+				});
+	}
+
+	@Test
+	public void controllersAreLazy() {
+		contextRunner.withUserConfiguration(BrokerConfiguration.class)
+				.run(context -> {
+					ConfigurableListableBeanFactory beanFactory = context
+							.getSourceApplicationContext().getBeanFactory();
+					assertThat(beanFactory.getBeanDefinition("catalogController").isLazyInit()).isTrue();
+					assertThat(beanFactory.containsSingleton("catalogController")).isFalse();
+				});
+	}
+
+	@Test
+	public void providedServicesAreKept() {
+		contextRunner.withUserConfiguration(BrokerConfiguration.class, CatalogServiceConfiguration.class)
+				.run(context -> assertThat(context).getBean(CatalogService.class)
+						.isSameAs(context.getBean("customCatalogService")));
+	}
+
+	@Test
+	public void multipleCatalogsAreMerged() {
+		contextRunner.withUserConfiguration(BrokerConfiguration.class, AdditionalCatalogConfiguration.class)
+				.run(context -> {
+					assertThat(context).getBean(CatalogService.class).isInstanceOf(CompositeCatalogService.class);
+					CatalogService catalogService = context.getBean(CatalogService.class);
+					assertThat(catalogService.getServiceDefinition("additional-service-id")).isNotNull();
+					assertThat(catalogService.getCatalog().getServiceDefinitions())
+							.hasSize(CatalogFixture.getCatalog().getServiceDefinitions().size() + 1);
+				});
+	}
+
+	@Test
+	public void multipleCatalogServicesAreCombined() {
+		contextRunner.withUserConfiguration(BrokerConfiguration.class, CatalogServiceConfiguration.class,
+				AdditionalCatalogServiceConfiguration.class)
+				.run(context -> {
+					assertThat(context).getBean(CatalogService.class).isInstanceOf(CompositeCatalogService.class);
+					CatalogService catalogService = context.getBean(CatalogService.class);
+					assertThat(catalogService.getServiceDefinition("additional-service-id")).isNotNull();
+					assertThat(catalogService.getCatalog().getServiceDefinitions())
+							.hasSize(CatalogFixture.getCatalog().getServiceDefinitions().size() + 1);
+					assertThat(context).hasSingleBean(ServiceInstanceController.class);
+				});
+	}
+
+	@Test
+	public void nothingIsRegisteredWithoutCatalog() {
+		contextRunner.run(context -> {
+			assertThat(context).doesNotHaveBean(CatalogController.class);
+			assertThat(context).doesNotHaveBean(ServiceBrokerWebMvcAutoConfiguration.class);
+		});
+	}
+
+	@Configuration
+	public static class BrokerConfiguration {
+		@Bean
+		public Catalog catalog() {
+			return CatalogFixture.getCatalog();
+		}
+
+		@Bean
+		public ServiceInstanceService serviceInstanceService() {
+			return mock(ServiceInstanceService.class);
+		}
+	}
+
+	@Configuration
+	public static class AdditionalCatalogConfiguration {
+		@Bean
+		public Catalog additionalCatalog() {
+			return Catalog.builder()
+					.serviceDefinitions(ServiceDefinition.builder()
+							.id("additional-service-id")
+							.name("additional-service")
+							.description("Additional Service")
+							.plans(Plan.builder()
+									.id("additional-plan-id")
+									.name("additional-plan")
+									.description("Additional Plan")
+									.build())
+							.build())
+					.build();
+		}
+	}
+
+	@Configuration
+	public static class AdditionalCatalogServiceConfiguration {
+		@Bean
+		public CatalogService additionalCatalogService() {
+			return new BeanCatalogService(new AdditionalCatalogConfiguration().additionalCatalog());
+		}
+	}
+
+	@Configuration
+	public static class CatalogServiceConfiguration {
+		@Bean
+		public CatalogService customCatalogService() {
+			return new BeanCatalogService(CatalogFixture.getCatalog());
+		}
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.autoconfigure.web;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.cloud.servicebroker.autoconfigure.web.servlet.fixture.CatalogFixture;
+import org.springframework.cloud.servicebroker.model.BrokerApiVersion;
+import org.springframework.cloud.servicebroker.model.Catalog;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceService;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Measures the time from starting a service broker application to the first successful response from
+ * {@code /v2/catalog}, with the beans registered by the auto-configuration and by {@link ServiceBrokerInitializer}.
+ * <p>
+ * Run from the IDE or with {@code java -cp <test classpath>}. The optional argument is the number of iterations
+ * for each registration mode. Modes are run alternately in the same JVM, so the first iterations include
+ * class loading and should be discarded when comparing the modes.
+ */
+public class ServiceBrokerStartupBenchmark {
+
+	private static final String USER = "user";
+
+	private static final String PASSWORD = "password";
+
+	public static void main(String[] args) throws Exception {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+
+		List<Long> annotationTimes = new ArrayList<>();
+		List<Long> functionalTimes = new ArrayList<>();
+
+		for (int i = 0; i < iterations; i++) {
+			annotationTimes.add(timeToFirstCatalog(false));
+			functionalTimes.add(timeToFirstCatalog(true));
+		}
+
+		report("auto-configuration", annotationTimes);
+		report("functional", functionalTimes);
+	}
+
+	private static long timeToFirstCatalog(boolean functional) throws IOException {
+		long start = System.nanoTime();
+
+		SpringApplication application = new SpringApplication(BrokerApplication.class);
+		if (functional) {
+			application.addInitializers(new ServiceBrokerInitializer());
+		}
+
+		try (ConfigurableApplicationContext context = application.run(
+				"--server.port=0",
+				"--spring.main.banner-mode=off",
+				"--logging.level.root=WARN",
+				"--spring.security.user.name=" + USER,
+				"--spring.security.user.password=" + PASSWORD)) {
+			int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+			int status = getCatalog(port);
+			long elapsed = System.nanoTime() - start;
+			if (status != HttpURLConnection.HTTP_OK) {
+				throw new IllegalStateException("Unexpected catalog response status " + status);
+			}
+			return TimeUnit.NANOSECONDS.toMillis(elapsed);
+		}
+	}
+
+	private static int getCatalog(int port) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection)
+				new URL("http://localhost:" + port + "/v2/catalog").openConnection();
+		try {
+			connection.setRequestProperty(BrokerApiVersion.DEFAULT_API_VERSION_HEADER, BrokerApiVersion.API_VERSION_CURRENT);
+			connection.setRequestProperty("Authorization", "Basic " + Base64.getEncoder()
+					.encodeToString((USER + ":" + PASSWORD).getBytes(StandardCharsets.UTF_8)));
+			return connection.getResponseCode();
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	private static void report(String mode, List<Long> times) {
+		List<Long> sorted = new ArrayList<>(times);
+		Collections.sort(sorted);
+		System.out.printf("%-20s min=%dms median=%dms max=%dms all=%s%n", mode,
+				sorted.get(0), sorted.get(sorted.size() / 2), sorted.get(sorted.size() - 1), times);
+	}
+
+	@Configuration
+	@EnableAutoConfiguration
+	public static class BrokerApplication {
+		@Bean
+		public Catalog catalog() {
+			return CatalogFixture.getCatalog();
+		}
+
+		@Bean
+		public ServiceInstanceService serviceInstanceService() {
+			return mock(ServiceInstanceService.class);
+		}
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.autoconfigure.web.reactive;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import org.springframework.cloud.servicebroker.autoconfigure.web.servlet.fixture.CatalogFixture;
+import org.springframework.cloud.servicebroker.autoconfigure.web.servlet.fixture.PlanFixture;
+import org.springframework.cloud.servicebroker.model.BrokerApiVersion;
+import org.springframework.cloud.servicebroker.model.Catalog;
+import org.springframework.cloud.servicebroker.model.ServiceDefinition;
+import org.springframework.cloud.servicebroker.router.HostedServiceBroker;
+import org.springframework.cloud.servicebroker.router.MultiServiceBrokerRouterFunction;
+import org.springframework.cloud.servicebroker.service.BeanCatalogService;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.springframework.cloud.servicebroker.model.BrokerApiVersion.DEFAULT_API_VERSION_HEADER;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MultiServiceBrokerRouterFunctionIntegrationTest {
+
+	@Mock
+	private ServiceInstanceService mysqlServiceInstanceService;
+
+	@Mock
+	private ServiceInstanceService redisServiceInstanceService;
+
+	private WebTestClient client;
+
+	@Before
+	public void setup() {
+		client = WebTestClient.bindToRouterFunction(new MultiServiceBrokerRouterFunction(Arrays.asList(
+				HostedServiceBroker.builder()
+						.name("mysql")
+						.path("mysql")
+						.catalogService(new BeanCatalogService(CatalogFixture.getCatalog()))
+						.serviceInstanceService(mysqlServiceInstanceService)
+						.credentials("mysql-user", "mysql-password")
+						.build(),
+				HostedServiceBroker.builder()
+						.name("redis")
+						.path("redis")
+						.host("redis.example.com")
+						.catalogService(new BeanCatalogService(getRedisCatalog()))
+						.serviceInstanceService(redisServiceInstanceService)
+						.brokerApiVersion(new BrokerApiVersion("2.13"))
+						.build())))
+				.build();
+	}
+
+	@Test
+	public void catalogIsRetrievedFromBrokerSelectedByPath() {
+		client.get().uri("/mysql/v2/catalog")
+				.header(HttpHeaders.AUTHORIZATION, basic("mysql-user", "mysql-password"))
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody()
+				.jsonPath("$.services[0].id").isEqualTo("service-one-id");
+
+		client.get().uri("/redis/v2/catalog")
+				.header(DEFAULT_API_VERSION_HEADER, "2.13")
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody()
+				.jsonPath("$.services[0].id").isEqualTo("service-two-id");
+	}
+
+	@Test
+	public void catalogIsRetrievedWithCfInstanceId() {
+		client.get().uri("/mysql/{cfInstanceId}/v2/catalog", "cf-instance-id")
+				.header(HttpHeaders.AUTHORIZATION, basic("mysql-user", "mysql-password"))
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody()
+				.jsonPath("$.services[0].id").isEqualTo("service-one-id");
+	}
+
+	@Test
+	public void catalogIsRetrievedFromBrokerSelectedByHost() {
+		client.get().uri("http://redis.example.com/v2/catalog")
+				.header(DEFAULT_API_VERSION_HEADER, "2.13")
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody()
+				.jsonPath("$.services[0].id").isEqualTo("service-two-id");
+	}
+
+	@Test
+	public void requestWithUnknownPrefixIsNotFound() {
+		client.get().uri("/postgres/v2/catalog")
+				.exchange()
+				.expectStatus().isNotFound();
+
+		client.get().uri("/v2/catalog")
+				.exchange()
+				.expectStatus().isNotFound();
+	}
+
+	@Test
+	public void requestWithoutCredentialsIsUnauthorized() {
+		client.get().uri("/mysql/v2/catalog")
+				.exchange()
+				.expectStatus().isUnauthorized()
+				.expectHeader().valueEquals(HttpHeaders.WWW_AUTHENTICATE, "Basic realm=\"mysql\"");
+	}
+
+	@Test
+	public void requestWithOtherBrokersCredentialsIsUnauthorized() {
+		client.get().uri("/mysql/v2/catalog")
+				.header(HttpHeaders.AUTHORIZATION, basic("mysql-user", "redis-password"))
+				.exchange()
+				.expectStatus().isUnauthorized();
+	}
+
+	@Test
+	public void requestWithWrongApiVersionIsRejected() {
+		client.get().uri("/redis/v2/catalog")
+				.header(DEFAULT_API_VERSION_HEADER, "2.12")
+				.exchange()
+				.expectStatus().isEqualTo(412)
+				.expectBody()
+				.jsonPath("$.description").isNotEmpty();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void brokersWithSamePathAreRejected() {
+		new MultiServiceBrokerRouterFunction(Arrays.asList(
+				HostedServiceBroker.builder()
+						.name("one")
+						.path("mysql")
+						.catalogService(new BeanCatalogService(CatalogFixture.getCatalog()))
+						.serviceInstanceService(mysqlServiceInstanceService)
+						.build(),
+				HostedServiceBroker.builder()
+						.name("two")
+						.path("mysql")
+						.catalogService(new BeanCatalogService(getRedisCatalog()))
+						.serviceInstanceService(redisServiceInstanceService)
+						.build()));
+	}
+
+	private static Catalog getRedisCatalog() {
+		return Catalog.builder()
+				.serviceDefinitions(ServiceDefinition.builder()
+						.id("service-two-id")
+						.name("Service Two")
+						.description("Description for Service Two")
+						.plans(PlanFixture.getAllPlans())
+						.build())
+				.build();
+	}
+
+	private static String basic(String username, String password) {
+		return "Basic " + Base64.getEncoder()
+				.encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.autoconfigure.web.reactive;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.cloud.servicebroker.autoconfigure.web.servlet.fixture.CatalogFixture;
+import org.springframework.cloud.servicebroker.controller.CatalogController;
+import org.springframework.cloud.servicebroker.controller.ServiceInstanceBindingController;
+import org.springframework.cloud.servicebroker.controller.ServiceInstanceController;
+import org.springframework.cloud.servicebroker.model.Catalog;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.ServiceDefinition;
+import org.springframework.cloud.servicebroker.router.ServiceBrokerRouterFunction;
+import org.springframework.cloud.servicebroker.service.BeanCatalogService;
+import org.springframework.cloud.servicebroker.service.CatalogService;
+import org.springframework.cloud.servicebroker.service.NonBindableServiceInstanceBindingService;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceBindingService;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceService;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Compares the per-request time of the service broker API endpoints served by the annotated controllers and by
+ * {@link ServiceBrokerRouterFunction} under WebFlux. Requests are exchanged in memory with {@link WebTestClient},
+ * so the difference between the two modes is the request mapping, argument resolution and response handling.
+ * <p>
+ * Run from the IDE or with {@code java -cp <test classpath>}. The optional arguments are the number of warm-up
+ * and measured requests for each endpoint and mode.
+ */
+public class ServiceBrokerRouterFunctionBenchmark {
+
+	private static final String CATALOG_PATH = "/cf-abc/v2/catalog";
+
+	private static final String SERVICE_INSTANCE_PATH = "/cf-abc/v2/service_instances/service-instance-id";
+
+	public static void main(String[] args) {
+		int warmup = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 50000;
+
+		Catalog catalog = CatalogFixture.getCatalog();
+		ServiceDefinition serviceDefinition = catalog.getServiceDefinitions().get(0);
+		CatalogService catalogService = new BeanCatalogService(catalog);
+
+		ServiceInstanceService serviceInstanceService = mock(ServiceInstanceService.class);
+		when(serviceInstanceService.createServiceInstance(any()))
+				.thenReturn(CreateServiceInstanceResponse.builder().build());
+		ServiceInstanceBindingService bindingService = new NonBindableServiceInstanceBindingService();
+
+		String createBody = "{\"service_id\":\"" + serviceDefinition.getId() + "\"," +
+				"\"plan_id\":\"" + serviceDefinition.getPlans().get(0).getId() + "\"}";
+
+		WebTestClient controllers = WebTestClient.bindToController(
+				new CatalogController(catalogService),
+				new ServiceInstanceController(catalogService, serviceInstanceService),
+				new ServiceInstanceBindingController(catalogService, bindingService))
+				.build();
+
+		WebTestClient routerFunction = WebTestClient.bindToRouterFunction(new ServiceBrokerRouterFunction(
+				new CatalogController(catalogService),
+				new ServiceInstanceController(catalogService, serviceInstanceService),
+				new ServiceInstanceBindingController(catalogService, bindingService)))
+				.build();
+
+		for (int i = 0; i < 2; i++) {
+			report("catalog", "controllers", measure(warmup, iterations, () -> getCatalog(controllers)));
+			report("catalog", "router-function", measure(warmup, iterations, () -> getCatalog(routerFunction)));
+			report("provision", "controllers",
+					measure(warmup, iterations, () -> createServiceInstance(controllers, createBody)));
+			report("provision", "router-function",
+					measure(warmup, iterations, () -> createServiceInstance(routerFunction, createBody)));
+		}
+	}
+
+	private static void getCatalog(WebTestClient client) {
+		client.get().uri(CATALOG_PATH)
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody().returnResult();
+	}
+
+	private static void createServiceInstance(WebTestClient client, String body) {
+		client.put().uri(SERVICE_INSTANCE_PATH)
+				.contentType(MediaType.APPLICATION_JSON)
+				.syncBody(body)
+				.exchange()
+				.expectStatus().isCreated()
+				.expectBody().returnResult();
+	}
+
+	private static long measure(int warmup, int iterations, Runnable request) {
+		for (int i = 0; i < warmup; i++) {
+			request.run();
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			request.run();
+		}
+		return (System.nanoTime() - start) / iterations;
+	}
+
+	private static void report(String endpoint, String mode, long nanosPerRequest) {
+		System.out.printf("%-10s %-16s %8.1f us/request%n", endpoint, mode,
+				nanosPerRequest / (double) TimeUnit.MICROSECONDS.toNanos(1));
+	}
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.autoconfigure.web.reactive;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import org.springframework.cloud.servicebroker.autoconfigure.web.servlet.ControllerIntegrationTest;
+import org.springframework.cloud.servicebroker.autoconfigure.web.servlet.fixture.CatalogFixture;
+import org.springframework.cloud.servicebroker.autoconfigure.web.servlet.fixture.ServiceFixture;
+import org.springframework.cloud.servicebroker.controller.CatalogController;
+import org.springframework.cloud.servicebroker.controller.ServiceInstanceBindingController;
+import org.springframework.cloud.servicebroker.controller.ServiceInstanceController;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceBindingDoesNotExistException;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceExistsException;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceAppBindingResponse;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationRequest;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationResponse;
+import org.springframework.cloud.servicebroker.model.OperationState;
+import org.springframework.cloud.servicebroker.model.ServiceDefinition;
+import org.springframework.cloud.servicebroker.model.fixture.DataFixture;
+import org.springframework.cloud.servicebroker.router.ServiceBrokerRouterFunction;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceBindingService;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceService;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.cloud.servicebroker.model.ServiceBrokerRequest.API_INFO_LOCATION_HEADER;
+import static org.springframework.cloud.servicebroker.model.ServiceBrokerRequest.ORIGINATING_IDENTITY_HEADER;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ServiceBrokerRouterFunctionIntegrationTest extends ControllerIntegrationTest {
+
+	private static final String SERVICE_INSTANCE_ID = "service-instance-id";
+
+	private static final String BINDING_ID = "binding-id";
+
+	@Mock
+	private ServiceInstanceService serviceInstanceService;
+
+	@Mock
+	private ServiceInstanceBindingService serviceInstanceBindingService;
+
+	private WebTestClient client;
+
+	private ServiceDefinition serviceDefinition;
+
+	@Before
+	public void setup() {
+		client = WebTestClient.bindToRouterFunction(new ServiceBrokerRouterFunction(
+				new CatalogController(catalogService),
+				new ServiceInstanceController(catalogService, serviceInstanceService),
+				new ServiceInstanceBindingController(catalogService, serviceInstanceBindingService)))
+				.build();
+
+		serviceDefinition = ServiceFixture.getSimpleService();
+	}
+
+	@Test
+	public void catalogIsRetrieved() {
+		when(catalogService.getCatalog()).thenReturn(CatalogFixture.getCatalog());
+
+		client.get().uri("/{cfInstanceId}/v2/catalog", CF_INSTANCE_ID)
+				.exchange()
+				.expectStatus().isOk()
+				.expectHeader().contentType(MediaType.APPLICATION_JSON_UTF8)
+				.expectBody()
+				.jsonPath("$.services[0].id").isEqualTo(serviceDefinition.getId());
+	}
+
+	@Test
+	public void createServiceInstanceSucceeds() throws Exception {
+		setupCatalogService(serviceDefinition.getId());
+		when(serviceInstanceService.createServiceInstance(any(CreateServiceInstanceRequest.class)))
+				.thenReturn(CreateServiceInstanceResponse.builder()
+						.dashboardUrl("https://dashboard.example.com")
+						.build());
+
+		client.put().uri("/{cfInstanceId}/v2/service_instances/{instanceId}", CF_INSTANCE_ID, SERVICE_INSTANCE_ID)
+				.header(API_INFO_LOCATION_HEADER, API_INFO_LOCATION)
+				.header(ORIGINATING_IDENTITY_HEADER, buildOriginatingIdentityHeader())
+				.contentType(MediaType.APPLICATION_JSON)
+				.syncBody(DataFixture.toJson(buildCreateServiceInstanceRequest()))
+				.exchange()
+				.expectStatus().isCreated()
+				.expectBody()
+				.jsonPath("$.dashboard_url").isEqualTo("https://dashboard.example.com");
+
+		ArgumentCaptor<CreateServiceInstanceRequest> captor = ArgumentCaptor.forClass(CreateServiceInstanceRequest.class);
+		verify(serviceInstanceService).createServiceInstance(captor.capture());
+		CreateServiceInstanceRequest actualRequest = captor.getValue();
+		assertEquals(SERVICE_INSTANCE_ID, actualRequest.getServiceInstanceId());
+		assertEquals(CF_INSTANCE_ID, actualRequest.getCfInstanceId());
+		assertEquals(API_INFO_LOCATION, actualRequest.getApiInfoLocation());
+		assertEquals(ORIGINATING_IDENTITY_PLATFORM, actualRequest.getOriginatingIdentity().getPlatform());
+		assertEquals(serviceDefinition, actualRequest.getServiceDefinition());
+		assertFalse(actualRequest.isAsyncAccepted());
+	}
+
+	@Test
+	public void createServiceInstanceWithAsyncSucceeds() throws Exception {
+		setupCatalogService(serviceDefinition.getId());
+		when(serviceInstanceService.createServiceInstance(any(CreateServiceInstanceRequest.class)))
+				.thenReturn(CreateServiceInstanceResponse.builder()
+						.async(true)
+						.operation("working")
+						.build());
+
+		client.put().uri("/v2/service_instances/{instanceId}?accepts_incomplete=true", SERVICE_INSTANCE_ID)
+				.contentType(MediaType.APPLICATION_JSON)
+				.syncBody(DataFixture.toJson(buildCreateServiceInstanceRequest()))
+				.exchange()
+				.expectStatus().isAccepted()
+				.expectBody()
+				.jsonPath("$.operation").isEqualTo("working");
+
+		ArgumentCaptor<CreateServiceInstanceRequest> captor = ArgumentCaptor.forClass(CreateServiceInstanceRequest.class);
+		verify(serviceInstanceService).createServiceInstance(captor.capture());
+		assertTrue(captor.getValue().isAsyncAccepted());
+		assertNull(captor.getValue().getCfInstanceId());
+	}
+
+	@Test
+	public void createServiceInstanceWithMissingFieldsFails() {
+		client.put().uri("/v2/service_instances/{instanceId}", SERVICE_INSTANCE_ID)
+				.contentType(MediaType.APPLICATION_JSON)
+				.syncBody("{}")
+				.exchange()
+				.expectStatus().isEqualTo(422)
+				.expectBody(String.class)
+				.consumeWith(result -> {
+					assertThat(result.getResponseBody(), containsString("serviceDefinitionId"));
+					assertThat(result.getResponseBody(), containsString("planId"));
+				});
+
+		verify(serviceInstanceService, never()).createServiceInstance(any());
+	}
+
+	@Test
+	public void createServiceInstanceWithMalformedBodyFails() {
+		client.put().uri("/v2/service_instances/{instanceId}", SERVICE_INSTANCE_ID)
+				.contentType(MediaType.APPLICATION_JSON)
+				.syncBody("{\"service_id\":")
+				.exchange()
+				.expectStatus().isEqualTo(422);
+	}
+
+	@Test
+	public void createDuplicateServiceInstanceFails() throws Exception {
+		setupCatalogService(serviceDefinition.getId());
+		when(serviceInstanceService.createServiceInstance(any(CreateServiceInstanceRequest.class)))
+				.thenThrow(new ServiceInstanceExistsException(SERVICE_INSTANCE_ID, serviceDefinition.getId()));
+
+		client.put().uri("/v2/service_instances/{instanceId}", SERVICE_INSTANCE_ID)
+				.contentType(MediaType.APPLICATION_JSON)
+				.syncBody(DataFixture.toJson(buildCreateServiceInstanceRequest()))
+				.exchange()
+				.expectStatus().isEqualTo(409)
+				.expectBody(String.class)
+				.consumeWith(result -> assertThat(result.getResponseBody(), containsString(SERVICE_INSTANCE_ID)));
+	}
+
+	@Test
+	public void lastOperationWithDeletionCompleteIsGone() {
+		when(serviceInstanceService.getLastOperation(any(GetLastServiceOperationRequest.class)))
+				.thenReturn(GetLastServiceOperationResponse.builder()
+						.operationState(OperationState.SUCCEEDED)
+						.deleteOperation(true)
+						.build());
+
+		client.get().uri("/v2/service_instances/{instanceId}/last_operation?service_id={serviceId}&plan_id={planId}",
+				SERVICE_INSTANCE_ID, serviceDefinition.getId(), "plan-id")
+				.exchange()
+				.expectStatus().isEqualTo(410)
+				.expectBody()
+				.jsonPath("$.state").isEqualTo(OperationState.SUCCEEDED.toString());
+	}
+
+	@Test
+	public void lastOperationWithoutRequiredParametersFails() {
+		client.get().uri("/v2/service_instances/{instanceId}/last_operation", SERVICE_INSTANCE_ID)
+				.exchange()
+				.expectStatus().isEqualTo(422)
+				.expectBody(String.class)
+				.consumeWith(result -> assertThat(result.getResponseBody(), containsString("service_id")));
+	}
+
+	@Test
+	public void createServiceInstanceBindingSucceeds() throws Exception {
+		when(serviceInstanceBindingService.createServiceInstanceBinding(any(CreateServiceInstanceBindingRequest.class)))
+				.thenReturn(CreateServiceInstanceAppBindingResponse.builder()
+						.credentials("uri", "https://binding.example.com")
+						.build());
+
+		client.put().uri("/{cfInstanceId}/v2/service_instances/{instanceId}/service_bindings/{bindingId}",
+				CF_INSTANCE_ID, SERVICE_INSTANCE_ID, BINDING_ID)
+				.contentType(MediaType.APPLICATION_JSON)
+				.syncBody(DataFixture.toJson(CreateServiceInstanceBindingRequest.builder()
+						.serviceDefinitionId(serviceDefinition.getId())
+						.planId("plan-id")
+						.build()))
+				.exchange()
+				.expectStatus().isCreated()
+				.expectBody()
+				.jsonPath("$.credentials.uri").isEqualTo("https://binding.example.com");
+
+		ArgumentCaptor<CreateServiceInstanceBindingRequest> captor =
+				ArgumentCaptor.forClass(CreateServiceInstanceBindingRequest.class);
+		verify(serviceInstanceBindingService).createServiceInstanceBinding(captor.capture());
+		assertEquals(SERVICE_INSTANCE_ID, captor.getValue().getServiceInstanceId());
+		assertEquals(BINDING_ID, captor.getValue().getBindingId());
+		assertEquals(CF_INSTANCE_ID, captor.getValue().getCfInstanceId());
+	}
+
+	@Test
+	public void deleteUnknownServiceInstanceBindingIsGone() {
+		doThrow(new ServiceInstanceBindingDoesNotExistException(BINDING_ID))
+				.when(serviceInstanceBindingService)
+				.deleteServiceInstanceBinding(any(DeleteServiceInstanceBindingRequest.class));
+
+		client.delete().uri("/v2/service_instances/{instanceId}/service_bindings/{bindingId}?service_id={serviceId}&plan_id={planId}",
+				SERVICE_INSTANCE_ID, BINDING_ID, serviceDefinition.getId(), "plan-id")
+				.exchange()
+				.expectStatus().isEqualTo(410)
+				.expectBody()
+				.json("{}");
+	}
+
+	@Test
+	public void unknownPathIsNotFound() {
+		client.get().uri("/v2/service_instances/{instanceId}/unknown", SERVICE_INSTANCE_ID)
+				.exchange()
+				.expectStatus().isNotFound();
+	}
+
+	@Test
+	public void unsupportedMethodIsNotFound() {
+		client.post().uri("/v2/catalog")
+				.exchange()
+				.expectStatus().isNotFound();
+	}
+
+	private CreateServiceInstanceRequest buildCreateServiceInstanceRequest() {
+		return CreateServiceInstanceRequest.builder()
+				.serviceDefinitionId(serviceDefinition.getId())
+				.planId(serviceDefinition.getPlans().get(0).getId())
+				.build();
+	}
+}
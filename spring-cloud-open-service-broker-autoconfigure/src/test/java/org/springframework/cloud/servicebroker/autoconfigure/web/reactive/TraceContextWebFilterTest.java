@@ -0,0 +1,131 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.autoconfigure.web.reactive;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+import org.slf4j.MDC;
+import reactor.core.publisher.Mono;
+
+import org.springframework.cloud.servicebroker.autoconfigure.web.servlet.fixture.CatalogFixture;
+import org.springframework.cloud.servicebroker.controller.CatalogController;
+import org.springframework.cloud.servicebroker.controller.ServiceInstanceBindingController;
+import org.springframework.cloud.servicebroker.controller.ServiceInstanceController;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.ServiceDefinition;
+import org.springframework.cloud.servicebroker.router.ServiceBrokerRouterFunction;
+import org.springframework.cloud.servicebroker.service.BeanCatalogService;
+import org.springframework.cloud.servicebroker.service.CatalogService;
+import org.springframework.cloud.servicebroker.service.NonBindableServiceInstanceBindingService;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceService;
+import org.springframework.cloud.servicebroker.trace.TraceContext;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TraceContextWebFilterTest {
+
+	private static final String TRACE_ID = "4bf92f3577b34da6a3ce929d0e0e4736";
+
+	private final TraceContextWebFilter filter = new TraceContextWebFilter();
+
+	@After
+	public void clearMdc() {
+		MDC.clear();
+	}
+
+	@Test
+	public void traceContextIsStoredInReactorContextAndExchange() {
+		MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest
+				.delete("/cf-abc/v2/service_instances/instance-id/service_bindings/binding-id" +
+						"?service_id=service-id&plan_id=plan-id")
+				.header(TraceContext.TRACEPARENT_HEADER, "00-" + TRACE_ID + "-00f067aa0ba902b7-01"));
+
+		AtomicReference<TraceContext> current = new AtomicReference<>();
+		filter.filter(exchange, e -> TraceContextWebFilter.currentTraceContext().doOnNext(current::set).then())
+				.block();
+
+		TraceContext traceContext = current.get();
+		assertEquals(TRACE_ID, traceContext.getTraceId());
+		assertEquals("cf-abc", traceContext.getCfInstanceId());
+		assertEquals("instance-id", traceContext.getServiceInstanceId());
+		assertEquals("binding-id", traceContext.getBindingId());
+		assertEquals("service-id", traceContext.getServiceDefinitionId());
+		assertEquals("plan-id", traceContext.getPlanId());
+		assertSame(traceContext, exchange.getAttribute(TraceContext.ATTRIBUTE));
+	}
+
+	@Test
+	public void otherRequestsArePassedOn() {
+		MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/health"));
+
+		AtomicReference<TraceContext> current = new AtomicReference<>();
+		filter.filter(exchange, e -> TraceContextWebFilter.currentTraceContext().doOnNext(current::set).then())
+				.block();
+
+		assertNull(current.get());
+		assertNull(exchange.getAttribute(TraceContext.ATTRIBUTE));
+	}
+
+	@Test
+	public void currentTraceContextIsEmptyOutsideOfRequest() {
+		assertNull(TraceContextWebFilter.currentTraceContext().block());
+	}
+
+	@Test
+	public void traceContextIsInMdcWhileRouterFunctionCallsService() {
+		ServiceDefinition serviceDefinition = CatalogFixture.getCatalog().getServiceDefinitions().get(0);
+		CatalogService catalogService = new BeanCatalogService(CatalogFixture.getCatalog());
+
+		AtomicReference<Map<String, String>> serviceMdc = new AtomicReference<>();
+		ServiceInstanceService serviceInstanceService = mock(ServiceInstanceService.class);
+		when(serviceInstanceService.deleteServiceInstance(any())).thenAnswer(invocation -> {
+			serviceMdc.set(MDC.getCopyOfContextMap());
+			return DeleteServiceInstanceResponse.builder().build();
+		});
+
+		WebTestClient client = WebTestClient.bindToRouterFunction(new ServiceBrokerRouterFunction(
+				new CatalogController(catalogService),
+				new ServiceInstanceController(catalogService, serviceInstanceService),
+				new ServiceInstanceBindingController(catalogService, new NonBindableServiceInstanceBindingService())))
+				.webFilter(filter)
+				.build();
+
+		client.delete().uri("/cf-abc/v2/service_instances/instance-id?service_id={service}&plan_id=plan-id",
+				serviceDefinition.getId())
+				.header(TraceContext.REQUEST_IDENTITY_HEADER, "request-id")
+				.exchange()
+				.expectStatus().isOk();
+
+		Map<String, String> mdc = serviceMdc.get();
+		assertEquals("request-id", mdc.get(TraceContext.TRACE_ID));
+		assertEquals("cf-abc", mdc.get(TraceContext.CF_INSTANCE_ID));
+		assertEquals("instance-id", mdc.get(TraceContext.SERVICE_INSTANCE_ID));
+		assertEquals(serviceDefinition.getId(), mdc.get(TraceContext.SERVICE_DEFINITION_ID));
+		assertNull(MDC.get(TraceContext.TRACE_ID));
+	}
+}
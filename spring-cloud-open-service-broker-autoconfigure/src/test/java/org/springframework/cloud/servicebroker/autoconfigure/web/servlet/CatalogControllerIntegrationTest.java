@@ -26,13 +26,18 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import org.springframework.cloud.servicebroker.controller.CatalogController;
+import org.springframework.cloud.servicebroker.controller.CatalogViewController;
+import org.springframework.cloud.servicebroker.model.BrokerApiVersion;
 import org.springframework.cloud.servicebroker.model.Catalog;
 import org.springframework.cloud.servicebroker.model.Plan;
 import org.springframework.cloud.servicebroker.model.ServiceDefinition;
 import org.springframework.cloud.servicebroker.autoconfigure.web.servlet.fixture.PlanFixture;
 import org.springframework.cloud.servicebroker.autoconfigure.web.servlet.fixture.ServiceFixture;
 import org.springframework.cloud.servicebroker.service.CatalogService;
+import org.springframework.cloud.servicebroker.service.CatalogViewService;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
@@ -41,6 +46,10 @@ import static org.hamcrest.collection.IsCollectionWithSize.hasSize;
 import static org.hamcrest.collection.IsEmptyCollection.empty;
 import static org.hamcrest.collection.IsIterableContainingInAnyOrder.containsInAnyOrder;
 import static org.hamcrest.collection.IsIterableContainingInOrder.contains;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.cloud.servicebroker.model.ServiceDefinitionRequires.SERVICE_REQUIRES_ROUTE_FORWARDING;
 import static org.springframework.cloud.servicebroker.model.ServiceDefinitionRequires.SERVICE_REQUIRES_SYSLOG_DRAIN;
@@ -49,6 +58,7 @@ import static org.springframework.cloud.servicebroker.autoconfigure.web.servlet.
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -166,4 +176,76 @@ public class CatalogControllerIntegrationTest {
 				.andExpect(jsonPath("$.services[*].plans[1].metadata", contains(plans[1].getMetadata())))
 				.andExpect(jsonPath("$.services[*].plans[*].free", containsInAnyOrder(plans[0].isFree(), plans[1].isFree())));
 	}
+
+	@Test
+	public void catalogViewIsRetrievedWithEtag() throws Exception {
+		when(catalogService.getCatalog()).thenReturn(getCatalog());
+
+		MockMvc viewMockMvc = buildCatalogViewMockMvc();
+
+		ServiceDefinition service = ServiceFixture.getSimpleService();
+
+		viewMockMvc.perform(get("/123/v2/catalog")
+				.header("X-Broker-Api-Version", "2.13")
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+				.andExpect(header().string(HttpHeaders.ETAG, notNullValue()))
+				.andExpect(jsonPath("$.services", hasSize(1)))
+				.andExpect(jsonPath("$.services[*].id", contains(service.getId())))
+				.andExpect(jsonPath("$.services[*].plans[*]", empty()));
+	}
+
+	@Test
+	public void catalogViewIsNotModified() throws Exception {
+		when(catalogService.getCatalog()).thenReturn(getCatalog());
+
+		MockMvc viewMockMvc = buildCatalogViewMockMvc();
+
+		String etag = viewMockMvc.perform(get("/v2/catalog")
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+		viewMockMvc.perform(get("/v2/catalog")
+				.header(HttpHeaders.IF_NONE_MATCH, etag)
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isNotModified())
+				.andExpect(header().string(HttpHeaders.ETAG, etag));
+
+		verify(catalogService, times(2)).getCatalog();
+	}
+
+	@Test
+	public void catalogViewIsRetrievedForTheConfiguredApiVersionHeader() throws Exception {
+		when(catalogService.getCatalog()).thenReturn(getCatalog());
+
+		MockMvc viewMockMvc = buildCatalogViewMockMvc(new BrokerApiVersion("X-Api-Version", "2.13"));
+
+		viewMockMvc.perform(get("/v2/catalog")
+				.header("X-Api-Version", "2.13")
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.services[0].description", equalTo("Visible to null with 2.13")));
+	}
+
+	private MockMvc buildCatalogViewMockMvc() {
+		return buildCatalogViewMockMvc(null);
+	}
+
+	private MockMvc buildCatalogViewMockMvc(BrokerApiVersion brokerApiVersion) {
+		CatalogViewService catalogViewService = new CatalogViewService(catalogService,
+				(catalog, key) -> Catalog.builder()
+						.serviceDefinitions(ServiceDefinition.builder()
+								.id(catalog.getServiceDefinitions().get(0).getId())
+								.name("visible-service")
+								.description("Visible to " + key.getCfInstanceId() + " with " + key.getApiVersion())
+								.build())
+						.build());
+
+		return MockMvcBuilders.standaloneSetup(
+				new CatalogViewController(catalogService, catalogViewService, brokerApiVersion))
+				.setMessageConverters(new ByteArrayHttpMessageConverter(), new MappingJackson2HttpMessageConverter())
+				.build();
+	}
 }
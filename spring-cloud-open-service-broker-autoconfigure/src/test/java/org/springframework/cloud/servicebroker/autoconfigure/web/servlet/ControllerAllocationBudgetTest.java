@@ -0,0 +1,245 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.autoconfigure.web.servlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.springframework.cloud.servicebroker.autoconfigure.web.servlet.fixture.CatalogFixture;
+import org.springframework.cloud.servicebroker.controller.ServiceInstanceBindingController;
+import org.springframework.cloud.servicebroker.controller.ServiceInstanceController;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceAppBindingResponse;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingResponse;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationRequest;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationResponse;
+import org.springframework.cloud.servicebroker.model.OperationState;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.service.BeanCatalogService;
+import org.springframework.cloud.servicebroker.service.CatalogService;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceBindingService;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceService;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static org.springframework.cloud.servicebroker.model.ServiceBrokerRequest.API_INFO_LOCATION_HEADER;
+import static org.springframework.cloud.servicebroker.model.ServiceBrokerRequest.ORIGINATING_IDENTITY_HEADER;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+/**
+ * Checks the bytes allocated by the request thread for each service instance and binding endpoint against the
+ * budgets in {@literal allocation-budgets.properties}. The services do no work, so the budgets cover request
+ * mapping, header and body parsing, building the request and response models, and response serialization,
+ * plus a fixed overhead from MockMvc itself.
+ * <p>
+ * When a change legitimately increases allocation, the failure message shows the measured value to use as the
+ * new budget.
+ */
+public class ControllerAllocationBudgetTest extends ControllerIntegrationTest {
+
+	private static final String BUDGETS_RESOURCE = "allocation-budgets.properties";
+
+	private static final int WARMUP_REQUESTS = 1000;
+
+	private static final int MEASURED_REQUESTS = 200;
+
+	private static final String INSTANCE_URL = "/" + CF_INSTANCE_ID + "/v2/service_instances/service-instance-id";
+
+	private static final String BINDING_URL = INSTANCE_URL + "/service_bindings/binding-id";
+
+	private static final String PLAN_QUERY = "service_id=service-one-id&plan_id=plan-one-id";
+
+	private static final String PLAN_BODY = "{\"service_id\":\"service-one-id\",\"plan_id\":\"plan-one-id\"}";
+
+	private static com.sun.management.ThreadMXBean threadMXBean;
+
+	private static Properties budgets;
+
+	private MockMvc mockMvc;
+
+	private String originatingIdentity;
+
+	@BeforeClass
+	public static void enableAllocationMeasurement() throws IOException {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		assumeTrue("thread allocation measurement is not available on this JVM",
+				bean instanceof com.sun.management.ThreadMXBean);
+		threadMXBean = (com.sun.management.ThreadMXBean) bean;
+		assumeTrue("thread allocation measurement is not supported on this JVM",
+				threadMXBean.isThreadAllocatedMemorySupported());
+		threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+		budgets = new Properties();
+		try (InputStream in = new ClassPathResource(BUDGETS_RESOURCE).getInputStream()) {
+			budgets.load(in);
+		}
+	}
+
+	@Before
+	public void setup() throws Exception {
+		CatalogService catalogService = new BeanCatalogService(CatalogFixture.getCatalog());
+		this.mockMvc = MockMvcBuilders.standaloneSetup(
+				new ServiceInstanceController(catalogService, new NoOpServiceInstanceService()),
+				new ServiceInstanceBindingController(catalogService, new NoOpServiceInstanceBindingService()))
+				.setMessageConverters(new MappingJackson2HttpMessageConverter())
+				.build();
+		this.originatingIdentity = buildOriginatingIdentityHeader();
+	}
+
+	@Test
+	public void createServiceInstance() throws Exception {
+		assertWithinBudget("service-instance.create", 201, withHeaders(put(INSTANCE_URL + "?accepts_incomplete=true"))
+				.content(PLAN_BODY)
+				.contentType(MediaType.APPLICATION_JSON));
+	}
+
+	@Test
+	public void getLastOperation() throws Exception {
+		assertWithinBudget("service-instance.last-operation", 200,
+				withHeaders(get(INSTANCE_URL + "/last_operation?" + PLAN_QUERY + "&operation=provision")));
+	}
+
+	@Test
+	public void updateServiceInstance() throws Exception {
+		assertWithinBudget("service-instance.update", 200, withHeaders(patch(INSTANCE_URL))
+				.content(PLAN_BODY)
+				.contentType(MediaType.APPLICATION_JSON));
+	}
+
+	@Test
+	public void deleteServiceInstance() throws Exception {
+		assertWithinBudget("service-instance.delete", 200, withHeaders(delete(INSTANCE_URL + "?" + PLAN_QUERY)));
+	}
+
+	@Test
+	public void createServiceInstanceBinding() throws Exception {
+		assertWithinBudget("service-binding.create", 201, withHeaders(put(BINDING_URL))
+				.content(PLAN_BODY)
+				.contentType(MediaType.APPLICATION_JSON));
+	}
+
+	@Test
+	public void deleteServiceInstanceBinding() throws Exception {
+		assertWithinBudget("service-binding.delete", 200, withHeaders(delete(BINDING_URL + "?" + PLAN_QUERY)));
+	}
+
+	private MockHttpServletRequestBuilder withHeaders(MockHttpServletRequestBuilder builder) {
+		return builder
+				.header(API_INFO_LOCATION_HEADER, API_INFO_LOCATION)
+				.header(ORIGINATING_IDENTITY_HEADER, originatingIdentity)
+				.accept(MediaType.APPLICATION_JSON);
+	}
+
+	private void assertWithinBudget(String endpoint, int expectedStatus, RequestBuilder request) throws Exception {
+		String budgetValue = budgets.getProperty(endpoint);
+		assertTrue("No allocation budget for " + endpoint + " in " + BUDGETS_RESOURCE, budgetValue != null);
+		long budget = Long.parseLong(budgetValue.trim());
+
+		for (int i = 0; i < WARMUP_REQUESTS; i++) {
+			perform(request, expectedStatus);
+		}
+
+		long threadId = Thread.currentThread().getId();
+		long start = threadMXBean.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < MEASURED_REQUESTS; i++) {
+			perform(request, expectedStatus);
+		}
+		long bytesPerRequest = (threadMXBean.getThreadAllocatedBytes(threadId) - start) / MEASURED_REQUESTS;
+
+		assertTrue(String.format("%s allocated %d bytes per request, over its budget of %d bytes",
+				endpoint, bytesPerRequest, budget), bytesPerRequest <= budget);
+	}
+
+	private void perform(RequestBuilder request, int expectedStatus) throws Exception {
+		int status = mockMvc.perform(request).andReturn().getResponse().getStatus();
+		assertEquals(expectedStatus, status);
+	}
+
+	private static class NoOpServiceInstanceService implements ServiceInstanceService {
+		private static final CreateServiceInstanceResponse CREATE_RESPONSE =
+				CreateServiceInstanceResponse.builder().build();
+
+		private static final GetLastServiceOperationResponse LAST_OPERATION_RESPONSE =
+				GetLastServiceOperationResponse.builder().operationState(OperationState.SUCCEEDED).build();
+
+		private static final DeleteServiceInstanceResponse DELETE_RESPONSE =
+				DeleteServiceInstanceResponse.builder().build();
+
+		private static final UpdateServiceInstanceResponse UPDATE_RESPONSE =
+				UpdateServiceInstanceResponse.builder().build();
+
+		@Override
+		public CreateServiceInstanceResponse createServiceInstance(CreateServiceInstanceRequest request) {
+			return CREATE_RESPONSE;
+		}
+
+		@Override
+		public GetLastServiceOperationResponse getLastOperation(GetLastServiceOperationRequest request) {
+			return LAST_OPERATION_RESPONSE;
+		}
+
+		@Override
+		public DeleteServiceInstanceResponse deleteServiceInstance(DeleteServiceInstanceRequest request) {
+			return DELETE_RESPONSE;
+		}
+
+		@Override
+		public UpdateServiceInstanceResponse updateServiceInstance(UpdateServiceInstanceRequest request) {
+			return UPDATE_RESPONSE;
+		}
+	}
+
+	private static class NoOpServiceInstanceBindingService implements ServiceInstanceBindingService {
+		private static final CreateServiceInstanceBindingResponse CREATE_RESPONSE =
+				CreateServiceInstanceAppBindingResponse.builder()
+						.credentials("uri", "reference://binding")
+						.build();
+
+		@Override
+		public CreateServiceInstanceBindingResponse createServiceInstanceBinding(
+				CreateServiceInstanceBindingRequest request) {
+			return CREATE_RESPONSE;
+		}
+
+		@Override
+		public void deleteServiceInstanceBinding(DeleteServiceInstanceBindingRequest request) {
+		}
+	}
+}
@@ -16,6 +16,8 @@
 
 package org.springframework.cloud.servicebroker.autoconfigure.web.servlet;
 
+import java.time.Duration;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -30,11 +32,15 @@ import org.springframework.cloud.servicebroker.autoconfigure.web.servlet.fixture
 import org.springframework.cloud.servicebroker.autoconfigure.web.servlet.fixture.ServiceFixture;
 import org.springframework.cloud.servicebroker.controller.ServiceInstanceController;
 import org.springframework.cloud.servicebroker.exception.ServiceBrokerAsyncRequiredException;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerConcurrencyException;
 import org.springframework.cloud.servicebroker.exception.ServiceBrokerInvalidParametersException;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerOverloadedException;
 import org.springframework.cloud.servicebroker.exception.ServiceInstanceDoesNotExistException;
 import org.springframework.cloud.servicebroker.exception.ServiceInstanceExistsException;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceQuotaExceededException;
 import org.springframework.cloud.servicebroker.exception.ServiceInstanceUpdateNotSupportedException;
 import org.springframework.cloud.servicebroker.model.AsyncRequiredErrorMessage;
+import org.springframework.cloud.servicebroker.model.ConcurrencyErrorMessage;
 import org.springframework.cloud.servicebroker.model.Context;
 import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
 import org.springframework.cloud.servicebroker.model.CreateServiceInstanceResponse;
@@ -50,6 +56,7 @@ import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceReques
 import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceResponse;
 import org.springframework.cloud.servicebroker.model.fixture.DataFixture;
 import org.springframework.cloud.servicebroker.service.ServiceInstanceService;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.test.web.servlet.MockMvc;
@@ -71,6 +78,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -247,6 +255,38 @@ public class ServiceInstanceControllerIntegrationTest extends ControllerIntegrat
 				.andExpect(jsonPath("$.description", is("async required description")));
 	}
 
+	@Test
+	public void createServiceInstanceWithConcurrentOperationFails() throws Exception {
+		when(serviceInstanceService.createServiceInstance(eq(syncCreateRequest)))
+				.thenThrow(new ServiceBrokerConcurrencyException("operation in progress"));
+
+		setupCatalogService(syncCreateRequest.getServiceDefinitionId());
+
+		mockMvc.perform(put(buildUrl(syncCreateRequest, false))
+				.content(DataFixture.toJson(syncCreateRequest))
+				.contentType(MediaType.APPLICATION_JSON)
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isUnprocessableEntity())
+				.andExpect(jsonPath("$.error", is(ConcurrencyErrorMessage.CONCURRENCY_ERROR)))
+				.andExpect(jsonPath("$.description", is("operation in progress")));
+	}
+
+	@Test
+	public void createServiceInstanceWhenOverloadedFails() throws Exception {
+		when(serviceInstanceService.createServiceInstance(eq(syncCreateRequest)))
+				.thenThrow(new ServiceBrokerOverloadedException("too many operations", Duration.ofSeconds(3)));
+
+		setupCatalogService(syncCreateRequest.getServiceDefinitionId());
+
+		mockMvc.perform(put(buildUrl(syncCreateRequest, false))
+				.content(DataFixture.toJson(syncCreateRequest))
+				.contentType(MediaType.APPLICATION_JSON)
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isServiceUnavailable())
+				.andExpect(header().string(HttpHeaders.RETRY_AFTER, "3"))
+				.andExpect(jsonPath("$.description", is("too many operations")));
+	}
+
 	@Test
 	public void createServiceInstanceWithInvalidParametersFails() throws Exception {
 		when(serviceInstanceService.createServiceInstance(eq(syncCreateRequest)))
@@ -262,6 +302,21 @@ public class ServiceInstanceControllerIntegrationTest extends ControllerIntegrat
 				.andExpect(jsonPath("$.description", is("invalid parameters description")));
 	}
 
+	@Test
+	public void createServiceInstanceOverQuotaFails() throws Exception {
+		when(serviceInstanceService.createServiceInstance(eq(syncCreateRequest)))
+				.thenThrow(new ServiceInstanceQuotaExceededException("quota exceeded description"));
+
+		setupCatalogService(syncCreateRequest.getServiceDefinitionId());
+
+		mockMvc.perform(put(buildUrl(syncCreateRequest, false))
+				.content(DataFixture.toJson(syncCreateRequest))
+				.contentType(MediaType.APPLICATION_JSON)
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isUnprocessableEntity())
+				.andExpect(jsonPath("$.description", is("quota exceeded description")));
+	}
+
 	@Test
 	public void createServiceInstanceWithInvalidFieldsFails() throws Exception {
 		setupCatalogService(syncCreateRequest.getServiceDefinitionId());
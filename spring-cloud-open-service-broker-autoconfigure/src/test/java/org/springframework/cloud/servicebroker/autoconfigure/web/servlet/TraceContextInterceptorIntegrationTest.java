@@ -0,0 +1,125 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.autoconfigure.web.servlet;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.MDC;
+
+import org.springframework.cloud.servicebroker.autoconfigure.web.servlet.fixture.CatalogFixture;
+import org.springframework.cloud.servicebroker.controller.ServiceInstanceController;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.ServiceDefinition;
+import org.springframework.cloud.servicebroker.service.BeanCatalogService;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceService;
+import org.springframework.cloud.servicebroker.service.TracingServiceInstanceService;
+import org.springframework.cloud.servicebroker.trace.TraceContext;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class TraceContextInterceptorIntegrationTest {
+
+	private static final String TRACE_ID = "4bf92f3577b34da6a3ce929d0e0e4736";
+
+	private final AtomicReference<Map<String, String>> serviceMdc = new AtomicReference<>();
+
+	private MockMvc mockMvc;
+
+	private ServiceDefinition serviceDefinition;
+
+	@Before
+	public void setUp() {
+		serviceDefinition = CatalogFixture.getCatalog().getServiceDefinitions().get(0);
+
+		ServiceInstanceService serviceInstanceService = mock(ServiceInstanceService.class);
+		when(serviceInstanceService.deleteServiceInstance(any())).thenAnswer(invocation -> {
+			serviceMdc.set(MDC.getCopyOfContextMap());
+			return DeleteServiceInstanceResponse.builder().build();
+		});
+
+		ServiceInstanceController controller = new ServiceInstanceController(
+				new BeanCatalogService(CatalogFixture.getCatalog()),
+				new TracingServiceInstanceService(serviceInstanceService));
+
+		mockMvc = MockMvcBuilders.standaloneSetup(controller)
+				.addInterceptors(new TraceContextInterceptor())
+				.setMessageConverters(new MappingJackson2HttpMessageConverter())
+				.build();
+	}
+
+	@After
+	public void clearMdc() {
+		MDC.clear();
+	}
+
+	@Test
+	public void traceContextIsInMdcWhileServiceIsCalled() throws Exception {
+		mockMvc.perform(delete("/cf-abc/v2/service_instances/instance-id")
+				.header(TraceContext.TRACEPARENT_HEADER, "00-" + TRACE_ID + "-00f067aa0ba902b7-01")
+				.param("service_id", serviceDefinition.getId())
+				.param("plan_id", "plan-id"))
+				.andExpect(status().isOk());
+
+		Map<String, String> mdc = serviceMdc.get();
+		assertEquals(TRACE_ID, mdc.get(TraceContext.TRACE_ID));
+		assertEquals("cf-abc", mdc.get(TraceContext.CF_INSTANCE_ID));
+		assertEquals("instance-id", mdc.get(TraceContext.SERVICE_INSTANCE_ID));
+		assertEquals(serviceDefinition.getId(), mdc.get(TraceContext.SERVICE_DEFINITION_ID));
+		assertEquals("plan-id", mdc.get(TraceContext.PLAN_ID));
+		assertNull(mdc.get(TraceContext.BINDING_ID));
+
+		assertNull(MDC.get(TraceContext.TRACE_ID));
+		assertNull(MDC.get(TraceContext.SERVICE_INSTANCE_ID));
+	}
+
+	@Test
+	public void requestIdentityIsUsedAsTraceId() throws Exception {
+		mockMvc.perform(delete("/v2/service_instances/instance-id")
+				.header(TraceContext.REQUEST_IDENTITY_HEADER, "request-id")
+				.param("service_id", serviceDefinition.getId())
+				.param("plan_id", "plan-id"))
+				.andExpect(status().isOk());
+
+		assertEquals("request-id", serviceMdc.get().get(TraceContext.TRACE_ID));
+		assertNull(serviceMdc.get().get(TraceContext.CF_INSTANCE_ID));
+	}
+
+	@Test
+	public void traceIdIsGeneratedWithoutHeaders() throws Exception {
+		mockMvc.perform(delete("/v2/service_instances/instance-id")
+				.param("service_id", serviceDefinition.getId())
+				.param("plan_id", "plan-id"))
+				.andExpect(status().isOk());
+
+		String traceId = serviceMdc.get().get(TraceContext.TRACE_ID);
+		assertTrue(traceId, traceId.matches("[0-9a-f]{32}"));
+	}
+}
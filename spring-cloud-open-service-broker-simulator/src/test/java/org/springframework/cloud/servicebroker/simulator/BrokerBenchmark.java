@@ -0,0 +1,75 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.simulator;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.cloud.servicebroker.simulator.broker.ReferenceBrokerApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Runs {@link PlatformSimulator} against {@link ReferenceBrokerApplication} as a servlet application, as a reactive
+ * application with annotated controllers, and as a reactive application with the functional router, and prints
+ * the latency distributions of each.
+ * <p>
+ * Run from the IDE or with {@code java -cp <test classpath>}. The optional arguments are the number of measured
+ * lifecycles, the concurrency, and the arrival rate in lifecycles per second ({@literal 0} for a closed loop).
+ * A fifth of the lifecycles are run first as a warm-up and are not reported.
+ */
+public class BrokerBenchmark {
+
+	private static final String[] CF_INSTANCE_IDS = {"cf-1", "cf-2", "cf-3"};
+
+	public static void main(String[] args) throws Exception {
+		int lifecycles = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		double arrivalRate = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+
+		// keep a pooled connection for each simulator thread
+		System.setProperty("http.maxConnections", String.valueOf(concurrency));
+
+		benchmark("servlet", WebApplicationType.SERVLET, lifecycles, concurrency, arrivalRate);
+		benchmark("webflux", WebApplicationType.REACTIVE, lifecycles, concurrency, arrivalRate);
+		benchmark("webflux router-function", WebApplicationType.REACTIVE, lifecycles, concurrency, arrivalRate,
+				"--spring.cloud.openservicebroker.webflux.router-function=true");
+	}
+
+	private static void benchmark(String name, WebApplicationType type, int lifecycles, int concurrency,
+								  double arrivalRate, String... args) throws InterruptedException {
+		try (ConfigurableApplicationContext broker = ReferenceBrokerApplication.start(type, args)) {
+			String baseUrl = "http://localhost:" + broker.getEnvironment().getProperty("local.server.port");
+
+			simulator(baseUrl, Math.max(lifecycles / 5, 1), concurrency, arrivalRate).run();
+			SimulationReport report = simulator(baseUrl, lifecycles, concurrency, arrivalRate).run();
+
+			System.out.println();
+			System.out.println("== " + name);
+			report.print(System.out);
+		}
+	}
+
+	private static PlatformSimulator simulator(String baseUrl, int lifecycles, int concurrency, double arrivalRate) {
+		return PlatformSimulator.builder()
+				.baseUrl(baseUrl)
+				.credentials(ReferenceBrokerApplication.USERNAME, ReferenceBrokerApplication.PASSWORD)
+				.cfInstanceIds(CF_INSTANCE_IDS)
+				.lifecycles(lifecycles)
+				.concurrency(concurrency)
+				.arrivalRate(arrivalRate)
+				.pollInterval(0)
+				.build();
+	}
+}
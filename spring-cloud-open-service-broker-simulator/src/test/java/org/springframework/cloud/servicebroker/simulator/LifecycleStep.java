@@ -0,0 +1,39 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.simulator;
+
+/**
+ * The requests made by {@link PlatformSimulator} in each service instance lifecycle, in the order they are made.
+ */
+public enum LifecycleStep {
+	CATALOG("GET /v2/catalog"),
+	PROVISION("PUT /v2/service_instances/:id"),
+	LAST_OPERATION("GET /v2/service_instances/:id/last_operation"),
+	BIND("PUT /v2/service_instances/:id/service_bindings/:id"),
+	UNBIND("DELETE /v2/service_instances/:id/service_bindings/:id"),
+	DEPROVISION("DELETE /v2/service_instances/:id");
+
+	private final String request;
+
+	LifecycleStep(String request) {
+		this.request = request;
+	}
+
+	public String getRequest() {
+		return request;
+	}
+}
@@ -0,0 +1,463 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.simulator;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+
+import org.springframework.cloud.servicebroker.model.BrokerApiVersion;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.Assert;
+import org.springframework.web.client.ResponseErrorHandler;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import static org.slf4j.LoggerFactory.getLogger;
+import static org.springframework.cloud.servicebroker.model.AsyncServiceInstanceRequest.ASYNC_REQUEST_PARAMETER;
+import static org.springframework.cloud.servicebroker.model.ServiceBrokerRequest.ORIGINATING_IDENTITY_HEADER;
+
+/**
+ * Acts as a Cloud Controller to generate load against a service broker. Each lifecycle fetches the catalog,
+ * provisions a service instance with {@code accepts_incomplete=true}, polls the last operation until it completes,
+ * creates and deletes a binding, and deprovisions the instance, polling again if the broker responds asynchronously.
+ * <p>
+ * Lifecycles are run on a pool of {@code concurrency} threads. When an arrival rate is set, lifecycles are started
+ * on a fixed schedule and their latency is measured from the scheduled start; otherwise each thread starts a new
+ * lifecycle as soon as its previous one completes. Lifecycles are spread across the configured platform instance
+ * IDs, which are sent as the leading path segment.
+ */
+public class PlatformSimulator {
+
+	private static final Logger log = getLogger(PlatformSimulator.class);
+
+	private static final String PLATFORM = "cloudfoundry";
+
+	private static final List<HttpStatus> PROVISION_STATUSES =
+			Arrays.asList(HttpStatus.CREATED, HttpStatus.OK, HttpStatus.ACCEPTED);
+
+	private static final List<HttpStatus> BIND_STATUSES = Arrays.asList(HttpStatus.CREATED, HttpStatus.OK);
+
+	private static final List<HttpStatus> DEPROVISION_STATUSES = Arrays.asList(HttpStatus.OK, HttpStatus.ACCEPTED);
+
+	private static final List<HttpStatus> LAST_OPERATION_STATUSES = Arrays.asList(HttpStatus.OK, HttpStatus.GONE);
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final RestTemplate restTemplate;
+
+	private final String baseUrl;
+
+	private final String authorization;
+
+	private final String apiVersion;
+
+	private final int concurrency;
+
+	private final double arrivalRate;
+
+	private final int lifecycles;
+
+	private final List<String> cfInstanceIds;
+
+	private final long pollIntervalMillis;
+
+	private final int maxPolls;
+
+	private volatile ServicePlan servicePlan;
+
+	private PlatformSimulator(String baseUrl, String username, String password, String apiVersion,
+							  int concurrency, double arrivalRate, int lifecycles, List<String> cfInstanceIds,
+							  long pollIntervalMillis, int maxPolls) {
+		this.baseUrl = baseUrl;
+		this.authorization = username == null ? null : "Basic " + Base64.getEncoder()
+				.encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+		this.apiVersion = apiVersion;
+		this.concurrency = concurrency;
+		this.arrivalRate = arrivalRate;
+		this.lifecycles = lifecycles;
+		this.cfInstanceIds = cfInstanceIds;
+		this.pollIntervalMillis = pollIntervalMillis;
+		this.maxPolls = maxPolls;
+
+		this.restTemplate = new RestTemplate();
+		this.restTemplate.setErrorHandler(new StatusCheckingErrorHandler());
+	}
+
+	/**
+	 * Run the configured number of lifecycles and wait for them to complete.
+	 *
+	 * @return the recorded latencies and errors
+	 * @throws InterruptedException if interrupted while waiting for lifecycles to complete
+	 */
+	public SimulationReport run() throws InterruptedException {
+		SimulationReport report = new SimulationReport();
+		ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+		long intervalNanos = arrivalRate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / arrivalRate) : 0;
+
+		long start = System.nanoTime();
+		try {
+			for (int i = 0; i < lifecycles; i++) {
+				int lifecycle = i;
+				if (intervalNanos > 0) {
+					long scheduledStart = start + i * intervalNanos;
+					parkUntil(scheduledStart);
+					executor.execute(() -> runLifecycle(report, lifecycle, scheduledStart));
+				} else {
+					executor.execute(() -> runLifecycle(report, lifecycle, System.nanoTime()));
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		report.setElapsedNanos(System.nanoTime() - start);
+		return report;
+	}
+
+	private void runLifecycle(SimulationReport report, int lifecycle, long scheduledStart) {
+		boolean succeeded;
+		try {
+			succeeded = lifecycle(report, lifecycle);
+		} catch (RuntimeException e) {
+			log.debug("Lifecycle " + lifecycle + " failed", e);
+			succeeded = false;
+		}
+		report.recordLifecycle(System.nanoTime() - scheduledStart, succeeded);
+	}
+
+	private boolean lifecycle(SimulationReport report, int lifecycle) {
+		String v2Url = baseUrl + getPathPrefix(lifecycle) + "/v2";
+		HttpHeaders headers = createHeaders();
+
+		ResponseEntity<String> catalog = exchange(report, LifecycleStep.CATALOG, HttpMethod.GET,
+				v2Url + "/catalog", headers, null, Collections.singletonList(HttpStatus.OK));
+		if (catalog == null) {
+			return false;
+		}
+		ServicePlan plan = getServicePlan(catalog.getBody());
+
+		String instanceUrl = v2Url + "/service_instances/" + UUID.randomUUID();
+		String bindingUrl = instanceUrl + "/service_bindings/" + UUID.randomUUID();
+		String planQuery = "?service_id=" + plan.serviceId + "&plan_id=" + plan.planId;
+
+		ResponseEntity<String> provision = exchange(report, LifecycleStep.PROVISION, HttpMethod.PUT,
+				instanceUrl + "?" + ASYNC_REQUEST_PARAMETER + "=true", headers, provisionBody(plan), PROVISION_STATUSES);
+		if (provision == null || !awaitOperation(report, provision, instanceUrl, planQuery, headers)) {
+			return false;
+		}
+
+		if (exchange(report, LifecycleStep.BIND, HttpMethod.PUT, bindingUrl, headers, bindBody(plan),
+				BIND_STATUSES) == null) {
+			return false;
+		}
+
+		if (exchange(report, LifecycleStep.UNBIND, HttpMethod.DELETE, bindingUrl + planQuery, headers, null,
+				Collections.singletonList(HttpStatus.OK)) == null) {
+			return false;
+		}
+
+		ResponseEntity<String> deprovision = exchange(report, LifecycleStep.DEPROVISION, HttpMethod.DELETE,
+				instanceUrl + planQuery + "&" + ASYNC_REQUEST_PARAMETER + "=true", headers, null, DEPROVISION_STATUSES);
+		return deprovision != null && awaitOperation(report, deprovision, instanceUrl, planQuery, headers);
+	}
+
+	private boolean awaitOperation(SimulationReport report, ResponseEntity<String> response, String instanceUrl,
+								   String planQuery, HttpHeaders headers) {
+		if (response.getStatusCode() != HttpStatus.ACCEPTED) {
+			return true;
+		}
+
+		String operation = readTree(response.getBody()).path("operation").asText(null);
+		String url = instanceUrl + "/last_operation" + planQuery + (operation == null ? "" : "&operation=" + operation);
+
+		for (int poll = 0; poll < maxPolls; poll++) {
+			sleep(pollIntervalMillis);
+
+			ResponseEntity<String> lastOperation = exchange(report, LifecycleStep.LAST_OPERATION, HttpMethod.GET,
+					url, headers, null, LAST_OPERATION_STATUSES);
+			if (lastOperation == null) {
+				return false;
+			}
+			if (lastOperation.getStatusCode() == HttpStatus.GONE) {
+				return true;
+			}
+
+			String state = readTree(lastOperation.getBody()).path("state").asText();
+			if ("succeeded".equals(state)) {
+				return true;
+			}
+			if ("failed".equals(state)) {
+				report.recordError(LifecycleStep.LAST_OPERATION);
+				return false;
+			}
+		}
+
+		report.recordError(LifecycleStep.LAST_OPERATION);
+		return false;
+	}
+
+	private ResponseEntity<String> exchange(SimulationReport report, LifecycleStep step, HttpMethod method,
+											String url, HttpHeaders headers, Object body,
+											List<HttpStatus> expectedStatuses) {
+		long start = System.nanoTime();
+		try {
+			ResponseEntity<String> response = restTemplate.exchange(URI.create(url), method,
+					new HttpEntity<>(body, headers), String.class);
+			report.recordRequest(step, System.nanoTime() - start);
+
+			if (!expectedStatuses.contains(response.getStatusCode())) {
+				log.debug("Unexpected status " + response.getStatusCode() + " from " + method + " " + url + ": " +
+						response.getBody());
+				report.recordError(step);
+				return null;
+			}
+			return response;
+		} catch (RestClientException e) {
+			log.debug("Request failed: " + method + " " + url, e);
+			report.recordError(step);
+			return null;
+		}
+	}
+
+	private HttpHeaders createHeaders() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON);
+		headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+		headers.set(BrokerApiVersion.DEFAULT_API_VERSION_HEADER, apiVersion);
+		headers.set(ORIGINATING_IDENTITY_HEADER, PLATFORM + " " + Base64.getEncoder()
+				.encodeToString(("{\"user_id\":\"" + UUID.randomUUID() + "\"}").getBytes(StandardCharsets.UTF_8)));
+		if (authorization != null) {
+			headers.set(HttpHeaders.AUTHORIZATION, authorization);
+		}
+		return headers;
+	}
+
+	private String getPathPrefix(int lifecycle) {
+		return cfInstanceIds.isEmpty() ? "" : "/" + cfInstanceIds.get(lifecycle % cfInstanceIds.size());
+	}
+
+	private Map<String, Object> provisionBody(ServicePlan plan) {
+		String organizationGuid = UUID.randomUUID().toString();
+		String spaceGuid = UUID.randomUUID().toString();
+
+		Map<String, Object> context = new HashMap<>();
+		context.put("platform", PLATFORM);
+		context.put("organization_guid", organizationGuid);
+		context.put("space_guid", spaceGuid);
+
+		Map<String, Object> body = new HashMap<>();
+		body.put("service_id", plan.serviceId);
+		body.put("plan_id", plan.planId);
+		body.put("organization_guid", organizationGuid);
+		body.put("space_guid", spaceGuid);
+		body.put("context", context);
+		return body;
+	}
+
+	private Map<String, Object> bindBody(ServicePlan plan) {
+		String appGuid = UUID.randomUUID().toString();
+
+		Map<String, Object> body = new HashMap<>();
+		body.put("service_id", plan.serviceId);
+		body.put("plan_id", plan.planId);
+		body.put("app_guid", appGuid);
+		body.put("bind_resource", Collections.singletonMap("app_guid", appGuid));
+		return body;
+	}
+
+	private ServicePlan getServicePlan(String catalog) {
+		ServicePlan plan = this.servicePlan;
+		if (plan == null) {
+			plan = findBindablePlan(readTree(catalog));
+			this.servicePlan = plan;
+		}
+		return plan;
+	}
+
+	private ServicePlan findBindablePlan(JsonNode catalog) {
+		for (JsonNode service : catalog.path("services")) {
+			boolean serviceBindable = service.path("bindable").asBoolean();
+			for (JsonNode plan : service.path("plans")) {
+				if (plan.path("bindable").asBoolean(serviceBindable)) {
+					return new ServicePlan(service.path("id").asText(), plan.path("id").asText());
+				}
+			}
+		}
+		throw new IllegalStateException("The broker catalog has no bindable plans");
+	}
+
+	private JsonNode readTree(String json) {
+		try {
+			return objectMapper.readTree(json == null ? "{}" : json);
+		} catch (IOException e) {
+			throw new IllegalStateException("Invalid JSON response from broker: " + json, e);
+		}
+	}
+
+	private static void parkUntil(long deadline) {
+		long remaining;
+		while ((remaining = deadline - System.nanoTime()) > 0) {
+			LockSupport.parkNanos(remaining);
+		}
+	}
+
+	private static void sleep(long millis) {
+		if (millis <= 0) {
+			return;
+		}
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while polling last operation", e);
+		}
+	}
+
+	public static PlatformSimulatorBuilder builder() {
+		return new PlatformSimulatorBuilder();
+	}
+
+	private static class ServicePlan {
+		private final String serviceId;
+
+		private final String planId;
+
+		private ServicePlan(String serviceId, String planId) {
+			this.serviceId = serviceId;
+			this.planId = planId;
+		}
+	}
+
+	/**
+	 * Responses are checked against the expected statuses for each request, so error statuses are not thrown.
+	 */
+	private static class StatusCheckingErrorHandler implements ResponseErrorHandler {
+		@Override
+		public boolean hasError(ClientHttpResponse response) {
+			return false;
+		}
+
+		@Override
+		public void handleError(ClientHttpResponse response) {
+		}
+	}
+
+	public static class PlatformSimulatorBuilder {
+		private String baseUrl;
+		private String username;
+		private String password;
+		private String apiVersion = BrokerApiVersion.API_VERSION_CURRENT;
+		private int concurrency = 10;
+		private double arrivalRate;
+		private int lifecycles = 100;
+		private final List<String> cfInstanceIds = new ArrayList<>();
+		private long pollIntervalMillis = 10;
+		private int maxPolls = 100;
+
+		PlatformSimulatorBuilder() {
+		}
+
+		/**
+		 * @param baseUrl the URL of the broker, without a trailing {@literal /}
+		 * @return the builder
+		 */
+		public PlatformSimulatorBuilder baseUrl(String baseUrl) {
+			this.baseUrl = baseUrl;
+			return this;
+		}
+
+		public PlatformSimulatorBuilder credentials(String username, String password) {
+			this.username = username;
+			this.password = password;
+			return this;
+		}
+
+		public PlatformSimulatorBuilder apiVersion(String apiVersion) {
+			this.apiVersion = apiVersion;
+			return this;
+		}
+
+		/**
+		 * @param concurrency the maximum number of lifecycles in progress at the same time
+		 * @return the builder
+		 */
+		public PlatformSimulatorBuilder concurrency(int concurrency) {
+			this.concurrency = concurrency;
+			return this;
+		}
+
+		/**
+		 * @param arrivalRate the number of lifecycles to start each second, or {@literal 0} to start a new
+		 * lifecycle as soon as one completes
+		 * @return the builder
+		 */
+		public PlatformSimulatorBuilder arrivalRate(double arrivalRate) {
+			this.arrivalRate = arrivalRate;
+			return this;
+		}
+
+		public PlatformSimulatorBuilder lifecycles(int lifecycles) {
+			this.lifecycles = lifecycles;
+			return this;
+		}
+
+		public PlatformSimulatorBuilder cfInstanceIds(String... cfInstanceIds) {
+			this.cfInstanceIds.addAll(Arrays.asList(cfInstanceIds));
+			return this;
+		}
+
+		public PlatformSimulatorBuilder pollInterval(long pollIntervalMillis) {
+			this.pollIntervalMillis = pollIntervalMillis;
+			return this;
+		}
+
+		public PlatformSimulatorBuilder maxPolls(int maxPolls) {
+			this.maxPolls = maxPolls;
+			return this;
+		}
+
+		public PlatformSimulator build() {
+			Assert.hasText(baseUrl, "baseUrl must be provided");
+			Assert.isTrue(concurrency > 0, "concurrency must be greater than 0");
+			return new PlatformSimulator(baseUrl, username, password, apiVersion, concurrency, arrivalRate,
+					lifecycles, new ArrayList<>(cfInstanceIds), pollIntervalMillis, maxPolls);
+		}
+	}
+}
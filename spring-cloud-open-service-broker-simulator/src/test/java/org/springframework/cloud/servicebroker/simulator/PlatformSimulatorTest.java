@@ -0,0 +1,81 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.simulator;
+
+import org.junit.Test;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.cloud.servicebroker.simulator.broker.InMemoryServiceInstanceBindingService;
+import org.springframework.cloud.servicebroker.simulator.broker.InMemoryServiceInstanceService;
+import org.springframework.cloud.servicebroker.simulator.broker.ReferenceBrokerApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import static org.junit.Assert.assertEquals;
+
+public class PlatformSimulatorTest {
+
+	private static final int LIFECYCLES = 12;
+
+	private static final int LAST_OPERATION_POLLS = 2;
+
+	@Test
+	public void lifecyclesCompleteAgainstServletBroker() throws Exception {
+		assertLifecyclesComplete(WebApplicationType.SERVLET, 0);
+	}
+
+	@Test
+	public void lifecyclesCompleteAgainstReactiveBroker() throws Exception {
+		assertLifecyclesComplete(WebApplicationType.REACTIVE, 0);
+	}
+
+	@Test
+	public void lifecyclesCompleteAtArrivalRate() throws Exception {
+		assertLifecyclesComplete(WebApplicationType.SERVLET, 100);
+	}
+
+	private void assertLifecyclesComplete(WebApplicationType type, double arrivalRate) throws Exception {
+		try (ConfigurableApplicationContext broker = ReferenceBrokerApplication.start(type,
+				"--simulator.broker.last-operation-polls=" + LAST_OPERATION_POLLS)) {
+			SimulationReport report = PlatformSimulator.builder()
+					.baseUrl("http://localhost:" + broker.getEnvironment().getProperty("local.server.port"))
+					.credentials(ReferenceBrokerApplication.USERNAME, ReferenceBrokerApplication.PASSWORD)
+					.cfInstanceIds("cf-1", "cf-2")
+					.lifecycles(LIFECYCLES)
+					.concurrency(4)
+					.arrivalRate(arrivalRate)
+					.pollInterval(1)
+					.build()
+					.run();
+
+			assertEquals(LIFECYCLES, report.getCompletedLifecycles());
+			assertEquals(0, report.getFailedLifecycles());
+			for (LifecycleStep step : LifecycleStep.values()) {
+				assertEquals(step.name(), 0, report.getErrorCount(step));
+			}
+			assertEquals(LIFECYCLES, report.getLatencies(LifecycleStep.CATALOG).getTotalCount());
+			assertEquals(LIFECYCLES, report.getLatencies(LifecycleStep.PROVISION).getTotalCount());
+			assertEquals(2 * LIFECYCLES * LAST_OPERATION_POLLS,
+					report.getLatencies(LifecycleStep.LAST_OPERATION).getTotalCount());
+			assertEquals(LIFECYCLES, report.getLatencies(LifecycleStep.BIND).getTotalCount());
+			assertEquals(LIFECYCLES, report.getLatencies(LifecycleStep.UNBIND).getTotalCount());
+			assertEquals(LIFECYCLES, report.getLatencies(LifecycleStep.DEPROVISION).getTotalCount());
+
+			assertEquals(0, broker.getBean(InMemoryServiceInstanceService.class).getInstanceCount());
+			assertEquals(0, broker.getBean(InMemoryServiceInstanceBindingService.class).getBindingCount());
+		}
+	}
+}
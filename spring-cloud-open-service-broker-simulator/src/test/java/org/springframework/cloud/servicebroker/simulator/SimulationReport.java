@@ -0,0 +1,140 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.simulator;
+
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Latency distributions and error counts recorded by {@link PlatformSimulator}. Latencies are recorded in
+ * microseconds for each {@link LifecycleStep}, and for each whole lifecycle measured from its scheduled start, so
+ * that queueing behind a slow broker is included when a fixed arrival rate is used.
+ */
+public class SimulationReport {
+
+	private static final int SIGNIFICANT_DIGITS = 3;
+
+	private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+	private final Map<LifecycleStep, Histogram> latencies = new EnumMap<>(LifecycleStep.class);
+
+	private final Map<LifecycleStep, AtomicLong> errors = new EnumMap<>(LifecycleStep.class);
+
+	private final Histogram lifecycleLatency = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+
+	private final AtomicLong failedLifecycles = new AtomicLong();
+
+	private volatile long elapsedNanos;
+
+	SimulationReport() {
+		for (LifecycleStep step : LifecycleStep.values()) {
+			latencies.put(step, new ConcurrentHistogram(SIGNIFICANT_DIGITS));
+			errors.put(step, new AtomicLong());
+		}
+	}
+
+	void recordRequest(LifecycleStep step, long nanos) {
+		latencies.get(step).recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+	}
+
+	void recordError(LifecycleStep step) {
+		errors.get(step).incrementAndGet();
+	}
+
+	void recordLifecycle(long nanos, boolean succeeded) {
+		lifecycleLatency.recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+		if (!succeeded) {
+			failedLifecycles.incrementAndGet();
+		}
+	}
+
+	void setElapsedNanos(long elapsedNanos) {
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	/**
+	 * @param step a lifecycle step
+	 * @return the latencies of the requests made for the step, in microseconds
+	 */
+	public Histogram getLatencies(LifecycleStep step) {
+		return latencies.get(step);
+	}
+
+	/**
+	 * @param step a lifecycle step
+	 * @return the number of requests for the step that failed or returned an unexpected status
+	 */
+	public long getErrorCount(LifecycleStep step) {
+		return errors.get(step).get();
+	}
+
+	/**
+	 * @return the latencies of complete lifecycles from their scheduled start, in microseconds
+	 */
+	public Histogram getLifecycleLatencies() {
+		return lifecycleLatency;
+	}
+
+	public long getCompletedLifecycles() {
+		return lifecycleLatency.getTotalCount();
+	}
+
+	public long getFailedLifecycles() {
+		return failedLifecycles.get();
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * Print a summary with the throughput and the latency percentiles of each step, in milliseconds.
+	 *
+	 * @param out the stream to print to
+	 */
+	public void print(PrintStream out) {
+		double seconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+		out.printf("%d lifecycles (%d failed) in %.1fs, %.1f lifecycles/s%n", getCompletedLifecycles(),
+				getFailedLifecycles(), seconds, seconds > 0 ? getCompletedLifecycles() / seconds : 0);
+		out.printf("%-54s %8s %7s %9s %9s %9s %9s %9s%n",
+				"request", "count", "errors", "p50", "p90", "p99", "p99.9", "max");
+		for (LifecycleStep step : LifecycleStep.values()) {
+			print(out, step.getRequest(), latencies.get(step), getErrorCount(step));
+		}
+		print(out, "lifecycle", lifecycleLatency, getFailedLifecycles());
+	}
+
+	private void print(PrintStream out, String name, Histogram histogram, long errorCount) {
+		StringBuilder line = new StringBuilder(String.format("%-54s %8d %7d", name, histogram.getTotalCount(),
+				errorCount));
+		for (double percentile : PERCENTILES) {
+			line.append(String.format(" %9.2f", toMillis(histogram.getValueAtPercentile(percentile))));
+		}
+		line.append(String.format(" %9.2f", toMillis(histogram.getMaxValue())));
+		out.println(line);
+	}
+
+	private static double toMillis(long micros) {
+		return micros / 1000.0;
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.simulator.broker;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerInvalidParametersException;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceBindingDoesNotExistException;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceBindingExistsException;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceDoesNotExistException;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceAppBindingResponse;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingResponse;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceBindingService;
+
+/**
+ * A {@link ServiceInstanceBindingService} that keeps bindings to the instances of an
+ * {@link InMemoryServiceInstanceService} in memory and returns generated credentials.
+ */
+public class InMemoryServiceInstanceBindingService implements ServiceInstanceBindingService {
+
+	private final ConcurrentMap<String, String> bindings = new ConcurrentHashMap<>();
+
+	private final InMemoryServiceInstanceService serviceInstanceService;
+
+	public InMemoryServiceInstanceBindingService(InMemoryServiceInstanceService serviceInstanceService) {
+		this.serviceInstanceService = serviceInstanceService;
+	}
+
+	@Override
+	public CreateServiceInstanceBindingResponse createServiceInstanceBinding(CreateServiceInstanceBindingRequest request) {
+		if (request.getOriginatingIdentity() == null) {
+			throw new ServiceBrokerInvalidParametersException("Missing originating identity");
+		}
+		if (!serviceInstanceService.exists(request.getServiceInstanceId())) {
+			throw new ServiceInstanceDoesNotExistException(request.getServiceInstanceId());
+		}
+		if (bindings.putIfAbsent(request.getBindingId(), request.getServiceInstanceId()) != null) {
+			throw new ServiceInstanceBindingExistsException(request.getServiceInstanceId(), request.getBindingId());
+		}
+
+		return CreateServiceInstanceAppBindingResponse.builder()
+				.credentials("uri", "reference://" + request.getServiceInstanceId())
+				.credentials("username", request.getBindingId())
+				.credentials("password", UUID.randomUUID().toString())
+				.build();
+	}
+
+	@Override
+	public void deleteServiceInstanceBinding(DeleteServiceInstanceBindingRequest request) {
+		if (!bindings.remove(request.getBindingId(), request.getServiceInstanceId())) {
+			throw new ServiceInstanceBindingDoesNotExistException(request.getBindingId());
+		}
+	}
+
+	public int getBindingCount() {
+		return bindings.size();
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.simulator.broker;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerInvalidParametersException;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceDoesNotExistException;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceExistsException;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceUpdateNotSupportedException;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationRequest;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationResponse;
+import org.springframework.cloud.servicebroker.model.OperationState;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceService;
+
+/**
+ * A {@link ServiceInstanceService} that keeps service instances in memory. When the platform accepts incomplete
+ * operations, provisioning and deprovisioning complete after a fixed number of last operation requests.
+ * Requests without an originating identity are rejected, so that the headers sent by the platform are verified.
+ */
+public class InMemoryServiceInstanceService implements ServiceInstanceService {
+
+	private static final String PROVISION_OPERATION = "provision";
+
+	private static final String DEPROVISION_OPERATION = "deprovision";
+
+	private final ConcurrentMap<String, ServiceInstance> instances = new ConcurrentHashMap<>();
+
+	private final int lastOperationPolls;
+
+	/**
+	 * @param lastOperationPolls the number of last operation requests that report an asynchronous operation as
+	 * in progress before it succeeds, or {@literal 0} to complete all operations synchronously
+	 */
+	public InMemoryServiceInstanceService(int lastOperationPolls) {
+		this.lastOperationPolls = lastOperationPolls;
+	}
+
+	@Override
+	public CreateServiceInstanceResponse createServiceInstance(CreateServiceInstanceRequest request) {
+		if (request.getOriginatingIdentity() == null) {
+			throw new ServiceBrokerInvalidParametersException("Missing originating identity");
+		}
+
+		boolean async = request.isAsyncAccepted() && lastOperationPolls > 0;
+		ServiceInstance instance = new ServiceInstance(async ? lastOperationPolls : 0);
+		if (instances.putIfAbsent(request.getServiceInstanceId(), instance) != null) {
+			throw new ServiceInstanceExistsException(request.getServiceInstanceId(),
+					request.getServiceDefinitionId());
+		}
+
+		return CreateServiceInstanceResponse.builder()
+				.async(async)
+				.operation(async ? PROVISION_OPERATION : null)
+				.build();
+	}
+
+	@Override
+	public GetLastServiceOperationResponse getLastOperation(GetLastServiceOperationRequest request) {
+		ServiceInstance instance = getRequiredInstance(request.getServiceInstanceId());
+
+		if (instance.pendingPolls.getAndDecrement() > 1) {
+			return GetLastServiceOperationResponse.builder()
+					.operationState(OperationState.IN_PROGRESS)
+					.deleteOperation(instance.deleting)
+					.build();
+		}
+
+		if (instance.deleting) {
+			instances.remove(request.getServiceInstanceId(), instance);
+		}
+		return GetLastServiceOperationResponse.builder()
+				.operationState(OperationState.SUCCEEDED)
+				.deleteOperation(instance.deleting)
+				.build();
+	}
+
+	@Override
+	public DeleteServiceInstanceResponse deleteServiceInstance(DeleteServiceInstanceRequest request) {
+		ServiceInstance instance = getRequiredInstance(request.getServiceInstanceId());
+
+		boolean async = request.isAsyncAccepted() && lastOperationPolls > 0;
+		if (!async) {
+			instances.remove(request.getServiceInstanceId(), instance);
+			return DeleteServiceInstanceResponse.builder().build();
+		}
+
+		instance.deleting = true;
+		instance.pendingPolls.set(lastOperationPolls);
+		return DeleteServiceInstanceResponse.builder()
+				.async(true)
+				.operation(DEPROVISION_OPERATION)
+				.build();
+	}
+
+	@Override
+	public UpdateServiceInstanceResponse updateServiceInstance(UpdateServiceInstanceRequest request) {
+		throw new ServiceInstanceUpdateNotSupportedException("The reference broker does not support updates");
+	}
+
+	boolean exists(String serviceInstanceId) {
+		return instances.containsKey(serviceInstanceId);
+	}
+
+	public int getInstanceCount() {
+		return instances.size();
+	}
+
+	private ServiceInstance getRequiredInstance(String serviceInstanceId) {
+		ServiceInstance instance = instances.get(serviceInstanceId);
+		if (instance == null) {
+			throw new ServiceInstanceDoesNotExistException(serviceInstanceId);
+		}
+		return instance;
+	}
+
+	private static class ServiceInstance {
+		private final AtomicInteger pendingPolls;
+
+		private volatile boolean deleting;
+
+		private ServiceInstance(int pendingPolls) {
+			this.pendingPolls = new AtomicInteger(pendingPolls);
+		}
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.simulator.broker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.cloud.servicebroker.model.Catalog;
+import org.springframework.cloud.servicebroker.model.Plan;
+import org.springframework.cloud.servicebroker.model.ServiceDefinition;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+
+/**
+ * An in-memory service broker built with the service broker starters, for running {@link
+ * org.springframework.cloud.servicebroker.simulator.PlatformSimulator} without an external broker. The application
+ * can be started as a servlet or a reactive web application, requires HTTP basic authentication with
+ * {@link #USERNAME} and {@link #PASSWORD}, and completes asynchronous operations after the number of last
+ * operation requests set by the {@literal simulator.broker.last-operation-polls} property.
+ */
+@Configuration
+@EnableAutoConfiguration
+public class ReferenceBrokerApplication {
+
+	public static final String USERNAME = "user";
+
+	public static final String PASSWORD = "password";
+
+	/**
+	 * Start the broker on a random port, available from the {@literal local.server.port} property.
+	 *
+	 * @param webApplicationType the type of web application to run
+	 * @param args additional command line arguments
+	 * @return the application context
+	 */
+	public static ConfigurableApplicationContext start(WebApplicationType webApplicationType, String... args) {
+		SpringApplication application = new SpringApplication(ReferenceBrokerApplication.class);
+		application.setWebApplicationType(webApplicationType);
+
+		List<String> arguments = new ArrayList<>(Arrays.asList(
+				"--server.port=0",
+				"--spring.main.banner-mode=off",
+				"--logging.level.root=WARN",
+				"--spring.security.user.name=" + USERNAME,
+				"--spring.security.user.password=" + PASSWORD));
+		arguments.addAll(Arrays.asList(args));
+		return application.run(arguments.toArray(new String[0]));
+	}
+
+	@Bean
+	public Catalog catalog() {
+		return Catalog.builder()
+				.serviceDefinitions(ServiceDefinition.builder()
+						.id("reference-service-id")
+						.name("reference-service")
+						.description("In-memory reference service")
+						.bindable(true)
+						.plans(Plan.builder()
+										.id("reference-plan-id")
+										.name("standard")
+										.description("In-memory reference plan")
+										.build())
+						.build())
+				.build();
+	}
+
+	@Bean
+	public InMemoryServiceInstanceService serviceInstanceService(
+			@Value("${simulator.broker.last-operation-polls:2}") int lastOperationPolls) {
+		return new InMemoryServiceInstanceService(lastOperationPolls);
+	}
+
+	@Bean
+	public InMemoryServiceInstanceBindingService serviceInstanceBindingService(
+			InMemoryServiceInstanceService serviceInstanceService) {
+		return new InMemoryServiceInstanceBindingService(serviceInstanceService);
+	}
+
+	/**
+	 * Cloud Controller authenticates every request with HTTP basic and does not keep sessions or send CSRF tokens.
+	 */
+	@Configuration
+	@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+	static class ServletSecurityConfiguration extends WebSecurityConfigurerAdapter {
+		@Override
+		protected void configure(HttpSecurity http) throws Exception {
+			http.csrf().disable()
+					.sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+					.and()
+					.authorizeRequests().anyRequest().authenticated()
+					.and()
+					.httpBasic();
+		}
+	}
+
+	@Configuration
+	@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+	static class ReactiveSecurityConfiguration {
+		@Bean
+		public SecurityWebFilterChain springSecurityFilterChain(ServerHttpSecurity http) {
+			return http.csrf().disable()
+					.securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+					.authorizeExchange().anyExchange().authenticated()
+					.and()
+					.httpBasic()
+					.and()
+					.build();
+		}
+	}
+}
@@ -16,21 +16,28 @@
 
 package org.springframework.cloud.servicebroker.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.springframework.cloud.servicebroker.exception.ServiceBrokerApiVersionException;
 import org.springframework.cloud.servicebroker.exception.ServiceBrokerAsyncRequiredException;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerConcurrencyException;
 import org.springframework.cloud.servicebroker.exception.ServiceBrokerInvalidParametersException;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerOverloadedException;
 import org.springframework.cloud.servicebroker.exception.ServiceDefinitionDoesNotExistException;
 import org.springframework.cloud.servicebroker.exception.ServiceInstanceDoesNotExistException;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceQuotaExceededException;
 import org.springframework.cloud.servicebroker.model.AsyncRequiredErrorMessage;
 import org.springframework.cloud.servicebroker.model.AsyncServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.ConcurrencyErrorMessage;
 import org.springframework.cloud.servicebroker.model.Context;
 import org.springframework.cloud.servicebroker.model.ErrorMessage;
 import org.springframework.cloud.servicebroker.model.ServiceBrokerRequest;
 import org.springframework.cloud.servicebroker.model.ServiceDefinition;
 import org.springframework.cloud.servicebroker.service.CatalogService;
+import org.springframework.core.codec.CodecException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
@@ -40,6 +47,7 @@ import org.springframework.validation.BindingResult;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.server.ServerWebInputException;
 
 import java.io.IOException;
 import java.util.Map;
@@ -164,6 +172,24 @@ public class BaseController {
 		return getErrorResponse(message, HttpStatus.UNPROCESSABLE_ENTITY);
 	}
 
+	@ExceptionHandler(ServerWebInputException.class)
+	public ResponseEntity<ErrorMessage> handleException(ServerWebInputException ex) {
+		log.debug("Unprocessable request received: ", ex);
+		return getErrorResponse(ex.getReason(), HttpStatus.UNPROCESSABLE_ENTITY);
+	}
+
+	@ExceptionHandler(CodecException.class)
+	public ResponseEntity<ErrorMessage> handleException(CodecException ex) {
+		log.debug("Unprocessable request received: ", ex);
+		return getErrorResponse(ex.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+	}
+
+	@ExceptionHandler(JsonProcessingException.class)
+	public ResponseEntity<ErrorMessage> handleException(JsonProcessingException ex) {
+		log.debug("Unprocessable request received: ", ex);
+		return getErrorResponse(ex.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+	}
+
 	@ExceptionHandler(ServiceBrokerAsyncRequiredException.class)
 	public ResponseEntity<AsyncRequiredErrorMessage> handleException(ServiceBrokerAsyncRequiredException ex) {
 		log.debug("Broker requires async support: ", ex);
@@ -171,12 +197,33 @@ public class BaseController {
 				new AsyncRequiredErrorMessage(ex.getMessage()), HttpStatus.UNPROCESSABLE_ENTITY);
 	}
 
+	@ExceptionHandler(ServiceBrokerConcurrencyException.class)
+	public ResponseEntity<ConcurrencyErrorMessage> handleException(ServiceBrokerConcurrencyException ex) {
+		log.debug("Concurrent operation in progress: ", ex);
+		return new ResponseEntity<>(
+				new ConcurrencyErrorMessage(ex.getMessage()), HttpStatus.UNPROCESSABLE_ENTITY);
+	}
+
+	@ExceptionHandler(ServiceBrokerOverloadedException.class)
+	public ResponseEntity<ErrorMessage> handleException(ServiceBrokerOverloadedException ex) {
+		log.debug("Request rejected by admission control: ", ex);
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+				.header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfter().getSeconds()))
+				.body(new ErrorMessage(ex.getMessage()));
+	}
+
 	@ExceptionHandler(ServiceBrokerInvalidParametersException.class)
 	public ResponseEntity<ErrorMessage> handleException(ServiceBrokerInvalidParametersException ex) {
 		log.debug("Invalid parameters received: ", ex);
 		return getErrorResponse(ex.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
 	}
 
+	@ExceptionHandler(ServiceInstanceQuotaExceededException.class)
+	public ResponseEntity<ErrorMessage> handleException(ServiceInstanceQuotaExceededException ex) {
+		log.debug("Service instance quota exceeded: ", ex);
+		return getErrorResponse(ex.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+	}
+
 	@ExceptionHandler(Exception.class)
 	public ResponseEntity<ErrorMessage> handleException(Exception ex) {
 		log.debug("Unknown exception handled: ", ex);
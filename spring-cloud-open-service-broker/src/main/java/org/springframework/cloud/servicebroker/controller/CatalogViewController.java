@@ -0,0 +1,104 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.controller;
+
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.springframework.cloud.servicebroker.model.BrokerApiVersion;
+import org.springframework.cloud.servicebroker.service.CatalogService;
+import org.springframework.cloud.servicebroker.service.CatalogViewKey;
+import org.springframework.cloud.servicebroker.service.CatalogViewService;
+import org.springframework.cloud.servicebroker.service.CatalogViewService.CatalogView;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Serves the catalog views provided by a {@link CatalogViewService}, with an entity tag so that platforms can
+ * revalidate their copy of the catalog. Used in place of {@link CatalogController} when catalog views are enabled.
+ * The API version of a request is read from the header named by the {@link BrokerApiVersion} of the service broker.
+ */
+@RestController
+public class CatalogViewController extends BaseController {
+	private static final Logger log = getLogger(CatalogViewController.class);
+
+	private final CatalogViewService catalogViewService;
+
+	private final String apiVersionHeader;
+
+	public CatalogViewController(CatalogService service, CatalogViewService catalogViewService) {
+		this(service, catalogViewService, null);
+	}
+
+	public CatalogViewController(CatalogService service, CatalogViewService catalogViewService,
+								 BrokerApiVersion brokerApiVersion) {
+		super(service);
+		this.catalogViewService = catalogViewService;
+		this.apiVersionHeader = brokerApiVersion == null ?
+				BrokerApiVersion.DEFAULT_API_VERSION_HEADER : brokerApiVersion.getBrokerApiVersionHeader();
+	}
+
+	/**
+	 * Get the name of the header the API version of a request is read from.
+	 *
+	 * @return the header name
+	 */
+	public String getApiVersionHeader() {
+		return this.apiVersionHeader;
+	}
+
+	@RequestMapping(value = {"/v2/catalog", "{cfInstanceId}/v2/catalog"}, method = RequestMethod.GET)
+	public ResponseEntity<?> getCatalogView(@PathVariable Map<String, String> pathVariables,
+											@RequestHeader HttpHeaders headers) {
+		return getCatalogView(pathVariables, headers.getFirst(this.apiVersionHeader),
+				headers.getFirst(HttpHeaders.IF_NONE_MATCH));
+	}
+
+	public ResponseEntity<?> getCatalogView(Map<String, String> pathVariables, String apiVersion, String ifNoneMatch) {
+		CatalogViewKey key = new CatalogViewKey(pathVariables.get("cfInstanceId"), apiVersion);
+
+		log.debug("Retrieving catalog view: key={}", key);
+
+		CatalogView view = catalogViewService.getCatalogView(key);
+
+		if (isNotModified(view, ifNoneMatch)) {
+			return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+					.eTag(view.getEtag())
+					.build();
+		}
+
+		return ResponseEntity.ok()
+				.eTag(view.getEtag())
+				.contentType(MediaType.APPLICATION_JSON_UTF8)
+				.body(view.getContent());
+	}
+
+	private boolean isNotModified(CatalogView view, String ifNoneMatch) {
+		return ifNoneMatch != null &&
+				(ifNoneMatch.contains(view.getEtag()) || "*".equals(ifNoneMatch.trim()));
+	}
+}
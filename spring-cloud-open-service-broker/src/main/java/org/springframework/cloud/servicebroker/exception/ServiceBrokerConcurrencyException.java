@@ -0,0 +1,35 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.exception;
+
+/**
+ * Thrown to indicate that a request can not be processed because another operation on the same service instance
+ * is in progress.
+ */
+public class ServiceBrokerConcurrencyException extends RuntimeException {
+
+	private static final long serialVersionUID = 6393186094016405453L;
+
+	public ServiceBrokerConcurrencyException(String message) {
+		super(message);
+	}
+
+	public ServiceBrokerConcurrencyException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.exception;
+
+import java.time.Duration;
+
+/**
+ * Thrown to indicate that a request was rejected because the service broker is processing as many operations as
+ * it can accept. The request can be retried after the suggested delay.
+ */
+public class ServiceBrokerOverloadedException extends RuntimeException {
+
+	private static final long serialVersionUID = -4326914409538112746L;
+
+	private final Duration retryAfter;
+
+	public ServiceBrokerOverloadedException(String message, Duration retryAfter) {
+		super(message);
+		this.retryAfter = retryAfter;
+	}
+
+	public Duration getRetryAfter() {
+		return this.retryAfter;
+	}
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.exception;
+
+/**
+ * Thrown to indicate that a service instance can not be provisioned or moved to another plan because a quota on the
+ * number of service instances in an organization, space, namespace or plan has been reached.
+ */
+public class ServiceInstanceQuotaExceededException extends RuntimeException {
+
+	private static final long serialVersionUID = 2871620593473381547L;
+
+	public ServiceInstanceQuotaExceededException(String message) {
+		super(message);
+	}
+
+}
@@ -33,6 +33,12 @@ public abstract class AsyncParameterizedServiceInstanceRequest extends AsyncServ
 	 */
 	protected final Map<String, Object> parameters;
 
+	/**
+	 * Parameters deserialized into the type registered for the requested service or plan in
+	 * {@link ParameterTypes}, or <code>null</code> if no type is registered.
+	 */
+	private transient Object typedParameters;
+
 	/**
 	 * Platform specific contextual information under which the service instance is to be provisioned or updated.
 	 */
@@ -43,7 +49,19 @@ public abstract class AsyncParameterizedServiceInstanceRequest extends AsyncServ
 		this.context = context;
 	}
 
+	/**
+	 * Get the parameters as an instance of a type. Parameters deserialized into a type registered in
+	 * {@link ParameterTypes} are returned as they are; otherwise the parameters are copied to the properties
+	 * of a new instance of the type.
+	 *
+	 * @param cls the type of the parameters
+	 * @param <T> the type of the parameters
+	 * @return the parameters
+	 */
 	public <T> T getParameters(Class<T> cls) {
+		if (cls.isInstance(typedParameters)) {
+			return cls.cast(typedParameters);
+		}
 		try {
 			T bean = cls.newInstance();
 			BeanUtils.populate(bean, parameters);
@@ -57,6 +75,14 @@ public abstract class AsyncParameterizedServiceInstanceRequest extends AsyncServ
 		return this.parameters;
 	}
 
+	void setTypedParameters(Object typedParameters) {
+		this.typedParameters = typedParameters;
+	}
+
+	Object getTypedParameters() {
+		return this.typedParameters;
+	}
+
 	public Context getContext() {
 		return this.context;
 	}
@@ -68,6 +94,7 @@ public abstract class AsyncParameterizedServiceInstanceRequest extends AsyncServ
 		if (!super.equals(o)) return false;
 		AsyncParameterizedServiceInstanceRequest that = (AsyncParameterizedServiceInstanceRequest) o;
 		return Objects.equals(parameters, that.parameters) &&
+				Objects.equals(typedParameters, that.typedParameters) &&
 				Objects.equals(context, that.context);
 	}
 
@@ -21,6 +21,7 @@ import com.fasterxml.jackson.annotation.JsonAnySetter;
 import com.fasterxml.jackson.databind.PropertyNamingStrategy;
 import com.fasterxml.jackson.databind.annotation.JsonNaming;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
@@ -37,20 +38,18 @@ public class BindResource {
 	 */
 	private final String route;
 
-	@JsonAnySetter
-	private final Map<String, Object> properties = new HashMap<>();
+	private Map<String, Object> properties;
 
 	private BindResource() {
 		this.appGuid = null;
 		this.route = null;
+		this.properties = Collections.emptyMap();
 	}
 
 	private BindResource(String appGuid, String route, Map<String, Object> properties) {
 		this.appGuid = appGuid;
 		this.route = route;
-		if (properties != null) {
-			this.properties.putAll(properties);
-		}
+		this.properties = properties;
 	}
 
 	/**
@@ -68,6 +67,14 @@ public class BindResource {
 		return this.properties;
 	}
 
+	@JsonAnySetter
+	private void setProperty(String key, Object value) {
+		if (this.properties.isEmpty()) {
+			this.properties = new HashMap<>();
+		}
+		this.properties.put(key, value);
+	}
+
 	public String getAppGuid() {
 		return this.appGuid;
 	}
@@ -107,7 +114,7 @@ public class BindResource {
 	public static class BindResourceBuilder {
 		private String appGuid;
 		private String route;
-		private Map<String, Object> parameters = new HashMap<>();
+		private final MapBuilder<String, Object> parameters = new MapBuilder<>();
 
 		BindResourceBuilder() {
 		}
@@ -133,7 +140,7 @@ public class BindResource {
 		}
 
 		public BindResource build() {
-			return new BindResource(appGuid, route, parameters);
+			return new BindResource(appGuid, route, parameters.build());
 		}
 	}
 }
@@ -19,8 +19,6 @@ package org.springframework.cloud.servicebroker.model;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.hibernate.validator.constraints.NotEmpty;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
@@ -72,7 +70,7 @@ public class Catalog {
 	}
 
 	public static class CatalogBuilder {
-		private List<ServiceDefinition> serviceDefinitions = new ArrayList<>();
+		private final ListBuilder<ServiceDefinition> serviceDefinitions = new ListBuilder<>();
 
 		CatalogBuilder() {
 		}
@@ -83,12 +81,12 @@ public class Catalog {
 		}
 
 		public CatalogBuilder serviceDefinitions(ServiceDefinition... serviceDefinitions) {
-			Collections.addAll(this.serviceDefinitions, serviceDefinitions);
+			this.serviceDefinitions.addAll(serviceDefinitions);
 			return this;
 		}
 
 		public Catalog build() {
-			return new Catalog(serviceDefinitions);
+			return new Catalog(serviceDefinitions.build());
 		}
 	}
 }
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.model;
+
+/**
+ * An error returned when a broker receives a request for a service instance while another operation on the
+ * same service instance is in progress.
+ */
+public class ConcurrencyErrorMessage extends ErrorMessage {
+
+	public final static String CONCURRENCY_ERROR = "ConcurrencyError";
+
+	/**
+	 * Another operation is in progress for the service instance.
+	 *
+	 * @param description user facing error message.
+	 */
+	public ConcurrencyErrorMessage(String description) {
+		super(description);
+	}
+
+	public String getError() {
+		return CONCURRENCY_ERROR;
+	}
+}
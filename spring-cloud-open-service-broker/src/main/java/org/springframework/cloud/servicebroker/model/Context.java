@@ -21,6 +21,7 @@ import com.fasterxml.jackson.annotation.JsonAnySetter;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
@@ -47,17 +48,27 @@ public class Context {
 	 */
 	private final String platform;
 
-	@JsonAnySetter
-	private final Map<String, Object> properties = new HashMap<>();
+	private Map<String, Object> properties;
 
 	protected Context() {
 		this.platform = null;
+		this.properties = Collections.emptyMap();
 	}
 
+	/**
+	 * Construct a context. The properties collected by a {@link ContextBaseBuilder} are not copied.
+	 *
+	 * @param platform the name of the platform
+	 * @param properties additional properties, or {@literal null}
+	 */
 	protected Context(String platform, Map<String, Object> properties) {
 		this.platform = platform;
-		if (properties != null) {
-			this.properties.putAll(properties);
+		if (properties instanceof MapBuilder) {
+			this.properties = ((MapBuilder<String, Object>) properties).build();
+		} else if (properties == null || properties.isEmpty()) {
+			this.properties = Collections.emptyMap();
+		} else {
+			this.properties = new HashMap<>(properties);
 		}
 	}
 
@@ -70,6 +81,14 @@ public class Context {
 		return this.properties;
 	}
 
+	@JsonAnySetter
+	private void setProperty(String key, Object value) {
+		if (this.properties.isEmpty()) {
+			this.properties = new HashMap<>();
+		}
+		this.properties.put(key, value);
+	}
+
 	/**
 	 * Get the value of a field in the request with the given key.
 	 *
@@ -110,7 +129,7 @@ public class Context {
 		private final B thisObj;
 
 		protected String platform;
-		protected Map<String, Object> properties = new HashMap<>();
+		protected Map<String, Object> properties = new MapBuilder<>();
 
 		protected ContextBaseBuilder() {
 			this.thisObj = createBuilder();
@@ -16,9 +16,6 @@
 
 package org.springframework.cloud.servicebroker.model;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -99,9 +96,9 @@ public class CreateServiceInstanceAppBindingResponse extends CreateServiceInstan
 	}
 
 	public static class CreateServiceInstanceAppBindingResponseBuilder {
-		private Map<String, Object> credentials;
+		private MapBuilder<String, Object> credentials;
 		private String syslogDrainUrl;
-		private List<VolumeMount> volumeMounts;
+		private ListBuilder<VolumeMount> volumeMounts;
 		private boolean bindingExisted;
 
 		CreateServiceInstanceAppBindingResponseBuilder() {
@@ -109,7 +106,7 @@ public class CreateServiceInstanceAppBindingResponse extends CreateServiceInstan
 
 		public CreateServiceInstanceAppBindingResponseBuilder credentials(Map<String, Object> credentials) {
 			if (this.credentials == null) {
-				this.credentials = new HashMap<>();
+				this.credentials = new MapBuilder<>();
 			}
 			this.credentials.putAll(credentials);
 			return this;
@@ -117,7 +114,7 @@ public class CreateServiceInstanceAppBindingResponse extends CreateServiceInstan
 
 		public CreateServiceInstanceAppBindingResponseBuilder credentials(String key, Object value) {
 			if (this.credentials == null) {
-				this.credentials = new HashMap<>();
+				this.credentials = new MapBuilder<>();
 			}
 			this.credentials.put(key, value);
 			return this;
@@ -130,7 +127,7 @@ public class CreateServiceInstanceAppBindingResponse extends CreateServiceInstan
 
 		public CreateServiceInstanceAppBindingResponseBuilder volumeMounts(List<VolumeMount> volumeMounts) {
 			if (this.volumeMounts == null) {
-				this.volumeMounts = new ArrayList<>();
+				this.volumeMounts = new ListBuilder<>();
 			}
 			this.volumeMounts.addAll(volumeMounts);
 			return this;
@@ -138,9 +135,9 @@ public class CreateServiceInstanceAppBindingResponse extends CreateServiceInstan
 
 		public CreateServiceInstanceAppBindingResponseBuilder volumeMounts(VolumeMount... volumeMounts) {
 			if (this.volumeMounts == null) {
-				this.volumeMounts = new ArrayList<>();
+				this.volumeMounts = new ListBuilder<>();
 			}
-			Collections.addAll(this.volumeMounts, volumeMounts);
+			this.volumeMounts.addAll(volumeMounts);
 			return this;
 		}
 
@@ -150,7 +147,9 @@ public class CreateServiceInstanceAppBindingResponse extends CreateServiceInstan
 		}
 
 		public CreateServiceInstanceAppBindingResponse build() {
-			return new CreateServiceInstanceAppBindingResponse(bindingExisted, credentials, syslogDrainUrl, volumeMounts);
+			return new CreateServiceInstanceAppBindingResponse(bindingExisted,
+					credentials == null ? null : credentials.build(), syslogDrainUrl,
+					volumeMounts == null ? null : volumeMounts.build());
 		}
 	}
 }
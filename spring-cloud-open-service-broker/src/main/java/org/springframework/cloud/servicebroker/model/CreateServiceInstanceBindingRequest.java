@@ -20,7 +20,6 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import org.apache.commons.beanutils.BeanUtils;
 import org.hibernate.validator.constraints.NotEmpty;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 
@@ -66,6 +65,12 @@ public class CreateServiceInstanceBindingRequest extends ServiceBrokerRequest {
 	 */
 	private final Map<String, Object> parameters;
 
+	/**
+	 * Parameters deserialized into the type registered for the requested service or plan in
+	 * {@link ParameterTypes}, or <code>null</code> if no type is registered.
+	 */
+	private transient Object typedParameters;
+
 	/**
 	 * Platform specific contextual information under which the service instance is to be bound.
 	 */
@@ -108,7 +113,19 @@ public class CreateServiceInstanceBindingRequest extends ServiceBrokerRequest {
 		this.context = context;
 	}
 
+	/**
+	 * Get the parameters as an instance of a type. Parameters deserialized into a type registered in
+	 * {@link ParameterTypes} are returned as they are; otherwise the parameters are copied to the properties
+	 * of a new instance of the type.
+	 *
+	 * @param cls the type of the parameters
+	 * @param <T> the type of the parameters
+	 * @return the parameters
+	 */
 	public <T> T getParameters(Class<T> cls) {
+		if (cls.isInstance(typedParameters)) {
+			return cls.cast(typedParameters);
+		}
 		try {
 			T bean = cls.newInstance();
 			BeanUtils.populate(bean, parameters);
@@ -139,6 +156,14 @@ public class CreateServiceInstanceBindingRequest extends ServiceBrokerRequest {
 		return this.parameters;
 	}
 
+	void setTypedParameters(Object typedParameters) {
+		this.typedParameters = typedParameters;
+	}
+
+	Object getTypedParameters() {
+		return this.typedParameters;
+	}
+
 	public Context getContext() {
 		return this.context;
 	}
@@ -182,6 +207,7 @@ public class CreateServiceInstanceBindingRequest extends ServiceBrokerRequest {
 				Objects.equals(appGuid, that.appGuid) &&
 				Objects.equals(bindResource, that.bindResource) &&
 				Objects.equals(parameters, that.parameters) &&
+				Objects.equals(typedParameters, that.typedParameters) &&
 				Objects.equals(context, that.context) &&
 				Objects.equals(serviceInstanceId, that.serviceInstanceId) &&
 				Objects.equals(bindingId, that.bindingId);
@@ -212,7 +238,7 @@ public class CreateServiceInstanceBindingRequest extends ServiceBrokerRequest {
 		private String serviceDefinitionId;
 		private String planId;
 		private BindResource bindResource;
-		private Map<String, Object> parameters = new HashMap<>();
+		private final MapBuilder<String, Object> parameters = new MapBuilder<>();
 		private Context context;
 
 		CreateServiceInstanceBindingRequestBuilder() {
@@ -250,7 +276,7 @@ public class CreateServiceInstanceBindingRequest extends ServiceBrokerRequest {
 
 		public CreateServiceInstanceBindingRequest build() {
 			return new CreateServiceInstanceBindingRequest(serviceDefinitionId, planId, bindResource,
-					parameters, context);
+					parameters.build(), context);
 		}
 	}
 }
@@ -19,7 +19,6 @@ package org.springframework.cloud.servicebroker.model;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.hibernate.validator.constraints.NotEmpty;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 
@@ -166,7 +165,7 @@ public class CreateServiceInstanceRequest extends AsyncParameterizedServiceInsta
 		private String serviceDefinitionId;
 		private String planId;
 		private Context context;
-		private Map<String, Object> parameters = new HashMap<>();
+		private final MapBuilder<String, Object> parameters = new MapBuilder<>();
 
 		CreateServiceInstanceRequestBuilder() {
 		}
@@ -197,7 +196,7 @@ public class CreateServiceInstanceRequest extends AsyncParameterizedServiceInsta
 		}
 
 		public CreateServiceInstanceRequest build() {
-			return new CreateServiceInstanceRequest(serviceDefinitionId, planId, parameters, context);
+			return new CreateServiceInstanceRequest(serviceDefinitionId, planId, parameters.build(), context);
 		}
 	}
 }
@@ -78,6 +78,24 @@ public class GetLastServiceOperationRequest extends ServiceBrokerRequest {
 		this.operation = operation;
 	}
 
+	/**
+	 * Create a copy of this request for another operation.
+	 *
+	 * @param operation the operation to get the state of
+	 * @return the new request
+	 */
+	public GetLastServiceOperationRequest withOperation(String operation) {
+		GetLastServiceOperationRequest request = new GetLastServiceOperationRequest();
+		request.serviceInstanceId = this.serviceInstanceId;
+		request.serviceDefinitionId = this.serviceDefinitionId;
+		request.planId = this.planId;
+		request.operation = operation;
+		request.cfInstanceId = this.cfInstanceId;
+		request.apiInfoLocation = this.apiInfoLocation;
+		request.originatingIdentity = this.originatingIdentity;
+		return request;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) return true;
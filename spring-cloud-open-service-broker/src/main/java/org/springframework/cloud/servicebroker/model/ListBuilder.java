@@ -0,0 +1,75 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects the elements of a list for a model builder. Each built model object receives an unmodifiable view of
+ * the collected list, trimmed to its size, instead of a copy. The list is copied only when elements are added
+ * after a build, so that objects already built are not changed.
+ *
+ * @param <E> the type of the elements
+ */
+final class ListBuilder<E> {
+
+	private ArrayList<E> list;
+
+	private List<E> built;
+
+	@SafeVarargs
+	final void addAll(E... elements) {
+		Collections.addAll(mutableList(elements.length), elements);
+	}
+
+	void addAll(Collection<? extends E> elements) {
+		mutableList(elements.size()).addAll(elements);
+	}
+
+	private ArrayList<E> mutableList(int additions) {
+		if (this.list == null) {
+			this.list = new ArrayList<>(additions);
+		} else if (this.built != null) {
+			ArrayList<E> copy = new ArrayList<>(this.list.size() + additions);
+			copy.addAll(this.list);
+			this.list = copy;
+		}
+		this.built = null;
+		return this.list;
+	}
+
+	/**
+	 * Get the collected elements.
+	 *
+	 * @return an unmodifiable list, or the shared empty list if no elements were added
+	 */
+	List<E> build() {
+		if (this.built == null) {
+			if (this.list == null || this.list.isEmpty()) {
+				this.built = Collections.emptyList();
+			} else {
+				this.list.trimToSize();
+				this.built = Collections.unmodifiableList(this.list);
+			}
+		}
+		return this.built;
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.servicebroker.model;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects the entries of a map for a model builder. Each built model object receives an unmodifiable view of the
+ * collected map instead of a copy. The map is copied only when it is changed after a build, so that objects
+ * already built are not changed. The entries can be read through the {@link Map} interface but only changed
+ * through {@link #put(Object, Object)}, {@link #putAll(Map)}, {@link #remove(Object)} and {@link #clear()}.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+final class MapBuilder<K, V> extends AbstractMap<K, V> {
+
+	private Map<K, V> map;
+
+	private Map<K, V> built;
+
+	@Override
+	public V put(K key, V value) {
+		return mutableMap().put(key, value);
+	}
+
+	@Override
+	public void putAll(Map<? extends K, ? extends V> entries) {
+		mutableMap().putAll(entries);
+	}
+
+	@Override
+	public V remove(Object key) {
+		return this.map == null || !this.map.containsKey(key) ? null : mutableMap().remove(key);
+	}
+
+	@Override
+	public void clear() {
+		this.map = null;
+		this.built = null;
+	}
+
+	@Override
+	public V get(Object key) {
+		return this.map == null ? null : this.map.get(key);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return this.map != null && this.map.containsKey(key);
+	}
+
+	@Override
+	public int size() {
+		return this.map == null ? 0 : this.map.size();
+	}
+
+	@Override
+	public Set<Entry<K, V>> entrySet() {
+		return this.map == null ? Collections.emptySet() : Collections.unmodifiableMap(this.map).entrySet();
+	}
+
+	private Map<K, V> mutableMap() {
+		if (this.map == null) {
+			this.map = new HashMap<>();
+		} else if (this.built != null) {
+			this.map = new HashMap<>(this.map);
+		}
+		this.built = null;
+		return this.map;
+	}
+
+	/**
+	 * Get the collected entries.
+	 *
+	 * @return an unmodifiable map, or the shared empty map if no entries were added
+	 */
+	Map<K, V> build() {
+		if (this.built == null) {
+			this.built = this.map == null || this.map.isEmpty() ?
+					Collections.emptyMap() : Collections.unmodifiableMap(this.map);
+		}
+		return this.built;
+	}
+}
@@ -18,7 +18,6 @@ package org.springframework.cloud.servicebroker.model;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 
@@ -68,7 +67,7 @@ public class MethodSchema {
 	}
 
 	public static class MethodSchemaBuilder {
-		private Map<String, Object> parameters = new HashMap<>();
+		private final MapBuilder<String, Object> parameters = new MapBuilder<>();
 
 		MethodSchemaBuilder() {
 		}
@@ -84,7 +83,7 @@ public class MethodSchema {
 		}
 
 		public MethodSchema build() {
-			return new MethodSchema(parameters);
+			return new MethodSchema(parameters.build());
 		}
 	}
 }
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.model;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The differences between the plan, parameters and context a service instance was provisioned or last updated
+ * with and those of an update request, so that a service broker can apply only the parts of the configuration that
+ * changed.
+ * <p>
+ * An update request carries only the parameters that the user wants to change, so parameters are compared by the
+ * top-level keys of the update: a key that is not in the update keeps its previous value, and a key set to
+ * {@literal null} is removed. The values of a key are compared deeply, with numbers compared by value so that
+ * {@literal 1} and {@literal 1.0} are equal. Parameters read into a type registered in {@link ParameterTypes} are
+ * compared by the properties of that type.
+ *
+ * @see UpdateServiceInstanceRequest#getParameterChanges()
+ */
+public final class ParameterChanges {
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+	private static final TypeReference<Map<String, Object>> PARAMETERS = new TypeReference<Map<String, Object>>() {};
+
+	private final String previousPlanId;
+
+	private final String planId;
+
+	private final Set<String> addedKeys;
+
+	private final Set<String> removedKeys;
+
+	private final Set<String> modifiedKeys;
+
+	private final boolean contextChanged;
+
+	private ParameterChanges(String previousPlanId, String planId, Set<String> addedKeys, Set<String> removedKeys,
+							 Set<String> modifiedKeys, boolean contextChanged) {
+		this.previousPlanId = previousPlanId;
+		this.planId = planId;
+		this.addedKeys = Collections.unmodifiableSet(addedKeys);
+		this.removedKeys = Collections.unmodifiableSet(removedKeys);
+		this.modifiedKeys = Collections.unmodifiableSet(modifiedKeys);
+		this.contextChanged = contextChanged;
+	}
+
+	/**
+	 * Compare the plan and parameters of a service instance before and after an update.
+	 *
+	 * @param previousPlanId the ID of the plan before the update
+	 * @param previousParameters the parameters before the update, or {@literal null} if there were none
+	 * @param planId the ID of the plan requested by the update
+	 * @param parameters the parameters sent with the update, or {@literal null} if there are none
+	 * @return the changes
+	 */
+	public static ParameterChanges between(String previousPlanId, Map<String, Object> previousParameters,
+										   String planId, Map<String, Object> parameters) {
+		return between(previousPlanId, previousParameters, null, planId, parameters, null);
+	}
+
+	/**
+	 * Compare the plan, parameters and context of a service instance before and after an update. The context is
+	 * considered unchanged if either context is not known.
+	 *
+	 * @param previousPlanId the ID of the plan before the update
+	 * @param previousParameters the parameters before the update, or {@literal null} if there were none
+	 * @param previousContext the context before the update, or {@literal null} if it is not known
+	 * @param planId the ID of the plan requested by the update
+	 * @param parameters the parameters sent with the update, or {@literal null} if there are none
+	 * @param context the context sent with the update, or {@literal null} if there is none
+	 * @return the changes
+	 */
+	public static ParameterChanges between(String previousPlanId, Map<String, Object> previousParameters,
+										   Context previousContext, String planId, Map<String, Object> parameters,
+										   Context context) {
+		Map<String, Object> previous = previousParameters == null ? Collections.emptyMap() : previousParameters;
+		Map<String, Object> current = parameters == null ? Collections.emptyMap() : parameters;
+
+		Set<String> added = new LinkedHashSet<>();
+		Set<String> removed = new LinkedHashSet<>();
+		Set<String> modified = new LinkedHashSet<>();
+		for (Map.Entry<String, Object> entry : current.entrySet()) {
+			if (entry.getValue() == null) {
+				if (previous.containsKey(entry.getKey())) {
+					removed.add(entry.getKey());
+				}
+			} else if (!previous.containsKey(entry.getKey())) {
+				added.add(entry.getKey());
+			} else if (!valuesEqual(previous.get(entry.getKey()), entry.getValue())) {
+				modified.add(entry.getKey());
+			}
+		}
+
+		boolean contextChanged = previousContext != null && context != null && !previousContext.equals(context);
+		return new ParameterChanges(previousPlanId, planId, added, removed, modified, contextChanged);
+	}
+
+	/**
+	 * Compare the plan, parameters and context of an update request with those the service instance was
+	 * provisioned or last updated with. The previous plan is taken from the
+	 * {@link UpdateServiceInstanceRequest.PreviousValues} of the request, or is assumed to be the requested plan if
+	 * the platform did not send it.
+	 *
+	 * @param request the update request
+	 * @param previousParameters the parameters before the update
+	 * @param previousContext the context before the update, or {@literal null} if it is not known
+	 * @return the changes
+	 */
+	public static ParameterChanges of(UpdateServiceInstanceRequest request, Map<String, Object> previousParameters,
+									  Context previousContext) {
+		UpdateServiceInstanceRequest.PreviousValues previousValues = request.getPreviousValues();
+		String previousPlanId = previousValues == null || previousValues.getPlanId() == null ?
+				request.getPlanId() : previousValues.getPlanId();
+		return between(previousPlanId, previousParameters, previousContext, request.getPlanId(),
+				parametersOf(request), request.getContext());
+	}
+
+	/**
+	 * Compare the plan and parameters of an update request with the parameters the service instance was
+	 * provisioned or last updated with.
+	 *
+	 * @param request the update request
+	 * @param previousParameters the parameters before the update
+	 * @return the changes
+	 * @see #of(UpdateServiceInstanceRequest, Map, Context)
+	 */
+	public static ParameterChanges of(UpdateServiceInstanceRequest request, Map<String, Object> previousParameters) {
+		return of(request, previousParameters, null);
+	}
+
+	/**
+	 * Get the parameters of a provision or update request as a map. Parameters read into a type registered in
+	 * {@link ParameterTypes} are converted to a map of the properties of that type.
+	 *
+	 * @param request the request
+	 * @return the parameters, or {@literal null} if the request has none
+	 */
+	public static Map<String, Object> parametersOf(AsyncParameterizedServiceInstanceRequest request) {
+		Object typedParameters = request.getTypedParameters();
+		if (typedParameters == null) {
+			return request.getParameters();
+		}
+		return OBJECT_MAPPER.convertValue(typedParameters, PARAMETERS);
+	}
+
+	/**
+	 * Apply the parameters sent with an update to the parameters of a service instance: keys that are not in the
+	 * update keep their previous value, and keys set to {@literal null} are removed.
+	 *
+	 * @param previousParameters the parameters before the update, or {@literal null} if there were none
+	 * @param parameters the parameters sent with the update, or {@literal null} if there are none
+	 * @return the parameters after the update
+	 */
+	public static Map<String, Object> merge(Map<String, Object> previousParameters, Map<String, Object> parameters) {
+		Map<String, Object> merged = previousParameters == null ? new LinkedHashMap<>() :
+				new LinkedHashMap<>(previousParameters);
+		if (parameters != null) {
+			for (Map.Entry<String, Object> entry : parameters.entrySet()) {
+				if (entry.getValue() == null) {
+					merged.remove(entry.getKey());
+				} else {
+					merged.put(entry.getKey(), entry.getValue());
+				}
+			}
+		}
+		return merged;
+	}
+
+	public String getPreviousPlanId() {
+		return this.previousPlanId;
+	}
+
+	public String getPlanId() {
+		return this.planId;
+	}
+
+	public boolean isPlanChanged() {
+		return !Objects.equals(this.previousPlanId, this.planId);
+	}
+
+	/**
+	 * Determine whether the context of the update differs from the context the service instance was provisioned
+	 * or last updated with.
+	 *
+	 * @return {@literal true} if the context changed
+	 */
+	public boolean isContextChanged() {
+		return this.contextChanged;
+	}
+
+	/**
+	 * Get the parameter keys that are in the update but were not set before.
+	 *
+	 * @return the added keys
+	 */
+	public Set<String> getAddedKeys() {
+		return this.addedKeys;
+	}
+
+	/**
+	 * Get the parameter keys that were set before and are set to {@literal null} by the update.
+	 *
+	 * @return the removed keys
+	 */
+	public Set<String> getRemovedKeys() {
+		return this.removedKeys;
+	}
+
+	/**
+	 * Get the parameter keys that were set before and are in the update with a different value.
+	 *
+	 * @return the modified keys
+	 */
+	public Set<String> getModifiedKeys() {
+		return this.modifiedKeys;
+	}
+
+	/**
+	 * Determine whether a parameter was added, removed or modified by the update.
+	 *
+	 * @param key the parameter key
+	 * @return {@literal true} if the parameter changed
+	 */
+	public boolean isParameterChanged(String key) {
+		return addedKeys.contains(key) || removedKeys.contains(key) || modifiedKeys.contains(key);
+	}
+
+	/**
+	 * Determine whether the update changes the plan, the context or any parameter.
+	 *
+	 * @return {@literal true} if there are no changes
+	 */
+	public boolean isEmpty() {
+		return !isPlanChanged() && !contextChanged &&
+				addedKeys.isEmpty() && removedKeys.isEmpty() && modifiedKeys.isEmpty();
+	}
+
+	private static boolean valuesEqual(Object previous, Object current) {
+		if (previous instanceof Number && current instanceof Number) {
+			BigDecimal previousValue = toBigDecimal((Number) previous);
+			BigDecimal currentValue = toBigDecimal((Number) current);
+			if (previousValue == null || currentValue == null) {
+				return Double.compare(((Number) previous).doubleValue(), ((Number) current).doubleValue()) == 0;
+			}
+			return previousValue.compareTo(currentValue) == 0;
+		}
+		if (previous instanceof Map && current instanceof Map) {
+			Map<?, ?> previousMap = (Map<?, ?>) previous;
+			Map<?, ?> currentMap = (Map<?, ?>) current;
+			if (previousMap.size() != currentMap.size()) {
+				return false;
+			}
+			for (Map.Entry<?, ?> entry : currentMap.entrySet()) {
+				if (!previousMap.containsKey(entry.getKey()) ||
+						!valuesEqual(previousMap.get(entry.getKey()), entry.getValue())) {
+					return false;
+				}
+			}
+			return true;
+		}
+		if (previous instanceof List && current instanceof List) {
+			List<?> previousList = (List<?>) previous;
+			List<?> currentList = (List<?>) current;
+			if (previousList.size() != currentList.size()) {
+				return false;
+			}
+			Iterator<?> previousValues = previousList.iterator();
+			for (Object value : currentList) {
+				if (!valuesEqual(previousValues.next(), value)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return Objects.equals(previous, current);
+	}
+
+	private static BigDecimal toBigDecimal(Number number) {
+		if (number instanceof BigDecimal) {
+			return (BigDecimal) number;
+		}
+		if (number instanceof Double || number instanceof Float) {
+			double value = number.doubleValue();
+			if (Double.isNaN(value) || Double.isInfinite(value)) {
+				return null;
+			}
+			return BigDecimal.valueOf(value);
+		}
+		return new BigDecimal(number.toString());
+	}
+
+	@Override
+	public String toString() {
+		return "ParameterChanges{" +
+				"previousPlanId='" + previousPlanId + '\'' +
+				", planId='" + planId + '\'' +
+				", addedKeys=" + addedKeys +
+				", removedKeys=" + removedKeys +
+				", modifiedKeys=" + modifiedKeys +
+				", contextChanged=" + contextChanged +
+				'}';
+	}
+}
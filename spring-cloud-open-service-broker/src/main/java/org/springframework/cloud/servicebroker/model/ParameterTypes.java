@@ -0,0 +1,93 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The types that the {@literal parameters} of service instance provision, update and bind requests are
+ * deserialized into, registered by service or plan ID. A type registered for a plan is used in place of a type
+ * registered for the plan's service. Requests for services and plans without a registered type are deserialized
+ * into a {@link Map} as usual.
+ *
+ * @see ParameterTypesModule
+ */
+public class ParameterTypes {
+
+	private final Map<String, Class<?>> serviceTypes;
+
+	private final Map<String, Class<?>> planTypes;
+
+	private ParameterTypes(Map<String, Class<?>> serviceTypes, Map<String, Class<?>> planTypes) {
+		this.serviceTypes = serviceTypes;
+		this.planTypes = planTypes;
+	}
+
+	/**
+	 * Get the type registered for a plan, or for its service if no type is registered for the plan.
+	 *
+	 * @param serviceDefinitionId the ID of the service, or {@literal null}
+	 * @param planId the ID of the plan, or {@literal null}
+	 * @return the parameter type, or {@literal null} if none is registered
+	 */
+	public Class<?> resolve(String serviceDefinitionId, String planId) {
+		Class<?> type = planId == null ? null : planTypes.get(planId);
+		if (type == null && serviceDefinitionId != null) {
+			type = serviceTypes.get(serviceDefinitionId);
+		}
+		return type;
+	}
+
+	/**
+	 * Determine whether the type for a request can be resolved from the IDs read so far, or whether the request
+	 * could still select a type by a plan ID that has not been read.
+	 */
+	boolean isResolvable(String serviceDefinitionId, String planId) {
+		return planId != null || planTypes.isEmpty() && serviceDefinitionId != null;
+	}
+
+	boolean isEmpty() {
+		return serviceTypes.isEmpty() && planTypes.isEmpty();
+	}
+
+	public static ParameterTypesBuilder builder() {
+		return new ParameterTypesBuilder();
+	}
+
+	public static class ParameterTypesBuilder {
+		private final Map<String, Class<?>> serviceTypes = new HashMap<>();
+		private final Map<String, Class<?>> planTypes = new HashMap<>();
+
+		ParameterTypesBuilder() {
+		}
+
+		public ParameterTypesBuilder service(String serviceDefinitionId, Class<?> type) {
+			this.serviceTypes.put(serviceDefinitionId, type);
+			return this;
+		}
+
+		public ParameterTypesBuilder plan(String planId, Class<?> type) {
+			this.planTypes.put(planId, type);
+			return this;
+		}
+
+		public ParameterTypes build() {
+			return new ParameterTypes(new HashMap<>(serviceTypes), new HashMap<>(planTypes));
+		}
+	}
+}
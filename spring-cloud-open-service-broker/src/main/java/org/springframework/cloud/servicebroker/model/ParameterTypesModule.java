@@ -0,0 +1,228 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.model;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.PropertyName;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerBase;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerBuilder;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerModifier;
+import com.fasterxml.jackson.databind.deser.SettableBeanProperty;
+import com.fasterxml.jackson.databind.deser.std.DelegatingDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+/**
+ * Jackson module that deserializes the {@literal parameters} of {@link CreateServiceInstanceRequest},
+ * {@link UpdateServiceInstanceRequest} and {@link CreateServiceInstanceBindingRequest} directly into the type
+ * registered in {@link ParameterTypes} for the requested service or plan. The parameters are then available from
+ * {@code getParameters(Class)} without an intermediate {@link java.util.Map}, and {@code getParameters()} returns
+ * {@literal null}.
+ * <p>
+ * When the {@literal parameters} field precedes the IDs needed to select its type in the request body, its
+ * tokens are buffered and deserialized when the rest of the request has been read.
+ */
+public class ParameterTypesModule extends SimpleModule {
+
+	private static final long serialVersionUID = -6931802445931950274L;
+
+	private static final String PARAMETERS_PROPERTY = "parameters";
+
+	private static final String BUFFERED_PARAMETERS_ATTRIBUTE = ParameterTypesModule.class.getName() + ".buffer";
+
+	public ParameterTypesModule(ParameterTypes parameterTypes) {
+		super(ParameterTypesModule.class.getSimpleName());
+		setDeserializerModifier(new ParametersDeserializerModifier(parameterTypes));
+	}
+
+	private static boolean isParameterizedRequest(Class<?> type) {
+		return AsyncParameterizedServiceInstanceRequest.class.isAssignableFrom(type) ||
+				CreateServiceInstanceBindingRequest.class.isAssignableFrom(type);
+	}
+
+	private static String getServiceDefinitionId(Object request) {
+		if (request instanceof CreateServiceInstanceRequest) {
+			return ((CreateServiceInstanceRequest) request).getServiceDefinitionId();
+		} else if (request instanceof UpdateServiceInstanceRequest) {
+			return ((UpdateServiceInstanceRequest) request).getServiceDefinitionId();
+		} else if (request instanceof CreateServiceInstanceBindingRequest) {
+			return ((CreateServiceInstanceBindingRequest) request).getServiceDefinitionId();
+		}
+		return null;
+	}
+
+	private static String getPlanId(Object request) {
+		if (request instanceof CreateServiceInstanceRequest) {
+			return ((CreateServiceInstanceRequest) request).getPlanId();
+		} else if (request instanceof UpdateServiceInstanceRequest) {
+			return ((UpdateServiceInstanceRequest) request).getPlanId();
+		} else if (request instanceof CreateServiceInstanceBindingRequest) {
+			return ((CreateServiceInstanceBindingRequest) request).getPlanId();
+		}
+		return null;
+	}
+
+	private static void setTypedParameters(Object request, Object parameters) {
+		if (request instanceof AsyncParameterizedServiceInstanceRequest) {
+			((AsyncParameterizedServiceInstanceRequest) request).setTypedParameters(parameters);
+		} else if (request instanceof CreateServiceInstanceBindingRequest) {
+			((CreateServiceInstanceBindingRequest) request).setTypedParameters(parameters);
+		}
+	}
+
+	private static class ParametersDeserializerModifier extends BeanDeserializerModifier {
+
+		private final ParameterTypes parameterTypes;
+
+		private ParametersDeserializerModifier(ParameterTypes parameterTypes) {
+			this.parameterTypes = parameterTypes;
+		}
+
+		@Override
+		public BeanDeserializerBuilder updateBuilder(DeserializationConfig config, BeanDescription beanDesc,
+													 BeanDeserializerBuilder builder) {
+			if (isParameterizedRequest(beanDesc.getBeanClass())) {
+				SettableBeanProperty property = builder.findProperty(PropertyName.construct(PARAMETERS_PROPERTY));
+				if (property != null) {
+					builder.addOrReplaceProperty(new TypedParametersProperty(property, parameterTypes), true);
+				}
+			}
+			return builder;
+		}
+
+		@Override
+		public JsonDeserializer<?> modifyDeserializer(DeserializationConfig config, BeanDescription beanDesc,
+													  JsonDeserializer<?> deserializer) {
+			if (isParameterizedRequest(beanDesc.getBeanClass())) {
+				return new BufferedParametersDeserializer(deserializer, parameterTypes);
+			}
+			return deserializer;
+		}
+	}
+
+	/**
+	 * Reads the {@literal parameters} of a request into the registered type when the IDs that select the type
+	 * have already been read, and buffers them otherwise.
+	 */
+	private static class TypedParametersProperty extends SettableBeanProperty.Delegating {
+
+		private static final long serialVersionUID = 3106585306475526153L;
+
+		private final ParameterTypes parameterTypes;
+
+		private TypedParametersProperty(SettableBeanProperty delegate, ParameterTypes parameterTypes) {
+			super(delegate);
+			this.parameterTypes = parameterTypes;
+		}
+
+		@Override
+		protected SettableBeanProperty withDelegate(SettableBeanProperty delegate) {
+			return new TypedParametersProperty(delegate, parameterTypes);
+		}
+
+		@Override
+		public void deserializeAndSet(JsonParser p, DeserializationContext ctxt, Object instance) throws IOException {
+			if (p.getCurrentToken() == JsonToken.VALUE_NULL || parameterTypes.isEmpty()) {
+				delegate.deserializeAndSet(p, ctxt, instance);
+				return;
+			}
+
+			String serviceDefinitionId = getServiceDefinitionId(instance);
+			String planId = getPlanId(instance);
+			if (parameterTypes.isResolvable(serviceDefinitionId, planId)) {
+				deserialize(p, ctxt, instance, parameterTypes.resolve(serviceDefinitionId, planId));
+			} else {
+				TokenBuffer buffer = new TokenBuffer(p, ctxt);
+				buffer.copyCurrentStructure(p);
+				ctxt.setAttribute(BUFFERED_PARAMETERS_ATTRIBUTE, buffer);
+			}
+		}
+
+		@Override
+		public Object deserializeSetAndReturn(JsonParser p, DeserializationContext ctxt, Object instance)
+				throws IOException {
+			deserializeAndSet(p, ctxt, instance);
+			return instance;
+		}
+
+		private void deserialize(JsonParser p, DeserializationContext ctxt, Object instance, Class<?> type)
+				throws IOException {
+			if (type == null) {
+				delegate.deserializeAndSet(p, ctxt, instance);
+			} else {
+				setTypedParameters(instance, ctxt.readValue(p, type));
+			}
+		}
+	}
+
+	/**
+	 * Deserializes the {@literal parameters} buffered by {@link TypedParametersProperty} once the request has been
+	 * read.
+	 */
+	private static class BufferedParametersDeserializer extends DelegatingDeserializer {
+
+		private static final long serialVersionUID = -2301318367620546711L;
+
+		private final ParameterTypes parameterTypes;
+
+		private BufferedParametersDeserializer(JsonDeserializer<?> delegatee, ParameterTypes parameterTypes) {
+			super(delegatee);
+			this.parameterTypes = parameterTypes;
+		}
+
+		@Override
+		protected JsonDeserializer<?> newDelegatingInstance(JsonDeserializer<?> newDelegatee) {
+			return new BufferedParametersDeserializer(newDelegatee, parameterTypes);
+		}
+
+		@Override
+		public Object deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+			Object request = super.deserialize(p, ctxt);
+
+			TokenBuffer buffer = (TokenBuffer) ctxt.getAttribute(BUFFERED_PARAMETERS_ATTRIBUTE);
+			if (buffer != null) {
+				ctxt.setAttribute(BUFFERED_PARAMETERS_ATTRIBUTE, null);
+				SettableBeanProperty property = findParametersProperty();
+				try (JsonParser bufferParser = buffer.asParser(p.getCodec())) {
+					bufferParser.nextToken();
+					((TypedParametersProperty) property).deserialize(bufferParser, ctxt, request,
+							parameterTypes.resolve(getServiceDefinitionId(request), getPlanId(request)));
+				}
+			}
+			return request;
+		}
+
+		/**
+		 * Find the {@literal parameters} property of the bean deserializer, which other modules may have wrapped
+		 * in delegating deserializers of their own.
+		 */
+		private SettableBeanProperty findParametersProperty() {
+			JsonDeserializer<?> deserializer = _delegatee;
+			while (deserializer.getDelegatee() != null) {
+				deserializer = deserializer.getDelegatee();
+			}
+			return ((BeanDeserializerBase) deserializer).findProperty(PARAMETERS_PROPERTY);
+		}
+	}
+}
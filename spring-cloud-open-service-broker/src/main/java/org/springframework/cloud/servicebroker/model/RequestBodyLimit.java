@@ -0,0 +1,141 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.model;
+
+/**
+ * Limits on the size and shape of the JSON body of a service broker request, enforced by
+ * {@link RequestBodyLimitsModule} while the body is parsed. Limits that are not set are not enforced.
+ *
+ * @see RequestBodyLimits
+ */
+public final class RequestBodyLimit {
+
+	/**
+	 * A limit that enforces nothing.
+	 */
+	public static final RequestBodyLimit UNLIMITED = builder().build();
+
+	private final long maxBytes;
+
+	private final int maxDepth;
+
+	private final int maxKeysPerObject;
+
+	private final int maxStringLength;
+
+	private RequestBodyLimit(long maxBytes, int maxDepth, int maxKeysPerObject, int maxStringLength) {
+		this.maxBytes = maxBytes;
+		this.maxDepth = maxDepth;
+		this.maxKeysPerObject = maxKeysPerObject;
+		this.maxStringLength = maxStringLength;
+	}
+
+	/**
+	 * Get the maximum size of the body in bytes, or in characters if the body is not read from bytes.
+	 */
+	public long getMaxBytes() {
+		return this.maxBytes;
+	}
+
+	/**
+	 * Get the maximum nesting depth of objects and arrays, counting the body itself as one.
+	 */
+	public int getMaxDepth() {
+		return this.maxDepth;
+	}
+
+	/**
+	 * Get the maximum number of fields in any object.
+	 */
+	public int getMaxKeysPerObject() {
+		return this.maxKeysPerObject;
+	}
+
+	/**
+	 * Get the maximum length of any string value or field name.
+	 */
+	public int getMaxStringLength() {
+		return this.maxStringLength;
+	}
+
+	/**
+	 * Get a limit that allows everything either of two limits allows.
+	 */
+	static RequestBodyLimit loosest(RequestBodyLimit first, RequestBodyLimit second) {
+		return new RequestBodyLimit(
+				Math.max(first.maxBytes, second.maxBytes),
+				Math.max(first.maxDepth, second.maxDepth),
+				Math.max(first.maxKeysPerObject, second.maxKeysPerObject),
+				Math.max(first.maxStringLength, second.maxStringLength));
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "{" +
+				"maxBytes=" + maxBytes +
+				", maxDepth=" + maxDepth +
+				", maxKeysPerObject=" + maxKeysPerObject +
+				", maxStringLength=" + maxStringLength +
+				"}";
+	}
+
+	public static RequestBodyLimitBuilder builder() {
+		return new RequestBodyLimitBuilder();
+	}
+
+	public static class RequestBodyLimitBuilder {
+		private long maxBytes = Long.MAX_VALUE;
+		private int maxDepth = Integer.MAX_VALUE;
+		private int maxKeysPerObject = Integer.MAX_VALUE;
+		private int maxStringLength = Integer.MAX_VALUE;
+
+		RequestBodyLimitBuilder() {
+		}
+
+		public RequestBodyLimitBuilder maxBytes(long maxBytes) {
+			this.maxBytes = positive(maxBytes, "maxBytes");
+			return this;
+		}
+
+		public RequestBodyLimitBuilder maxDepth(int maxDepth) {
+			this.maxDepth = (int) positive(maxDepth, "maxDepth");
+			return this;
+		}
+
+		public RequestBodyLimitBuilder maxKeysPerObject(int maxKeysPerObject) {
+			this.maxKeysPerObject = (int) positive(maxKeysPerObject, "maxKeysPerObject");
+			return this;
+		}
+
+		public RequestBodyLimitBuilder maxStringLength(int maxStringLength) {
+			this.maxStringLength = (int) positive(maxStringLength, "maxStringLength");
+			return this;
+		}
+
+		public RequestBodyLimit build() {
+			return new RequestBodyLimit(maxBytes, maxDepth, maxKeysPerObject, maxStringLength);
+		}
+
+		private static long positive(long value, String name) {
+			if (value <= 0) {
+				throw new IllegalArgumentException(name + " must be positive");
+			}
+			return value;
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The {@link RequestBodyLimit limits} on the bodies of service instance provision, update and bind requests,
+ * registered for each of these endpoints and by plan ID. A limit registered for a plan is used in place of the
+ * limit of the endpoint, and the limit of an endpoint in place of the default limit.
+ * <p>
+ * Until the {@literal plan_id} of a request has been read, the body is held to the loosest of the limits it could
+ * select, and to the selected limit from then on.
+ *
+ * @see RequestBodyLimitsModule
+ */
+public class RequestBodyLimits {
+
+	private final RequestBodyLimit defaultLimit;
+
+	private final Map<Class<?>, RequestBodyLimit> endpointLimits;
+
+	private final Map<String, RequestBodyLimit> planLimits;
+
+	private final Map<Class<?>, RequestBodyLimit> loosestLimits = new HashMap<>();
+
+	private RequestBodyLimits(RequestBodyLimit defaultLimit, Map<Class<?>, RequestBodyLimit> endpointLimits,
+							  Map<String, RequestBodyLimit> planLimits) {
+		this.defaultLimit = defaultLimit;
+		this.endpointLimits = endpointLimits;
+		this.planLimits = planLimits;
+
+		for (Class<?> requestType : RequestBodyLimitsModule.REQUEST_TYPES) {
+			RequestBodyLimit loosest = resolve(requestType, null);
+			for (RequestBodyLimit planLimit : planLimits.values()) {
+				loosest = RequestBodyLimit.loosest(loosest, planLimit);
+			}
+			loosestLimits.put(requestType, loosest);
+		}
+	}
+
+	/**
+	 * Get the limit registered for a plan, or for the endpoint that accepts the request type if no limit is
+	 * registered for the plan.
+	 *
+	 * @param requestType the type of the request
+	 * @param planId the ID of the plan, or {@literal null}
+	 * @return the limit
+	 */
+	public RequestBodyLimit resolve(Class<?> requestType, String planId) {
+		RequestBodyLimit limit = planId == null ? null : planLimits.get(planId);
+		if (limit == null) {
+			limit = endpointLimits.getOrDefault(requestType, defaultLimit);
+		}
+		return limit;
+	}
+
+	/**
+	 * Get the loosest limit that a request of the type could select with its plan ID.
+	 *
+	 * @param requestType the type of the request
+	 * @return the limit
+	 */
+	public RequestBodyLimit resolveLoosest(Class<?> requestType) {
+		return loosestLimits.getOrDefault(requestType, defaultLimit);
+	}
+
+	public static RequestBodyLimitsBuilder builder() {
+		return new RequestBodyLimitsBuilder();
+	}
+
+	public static class RequestBodyLimitsBuilder {
+		private RequestBodyLimit defaultLimit = RequestBodyLimit.UNLIMITED;
+		private final Map<Class<?>, RequestBodyLimit> endpointLimits = new HashMap<>();
+		private final Map<String, RequestBodyLimit> planLimits = new HashMap<>();
+
+		RequestBodyLimitsBuilder() {
+		}
+
+		public RequestBodyLimitsBuilder defaults(RequestBodyLimit limit) {
+			this.defaultLimit = limit;
+			return this;
+		}
+
+		public RequestBodyLimitsBuilder provision(RequestBodyLimit limit) {
+			this.endpointLimits.put(CreateServiceInstanceRequest.class, limit);
+			return this;
+		}
+
+		public RequestBodyLimitsBuilder update(RequestBodyLimit limit) {
+			this.endpointLimits.put(UpdateServiceInstanceRequest.class, limit);
+			return this;
+		}
+
+		public RequestBodyLimitsBuilder bind(RequestBodyLimit limit) {
+			this.endpointLimits.put(CreateServiceInstanceBindingRequest.class, limit);
+			return this;
+		}
+
+		public RequestBodyLimitsBuilder plan(String planId, RequestBodyLimit limit) {
+			this.planLimits.put(planId, limit);
+			return this;
+		}
+
+		public RequestBodyLimits build() {
+			return new RequestBodyLimits(defaultLimit, new HashMap<>(endpointLimits), new HashMap<>(planLimits));
+		}
+	}
+}
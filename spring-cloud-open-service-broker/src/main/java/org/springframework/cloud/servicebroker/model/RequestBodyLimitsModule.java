@@ -0,0 +1,319 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.model;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.util.JsonParserDelegate;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerModifier;
+import com.fasterxml.jackson.databind.deser.std.DelegatingDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+/**
+ * Jackson module that enforces {@link RequestBodyLimits} on the bodies of {@link CreateServiceInstanceRequest},
+ * {@link UpdateServiceInstanceRequest} and {@link CreateServiceInstanceBindingRequest} as they are parsed.
+ * <p>
+ * Each token is checked as it is read, so a body that exceeds a limit is rejected with a
+ * {@link JsonParseException} before the rest of it is read or deserialized, and the memory a request can take is
+ * bounded by its limit. The exception is reported to the platform as a {@literal 422 Unprocessable Entity}
+ * response like other unreadable bodies.
+ */
+public class RequestBodyLimitsModule extends SimpleModule {
+
+	private static final long serialVersionUID = 2386015961478340371L;
+
+	static final List<Class<?>> REQUEST_TYPES = Arrays.asList(
+			CreateServiceInstanceRequest.class,
+			UpdateServiceInstanceRequest.class,
+			CreateServiceInstanceBindingRequest.class);
+
+	private static final String PLAN_ID_PROPERTY = "plan_id";
+
+	public RequestBodyLimitsModule(RequestBodyLimits limits) {
+		super(RequestBodyLimitsModule.class.getSimpleName());
+		setDeserializerModifier(new LimitsDeserializerModifier(limits));
+	}
+
+	private static class LimitsDeserializerModifier extends BeanDeserializerModifier {
+
+		private final RequestBodyLimits limits;
+
+		private LimitsDeserializerModifier(RequestBodyLimits limits) {
+			this.limits = limits;
+		}
+
+		@Override
+		public JsonDeserializer<?> modifyDeserializer(DeserializationConfig config, BeanDescription beanDesc,
+													  JsonDeserializer<?> deserializer) {
+			if (REQUEST_TYPES.contains(beanDesc.getBeanClass())) {
+				return new LimitedDeserializer(deserializer, limits, beanDesc.getBeanClass());
+			}
+			return deserializer;
+		}
+	}
+
+	/**
+	 * Deserializes a request from a {@link LimitedJsonParser} over the parser it is given.
+	 */
+	private static class LimitedDeserializer extends DelegatingDeserializer {
+
+		private static final long serialVersionUID = -4459826215327046718L;
+
+		private final RequestBodyLimits limits;
+
+		private final Class<?> requestType;
+
+		private LimitedDeserializer(JsonDeserializer<?> delegatee, RequestBodyLimits limits, Class<?> requestType) {
+			super(delegatee);
+			this.limits = limits;
+			this.requestType = requestType;
+		}
+
+		@Override
+		protected JsonDeserializer<?> newDelegatingInstance(JsonDeserializer<?> newDelegatee) {
+			return new LimitedDeserializer(newDelegatee, limits, requestType);
+		}
+
+		@Override
+		public Object deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+			return _delegatee.deserialize(limit(p), ctxt);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public Object deserialize(JsonParser p, DeserializationContext ctxt, Object intoValue) throws IOException {
+			return ((JsonDeserializer<Object>) _delegatee).deserialize(limit(p), ctxt, intoValue);
+		}
+
+		private JsonParser limit(JsonParser p) throws IOException {
+			return p instanceof LimitedJsonParser ? p : new LimitedJsonParser(p, limits, requestType);
+		}
+	}
+
+	/**
+	 * Checks each token read from another parser against the limit for the request. All methods that advance the
+	 * parser do so through {@link #nextToken()}, so that no token escapes the checks.
+	 */
+	private static final class LimitedJsonParser extends JsonParserDelegate {
+
+		private final RequestBodyLimits limits;
+
+		private final Class<?> requestType;
+
+		private RequestBodyLimit limit;
+
+		private boolean planResolved;
+
+		private int[] keys = new int[8];
+
+		private int depth;
+
+		private boolean planIdField;
+
+		private int deepest;
+
+		private int mostKeys;
+
+		private int longestString;
+
+		private LimitedJsonParser(JsonParser parser, RequestBodyLimits limits, Class<?> requestType)
+				throws IOException {
+			super(parser);
+			this.limits = limits;
+			this.requestType = requestType;
+			this.limit = limits.resolveLoosest(requestType);
+
+			JsonToken token = parser.getCurrentToken();
+			if (token == JsonToken.FIELD_NAME) {
+				enter();
+				check(token);
+			} else if (token != null) {
+				check(token);
+			}
+		}
+
+		@Override
+		public JsonToken nextToken() throws IOException {
+			JsonToken token = delegate.nextToken();
+			if (token != null) {
+				check(token);
+			}
+			return token;
+		}
+
+		@Override
+		public JsonToken nextValue() throws IOException {
+			JsonToken token = nextToken();
+			return token == JsonToken.FIELD_NAME ? nextToken() : token;
+		}
+
+		@Override
+		public String nextFieldName() throws IOException {
+			return nextToken() == JsonToken.FIELD_NAME ? getCurrentName() : null;
+		}
+
+		@Override
+		public boolean nextFieldName(SerializableString str) throws IOException {
+			return nextToken() == JsonToken.FIELD_NAME && str.getValue().equals(getCurrentName());
+		}
+
+		@Override
+		public String nextTextValue() throws IOException {
+			return nextToken() == JsonToken.VALUE_STRING ? getText() : null;
+		}
+
+		@Override
+		public int nextIntValue(int defaultValue) throws IOException {
+			return nextToken() == JsonToken.VALUE_NUMBER_INT ? getIntValue() : defaultValue;
+		}
+
+		@Override
+		public long nextLongValue(long defaultValue) throws IOException {
+			return nextToken() == JsonToken.VALUE_NUMBER_INT ? getLongValue() : defaultValue;
+		}
+
+		@Override
+		public Boolean nextBooleanValue() throws IOException {
+			JsonToken token = nextToken();
+			if (token == JsonToken.VALUE_TRUE) {
+				return Boolean.TRUE;
+			} else if (token == JsonToken.VALUE_FALSE) {
+				return Boolean.FALSE;
+			}
+			return null;
+		}
+
+		@Override
+		public JsonParser skipChildren() throws IOException {
+			JsonToken token = getCurrentToken();
+			if (token != JsonToken.START_OBJECT && token != JsonToken.START_ARRAY) {
+				return this;
+			}
+			int open = 1;
+			while (open > 0) {
+				token = nextToken();
+				if (token == null) {
+					return this;
+				} else if (token.isStructStart()) {
+					open++;
+				} else if (token.isStructEnd()) {
+					open--;
+				}
+			}
+			return this;
+		}
+
+		private void check(JsonToken token) throws IOException {
+			checkBytes();
+			switch (token) {
+				case START_OBJECT:
+				case START_ARRAY:
+					enter();
+					break;
+				case END_OBJECT:
+				case END_ARRAY:
+					depth--;
+					if (depth == 0 && !planResolved) {
+						resolve(null);
+					}
+					break;
+				case FIELD_NAME:
+					countKey();
+					String name = getCurrentName();
+					checkString(name.length());
+					planIdField = depth == 1 && PLAN_ID_PROPERTY.equals(name);
+					break;
+				case VALUE_STRING:
+					checkString(getTextLength());
+					if (planIdField && depth == 1 && !planResolved) {
+						resolve(getText());
+					}
+					break;
+				default:
+					break;
+			}
+		}
+
+		private void enter() throws IOException {
+			if (depth >= limit.getMaxDepth()) {
+				throw exceeded("the maximum nesting depth of " + limit.getMaxDepth());
+			}
+			if (depth == keys.length) {
+				keys = Arrays.copyOf(keys, depth * 2);
+			}
+			keys[depth++] = 0;
+			deepest = Math.max(deepest, depth);
+		}
+
+		private void countKey() throws IOException {
+			int count = ++keys[depth - 1];
+			if (count > limit.getMaxKeysPerObject()) {
+				throw exceeded("the maximum of " + limit.getMaxKeysPerObject() + " keys per object");
+			}
+			mostKeys = Math.max(mostKeys, count);
+		}
+
+		private void checkString(int length) throws IOException {
+			if (length > limit.getMaxStringLength()) {
+				throw exceeded("the maximum string length of " + limit.getMaxStringLength());
+			}
+			longestString = Math.max(longestString, length);
+		}
+
+		private void checkBytes() throws IOException {
+			JsonLocation location = delegate.getCurrentLocation();
+			long offset = location.getByteOffset() < 0 ? location.getCharOffset() : location.getByteOffset();
+			if (offset > limit.getMaxBytes()) {
+				throw exceeded("the maximum size of " + limit.getMaxBytes() + " bytes");
+			}
+		}
+
+		/**
+		 * Select the limit for the plan of the request, and check what has been read against it.
+		 */
+		private void resolve(String planId) throws IOException {
+			planResolved = true;
+			limit = limits.resolve(requestType, planId);
+			if (deepest > limit.getMaxDepth()) {
+				throw exceeded("the maximum nesting depth of " + limit.getMaxDepth());
+			}
+			if (mostKeys > limit.getMaxKeysPerObject()) {
+				throw exceeded("the maximum of " + limit.getMaxKeysPerObject() + " keys per object");
+			}
+			if (longestString > limit.getMaxStringLength()) {
+				throw exceeded("the maximum string length of " + limit.getMaxStringLength());
+			}
+			checkBytes();
+		}
+
+		private JsonParseException exceeded(String description) {
+			return new JsonParseException(delegate, "Request body exceeds " + description);
+		}
+	}
+}
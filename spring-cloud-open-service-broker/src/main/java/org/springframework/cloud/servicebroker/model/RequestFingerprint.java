@@ -0,0 +1,88 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.model;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Computes fingerprints of the bodies of service instance provision and bind requests, so that a request repeated
+ * with an identical body can be recognized without keeping the body.
+ * <p>
+ * A fingerprint is a SHA-256 digest of the fields of the body, serialized to JSON with the keys of maps and the
+ * properties of objects in a fixed order. Parameters read into a type registered in {@link ParameterTypes} are
+ * serialized from that type.
+ */
+public final class RequestFingerprint {
+
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+			.configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true)
+			.configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+			.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+
+	private RequestFingerprint() {
+	}
+
+	/**
+	 * Compute the fingerprint of the body of a provision request.
+	 *
+	 * @param request the request
+	 * @return the fingerprint, or {@literal null} if the body can not be serialized
+	 */
+	public static String of(CreateServiceInstanceRequest request) {
+		return digest(request.getServiceDefinitionId(), request.getPlanId(), request.getOrganizationGuid(),
+				request.getSpaceGuid(), parameters(request.getParameters(), request.getTypedParameters()),
+				request.getContext());
+	}
+
+	/**
+	 * Compute the fingerprint of the body of a bind request.
+	 *
+	 * @param request the request
+	 * @return the fingerprint, or {@literal null} if the body can not be serialized
+	 */
+	@SuppressWarnings("deprecation")
+	public static String of(CreateServiceInstanceBindingRequest request) {
+		return digest(request.getServiceDefinitionId(), request.getPlanId(), request.getAppGuid(),
+				request.getBindResource(), parameters(request.getParameters(), request.getTypedParameters()),
+				request.getContext());
+	}
+
+	private static Object parameters(Object parameters, Object typedParameters) {
+		return typedParameters == null ? parameters : typedParameters;
+	}
+
+	private static String digest(Object... fields) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return Base64.getEncoder().encodeToString(
+					digest.digest(OBJECT_MAPPER.writeValueAsBytes(Arrays.asList(fields))));
+		} catch (JsonProcessingException e) {
+			return null;
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.model;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Checks the required fields of service broker request bodies with plain getter calls instead of Bean Validation.
+ * <p>
+ * The checks are the same as the {@code @NotEmpty} constraints declared on {@link CreateServiceInstanceRequest},
+ * {@link UpdateServiceInstanceRequest} and {@link CreateServiceInstanceBindingRequest}, which remain in place for
+ * request handlers that use Bean Validation. Missing fields are reported with the same names as Bean Validation
+ * property paths.
+ */
+public final class RequestValidation {
+
+	private static final String SERVICE_DEFINITION_ID = "serviceDefinitionId";
+
+	private static final String PLAN_ID = "planId";
+
+	private RequestValidation() {
+	}
+
+	/**
+	 * Determine whether this class can check the required fields of a request type.
+	 *
+	 * @param type the request type
+	 * @return {@literal true} if the type is supported
+	 */
+	public static boolean supports(Class<?> type) {
+		return type == CreateServiceInstanceRequest.class ||
+				type == UpdateServiceInstanceRequest.class ||
+				type == CreateServiceInstanceBindingRequest.class;
+	}
+
+	/**
+	 * Get the required fields of a request that are missing or empty.
+	 *
+	 * @param request the request body
+	 * @return the names of the missing fields in alphabetical order, or an empty set if no field is missing
+	 * @throws IllegalArgumentException if the type of the request is not {@link #supports(Class) supported}
+	 */
+	public static Set<String> getMissingFields(Object request) {
+		if (request instanceof CreateServiceInstanceRequest) {
+			CreateServiceInstanceRequest createRequest = (CreateServiceInstanceRequest) request;
+			return getMissingFields(createRequest.getServiceDefinitionId(), createRequest.getPlanId());
+		} else if (request instanceof UpdateServiceInstanceRequest) {
+			UpdateServiceInstanceRequest updateRequest = (UpdateServiceInstanceRequest) request;
+			return getMissingFields(updateRequest.getServiceDefinitionId(), updateRequest.getPlanId());
+		} else if (request instanceof CreateServiceInstanceBindingRequest) {
+			CreateServiceInstanceBindingRequest bindingRequest = (CreateServiceInstanceBindingRequest) request;
+			return getMissingFields(bindingRequest.getServiceDefinitionId(), bindingRequest.getPlanId());
+		}
+		throw new IllegalArgumentException("Required fields of " +
+				(request == null ? null : request.getClass().getName()) + " cannot be checked");
+	}
+
+	private static Set<String> getMissingFields(String serviceDefinitionId, String planId) {
+		boolean serviceDefinitionIdMissing = isEmpty(serviceDefinitionId);
+		boolean planIdMissing = isEmpty(planId);
+		if (!serviceDefinitionIdMissing && !planIdMissing) {
+			return Collections.emptySet();
+		}
+
+		Set<String> fields = new TreeSet<>();
+		if (serviceDefinitionIdMissing) {
+			fields.add(SERVICE_DEFINITION_ID);
+		}
+		if (planIdMissing) {
+			fields.add(PLAN_ID);
+		}
+		return fields;
+	}
+
+	private static boolean isEmpty(String value) {
+		return value == null || value.isEmpty();
+	}
+}
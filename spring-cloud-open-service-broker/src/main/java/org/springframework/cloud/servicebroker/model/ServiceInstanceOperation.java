@@ -0,0 +1,237 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.model;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * The last known state of an asynchronous operation on a service instance, as recorded in an
+ * {@link org.springframework.cloud.servicebroker.service.OperationStore}.
+ */
+public class ServiceInstanceOperation {
+	/**
+	 * The Cloud Controller GUID of the service instance the operation applies to.
+	 */
+	private final String serviceInstanceId;
+
+	/**
+	 * The operation identifier returned to the platform in the asynchronous response. Can be <code>null</code>
+	 * if the broker did not return an operation identifier.
+	 */
+	private final String operation;
+
+	/**
+	 * The current state of the operation.
+	 */
+	private final OperationState state;
+
+	/**
+	 * A user-facing message describing the state of the operation. Can be <code>null</code>.
+	 */
+	private final String description;
+
+	/**
+	 * <code>true</code> if the operation deletes the service instance, <code>false</code> otherwise.
+	 */
+	private final boolean deleteOperation;
+
+	/**
+	 * The time at which the operation was started.
+	 */
+	private final Instant createdAt;
+
+	/**
+	 * The time at which the state of the operation was last changed.
+	 */
+	private final Instant updatedAt;
+
+	/**
+	 * The version of the stored record, used for optimistic concurrency control of state updates.
+	 */
+	private final long version;
+
+	private ServiceInstanceOperation(String serviceInstanceId, String operation, OperationState state,
+									 String description, boolean deleteOperation,
+									 Instant createdAt, Instant updatedAt, long version) {
+		this.serviceInstanceId = serviceInstanceId;
+		this.operation = operation;
+		this.state = state;
+		this.description = description;
+		this.deleteOperation = deleteOperation;
+		this.createdAt = createdAt;
+		this.updatedAt = updatedAt;
+		this.version = version;
+	}
+
+	public String getServiceInstanceId() {
+		return this.serviceInstanceId;
+	}
+
+	public String getOperation() {
+		return this.operation;
+	}
+
+	public OperationState getState() {
+		return this.state;
+	}
+
+	public String getDescription() {
+		return this.description;
+	}
+
+	public boolean isDeleteOperation() {
+		return this.deleteOperation;
+	}
+
+	public Instant getCreatedAt() {
+		return this.createdAt;
+	}
+
+	public Instant getUpdatedAt() {
+		return this.updatedAt;
+	}
+
+	public long getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * Create a copy of this operation with a new state and description. The version is retained so that
+	 * the copy can be used as an optimistic state update of the stored record.
+	 *
+	 * @param state the new state of the operation
+	 * @param description the new description of the operation
+	 * @return the updated operation
+	 */
+	public ServiceInstanceOperation withState(OperationState state, String description) {
+		return new ServiceInstanceOperation(serviceInstanceId, operation, state, description, deleteOperation,
+				createdAt, Instant.now(), version);
+	}
+
+	/**
+	 * Convert this operation to a response to a request for the state of the last operation.
+	 *
+	 * @return the response
+	 */
+	public GetLastServiceOperationResponse toResponse() {
+		return GetLastServiceOperationResponse.builder()
+				.operationState(state)
+				.description(description)
+				.deleteOperation(deleteOperation)
+				.build();
+	}
+
+	public static ServiceInstanceOperationBuilder builder() {
+		return new ServiceInstanceOperationBuilder();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof ServiceInstanceOperation)) return false;
+		ServiceInstanceOperation that = (ServiceInstanceOperation) o;
+		return deleteOperation == that.deleteOperation &&
+				version == that.version &&
+				Objects.equals(serviceInstanceId, that.serviceInstanceId) &&
+				Objects.equals(operation, that.operation) &&
+				state == that.state &&
+				Objects.equals(description, that.description) &&
+				Objects.equals(createdAt, that.createdAt) &&
+				Objects.equals(updatedAt, that.updatedAt);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(serviceInstanceId, operation, state, description, deleteOperation,
+				createdAt, updatedAt, version);
+	}
+
+	@Override
+	public String toString() {
+		return "ServiceInstanceOperation{" +
+				"serviceInstanceId='" + serviceInstanceId + '\'' +
+				", operation='" + operation + '\'' +
+				", state=" + state +
+				", description='" + description + '\'' +
+				", deleteOperation=" + deleteOperation +
+				", createdAt=" + createdAt +
+				", updatedAt=" + updatedAt +
+				", version=" + version +
+				'}';
+	}
+
+	public static class ServiceInstanceOperationBuilder {
+		private String serviceInstanceId;
+		private String operation;
+		private OperationState state = OperationState.IN_PROGRESS;
+		private String description;
+		private boolean deleteOperation;
+		private Instant createdAt;
+		private Instant updatedAt;
+		private long version;
+
+		ServiceInstanceOperationBuilder() {
+		}
+
+		public ServiceInstanceOperationBuilder serviceInstanceId(String serviceInstanceId) {
+			this.serviceInstanceId = serviceInstanceId;
+			return this;
+		}
+
+		public ServiceInstanceOperationBuilder operation(String operation) {
+			this.operation = operation;
+			return this;
+		}
+
+		public ServiceInstanceOperationBuilder state(OperationState state) {
+			this.state = state;
+			return this;
+		}
+
+		public ServiceInstanceOperationBuilder description(String description) {
+			this.description = description;
+			return this;
+		}
+
+		public ServiceInstanceOperationBuilder deleteOperation(boolean deleteOperation) {
+			this.deleteOperation = deleteOperation;
+			return this;
+		}
+
+		public ServiceInstanceOperationBuilder createdAt(Instant createdAt) {
+			this.createdAt = createdAt;
+			return this;
+		}
+
+		public ServiceInstanceOperationBuilder updatedAt(Instant updatedAt) {
+			this.updatedAt = updatedAt;
+			return this;
+		}
+
+		public ServiceInstanceOperationBuilder version(long version) {
+			this.version = version;
+			return this;
+		}
+
+		public ServiceInstanceOperation build() {
+			Instant now = Instant.now();
+			return new ServiceInstanceOperation(serviceInstanceId, operation, state, description, deleteOperation,
+					createdAt == null ? now : createdAt, updatedAt == null ? now : updatedAt, version);
+		}
+	}
+}
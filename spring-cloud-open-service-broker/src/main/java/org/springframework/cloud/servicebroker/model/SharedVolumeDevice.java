@@ -19,7 +19,6 @@ package org.springframework.cloud.servicebroker.model;
 import com.fasterxml.jackson.databind.PropertyNamingStrategy;
 import com.fasterxml.jackson.databind.annotation.JsonNaming;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 
@@ -70,7 +69,7 @@ public class SharedVolumeDevice extends VolumeDevice {
 
 	public static class SharedVolumeDeviceBuilder {
 		private String volumeId;
-		private Map<String, Object> mountConfig = new HashMap<>();
+		private final MapBuilder<String, Object> mountConfig = new MapBuilder<>();
 
 		SharedVolumeDeviceBuilder() {
 		}
@@ -91,7 +90,7 @@ public class SharedVolumeDevice extends VolumeDevice {
 		}
 
 		public SharedVolumeDevice build() {
-			return new SharedVolumeDevice(volumeId, mountConfig);
+			return new SharedVolumeDevice(volumeId, mountConfig.build());
 		}
 	}
 }
@@ -20,7 +20,6 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.hibernate.validator.constraints.NotEmpty;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 
@@ -62,6 +61,13 @@ public class UpdateServiceInstanceRequest extends AsyncParameterizedServiceInsta
 	@JsonIgnore
 	private transient ServiceDefinition serviceDefinition;
 
+	/**
+	 * The differences between this request and the plan and parameters the service instance had before, if they
+	 * are known to the broker.
+	 */
+	@JsonIgnore
+	private transient ParameterChanges parameterChanges;
+
 	private UpdateServiceInstanceRequest() {
 		super(null, null);
 		this.serviceDefinitionId = null;
@@ -106,6 +112,19 @@ public class UpdateServiceInstanceRequest extends AsyncParameterizedServiceInsta
 		this.serviceDefinition = serviceDefinition;
 	}
 
+	/**
+	 * Get the differences between this request and the plan and parameters the service instance had before.
+	 *
+	 * @return the changes, or {@literal null} if the previous parameters of the service instance are not known
+	 */
+	public ParameterChanges getParameterChanges() {
+		return this.parameterChanges;
+	}
+
+	public void setParameterChanges(ParameterChanges parameterChanges) {
+		this.parameterChanges = parameterChanges;
+	}
+
 	public static UpdateServiceInstanceRequestBuilder builder() {
 		return new UpdateServiceInstanceRequestBuilder();
 	}
@@ -185,7 +204,7 @@ public class UpdateServiceInstanceRequest extends AsyncParameterizedServiceInsta
 		private String serviceDefinitionId;
 		private String planId;
 		private PreviousValues previousValues;
-		private Map<String, Object> parameters = new HashMap<>();
+		private final MapBuilder<String, Object> parameters = new MapBuilder<>();
 		private Context context;
 
 		UpdateServiceInstanceRequestBuilder() {
@@ -222,7 +241,8 @@ public class UpdateServiceInstanceRequest extends AsyncParameterizedServiceInsta
 		}
 
 		public UpdateServiceInstanceRequest build() {
-			return new UpdateServiceInstanceRequest(serviceDefinitionId, planId, previousValues, parameters, context);
+			return new UpdateServiceInstanceRequest(serviceDefinitionId, planId, previousValues,
+					parameters.build(), context);
 		}
 	}
 }
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.router;
+
+import org.springframework.cloud.servicebroker.model.BrokerApiVersion;
+import org.springframework.cloud.servicebroker.service.CatalogService;
+import org.springframework.cloud.servicebroker.service.NonBindableServiceInstanceBindingService;
+import org.springframework.cloud.servicebroker.service.OperationStore;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceBindingService;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceService;
+import org.springframework.util.Assert;
+
+/**
+ * One of several service brokers served by a {@link MultiServiceBrokerRouterFunction}. Each broker has its own
+ * catalog, services, credentials and API version, and is mounted under a path prefix, a host name, or both.
+ */
+public final class HostedServiceBroker {
+
+	/**
+	 * The name of the broker, used in log messages and as the basic authentication realm.
+	 */
+	private final String name;
+
+	/**
+	 * The first path segment of requests to the broker, or <code>null</code> if the broker is selected by host.
+	 */
+	private final String path;
+
+	/**
+	 * The host name of requests to the broker, or <code>null</code> if the broker is selected by path.
+	 */
+	private final String host;
+
+	private final CatalogService catalogService;
+
+	private final ServiceInstanceService serviceInstanceService;
+
+	private final ServiceInstanceBindingService serviceInstanceBindingService;
+
+	private final OperationStore operationStore;
+
+	/**
+	 * The API version supported by the broker, or <code>null</code> to accept any version.
+	 */
+	private final BrokerApiVersion brokerApiVersion;
+
+	/**
+	 * The user name that the platform must provide with basic authentication, or <code>null</code> if requests
+	 * are not authenticated by the broker.
+	 */
+	private final String username;
+
+	private final String password;
+
+	private HostedServiceBroker(String name, String path, String host, CatalogService catalogService,
+								ServiceInstanceService serviceInstanceService,
+								ServiceInstanceBindingService serviceInstanceBindingService,
+								OperationStore operationStore, BrokerApiVersion brokerApiVersion,
+								String username, String password) {
+		this.name = name;
+		this.path = path;
+		this.host = host;
+		this.catalogService = catalogService;
+		this.serviceInstanceService = serviceInstanceService;
+		this.serviceInstanceBindingService = serviceInstanceBindingService;
+		this.operationStore = operationStore;
+		this.brokerApiVersion = brokerApiVersion;
+		this.username = username;
+		this.password = password;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public String getPath() {
+		return this.path;
+	}
+
+	public String getHost() {
+		return this.host;
+	}
+
+	public CatalogService getCatalogService() {
+		return this.catalogService;
+	}
+
+	public ServiceInstanceService getServiceInstanceService() {
+		return this.serviceInstanceService;
+	}
+
+	public ServiceInstanceBindingService getServiceInstanceBindingService() {
+		return this.serviceInstanceBindingService;
+	}
+
+	public OperationStore getOperationStore() {
+		return this.operationStore;
+	}
+
+	public BrokerApiVersion getBrokerApiVersion() {
+		return this.brokerApiVersion;
+	}
+
+	public String getUsername() {
+		return this.username;
+	}
+
+	public String getPassword() {
+		return this.password;
+	}
+
+	@Override
+	public String toString() {
+		return "HostedServiceBroker{" +
+				"name='" + name + '\'' +
+				", path='" + path + '\'' +
+				", host='" + host + '\'' +
+				'}';
+	}
+
+	public static HostedServiceBrokerBuilder builder() {
+		return new HostedServiceBrokerBuilder();
+	}
+
+	public static class HostedServiceBrokerBuilder {
+		private String name;
+		private String path;
+		private String host;
+		private CatalogService catalogService;
+		private ServiceInstanceService serviceInstanceService;
+		private ServiceInstanceBindingService serviceInstanceBindingService;
+		private OperationStore operationStore;
+		private BrokerApiVersion brokerApiVersion;
+		private String username;
+		private String password;
+
+		HostedServiceBrokerBuilder() {
+		}
+
+		public HostedServiceBrokerBuilder name(String name) {
+			this.name = name;
+			return this;
+		}
+
+		public HostedServiceBrokerBuilder path(String path) {
+			this.path = path;
+			return this;
+		}
+
+		public HostedServiceBrokerBuilder host(String host) {
+			this.host = host;
+			return this;
+		}
+
+		public HostedServiceBrokerBuilder catalogService(CatalogService catalogService) {
+			this.catalogService = catalogService;
+			return this;
+		}
+
+		public HostedServiceBrokerBuilder serviceInstanceService(ServiceInstanceService serviceInstanceService) {
+			this.serviceInstanceService = serviceInstanceService;
+			return this;
+		}
+
+		public HostedServiceBrokerBuilder serviceInstanceBindingService(
+				ServiceInstanceBindingService serviceInstanceBindingService) {
+			this.serviceInstanceBindingService = serviceInstanceBindingService;
+			return this;
+		}
+
+		public HostedServiceBrokerBuilder operationStore(OperationStore operationStore) {
+			this.operationStore = operationStore;
+			return this;
+		}
+
+		public HostedServiceBrokerBuilder brokerApiVersion(BrokerApiVersion brokerApiVersion) {
+			this.brokerApiVersion = brokerApiVersion;
+			return this;
+		}
+
+		public HostedServiceBrokerBuilder credentials(String username, String password) {
+			this.username = username;
+			this.password = password;
+			return this;
+		}
+
+		public HostedServiceBroker build() {
+			Assert.hasText(name, "A hosted service broker must have a name");
+			Assert.isTrue(path != null || host != null,
+					"Hosted service broker '" + name + "' must have a path or a host");
+			Assert.isTrue(path == null || (!path.isEmpty() && path.indexOf('/') < 0),
+					"The path of hosted service broker '" + name + "' must be a single path segment");
+			Assert.notNull(catalogService, "Hosted service broker '" + name + "' must have a CatalogService");
+			Assert.notNull(serviceInstanceService,
+					"Hosted service broker '" + name + "' must have a ServiceInstanceService");
+			Assert.isTrue(username == null || password != null,
+					"Hosted service broker '" + name + "' must have a password if it has a user name");
+			return new HostedServiceBroker(name, path, host, catalogService, serviceInstanceService,
+					serviceInstanceBindingService == null ?
+							new NonBindableServiceInstanceBindingService() : serviceInstanceBindingService,
+					operationStore, brokerApiVersion, username, password);
+		}
+	}
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.router;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.springframework.cloud.servicebroker.controller.CatalogController;
+import org.springframework.cloud.servicebroker.controller.ServiceInstanceBindingController;
+import org.springframework.cloud.servicebroker.controller.ServiceInstanceController;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerServices;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.Assert;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * {@link RouterFunction} that serves several independent service brokers in one application.
+ * <p>
+ * Each {@link HostedServiceBroker} is selected by the host name of the request or by the first segment of the
+ * request path, with a single map lookup per request. A broker selected by path sees the rest of the path, so a
+ * broker mounted at {@literal mysql} serves {@literal /mysql/v2/catalog} and
+ * {@literal /mysql/{cfInstanceId}/v2/catalog}. Requests that do not match a broker are left to other routes.
+ * <p>
+ * The services of each broker are decorated by the {@link ServiceBrokerServices} shared by the brokers, as they
+ * are for a single broker. Brokers that have credentials verify the basic authentication header of each request
+ * themselves, so application security should permit requests to the broker paths.
+ */
+public class MultiServiceBrokerRouterFunction implements RouterFunction<ServerResponse> {
+	private static final Logger log = getLogger(MultiServiceBrokerRouterFunction.class);
+
+	private static final String BASIC_PREFIX = "Basic ";
+
+	private final Map<String, Route> routesByHost = new HashMap<>();
+
+	private final Map<String, Route> routesByPath = new HashMap<>();
+
+	public MultiServiceBrokerRouterFunction(List<HostedServiceBroker> brokers) {
+		this(brokers, ServiceBrokerServices.builder().build());
+	}
+
+	/**
+	 * Construct a router function for the provided service brokers.
+	 *
+	 * @param brokers the service brokers to serve
+	 * @param services the collaborators shared by the brokers that decorate the services of each broker
+	 */
+	public MultiServiceBrokerRouterFunction(List<HostedServiceBroker> brokers, ServiceBrokerServices services) {
+		Assert.notEmpty(brokers, "At least one hosted service broker must be provided");
+		Assert.notNull(services, "The service broker services must be provided");
+
+		for (HostedServiceBroker broker : brokers) {
+			Route route = new Route(broker, createRouterFunction(broker, services));
+			if (broker.getHost() != null) {
+				register(routesByHost, broker.getHost().toLowerCase(Locale.ROOT), route, "host");
+			}
+			if (broker.getPath() != null) {
+				register(routesByPath, broker.getPath(), route, "path");
+			}
+		}
+	}
+
+	private static void register(Map<String, Route> routes, String key, Route route, String description) {
+		Route existing = routes.putIfAbsent(key, route);
+		if (existing != null) {
+			throw new IllegalArgumentException("Hosted service brokers '" + existing.name + "' and '" +
+					route.name + "' have the same " + description + " '" + key + "'");
+		}
+		log.debug("Hosting service broker '" + route.name + "' at " + description + " '" + key + "'");
+	}
+
+	private static ServiceBrokerRouterFunction createRouterFunction(HostedServiceBroker broker,
+																	 ServiceBrokerServices services) {
+		return new ServiceBrokerRouterFunction(
+				new CatalogController(broker.getCatalogService()),
+				new ServiceInstanceController(broker.getCatalogService(),
+						services.decorate(broker.getServiceInstanceService(), broker.getOperationStore())),
+				new ServiceInstanceBindingController(broker.getCatalogService(),
+						services.decorate(broker.getServiceInstanceBindingService())),
+				null, broker.getBrokerApiVersion());
+	}
+
+	@Override
+	public Mono<HandlerFunction<ServerResponse>> route(ServerRequest request) {
+		String path = request.path();
+
+		if (!routesByHost.isEmpty()) {
+			InetSocketAddress host = request.headers().host();
+			Route route = host == null ? null : routesByHost.get(host.getHostString().toLowerCase(Locale.ROOT));
+			if (route != null) {
+				return route.route(request, path);
+			}
+		}
+
+		int start = path.startsWith("/") ? 1 : 0;
+		int end = path.indexOf('/', start);
+		if (end < 0) {
+			return Mono.empty();
+		}
+
+		Route route = routesByPath.get(path.substring(start, end));
+		return route == null ? Mono.empty() : route.route(request, path.substring(end));
+	}
+
+	private static final class Route {
+		private final String name;
+
+		private final ServiceBrokerRouterFunction routerFunction;
+
+		private final byte[] authorization;
+
+		private Route(HostedServiceBroker broker, ServiceBrokerRouterFunction routerFunction) {
+			this.name = broker.getName();
+			this.routerFunction = routerFunction;
+			this.authorization = broker.getUsername() == null ? null :
+					(BASIC_PREFIX + Base64.getEncoder().encodeToString((broker.getUsername() + ":" +
+							broker.getPassword()).getBytes(StandardCharsets.UTF_8))).getBytes(StandardCharsets.UTF_8);
+		}
+
+		private Mono<HandlerFunction<ServerResponse>> route(ServerRequest request, String path) {
+			return routerFunction.route(request, path)
+					.map(handler -> authorization == null ? handler : authenticate(handler));
+		}
+
+		private HandlerFunction<ServerResponse> authenticate(HandlerFunction<ServerResponse> handler) {
+			return request -> {
+				String header = request.headers().asHttpHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+				if (header == null ||
+						!MessageDigest.isEqual(authorization, header.getBytes(StandardCharsets.UTF_8))) {
+					return ServerResponse.status(HttpStatus.UNAUTHORIZED)
+							.header(HttpHeaders.WWW_AUTHENTICATE, "Basic realm=\"" + name + "\"")
+							.build();
+				}
+				return handler.handle(request);
+			};
+		}
+	}
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.router;
+
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * The service broker API endpoint and path variables parsed from a request path. Matches the same paths as the
+ * service broker controllers, with or without a leading platform instance ID segment.
+ */
+public final class ServiceBrokerRequestPath {
+
+	public enum Endpoint {
+		CATALOG,
+		SERVICE_INSTANCE,
+		LAST_OPERATION,
+		SERVICE_BINDING
+	}
+
+	private static final int MAX_SEGMENTS = 6;
+
+	private static final String V2 = "v2";
+
+	private static final String CATALOG = "catalog";
+
+	private static final String SERVICE_INSTANCES = "service_instances";
+
+	private static final String LAST_OPERATION = "last_operation";
+
+	private static final String SERVICE_BINDINGS = "service_bindings";
+
+	private final Endpoint endpoint;
+
+	private final String cfInstanceId;
+
+	private final String instanceId;
+
+	private final String bindingId;
+
+	private ServiceBrokerRequestPath(Endpoint endpoint, String cfInstanceId, String instanceId, String bindingId) {
+		this.endpoint = endpoint;
+		this.cfInstanceId = cfInstanceId;
+		this.instanceId = instanceId;
+		this.bindingId = bindingId;
+	}
+
+	public Endpoint getEndpoint() {
+		return this.endpoint;
+	}
+
+	public String getCfInstanceId() {
+		return this.cfInstanceId;
+	}
+
+	public String getInstanceId() {
+		return this.instanceId;
+	}
+
+	public String getBindingId() {
+		return this.bindingId;
+	}
+
+	/**
+	 * Parse a request path.
+	 *
+	 * @param path the request path, starting with {@literal /}
+	 * @return the parsed path, or {@literal null} if the path is not a valid service broker API path
+	 */
+	public static ServiceBrokerRequestPath parse(String path) {
+		String[] segments = new String[MAX_SEGMENTS];
+		int count = split(path, segments);
+		if (count < 0) {
+			return null;
+		}
+
+		try {
+			ServiceBrokerRequestPath parsed = match(segments, count, 0, null);
+			if (parsed == null && count > 1) {
+				parsed = match(segments, count, 1, decode(segments[0]));
+			}
+			return parsed;
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	private static ServiceBrokerRequestPath match(String[] segments, int count, int offset, String cfInstanceId) {
+		int length = count - offset;
+		if (length < 2 || !V2.equals(segments[offset])) {
+			return null;
+		}
+
+		String resource = segments[offset + 1];
+		if (length == 2) {
+			return CATALOG.equals(resource) ?
+					new ServiceBrokerRequestPath(Endpoint.CATALOG, cfInstanceId, null, null) : null;
+		}
+
+		if (!SERVICE_INSTANCES.equals(resource)) {
+			return null;
+		}
+
+		String instanceId = decode(segments[offset + 2]);
+		if (length == 3) {
+			return new ServiceBrokerRequestPath(Endpoint.SERVICE_INSTANCE, cfInstanceId, instanceId, null);
+		}
+		if (length == 4 && LAST_OPERATION.equals(segments[offset + 3])) {
+			return new ServiceBrokerRequestPath(Endpoint.LAST_OPERATION, cfInstanceId, instanceId, null);
+		}
+		if (length == 5 && SERVICE_BINDINGS.equals(segments[offset + 3])) {
+			return new ServiceBrokerRequestPath(Endpoint.SERVICE_BINDING, cfInstanceId, instanceId,
+					decode(segments[offset + 4]));
+		}
+		return null;
+	}
+
+	/**
+	 * Split a path into non-empty segments, ignoring a single trailing {@literal /}.
+	 *
+	 * @return the number of segments, or {@literal -1} if the path has empty or too many segments
+	 */
+	private static int split(String path, String[] segments) {
+		int length = path.length();
+		if (length > 1 && path.charAt(length - 1) == '/') {
+			length--;
+		}
+		if (length < 2 || path.charAt(0) != '/') {
+			return -1;
+		}
+
+		int count = 0;
+		int start = 1;
+		while (start <= length) {
+			int end = path.indexOf('/', start);
+			if (end < 0 || end > length) {
+				end = length;
+			}
+			if (end == start || count == segments.length) {
+				return -1;
+			}
+			segments[count++] = path.substring(start, end);
+			start = end + 1;
+		}
+		return count;
+	}
+
+	private static String decode(String segment) {
+		return segment.indexOf('%') < 0 ? segment : StringUtils.uriDecode(segment, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public String toString() {
+		return "ServiceBrokerRequestPath{" +
+				"endpoint=" + endpoint +
+				", cfInstanceId='" + cfInstanceId + '\'' +
+				", instanceId='" + instanceId + '\'' +
+				", bindingId='" + bindingId + '\'' +
+				'}';
+	}
+}
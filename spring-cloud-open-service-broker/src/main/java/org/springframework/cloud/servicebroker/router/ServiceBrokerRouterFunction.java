@@ -0,0 +1,399 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.router;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+
+import org.springframework.cloud.servicebroker.controller.BaseController;
+import org.springframework.cloud.servicebroker.controller.CatalogController;
+import org.springframework.cloud.servicebroker.controller.CatalogViewController;
+import org.springframework.cloud.servicebroker.controller.ServiceInstanceBindingController;
+import org.springframework.cloud.servicebroker.controller.ServiceInstanceController;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerApiVersionException;
+import org.springframework.cloud.servicebroker.model.BrokerApiVersion;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.RequestValidation;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.trace.MdcScope;
+import org.springframework.cloud.servicebroker.trace.TraceContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.method.annotation.ExceptionHandlerMethodResolver;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.cloud.servicebroker.model.AsyncServiceInstanceRequest.ASYNC_REQUEST_PARAMETER;
+import static org.springframework.cloud.servicebroker.model.ServiceBrokerRequest.API_INFO_LOCATION_HEADER;
+import static org.springframework.cloud.servicebroker.model.ServiceBrokerRequest.ORIGINATING_IDENTITY_HEADER;
+
+/**
+ * {@link RouterFunction} that serves the service broker API endpoints under WebFlux without request mapping
+ * introspection or argument resolution.
+ * <p>
+ * Request paths are parsed once per request by {@link ServiceBrokerRequestPath}, and requests are passed to the
+ * service broker controllers, which are used as plain objects rather than as request handlers. Unless a
+ * {@link Validator} is provided, the required fields of request bodies are checked by {@link RequestValidation}
+ * rather than by Bean Validation. Responses are written directly from the {@link ResponseEntity} returned by the
+ * controllers, and exceptions are mapped to responses by the controllers' exception handler methods.
+ * <p>
+ * If a {@link BrokerApiVersion} is provided, requests with a different API version header are rejected before
+ * they are passed to the controllers.
+ */
+public class ServiceBrokerRouterFunction implements RouterFunction<ServerResponse> {
+	private static final String CF_INSTANCE_ID_VARIABLE = "cfInstanceId";
+
+	private static final String SERVICE_ID_PARAMETER = "service_id";
+
+	private static final String PLAN_ID_PARAMETER = "plan_id";
+
+	private static final String OPERATION_PARAMETER = "operation";
+
+	private final CatalogController catalogController;
+
+	private final CatalogViewController catalogViewController;
+
+	private final ServiceInstanceController serviceInstanceController;
+
+	private final ServiceInstanceBindingController serviceInstanceBindingController;
+
+	private final ExceptionHandlerMethodResolver serviceInstanceExceptionHandlers;
+
+	private final ExceptionHandlerMethodResolver serviceInstanceBindingExceptionHandlers;
+
+	private final Validator validator;
+
+	private final BrokerApiVersion brokerApiVersion;
+
+	public ServiceBrokerRouterFunction(CatalogController catalogController,
+									   ServiceInstanceController serviceInstanceController,
+									   ServiceInstanceBindingController serviceInstanceBindingController) {
+		this(catalogController, serviceInstanceController, serviceInstanceBindingController, null, null);
+	}
+
+	public ServiceBrokerRouterFunction(CatalogController catalogController,
+									   ServiceInstanceController serviceInstanceController,
+									   ServiceInstanceBindingController serviceInstanceBindingController,
+									   Validator validator) {
+		this(catalogController, serviceInstanceController, serviceInstanceBindingController, validator, null);
+	}
+
+	/**
+	 * Construct a router function that verifies the service broker API version of each request.
+	 *
+	 * @param catalogController the controller for catalog requests
+	 * @param serviceInstanceController the controller for service instance requests
+	 * @param serviceInstanceBindingController the controller for service instance binding requests
+	 * @param validator the validator for request bodies, or {@literal null} to check the required fields of request
+	 * bodies with {@link RequestValidation}
+	 * @param brokerApiVersion the API version supported by the broker, or {@literal null} to accept any version
+	 */
+	public ServiceBrokerRouterFunction(CatalogController catalogController,
+									   ServiceInstanceController serviceInstanceController,
+									   ServiceInstanceBindingController serviceInstanceBindingController,
+									   Validator validator, BrokerApiVersion brokerApiVersion) {
+		this(catalogController, null, serviceInstanceController, serviceInstanceBindingController, validator,
+				brokerApiVersion);
+	}
+
+	/**
+	 * Construct a router function that serves catalog views rather than the catalog.
+	 *
+	 * @param catalogViewController the controller for catalog view requests
+	 * @param serviceInstanceController the controller for service instance requests
+	 * @param serviceInstanceBindingController the controller for service instance binding requests
+	 * @param validator the validator for request bodies, or {@literal null} to check the required fields of request
+	 * bodies with {@link RequestValidation}
+	 * @param brokerApiVersion the API version supported by the broker, or {@literal null} to accept any version
+	 */
+	public ServiceBrokerRouterFunction(CatalogViewController catalogViewController,
+									   ServiceInstanceController serviceInstanceController,
+									   ServiceInstanceBindingController serviceInstanceBindingController,
+									   Validator validator, BrokerApiVersion brokerApiVersion) {
+		this(null, catalogViewController, serviceInstanceController, serviceInstanceBindingController, validator,
+				brokerApiVersion);
+	}
+
+	private ServiceBrokerRouterFunction(CatalogController catalogController,
+										CatalogViewController catalogViewController,
+										ServiceInstanceController serviceInstanceController,
+										ServiceInstanceBindingController serviceInstanceBindingController,
+										Validator validator, BrokerApiVersion brokerApiVersion) {
+		this.catalogController = catalogController;
+		this.catalogViewController = catalogViewController;
+		this.serviceInstanceController = serviceInstanceController;
+		this.serviceInstanceBindingController = serviceInstanceBindingController;
+		this.serviceInstanceExceptionHandlers = new ExceptionHandlerMethodResolver(
+				ClassUtils.getUserClass(serviceInstanceController));
+		this.serviceInstanceBindingExceptionHandlers = new ExceptionHandlerMethodResolver(
+				ClassUtils.getUserClass(serviceInstanceBindingController));
+		this.validator = validator;
+		this.brokerApiVersion = brokerApiVersion == null ||
+				BrokerApiVersion.API_VERSION_ANY.equals(brokerApiVersion.getApiVersion()) ? null : brokerApiVersion;
+	}
+
+	@Override
+	public Mono<HandlerFunction<ServerResponse>> route(ServerRequest request) {
+		return route(request, request.path());
+	}
+
+	/**
+	 * Route a request as if it had a different path, such as the request path without the prefix under which
+	 * the service broker is mounted.
+	 */
+	Mono<HandlerFunction<ServerResponse>> route(ServerRequest request, String requestPath) {
+		ServiceBrokerRequestPath path = ServiceBrokerRequestPath.parse(requestPath);
+		if (path == null) {
+			return Mono.empty();
+		}
+
+		HandlerFunction<ServerResponse> handler = getHandler(path, request.method());
+		if (handler == null) {
+			return Mono.empty();
+		}
+		return Mono.just(brokerApiVersion == null ? handler : verifyApiVersion(handler));
+	}
+
+	private HandlerFunction<ServerResponse> verifyApiVersion(HandlerFunction<ServerResponse> handler) {
+		return request -> {
+			String apiVersion = header(request, brokerApiVersion.getBrokerApiVersionHeader());
+			if (!brokerApiVersion.getApiVersion().equals(apiVersion)) {
+				return toServerResponse(serviceInstanceController.handleException(
+						new ServiceBrokerApiVersionException(brokerApiVersion.getApiVersion(), apiVersion)));
+			}
+			return handler.handle(request);
+		};
+	}
+
+	private HandlerFunction<ServerResponse> getHandler(ServiceBrokerRequestPath path, HttpMethod method) {
+		switch (path.getEndpoint()) {
+			case CATALOG:
+				return method == HttpMethod.GET ? request -> getCatalog(request, path) : null;
+			case SERVICE_INSTANCE:
+				if (method == HttpMethod.PUT) {
+					return request -> createServiceInstance(request, path);
+				} else if (method == HttpMethod.PATCH) {
+					return request -> updateServiceInstance(request, path);
+				} else if (method == HttpMethod.DELETE) {
+					return request -> deleteServiceInstance(request, path);
+				}
+				return null;
+			case LAST_OPERATION:
+				return method == HttpMethod.GET ? request -> getServiceInstanceLastOperation(request, path) : null;
+			case SERVICE_BINDING:
+				if (method == HttpMethod.PUT) {
+					return request -> createServiceInstanceBinding(request, path);
+				} else if (method == HttpMethod.DELETE) {
+					return request -> deleteServiceInstanceBinding(request, path);
+				}
+				return null;
+			default:
+				return null;
+		}
+	}
+
+	private Mono<ServerResponse> getCatalog(ServerRequest request, ServiceBrokerRequestPath path) {
+		if (catalogViewController == null) {
+			return respond(request, () -> ResponseEntity.ok(catalogController.getCatalog()));
+		}
+		return respond(request, () -> catalogViewController.getCatalogView(pathVariables(path),
+				header(request, catalogViewController.getApiVersionHeader()),
+				header(request, HttpHeaders.IF_NONE_MATCH)));
+	}
+
+	private Mono<ServerResponse> createServiceInstance(ServerRequest request, ServiceBrokerRequestPath path) {
+		return respondWithBody(request, CreateServiceInstanceRequest.class,
+				body -> serviceInstanceController.createServiceInstance(pathVariables(path),
+						path.getInstanceId(),
+						acceptsIncomplete(request),
+						header(request, API_INFO_LOCATION_HEADER),
+						header(request, ORIGINATING_IDENTITY_HEADER),
+						body));
+	}
+
+	private Mono<ServerResponse> updateServiceInstance(ServerRequest request, ServiceBrokerRequestPath path) {
+		return respondWithBody(request, UpdateServiceInstanceRequest.class,
+				body -> serviceInstanceController.updateServiceInstance(pathVariables(path),
+						path.getInstanceId(),
+						acceptsIncomplete(request),
+						header(request, API_INFO_LOCATION_HEADER),
+						header(request, ORIGINATING_IDENTITY_HEADER),
+						body));
+	}
+
+	private Mono<ServerResponse> deleteServiceInstance(ServerRequest request, ServiceBrokerRequestPath path) {
+		return respond(request, () -> serviceInstanceController.deleteServiceInstance(pathVariables(path),
+				path.getInstanceId(),
+				requiredParameter(request, SERVICE_ID_PARAMETER),
+				requiredParameter(request, PLAN_ID_PARAMETER),
+				acceptsIncomplete(request),
+				header(request, API_INFO_LOCATION_HEADER),
+				header(request, ORIGINATING_IDENTITY_HEADER)));
+	}
+
+	private Mono<ServerResponse> getServiceInstanceLastOperation(ServerRequest request,
+																 ServiceBrokerRequestPath path) {
+		return respond(request, () -> serviceInstanceController.getServiceInstanceLastOperation(pathVariables(path),
+				path.getInstanceId(),
+				requiredParameter(request, SERVICE_ID_PARAMETER),
+				requiredParameter(request, PLAN_ID_PARAMETER),
+				request.queryParam(OPERATION_PARAMETER).orElse(null),
+				header(request, API_INFO_LOCATION_HEADER),
+				header(request, ORIGINATING_IDENTITY_HEADER)));
+	}
+
+	private Mono<ServerResponse> createServiceInstanceBinding(ServerRequest request, ServiceBrokerRequestPath path) {
+		return respondWithBody(request, CreateServiceInstanceBindingRequest.class,
+				body -> serviceInstanceBindingController.createServiceInstanceBinding(pathVariables(path),
+						path.getInstanceId(),
+						path.getBindingId(),
+						header(request, API_INFO_LOCATION_HEADER),
+						header(request, ORIGINATING_IDENTITY_HEADER),
+						body));
+	}
+
+	private Mono<ServerResponse> deleteServiceInstanceBinding(ServerRequest request, ServiceBrokerRequestPath path) {
+		return respond(request, () -> serviceInstanceBindingController.deleteServiceInstanceBinding(pathVariables(path),
+				path.getInstanceId(),
+				path.getBindingId(),
+				requiredParameter(request, SERVICE_ID_PARAMETER),
+				requiredParameter(request, PLAN_ID_PARAMETER),
+				header(request, API_INFO_LOCATION_HEADER),
+				header(request, ORIGINATING_IDENTITY_HEADER)));
+	}
+
+	private Mono<ServerResponse> respond(ServerRequest request, Supplier<ResponseEntity<?>> handler) {
+		return toServerResponse(invoke(request, handler));
+	}
+
+	private <T> Mono<ServerResponse> respondWithBody(ServerRequest request, Class<T> bodyType,
+													 Function<T, ResponseEntity<?>> handler) {
+		return request.bodyToMono(bodyType)
+				.switchIfEmpty(Mono.defer(() -> Mono.error(new ServerWebInputException("Request body is missing"))))
+				.<ResponseEntity<?>>map(body -> invoke(request, () -> handler.apply(validate(body))))
+				.onErrorResume(Exception.class, e -> Mono.just(getErrorResponse(e)))
+				.flatMap(this::toServerResponse);
+	}
+
+	/**
+	 * Call a controller with the {@link TraceContext} of the request, if any, in the MDC. The controllers are
+	 * synchronous, so the MDC values apply to everything they and the services log.
+	 */
+	private ResponseEntity<?> invoke(ServerRequest request, Supplier<ResponseEntity<?>> handler) {
+		Object traceContext = request.attribute(TraceContext.ATTRIBUTE).orElse(null);
+		try (MdcScope ignored = traceContext instanceof TraceContext ?
+				((TraceContext) traceContext).putInMdc() : MdcScope.EMPTY) {
+			try {
+				return handler.get();
+			} catch (Exception e) {
+				return getErrorResponse(e);
+			}
+		}
+	}
+
+	private <T> T validate(T body) {
+		Set<String> fields = validator == null ? RequestValidation.getMissingFields(body) : getViolatedFields(body);
+		if (fields.isEmpty()) {
+			return body;
+		}
+		throw new ServerWebInputException("Missing required fields: " + String.join(" ", fields));
+	}
+
+	private <T> Set<String> getViolatedFields(T body) {
+		Set<ConstraintViolation<T>> violations = validator.validate(body);
+		Set<String> fields = new TreeSet<>();
+		for (ConstraintViolation<T> violation : violations) {
+			fields.add(violation.getPropertyPath().toString());
+		}
+		return fields;
+	}
+
+	/**
+	 * Map an exception to a response with the exception handler methods of the controllers. A handler declared by
+	 * the binding controller is used when the instance controller has only the handlers of {@link BaseController}
+	 * for the exception.
+	 */
+	private ResponseEntity<?> getErrorResponse(Exception ex) {
+		Object controller = serviceInstanceController;
+		Method method = serviceInstanceExceptionHandlers.resolveMethod(ex);
+		if (method.getDeclaringClass() == BaseController.class) {
+			Method bindingMethod = serviceInstanceBindingExceptionHandlers.resolveMethod(ex);
+			if (bindingMethod.getDeclaringClass() != BaseController.class) {
+				controller = serviceInstanceBindingController;
+				method = bindingMethod;
+			}
+		}
+		return (ResponseEntity<?>) ReflectionUtils.invokeMethod(method, controller, ex);
+	}
+
+	private Mono<ServerResponse> toServerResponse(ResponseEntity<?> response) {
+		ServerResponse.BodyBuilder builder = ServerResponse.status(response.getStatusCode())
+				.headers(headers -> headers.putAll(response.getHeaders()));
+
+		Object body = response.getBody();
+		if (body == null) {
+			return builder.build();
+		}
+
+		if (response.getHeaders().getContentType() == null) {
+			builder.contentType(MediaType.APPLICATION_JSON_UTF8);
+		}
+
+		if (body instanceof String) {
+			return builder.syncBody(((String) body).getBytes(StandardCharsets.UTF_8));
+		}
+		return builder.syncBody(body);
+	}
+
+	private static Map<String, String> pathVariables(ServiceBrokerRequestPath path) {
+		return path.getCfInstanceId() == null ? Collections.emptyMap() :
+				Collections.singletonMap(CF_INSTANCE_ID_VARIABLE, path.getCfInstanceId());
+	}
+
+	private static String header(ServerRequest request, String name) {
+		List<String> values = request.headers().header(name);
+		return values.isEmpty() ? null : values.get(0);
+	}
+
+	private static String requiredParameter(ServerRequest request, String name) {
+		return request.queryParam(name).orElseThrow(() ->
+				new ServerWebInputException("Missing required request parameter '" + name + "'"));
+	}
+
+	private static boolean acceptsIncomplete(ServerRequest request) {
+		return request.queryParam(ASYNC_REQUEST_PARAMETER).map(Boolean::parseBoolean).orElse(false);
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.security;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+
+/**
+ * A {@link DaoAuthenticationProvider} that remembers successful password verifications for a short time, so that
+ * a platform sending many requests with the same basic authentication credentials does not pay for a slow password
+ * hash such as BCrypt on every request.
+ * <p>
+ * Verifications are keyed by an HMAC-SHA256 of the user name, the presented password and the encoded password of
+ * the user, computed with a random key held only in memory. Presented passwords are not stored. When the encoded
+ * password of a user changes, the previous verifications no longer match and expire after the time to live. The
+ * user is still loaded and checked for being enabled, locked or expired on every request.
+ */
+public class CachingDaoAuthenticationProvider extends DaoAuthenticationProvider {
+	public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(1);
+
+	public static final int DEFAULT_MAXIMUM_SIZE = 1024;
+
+	private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+	private final Map<String, Long> verifications = new ConcurrentHashMap<>();
+
+	private final SecretKeySpec key;
+
+	private final ThreadLocal<Mac> mac;
+
+	private final long timeToLiveNanos;
+
+	private final int maximumSize;
+
+	/**
+	 * Construct a provider that remembers up to {@link #DEFAULT_MAXIMUM_SIZE} verifications for
+	 * {@link #DEFAULT_TIME_TO_LIVE}.
+	 */
+	public CachingDaoAuthenticationProvider() {
+		this(DEFAULT_TIME_TO_LIVE, DEFAULT_MAXIMUM_SIZE);
+	}
+
+	/**
+	 * Construct a provider.
+	 *
+	 * @param timeToLive the time a successful verification is remembered
+	 * @param maximumSize the maximum number of verifications remembered
+	 */
+	public CachingDaoAuthenticationProvider(Duration timeToLive, int maximumSize) {
+		if (timeToLive == null || timeToLive.isNegative() || timeToLive.isZero()) {
+			throw new IllegalArgumentException("The time to live must be positive");
+		}
+		if (maximumSize <= 0) {
+			throw new IllegalArgumentException("The maximum size must be positive");
+		}
+		this.timeToLiveNanos = timeToLive.toNanos();
+		this.maximumSize = maximumSize;
+		byte[] secret = new byte[32];
+		new SecureRandom().nextBytes(secret);
+		this.key = new SecretKeySpec(secret, HMAC_ALGORITHM);
+		this.mac = ThreadLocal.withInitial(this::createMac);
+	}
+
+	/**
+	 * Forget all remembered verifications, for example after credentials have been rotated.
+	 */
+	public void clearCache() {
+		this.verifications.clear();
+	}
+
+	@Override
+	protected void additionalAuthenticationChecks(UserDetails userDetails,
+			UsernamePasswordAuthenticationToken authentication) throws AuthenticationException {
+		Object credentials = authentication.getCredentials();
+		if (credentials == null || userDetails.getPassword() == null) {
+			super.additionalAuthenticationChecks(userDetails, authentication);
+			return;
+		}
+
+		String verification = verificationKey(userDetails.getUsername(), credentials.toString(),
+				userDetails.getPassword());
+		long now = System.nanoTime();
+		Long expiry = this.verifications.get(verification);
+		if (expiry != null) {
+			if (now - expiry < 0) {
+				return;
+			}
+			this.verifications.remove(verification, expiry);
+		}
+
+		super.additionalAuthenticationChecks(userDetails, authentication);
+		remember(verification, now + this.timeToLiveNanos, now);
+	}
+
+	int size() {
+		return this.verifications.size();
+	}
+
+	private void remember(String verification, long expiry, long now) {
+		this.verifications.put(verification, expiry);
+		if (this.verifications.size() > this.maximumSize) {
+			this.verifications.entrySet().removeIf(entry -> now - entry.getValue() >= 0);
+			Iterator<String> iterator = this.verifications.keySet().iterator();
+			while (this.verifications.size() > this.maximumSize && iterator.hasNext()) {
+				if (!iterator.next().equals(verification)) {
+					iterator.remove();
+				}
+			}
+		}
+	}
+
+	private String verificationKey(String username, String presentedPassword, String encodedPassword) {
+		Mac mac = this.mac.get();
+		update(mac, username);
+		update(mac, presentedPassword);
+		update(mac, encodedPassword);
+		return new String(mac.doFinal(), StandardCharsets.ISO_8859_1);
+	}
+
+	private static void update(Mac mac, String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		mac.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+		mac.update(bytes);
+	}
+
+	private Mac createMac() {
+		try {
+			Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+			mac.init(this.key);
+			return mac;
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("Unable to create " + HMAC_ALGORITHM + " instance", e);
+		}
+	}
+}
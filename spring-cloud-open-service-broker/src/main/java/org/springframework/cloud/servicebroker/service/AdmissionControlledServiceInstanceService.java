@@ -0,0 +1,66 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.service;
+
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationRequest;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationResponse;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceResponse;
+
+/**
+ * A {@link ServiceInstanceService} that passes the create, update and delete operations to another
+ * {@link ServiceInstanceService} only when they are admitted by an {@link AdmissionController}. Requests for the
+ * last operation are always passed on, so that platforms can follow the progress of operations already accepted.
+ *
+ * @see AdmissionController
+ */
+public class AdmissionControlledServiceInstanceService implements ServiceInstanceService {
+
+	private final ServiceInstanceService delegate;
+
+	private final AdmissionController admissionController;
+
+	public AdmissionControlledServiceInstanceService(ServiceInstanceService delegate,
+													 AdmissionController admissionController) {
+		this.delegate = delegate;
+		this.admissionController = admissionController;
+	}
+
+	@Override
+	public CreateServiceInstanceResponse createServiceInstance(CreateServiceInstanceRequest request) {
+		return admissionController.execute(() -> delegate.createServiceInstance(request));
+	}
+
+	@Override
+	public GetLastServiceOperationResponse getLastOperation(GetLastServiceOperationRequest request) {
+		return delegate.getLastOperation(request);
+	}
+
+	@Override
+	public DeleteServiceInstanceResponse deleteServiceInstance(DeleteServiceInstanceRequest request) {
+		return admissionController.execute(() -> delegate.deleteServiceInstance(request));
+	}
+
+	@Override
+	public UpdateServiceInstanceResponse updateServiceInstance(UpdateServiceInstanceRequest request) {
+		return admissionController.execute(() -> delegate.updateServiceInstance(request));
+	}
+}
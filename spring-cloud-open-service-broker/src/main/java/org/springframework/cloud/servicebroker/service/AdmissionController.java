@@ -0,0 +1,243 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerOverloadedException;
+
+/**
+ * Limits the number of service broker operations that run at the same time, rejecting operations over the limit
+ * instead of queueing them.
+ * <p>
+ * The limit adapts to the latency of completed operations. The admission controller keeps a slowly moving
+ * estimate of the latency of an operation without queueing and a short-term average of recent latencies. While
+ * the recent latency stays within the configured tolerance of the estimate and the limit is in use, the limit
+ * grows by one for every {@code limit} completed operations. When the recent latency exceeds the tolerance, the
+ * backend is queueing work and the limit is reduced by a constant factor, at most once per recent latency period.
+ * Operations that can not be admitted fail with a {@link ServiceBrokerOverloadedException} that suggests retrying
+ * after the recent latency, rounded up to whole seconds.
+ * <p>
+ * Completed operations update the estimates and the limit with compare-and-set operations rather than a lock, so
+ * that completing operations do not wait for each other.
+ */
+public class AdmissionController {
+	public static final int DEFAULT_INITIAL_LIMIT = 20;
+
+	public static final int DEFAULT_MIN_LIMIT = 2;
+
+	public static final int DEFAULT_MAX_LIMIT = 200;
+
+	public static final double DEFAULT_TOLERANCE = 2.0;
+
+	private static final double BACKOFF_RATIO = 0.9;
+
+	private static final double RECENT_LATENCY_WEIGHT = 0.2;
+
+	private static final int BASELINE_DRIFT_DIVISOR = 1000;
+
+	private static final long MIN_RETRY_AFTER_SECONDS = 1;
+
+	private static final long MAX_RETRY_AFTER_SECONDS = 60;
+
+	private static final long NO_LATENCY = -1;
+
+	private final int minLimit;
+
+	private final int maxLimit;
+
+	private final double tolerance;
+
+	private final LongSupplier nanoTime;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	/**
+	 * The bits of the {@code double} limit, which grows by fractions of one.
+	 */
+	private final AtomicLong limit;
+
+	private final AtomicLong baselineLatency = new AtomicLong(NO_LATENCY);
+
+	/**
+	 * The bits of the {@code double} recent latency, zero until an operation completes.
+	 */
+	private final AtomicLong recentLatency = new AtomicLong();
+
+	private final AtomicLong lastDecrease;
+
+	/**
+	 * Construct an admission controller with the default limits and tolerance.
+	 */
+	public AdmissionController() {
+		this(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT, DEFAULT_TOLERANCE);
+	}
+
+	/**
+	 * Construct an admission controller.
+	 *
+	 * @param initialLimit the number of concurrent operations admitted before any latency is observed
+	 * @param minLimit the lowest value the limit is reduced to
+	 * @param maxLimit the highest value the limit is increased to
+	 * @param tolerance the ratio of recent latency to latency without queueing above which the limit is reduced
+	 */
+	public AdmissionController(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+		this(initialLimit, minLimit, maxLimit, tolerance, System::nanoTime);
+	}
+
+	AdmissionController(int initialLimit, int minLimit, int maxLimit, double tolerance, LongSupplier nanoTime) {
+		if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit) {
+			throw new IllegalArgumentException("The limits must satisfy 0 < minLimit <= initialLimit <= maxLimit");
+		}
+		if (tolerance <= 1.0) {
+			throw new IllegalArgumentException("The tolerance must be greater than 1");
+		}
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.tolerance = tolerance;
+		this.nanoTime = nanoTime;
+		this.limit = new AtomicLong(Double.doubleToRawLongBits(initialLimit));
+		// System.nanoTime() has an arbitrary origin and may be negative
+		this.lastDecrease = new AtomicLong(nanoTime.getAsLong());
+	}
+
+	/**
+	 * Run an operation if the number of operations in progress is below the current limit.
+	 *
+	 * @param operation the operation to run
+	 * @param <T> the result type of the operation
+	 * @return the result of the operation
+	 * @throws ServiceBrokerOverloadedException if the operation was not admitted
+	 */
+	public <T> T execute(Supplier<T> operation) {
+		acquire();
+		long start = nanoTime.getAsLong();
+		try {
+			return operation.get();
+		} finally {
+			release(nanoTime.getAsLong() - start);
+		}
+	}
+
+	/**
+	 * Run an operation that produces no result if the number of operations in progress is below the current limit.
+	 *
+	 * @param operation the operation to run
+	 * @throws ServiceBrokerOverloadedException if the operation was not admitted
+	 */
+	public void execute(Runnable operation) {
+		execute(() -> {
+			operation.run();
+			return null;
+		});
+	}
+
+	/**
+	 * Get the current limit on the number of concurrent operations.
+	 *
+	 * @return the limit
+	 */
+	public int getLimit() {
+		return (int) limit();
+	}
+
+	/**
+	 * Get the number of operations in progress.
+	 *
+	 * @return the number of operations
+	 */
+	public int getInFlight() {
+		return this.inFlight.get();
+	}
+
+	private void acquire() {
+		while (true) {
+			int current = inFlight.get();
+			int limit = getLimit();
+			if (current >= limit) {
+				throw new ServiceBrokerOverloadedException(
+						"The service broker is processing too many operations: limit=" + limit,
+						retryAfter());
+			}
+			if (inFlight.compareAndSet(current, current + 1)) {
+				return;
+			}
+		}
+	}
+
+	private void release(long latency) {
+		int busy = inFlight.getAndDecrement();
+
+		long previousBits;
+		double recent;
+		do {
+			previousBits = recentLatency.get();
+			double previous = Double.longBitsToDouble(previousBits);
+			recent = previous == 0 ? latency : previous + RECENT_LATENCY_WEIGHT * (latency - previous);
+		} while (!recentLatency.compareAndSet(previousBits, Double.doubleToRawLongBits(recent)));
+		long baseline = baselineLatency.accumulateAndGet(latency, AdmissionController::nextBaselineLatency);
+		if (previousBits == 0) {
+			return;
+		}
+
+		if (recent > tolerance * Math.max(baseline, 1)) {
+			long now = nanoTime.getAsLong();
+			long last = lastDecrease.get();
+			// only the operation that moves the time of the last decrease reduces the limit
+			if (now - last >= recent && lastDecrease.compareAndSet(last, now)) {
+				adjustLimit(true);
+			}
+		} else if (busy * 2 >= limit()) {
+			adjustLimit(false);
+		}
+	}
+
+	private void adjustLimit(boolean decrease) {
+		while (true) {
+			long currentBits = limit.get();
+			double current = Double.longBitsToDouble(currentBits);
+			double next = decrease ?
+					Math.max(minLimit, current * BACKOFF_RATIO) : Math.min(maxLimit, current + 1 / current);
+			if (next == current || limit.compareAndSet(currentBits, Double.doubleToRawLongBits(next))) {
+				return;
+			}
+		}
+	}
+
+	private static long nextBaselineLatency(long baseline, long latency) {
+		if (baseline == NO_LATENCY || latency < baseline) {
+			return latency;
+		}
+		// let the baseline follow lasting changes in latency that are not caused by queueing
+		return baseline + (latency - baseline) / BASELINE_DRIFT_DIVISOR;
+	}
+
+	private double limit() {
+		return Double.longBitsToDouble(limit.get());
+	}
+
+	private Duration retryAfter() {
+		double recent = Double.longBitsToDouble(recentLatency.get());
+		long seconds = (long) Math.ceil(recent / TimeUnit.SECONDS.toNanos(1));
+		return Duration.ofSeconds(Math.min(MAX_RETRY_AFTER_SECONDS, Math.max(MIN_RETRY_AFTER_SECONDS, seconds)));
+	}
+}
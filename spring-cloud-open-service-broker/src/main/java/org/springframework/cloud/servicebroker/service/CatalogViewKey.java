@@ -0,0 +1,70 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.util.Objects;
+
+/**
+ * Identifies a view of the catalog by the platform instance and the service broker API version of the request.
+ */
+public final class CatalogViewKey {
+	/**
+	 * The ID used to identify the platform instance when the service broker is registered to multiple instances.
+	 * Will be <code>null</code> if the service broker is not registered with an instance ID in the registered URL.
+	 */
+	private final String cfInstanceId;
+
+	/**
+	 * The service broker API version sent by the platform. Will be <code>null</code> if no version was sent.
+	 */
+	private final String apiVersion;
+
+	public CatalogViewKey(String cfInstanceId, String apiVersion) {
+		this.cfInstanceId = cfInstanceId;
+		this.apiVersion = apiVersion;
+	}
+
+	public String getCfInstanceId() {
+		return this.cfInstanceId;
+	}
+
+	public String getApiVersion() {
+		return this.apiVersion;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof CatalogViewKey)) return false;
+		CatalogViewKey that = (CatalogViewKey) o;
+		return Objects.equals(cfInstanceId, that.cfInstanceId) &&
+				Objects.equals(apiVersion, that.apiVersion);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(cfInstanceId, apiVersion);
+	}
+
+	@Override
+	public String toString() {
+		return "CatalogViewKey{" +
+				"cfInstanceId='" + cfInstanceId + '\'' +
+				", apiVersion='" + apiVersion + '\'' +
+				'}';
+	}
+}
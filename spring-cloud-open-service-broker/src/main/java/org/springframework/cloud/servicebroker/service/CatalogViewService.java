@@ -0,0 +1,178 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerException;
+import org.springframework.cloud.servicebroker.model.Catalog;
+import org.springframework.util.DigestUtils;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Provides serialized views of the catalog, as computed by a {@link CatalogVisibility}, for each platform instance
+ * and service broker API version.
+ * <p>
+ * Each view is serialized once and cached with an entity tag until the {@link CatalogService} returns a different
+ * {@link Catalog} instance, or until {@link #invalidate()} is called. The number of cached views is bounded; when
+ * the bound is reached, the least recently used view is discarded. Views for API versions that are not of the form
+ * {@code major.minor} are computed on each request and not cached, so that requests with arbitrary version headers
+ * do not displace the views of the platforms.
+ */
+public class CatalogViewService {
+	private static final Logger log = getLogger(CatalogViewService.class);
+
+	public static final int DEFAULT_MAX_VIEWS = 256;
+
+	private static final Pattern API_VERSION = Pattern.compile("\\d{1,4}\\.\\d{1,4}");
+
+	private final CatalogService catalogService;
+
+	private final CatalogVisibility catalogVisibility;
+
+	private final ObjectMapper objectMapper;
+
+	private final int maxViews;
+
+	private volatile CachedViews cachedViews;
+
+	public CatalogViewService(CatalogService catalogService, CatalogVisibility catalogVisibility) {
+		this(catalogService, catalogVisibility, new ObjectMapper());
+	}
+
+	public CatalogViewService(CatalogService catalogService, CatalogVisibility catalogVisibility,
+							  ObjectMapper objectMapper) {
+		this(catalogService, catalogVisibility, objectMapper, DEFAULT_MAX_VIEWS);
+	}
+
+	public CatalogViewService(CatalogService catalogService, CatalogVisibility catalogVisibility,
+							  ObjectMapper objectMapper, int maxViews) {
+		this.catalogService = catalogService;
+		this.catalogVisibility = catalogVisibility;
+		this.objectMapper = objectMapper;
+		this.maxViews = maxViews;
+		this.cachedViews = new CachedViews(null, maxViews);
+	}
+
+	/**
+	 * Get the view of the catalog for a platform instance and API version.
+	 *
+	 * @param key the platform instance and API version requesting the catalog
+	 * @return the serialized view
+	 */
+	public CatalogView getCatalogView(CatalogViewKey key) {
+		Catalog catalog = catalogService.getCatalog();
+
+		CachedViews views = this.cachedViews;
+		if (views.catalog != catalog) {
+			log.debug("Catalog changed, discarding cached catalog views");
+			views = new CachedViews(catalog, maxViews);
+			this.cachedViews = views;
+		}
+
+		if (!isCacheable(key)) {
+			return createView(catalog, key);
+		}
+
+		CatalogView view = views.views.get(key);
+		if (view == null) {
+			view = createView(catalog, key);
+			CatalogView existing = views.views.putIfAbsent(key, view);
+			if (existing != null) {
+				view = existing;
+			}
+		}
+		return view;
+	}
+
+	/**
+	 * Discard all cached views, so that views are computed again on the next request.
+	 */
+	public void invalidate() {
+		this.cachedViews = new CachedViews(null, maxViews);
+	}
+
+	private static boolean isCacheable(CatalogViewKey key) {
+		return key.getApiVersion() == null || API_VERSION.matcher(key.getApiVersion()).matches();
+	}
+
+	private CatalogView createView(Catalog catalog, CatalogViewKey key) {
+		log.debug("Computing catalog view: key={}", key);
+		Catalog visibleCatalog = catalogVisibility.getVisibleCatalog(catalog, key);
+		try {
+			byte[] content = objectMapper.writeValueAsBytes(visibleCatalog);
+			return new CatalogView(content, "\"" + DigestUtils.md5DigestAsHex(content) + "\"");
+		} catch (JsonProcessingException e) {
+			throw new ServiceBrokerException("Error serializing catalog view for " + key, e);
+		}
+	}
+
+	private static final class CachedViews {
+		private final Catalog catalog;
+
+		private final Map<CatalogViewKey, CatalogView> views;
+
+		private CachedViews(Catalog catalog, int maxViews) {
+			this.catalog = catalog;
+			this.views = Collections.synchronizedMap(new LinkedHashMap<CatalogViewKey, CatalogView>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<CatalogViewKey, CatalogView> eldest) {
+					return size() > maxViews;
+				}
+			});
+		}
+	}
+
+	/**
+	 * A serialized view of the catalog.
+	 */
+	public static final class CatalogView {
+		private final byte[] content;
+
+		private final String etag;
+
+		CatalogView(byte[] content, String etag) {
+			this.content = content;
+			this.etag = etag;
+		}
+
+		/**
+		 * Get the JSON representation of the view. The returned array is shared and must not be modified.
+		 *
+		 * @return the JSON representation
+		 */
+		public byte[] getContent() {
+			return this.content;
+		}
+
+		/**
+		 * Get the quoted entity tag of the view.
+		 *
+		 * @return the entity tag
+		 */
+		public String getEtag() {
+			return this.etag;
+		}
+	}
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.service;
+
+import org.springframework.cloud.servicebroker.model.Catalog;
+
+/**
+ * This interface is implemented by service brokers that present different views of the catalog to different
+ * platform instances or service broker API versions, for example to hide private plans or to remove fields that
+ * older platforms do not support.
+ * <p>
+ * A view is computed once for each {@link CatalogViewKey} and cached until the catalog changes, so implementations
+ * do not need to be fast.
+ */
+public interface CatalogVisibility {
+
+	/**
+	 * Compute the catalog visible to the platform instance and API version identified by a key.
+	 *
+	 * @param catalog the complete catalog of the service broker
+	 * @param key the platform instance and API version requesting the catalog
+	 * @return the visible catalog
+	 */
+	Catalog getVisibleCatalog(Catalog catalog, CatalogViewKey key);
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import org.slf4j.Logger;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerException;
+import org.springframework.cloud.servicebroker.model.Catalog;
+import org.springframework.cloud.servicebroker.model.Plan;
+import org.springframework.cloud.servicebroker.model.ServiceDefinition;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * A {@link CatalogService} that merges the catalogs of several delegate {@link CatalogService}s into one catalog.
+ * <p>
+ * The delegate catalogs are loaded when the service is created and when {@link #refresh()} is called, on the
+ * calling thread or, if an {@link Executor} is provided, in parallel on the executor.
+ * They are merged, in the order of the delegates, into an immutable snapshot that is indexed by service definition
+ * ID, so that looking up a service definition does not depend on the number of delegates. A snapshot is rejected
+ * with an {@link IllegalStateException} if the same service definition ID, service definition name or plan ID is
+ * offered more than once.
+ */
+public class CompositeCatalogService implements CatalogService {
+	private static final Logger log = getLogger(CompositeCatalogService.class);
+
+	private final List<CatalogService> delegates;
+
+	private final Executor executor;
+
+	private volatile Snapshot snapshot;
+
+	public CompositeCatalogService(List<? extends CatalogService> delegates) {
+		this(delegates, Runnable::run);
+	}
+
+	/**
+	 * Construct a service that merges the catalogs of the delegates, and load them.
+	 *
+	 * @param delegates the services that provide the catalogs to merge
+	 * @param executor the executor that loads the delegate catalogs
+	 */
+	public CompositeCatalogService(List<? extends CatalogService> delegates, Executor executor) {
+		this.delegates = Collections.unmodifiableList(new ArrayList<>(delegates));
+		this.executor = executor;
+		this.snapshot = load();
+	}
+
+	/**
+	 * Create a service that merges several catalogs.
+	 *
+	 * @param catalogs the catalogs to merge
+	 * @return the service
+	 */
+	public static CompositeCatalogService of(List<Catalog> catalogs) {
+		return of(catalogs, Runnable::run);
+	}
+
+	/**
+	 * Create a service that merges several catalogs.
+	 *
+	 * @param catalogs the catalogs to merge
+	 * @param executor the executor that loads the catalogs
+	 * @return the service
+	 */
+	public static CompositeCatalogService of(List<Catalog> catalogs, Executor executor) {
+		List<CatalogService> delegates = new ArrayList<>(catalogs.size());
+		for (Catalog catalog : catalogs) {
+			delegates.add(new BeanCatalogService(catalog));
+		}
+		return new CompositeCatalogService(delegates, executor);
+	}
+
+	@Override
+	public Catalog getCatalog() {
+		return this.snapshot.catalog;
+	}
+
+	@Override
+	public ServiceDefinition getServiceDefinition(String serviceId) {
+		return this.snapshot.serviceDefinitions.get(serviceId);
+	}
+
+	/**
+	 * Load the delegate catalogs again and replace the merged catalog. The current catalog is kept if a delegate
+	 * catalog cannot be loaded or the catalogs cannot be merged.
+	 */
+	public void refresh() {
+		this.snapshot = load();
+	}
+
+	private Snapshot load() {
+		List<CompletableFuture<Catalog>> futures = new ArrayList<>(delegates.size());
+		for (CatalogService delegate : delegates) {
+			futures.add(CompletableFuture.supplyAsync(delegate::getCatalog, executor));
+		}
+
+		List<Catalog> catalogs = new ArrayList<>(futures.size());
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				catalogs.add(futures.get(i).join());
+			} catch (CompletionException e) {
+				throw new ServiceBrokerException("Error loading catalog from " + describe(i), e.getCause());
+			}
+		}
+		return merge(catalogs);
+	}
+
+	private Snapshot merge(List<Catalog> catalogs) {
+		int size = 0;
+		for (Catalog catalog : catalogs) {
+			size += catalog.getServiceDefinitions().size();
+		}
+
+		List<ServiceDefinition> serviceDefinitions = new ArrayList<>(size);
+		Map<String, ServiceDefinition> serviceDefinitionsById = new HashMap<>(size * 4 / 3 + 1);
+		Map<String, Integer> sourcesById = new HashMap<>(size * 4 / 3 + 1);
+		Map<String, Integer> sourcesByName = new HashMap<>(size * 4 / 3 + 1);
+		Map<String, Integer> sourcesByPlanId = new HashMap<>();
+		List<String> collisions = new ArrayList<>();
+
+		for (int i = 0; i < catalogs.size(); i++) {
+			for (ServiceDefinition serviceDefinition : catalogs.get(i).getServiceDefinitions()) {
+				checkUnique(sourcesById, serviceDefinition.getId(), i, "service definition ID", collisions);
+				checkUnique(sourcesByName, serviceDefinition.getName(), i, "service definition name", collisions);
+				for (Plan plan : serviceDefinition.getPlans()) {
+					checkUnique(sourcesByPlanId, plan.getId(), i, "plan ID", collisions);
+				}
+				serviceDefinitions.add(serviceDefinition);
+				serviceDefinitionsById.put(serviceDefinition.getId(), serviceDefinition);
+			}
+		}
+
+		if (!collisions.isEmpty()) {
+			throw new IllegalStateException("Catalogs cannot be merged: " + String.join("; ", collisions));
+		}
+
+		log.debug("Merged catalogs: delegates={}, serviceDefinitions={}", catalogs.size(), size);
+		return new Snapshot(Catalog.builder().serviceDefinitions(serviceDefinitions).build(),
+				Collections.unmodifiableMap(serviceDefinitionsById));
+	}
+
+	private void checkUnique(Map<String, Integer> sources, String key, int source, String description,
+							 List<String> collisions) {
+		Integer existing = sources.putIfAbsent(key, source);
+		if (existing != null) {
+			collisions.add(description + " '" + key + "' is offered by " + describe(existing) +
+					" and " + describe(source));
+		}
+	}
+
+	private String describe(int index) {
+		return "delegate " + index + " (" + delegates.get(index).getClass().getSimpleName() + ")";
+	}
+
+	private static final class Snapshot {
+		private final Catalog catalog;
+
+		private final Map<String, ServiceDefinition> serviceDefinitions;
+
+		private Snapshot(Catalog catalog, Map<String, ServiceDefinition> serviceDefinitions) {
+			this.catalog = catalog;
+			this.serviceDefinitions = serviceDefinitions;
+		}
+	}
+}
@@ -0,0 +1,454 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerException;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerOverloadedException;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceDoesNotExistException;
+import org.springframework.cloud.servicebroker.model.AsyncServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.AsyncServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationRequest;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationResponse;
+import org.springframework.cloud.servicebroker.model.OperationState;
+import org.springframework.cloud.servicebroker.model.ServiceInstanceOperation;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.trace.MdcTaskDecorator;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * A {@link ServiceInstanceService} that promotes create, update and delete operations that take longer than an
+ * {@link OperationDeadline} to asynchronous operations, so that the platform does not abandon them.
+ * <p>
+ * When the platform accepts an asynchronous response, the operation is passed to another
+ * {@link ServiceInstanceService} on the executor of the deadline. If it completes before the deadline, its
+ * response is returned unchanged. Otherwise an asynchronous response with a new operation ID is returned, the
+ * operation continues in the background, and requests for the last operation with that ID are answered with
+ * its state until it completes. An {@link OperationStore}, if provided, is kept up to date with the state as
+ * well, so that other replicas of the broker can answer them. A promoted operation that itself returns an
+ * asynchronous response is tracked through the operation ID it returns.
+ * <p>
+ * When the service broker is stopped, a {@link ServiceBrokerDrain} waits for the promoted operations and saves
+ * those the platform is still following with {@link #checkpoint()}, so that the next instance of the service
+ * broker can {@link #resume(Collection) resume} them. A request for the last operation of a service instance
+ * without a promoted operation asks the drain to load operations saved since this instance started.
+ * <p>
+ * Up to a maximum number of promoted operations are tracked. When the maximum is reached, the oldest operations
+ * that are no longer running on the executor, and that the platform has apparently stopped following, are
+ * forgotten. When the executor rejects an operation, the request is rejected with a
+ * {@link ServiceBrokerOverloadedException} so that the platform retries it later.
+ * <p>
+ * Operations for which the platform does not accept an asynchronous response are passed on unchanged.
+ * <p>
+ * Waiting for the deadline blocks the thread of the request. On a non-blocking stack such as WebFlux that thread
+ * is an event loop thread, so the service is made {@link #setNonBlocking(boolean) non-blocking} there: operations
+ * the platform accepts an asynchronous response for are promoted as soon as they are started on the executor,
+ * unless they have already completed, and the deadline itself is not applied.
+ */
+public class DeadlineServiceInstanceService implements ServiceInstanceService {
+	private static final Logger log = getLogger(DeadlineServiceInstanceService.class);
+
+	public static final int DEFAULT_MAX_PROMOTED_OPERATIONS = 10_000;
+
+	private static final String INTERRUPTED_DESCRIPTION =
+			"The operation was interrupted because the service broker was stopped";
+
+	private static final Duration REJECTED_RETRY_AFTER = Duration.ofSeconds(5);
+
+	private final ServiceInstanceService delegate;
+
+	private final long deadlineNanos;
+
+	private final Executor executor;
+
+	private final OperationStore operationStore;
+
+	private final int maxPromotedOperations;
+
+	private final MdcTaskDecorator taskDecorator = new MdcTaskDecorator();
+
+	private final Map<String, PromotedOperation> promotedOperations = new ConcurrentHashMap<>();
+
+	private volatile ServiceBrokerDrain drain;
+
+	private volatile boolean nonBlocking;
+
+	public DeadlineServiceInstanceService(ServiceInstanceService delegate, OperationDeadline deadline) {
+		this(delegate, deadline, null);
+	}
+
+	public DeadlineServiceInstanceService(ServiceInstanceService delegate, OperationDeadline deadline,
+										  OperationStore operationStore) {
+		this(delegate, deadline, operationStore, DEFAULT_MAX_PROMOTED_OPERATIONS);
+	}
+
+	/**
+	 * Construct a service.
+	 *
+	 * @param delegate the service to pass operations to
+	 * @param deadline the deadline and executor of the operations
+	 * @param operationStore the store to keep the state of promoted operations in, or {@literal null}
+	 * @param maxPromotedOperations the maximum number of promoted operations tracked
+	 */
+	public DeadlineServiceInstanceService(ServiceInstanceService delegate, OperationDeadline deadline,
+										  OperationStore operationStore, int maxPromotedOperations) {
+		if (maxPromotedOperations < 1) {
+			throw new IllegalArgumentException("The maximum number of promoted operations must be positive");
+		}
+		this.delegate = delegate;
+		this.deadlineNanos = deadline.getDeadline().toNanos();
+		this.executor = deadline.getExecutor();
+		this.operationStore = operationStore;
+		this.maxPromotedOperations = maxPromotedOperations;
+	}
+
+	@Override
+	public CreateServiceInstanceResponse createServiceInstance(CreateServiceInstanceRequest request) {
+		return execute(request, request.getServiceInstanceId(), false,
+				() -> delegate.createServiceInstance(request),
+				operation -> CreateServiceInstanceResponse.builder()
+						.async(true)
+						.operation(operation)
+						.build());
+	}
+
+	@Override
+	public GetLastServiceOperationResponse getLastOperation(GetLastServiceOperationRequest request) {
+		PromotedOperation promoted = promotedOperations.get(request.getServiceInstanceId());
+		ServiceBrokerDrain drain = this.drain;
+		if (promoted == null && drain != null && drain.restoreOnMiss()) {
+			promoted = promotedOperations.get(request.getServiceInstanceId());
+		}
+		if (promoted == null ||
+				(request.getOperation() != null && !request.getOperation().equals(promoted.operation))) {
+			return delegate.getLastOperation(request);
+		}
+
+		GetLastServiceOperationResponse response;
+		if (promoted.delegateOperation != null) {
+			response = delegate.getLastOperation(request.withOperation(promoted.delegateOperation));
+		} else {
+			response = GetLastServiceOperationResponse.builder()
+					.operationState(promoted.state)
+					.description(promoted.description)
+					.deleteOperation(promoted.delete)
+					.build();
+		}
+
+		if (response.getState() != OperationState.IN_PROGRESS) {
+			promotedOperations.remove(request.getServiceInstanceId(), promoted);
+		}
+		return response;
+	}
+
+	@Override
+	public DeleteServiceInstanceResponse deleteServiceInstance(DeleteServiceInstanceRequest request) {
+		return execute(request, request.getServiceInstanceId(), true,
+				() -> delegate.deleteServiceInstance(request),
+				operation -> DeleteServiceInstanceResponse.builder()
+						.async(true)
+						.operation(operation)
+						.build());
+	}
+
+	@Override
+	public UpdateServiceInstanceResponse updateServiceInstance(UpdateServiceInstanceRequest request) {
+		return execute(request, request.getServiceInstanceId(), false,
+				() -> delegate.updateServiceInstance(request),
+				operation -> UpdateServiceInstanceResponse.builder()
+						.async(true)
+						.operation(operation)
+						.build());
+	}
+
+	private <T extends AsyncServiceInstanceResponse> T execute(AsyncServiceInstanceRequest request,
+															   String serviceInstanceId, boolean delete,
+															   Supplier<T> operation,
+															   Function<String, T> acceptedResponse) {
+		if (!request.isAsyncAccepted()) {
+			return operation.get();
+		}
+
+		promotedOperations.remove(serviceInstanceId);
+
+		CompletableFuture<T> future = new CompletableFuture<>();
+		try {
+			executor.execute(taskDecorator.decorate(() -> {
+				try {
+					future.complete(operation.get());
+				} catch (Throwable e) {
+					future.completeExceptionally(e);
+				}
+			}));
+		} catch (RejectedExecutionException e) {
+			throw new ServiceBrokerOverloadedException("The service broker is running too many operations",
+					REJECTED_RETRY_AFTER);
+		}
+
+		try {
+			return future.get(nonBlocking ? 0 : deadlineNanos, TimeUnit.NANOSECONDS);
+		} catch (ExecutionException e) {
+			throw propagate(e.getCause());
+		} catch (TimeoutException e) {
+			log.debug("Operation exceeded its deadline, continuing asynchronously: serviceInstanceId={}",
+					serviceInstanceId);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			log.debug("Interrupted waiting for operation, continuing asynchronously: serviceInstanceId={}",
+					serviceInstanceId);
+		}
+
+		PromotedOperation promoted = promote(serviceInstanceId, delete);
+		promoted.completion =
+				future.whenComplete((response, failure) -> complete(serviceInstanceId, promoted, response, failure));
+		return acceptedResponse.apply(promoted.operation);
+	}
+
+	/**
+	 * Wait for the promoted operations that are still running on the executor to complete.
+	 *
+	 * @param timeout the maximum time to wait
+	 * @return {@literal true} if the operations completed, {@literal false} if the timeout elapsed first
+	 */
+	public boolean awaitPromotedOperations(Duration timeout) {
+		List<CompletableFuture<?>> running = new ArrayList<>();
+		for (PromotedOperation promoted : promotedOperations.values()) {
+			CompletableFuture<?> completion = promoted.completion;
+			if (completion != null && !completion.isDone()) {
+				running.add(completion);
+			}
+		}
+		if (running.isEmpty()) {
+			return true;
+		}
+
+		try {
+			CompletableFuture.allOf(running.toArray(new CompletableFuture<?>[0]))
+					.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+		} catch (ExecutionException e) {
+			// the failures are recorded as the state of the operations
+		} catch (TimeoutException e) {
+			return false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Get the promoted operations whose state has not yet been requested by the platform, so that another
+	 * instance of the service broker can {@link #resume(Collection) resume} them. Operations still running on the
+	 * executor can not be continued elsewhere; they are reported as failed, here and in the
+	 * {@link OperationStore} if one is provided.
+	 *
+	 * @return the operations
+	 */
+	public List<OperationCheckpoint> checkpoint() {
+		List<OperationCheckpoint> checkpoints = new ArrayList<>();
+		for (Map.Entry<String, PromotedOperation> entry : promotedOperations.entrySet()) {
+			String serviceInstanceId = entry.getKey();
+			PromotedOperation promoted = entry.getValue();
+			if (promoted.state == OperationState.IN_PROGRESS && promoted.delegateOperation == null) {
+				log.warn("Promoted operation interrupted by shutdown: serviceInstanceId={}, operation={}",
+						serviceInstanceId, promoted.operation);
+				promoted.finish(OperationState.FAILED, INTERRUPTED_DESCRIPTION);
+				if (operationStore != null && promoted.storedOperation != null) {
+					operationStore.updateOperation(
+							promoted.storedOperation.withState(promoted.state, promoted.description));
+				}
+			}
+			checkpoints.add(new OperationCheckpoint(serviceInstanceId, promoted.operation,
+					promoted.delegateOperation, promoted.delete, promoted.state, promoted.description));
+		}
+		return checkpoints;
+	}
+
+	/**
+	 * Continue to answer requests for the last operation for operations promoted by another instance of the
+	 * service broker. Requests for operations that continue asynchronously in the other {@link ServiceInstanceService}
+	 * are passed to it again.
+	 *
+	 * @param checkpoints the operations returned by {@link #checkpoint()}
+	 */
+	public void resume(Collection<OperationCheckpoint> checkpoints) {
+		for (OperationCheckpoint checkpoint : checkpoints) {
+			PromotedOperation promoted =
+					new PromotedOperation(checkpoint.getOperation(), checkpoint.isDeleteOperation());
+			promoted.delegateOperation = checkpoint.getDelegateOperation();
+			promoted.finish(checkpoint.getState(), checkpoint.getDescription());
+			promotedOperations.putIfAbsent(checkpoint.getServiceInstanceId(), promoted);
+		}
+	}
+
+	void setDrain(ServiceBrokerDrain drain) {
+		this.drain = drain;
+	}
+
+	/**
+	 * Set whether the service must not wait for operations, because it is called on a thread that must not block.
+	 *
+	 * @param nonBlocking {@literal true} to promote operations without waiting for the deadline
+	 */
+	void setNonBlocking(boolean nonBlocking) {
+		this.nonBlocking = nonBlocking;
+	}
+
+	private PromotedOperation promote(String serviceInstanceId, boolean delete) {
+		if (promotedOperations.size() >= maxPromotedOperations) {
+			forgetOldestOperations();
+		}
+
+		PromotedOperation promoted = new PromotedOperation(UUID.randomUUID().toString(), delete);
+		if (operationStore != null) {
+			Instant now = Instant.now();
+			promoted.storedOperation = operationStore.saveOperation(ServiceInstanceOperation.builder()
+					.serviceInstanceId(serviceInstanceId)
+					.operation(promoted.operation)
+					.state(OperationState.IN_PROGRESS)
+					.deleteOperation(delete)
+					.createdAt(now)
+					.updatedAt(now)
+					.build());
+		}
+		promotedOperations.put(serviceInstanceId, promoted);
+		return promoted;
+	}
+
+	/**
+	 * Forget the oldest tenth of the promoted operations that are no longer running on the executor, which the
+	 * platform has not asked about since they completed or since they were resumed.
+	 */
+	private void forgetOldestOperations() {
+		List<Map.Entry<String, PromotedOperation>> idle = new ArrayList<>();
+		for (Map.Entry<String, PromotedOperation> entry : promotedOperations.entrySet()) {
+			CompletableFuture<?> completion = entry.getValue().completion;
+			if (completion == null || completion.isDone()) {
+				idle.add(entry);
+			}
+		}
+		idle.sort(Comparator.comparingLong(entry -> entry.getValue().promotedNanos));
+
+		int forget = Math.min(idle.size(), Math.max(1, maxPromotedOperations / 10));
+		for (Map.Entry<String, PromotedOperation> entry : idle.subList(0, forget)) {
+			if (promotedOperations.remove(entry.getKey(), entry.getValue())) {
+				log.debug("Forgetting promoted operation: serviceInstanceId={}, operation={}",
+						entry.getKey(), entry.getValue().operation);
+			}
+		}
+	}
+
+	private void complete(String serviceInstanceId, PromotedOperation promoted,
+						  AsyncServiceInstanceResponse response, Throwable failure) {
+		Throwable cause = failure instanceof CompletionException && failure.getCause() != null ?
+				failure.getCause() : failure;
+
+		if (cause == null && response != null && response.isAsync()) {
+			log.debug("Promoted operation continues asynchronously: serviceInstanceId={}, operation={}",
+					serviceInstanceId, response.getOperation());
+			promoted.delegateOperation = response.getOperation();
+			if (operationStore != null) {
+				ServiceInstanceOperation stored = operationStore.getOperation(serviceInstanceId);
+				if (stored != null && Objects.equals(stored.getOperation(), promoted.operation)) {
+					operationStore.deleteOperation(serviceInstanceId);
+				}
+			}
+			return;
+		}
+
+		if (cause == null || (promoted.delete && cause instanceof ServiceInstanceDoesNotExistException)) {
+			log.debug("Promoted operation succeeded: serviceInstanceId={}, operation={}",
+					serviceInstanceId, promoted.operation);
+			promoted.finish(OperationState.SUCCEEDED, null);
+		} else {
+			log.debug("Promoted operation failed: serviceInstanceId=" + serviceInstanceId +
+					", operation=" + promoted.operation, cause);
+			promoted.finish(OperationState.FAILED, cause.getMessage());
+		}
+
+		if (operationStore != null && !operationStore.updateOperation(
+				promoted.storedOperation.withState(promoted.state, promoted.description))) {
+			log.debug("Stored operation was replaced before the promoted operation completed: " +
+					"serviceInstanceId={}, operation={}", serviceInstanceId, promoted.operation);
+		}
+	}
+
+	private static RuntimeException propagate(Throwable cause) {
+		if (cause instanceof RuntimeException) {
+			return (RuntimeException) cause;
+		}
+		if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		return new ServiceBrokerException(cause.getMessage(), cause);
+	}
+
+	private static final class PromotedOperation {
+		private final String operation;
+
+		private final boolean delete;
+
+		private volatile OperationState state = OperationState.IN_PROGRESS;
+
+		private volatile String description;
+
+		private volatile String delegateOperation;
+
+		private ServiceInstanceOperation storedOperation;
+
+		private volatile CompletableFuture<?> completion;
+
+		private final long promotedNanos = System.nanoTime();
+
+		private PromotedOperation(String operation, boolean delete) {
+			this.operation = operation;
+			this.delete = delete;
+		}
+
+		private void finish(OperationState state, String description) {
+			this.description = description;
+			this.state = state;
+		}
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingResponse;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerEvent.Type;
+
+/**
+ * A {@link ServiceInstanceBindingService} that publishes {@link ServiceBrokerEvent}s before and after the
+ * operations of another {@link ServiceInstanceBindingService} through a {@link ServiceBrokerEventDispatcher}.
+ *
+ * @see ServiceBrokerEventListener
+ */
+public class EventPublishingServiceInstanceBindingService implements ServiceInstanceBindingService {
+
+	private final ServiceInstanceBindingService delegate;
+
+	private final ServiceBrokerEventDispatcher dispatcher;
+
+	public EventPublishingServiceInstanceBindingService(ServiceInstanceBindingService delegate,
+														ServiceBrokerEventDispatcher dispatcher) {
+		this.delegate = delegate;
+		this.dispatcher = dispatcher;
+	}
+
+	@Override
+	public CreateServiceInstanceBindingResponse createServiceInstanceBinding(CreateServiceInstanceBindingRequest request) {
+		ServiceBrokerEvent before = ServiceBrokerEvent.before(Type.CREATE_SERVICE_INSTANCE_BINDING, request);
+		dispatcher.beforeOperation(before);
+		CreateServiceInstanceBindingResponse response = null;
+		Throwable failure = null;
+		try {
+			response = delegate.createServiceInstanceBinding(request);
+			return response;
+		} catch (RuntimeException | Error e) {
+			failure = e;
+			throw e;
+		} finally {
+			dispatcher.afterOperation(ServiceBrokerEvent.after(before, response, failure));
+		}
+	}
+
+	@Override
+	public void deleteServiceInstanceBinding(DeleteServiceInstanceBindingRequest request) {
+		ServiceBrokerEvent before = ServiceBrokerEvent.before(Type.DELETE_SERVICE_INSTANCE_BINDING, request);
+		dispatcher.beforeOperation(before);
+		Throwable failure = null;
+		try {
+			delegate.deleteServiceInstanceBinding(request);
+		} catch (RuntimeException | Error e) {
+			failure = e;
+			throw e;
+		} finally {
+			dispatcher.afterOperation(ServiceBrokerEvent.after(before, null, failure));
+		}
+	}
+}
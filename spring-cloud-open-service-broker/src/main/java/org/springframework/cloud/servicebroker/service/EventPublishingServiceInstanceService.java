@@ -0,0 +1,175 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceDoesNotExistException;
+import org.springframework.cloud.servicebroker.model.AsyncServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationRequest;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationResponse;
+import org.springframework.cloud.servicebroker.model.OperationState;
+import org.springframework.cloud.servicebroker.model.ServiceBrokerRequest;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerEvent.Type;
+
+/**
+ * A {@link ServiceInstanceService} that publishes {@link ServiceBrokerEvent}s before and after the create, update
+ * and delete operations of another {@link ServiceInstanceService} through a {@link ServiceBrokerEventDispatcher}.
+ * <p>
+ * An operation that continues asynchronously is tracked from the response that accepts it, and a second event
+ * after it is published when a request for the last operation reports that it succeeded or failed. A
+ * deprovision is also reported as succeeded when the request for the last operation finds that the service
+ * instance no longer exists. Up to a maximum number of operations are tracked, and operations accepted while
+ * that many are tracked publish no completion event.
+ *
+ * @see ServiceBrokerEventListener
+ */
+public class EventPublishingServiceInstanceService implements ServiceInstanceService {
+	public static final int DEFAULT_MAX_OPERATIONS = 10_000;
+
+	private final ServiceInstanceService delegate;
+
+	private final ServiceBrokerEventDispatcher dispatcher;
+
+	private final int maxOperations;
+
+	private final Map<String, AcceptedOperation> operations = new ConcurrentHashMap<>();
+
+	public EventPublishingServiceInstanceService(ServiceInstanceService delegate,
+												 ServiceBrokerEventDispatcher dispatcher) {
+		this(delegate, dispatcher, DEFAULT_MAX_OPERATIONS);
+	}
+
+	/**
+	 * Construct a service.
+	 *
+	 * @param delegate the service to publish the operations of
+	 * @param dispatcher the dispatcher to publish events through
+	 * @param maxOperations the maximum number of asynchronous operations tracked until they complete
+	 */
+	public EventPublishingServiceInstanceService(ServiceInstanceService delegate,
+												 ServiceBrokerEventDispatcher dispatcher, int maxOperations) {
+		this.delegate = delegate;
+		this.dispatcher = dispatcher;
+		this.maxOperations = maxOperations;
+	}
+
+	@Override
+	public CreateServiceInstanceResponse createServiceInstance(CreateServiceInstanceRequest request) {
+		return publish(Type.CREATE_SERVICE_INSTANCE, request, request.getServiceInstanceId(),
+				() -> delegate.createServiceInstance(request));
+	}
+
+	@Override
+	public GetLastServiceOperationResponse getLastOperation(GetLastServiceOperationRequest request) {
+		String serviceInstanceId = request.getServiceInstanceId();
+		AcceptedOperation accepted = serviceInstanceId == null ? null : operations.get(serviceInstanceId);
+		if (accepted == null || !accepted.matches(request.getOperation())) {
+			return delegate.getLastOperation(request);
+		}
+
+		GetLastServiceOperationResponse response;
+		try {
+			response = delegate.getLastOperation(request);
+		} catch (ServiceInstanceDoesNotExistException e) {
+			if (accepted.before.getType() == Type.DELETE_SERVICE_INSTANCE) {
+				complete(serviceInstanceId, accepted, null, OperationState.SUCCEEDED);
+			}
+			throw e;
+		}
+		if (response != null && response.getState() != OperationState.IN_PROGRESS) {
+			complete(serviceInstanceId, accepted, response, response.getState());
+		}
+		return response;
+	}
+
+	@Override
+	public DeleteServiceInstanceResponse deleteServiceInstance(DeleteServiceInstanceRequest request) {
+		return publish(Type.DELETE_SERVICE_INSTANCE, request, request.getServiceInstanceId(),
+				() -> delegate.deleteServiceInstance(request));
+	}
+
+	@Override
+	public UpdateServiceInstanceResponse updateServiceInstance(UpdateServiceInstanceRequest request) {
+		return publish(Type.UPDATE_SERVICE_INSTANCE, request, request.getServiceInstanceId(),
+				() -> delegate.updateServiceInstance(request));
+	}
+
+	private <T extends AsyncServiceInstanceResponse> T publish(Type type, ServiceBrokerRequest request,
+															   String serviceInstanceId, Supplier<T> operation) {
+		ServiceBrokerEvent before = ServiceBrokerEvent.before(type, request);
+		dispatcher.beforeOperation(before);
+		T response = null;
+		Throwable failure = null;
+		try {
+			response = operation.get();
+			return response;
+		} catch (RuntimeException | Error e) {
+			failure = e;
+			throw e;
+		} finally {
+			ServiceBrokerEvent after = ServiceBrokerEvent.after(before, response, failure);
+			if (after.getState() == OperationState.IN_PROGRESS) {
+				accept(serviceInstanceId, new AcceptedOperation(before, response.getOperation()));
+			}
+			dispatcher.afterOperation(after);
+		}
+	}
+
+	private void accept(String serviceInstanceId, AcceptedOperation accepted) {
+		if (serviceInstanceId == null ||
+				(operations.size() >= maxOperations && !operations.containsKey(serviceInstanceId))) {
+			return;
+		}
+		operations.put(serviceInstanceId, accepted);
+	}
+
+	private void complete(String serviceInstanceId, AcceptedOperation accepted,
+						  GetLastServiceOperationResponse response, OperationState state) {
+		if (operations.remove(serviceInstanceId, accepted)) {
+			dispatcher.afterOperation(ServiceBrokerEvent.completed(accepted.before, response, state));
+		}
+	}
+
+	private static final class AcceptedOperation {
+		private final ServiceBrokerEvent before;
+
+		private final String operation;
+
+		private AcceptedOperation(ServiceBrokerEvent before, String operation) {
+			this.before = before;
+			this.operation = operation;
+		}
+
+		/**
+		 * Determine whether a request for the last operation asks about this operation. The platform sends the
+		 * operation ID only if the broker returned one.
+		 */
+		private boolean matches(String requestedOperation) {
+			return requestedOperation == null || operation == null || operation.equals(requestedOperation);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerException;
+
+/**
+ * An {@link OperationCheckpointStore} that keeps the operations in a JSON file. The file is written to a sibling
+ * file, forced to disk and moved over the previous file, so a crash while saving leaves either the previous or
+ * the new operations.
+ */
+public class FileOperationCheckpointStore implements OperationCheckpointStore {
+
+	private static final TypeReference<List<OperationCheckpoint>> CHECKPOINTS =
+			new TypeReference<List<OperationCheckpoint>>() {};
+
+	private final Path path;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	/**
+	 * Construct a store.
+	 *
+	 * @param path the file that holds the operations; its directory must exist
+	 */
+	public FileOperationCheckpointStore(Path path) {
+		if (path == null) {
+			throw new IllegalArgumentException("A checkpoint file must be provided");
+		}
+		this.path = path;
+	}
+
+	@Override
+	public void save(List<OperationCheckpoint> checkpoints) {
+		Path saved = path.resolveSibling(path.getFileName() + ".saving");
+		try {
+			Files.write(saved, objectMapper.writerFor(CHECKPOINTS).writeValueAsBytes(checkpoints));
+			try (FileChannel channel = FileChannel.open(saved, StandardOpenOption.WRITE)) {
+				channel.force(true);
+			}
+			Files.move(saved, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new ServiceBrokerException("Error saving operation checkpoints to " + path, e);
+		}
+	}
+
+	@Override
+	public List<OperationCheckpoint> load() {
+		if (!Files.exists(path)) {
+			return Collections.emptyList();
+		}
+		try {
+			return objectMapper.readValue(Files.readAllBytes(path), CHECKPOINTS);
+		} catch (IOException e) {
+			throw new ServiceBrokerException("Error loading operation checkpoints from " + path, e);
+		}
+	}
+
+	@Override
+	public void clear() {
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException e) {
+			throw new ServiceBrokerException("Error removing operation checkpoints " + path, e);
+		}
+	}
+}
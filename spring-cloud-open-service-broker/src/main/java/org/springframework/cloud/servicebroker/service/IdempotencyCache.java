@@ -0,0 +1,396 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceAppBindingResponse;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingResponse;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.RequestFingerprint;
+import org.springframework.cloud.servicebroker.model.VolumeMount;
+
+/**
+ * Remembers the responses to completed service instance provision and application bind requests for a short
+ * time, so that a platform repeating a request with an identical body is answered without calling the service
+ * again. A repeated request receives the remembered response, marked as describing an existing service instance or
+ * binding.
+ * <p>
+ * Responses are keyed by the service instance ID, or by the service instance and binding IDs, and are returned only
+ * for requests whose {@link RequestFingerprint fingerprint} matches the request that produced them. Credentials are
+ * held encrypted with AES-GCM under a random key that is kept only in memory. Asynchronous provision responses and
+ * route binding responses are not remembered.
+ * <p>
+ * Evicting a response also advances the generation of its key. A response is remembered with the generation read
+ * before the request was passed on, and is forgotten if the key was evicted in the meantime, so that a provision
+ * or bind that completes after a concurrent delete does not leave a response for a service instance or binding that
+ * no longer exists. Generations are kept in a fixed number of stripes, so an eviction can occasionally stop an
+ * unrelated response from being remembered, but never causes a stale response to be kept.
+ *
+ * @see IdempotentServiceInstanceService
+ * @see IdempotentServiceInstanceBindingService
+ */
+public class IdempotencyCache {
+	public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(10);
+
+	public static final int DEFAULT_MAXIMUM_SIZE = 10_000;
+
+	private static final String CIPHER_ALGORITHM = "AES/GCM/NoPadding";
+
+	private static final int IV_LENGTH = 12;
+
+	private static final int TAG_LENGTH = 128;
+
+	private static final int GENERATION_STRIPES = 1024;
+
+	private static final TypeReference<Map<String, Object>> CREDENTIALS_TYPE =
+			new TypeReference<Map<String, Object>>() {};
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final SecureRandom random = new SecureRandom();
+
+	private final SecretKey key;
+
+	private final ThreadLocal<Cipher> cipher = ThreadLocal.withInitial(IdempotencyCache::createCipher);
+
+	private final long timeToLiveNanos;
+
+	private final int maximumSize;
+
+	/**
+	 * Construct a cache that remembers up to {@link #DEFAULT_MAXIMUM_SIZE} responses for
+	 * {@link #DEFAULT_TIME_TO_LIVE}.
+	 */
+	public IdempotencyCache() {
+		this(DEFAULT_TIME_TO_LIVE, DEFAULT_MAXIMUM_SIZE);
+	}
+
+	/**
+	 * Construct a cache.
+	 *
+	 * @param timeToLive the time a response is remembered
+	 * @param maximumSize the maximum number of responses remembered
+	 */
+	public IdempotencyCache(Duration timeToLive, int maximumSize) {
+		if (timeToLive == null || timeToLive.isNegative() || timeToLive.isZero()) {
+			throw new IllegalArgumentException("The time to live must be positive");
+		}
+		if (maximumSize <= 0) {
+			throw new IllegalArgumentException("The maximum size must be positive");
+		}
+		this.timeToLiveNanos = timeToLive.toNanos();
+		this.maximumSize = maximumSize;
+		try {
+			KeyGenerator generator = KeyGenerator.getInstance("AES");
+			generator.init(256, random);
+			this.key = generator.generateKey();
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("Unable to create an AES key", e);
+		}
+	}
+
+	/**
+	 * Get the remembered response to a provision request with the same service instance ID and body.
+	 *
+	 * @param request the request
+	 * @return the response, or {@literal null} if none is remembered
+	 */
+	public CreateServiceInstanceResponse getServiceInstance(CreateServiceInstanceRequest request) {
+		Entry entry = get(instanceKey(request.getServiceInstanceId()), RequestFingerprint.of(request));
+		return entry == null ? null : CreateServiceInstanceResponse.builder()
+				.dashboardUrl(entry.dashboardUrl)
+				.instanceExisted(true)
+				.build();
+	}
+
+	/**
+	 * Get the generation of the provision response for a service instance, to be passed to
+	 * {@link #putServiceInstance(CreateServiceInstanceRequest, CreateServiceInstanceResponse, long)}.
+	 *
+	 * @param serviceInstanceId the ID of the service instance
+	 * @return the generation
+	 */
+	public long getServiceInstanceGeneration(String serviceInstanceId) {
+		return generation(instanceKey(serviceInstanceId));
+	}
+
+	/**
+	 * Remember the response to a provision request, if it completed the provisioning.
+	 *
+	 * @param request the request
+	 * @param response the response
+	 */
+	public void putServiceInstance(CreateServiceInstanceRequest request, CreateServiceInstanceResponse response) {
+		putServiceInstance(request, response, getServiceInstanceGeneration(request.getServiceInstanceId()));
+	}
+
+	/**
+	 * Remember the response to a provision request, if it completed the provisioning and the service instance was
+	 * not evicted since the generation was read.
+	 *
+	 * @param request the request
+	 * @param response the response
+	 * @param generation the generation read before the request was passed on
+	 */
+	public void putServiceInstance(CreateServiceInstanceRequest request, CreateServiceInstanceResponse response,
+								   long generation) {
+		String fingerprint = RequestFingerprint.of(request);
+		if (fingerprint != null && response != null && !response.isAsync()) {
+			Entry entry = new Entry(fingerprint);
+			entry.dashboardUrl = response.getDashboardUrl();
+			put(instanceKey(request.getServiceInstanceId()), entry, generation);
+		}
+	}
+
+	/**
+	 * Get the remembered response to a bind request with the same service instance and binding IDs and body.
+	 *
+	 * @param request the request
+	 * @return the response, or {@literal null} if none is remembered
+	 */
+	public CreateServiceInstanceAppBindingResponse getBinding(CreateServiceInstanceBindingRequest request) {
+		Entry entry = get(bindingKey(request.getServiceInstanceId(), request.getBindingId()),
+				RequestFingerprint.of(request));
+		if (entry == null) {
+			return null;
+		}
+
+		CreateServiceInstanceAppBindingResponse.CreateServiceInstanceAppBindingResponseBuilder builder =
+				CreateServiceInstanceAppBindingResponse.builder()
+						.syslogDrainUrl(entry.syslogDrainUrl)
+						.bindingExisted(true);
+		if (entry.credentials != null) {
+			builder.credentials(decryptCredentials(entry.credentials));
+		}
+		if (entry.volumeMounts != null) {
+			builder.volumeMounts(entry.volumeMounts);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Get the generation of the bind response for a binding, to be passed to
+	 * {@link #putBinding(CreateServiceInstanceBindingRequest, CreateServiceInstanceBindingResponse, long)}.
+	 *
+	 * @param serviceInstanceId the ID of the service instance
+	 * @param bindingId the ID of the binding
+	 * @return the generation
+	 */
+	public long getBindingGeneration(String serviceInstanceId, String bindingId) {
+		return generation(bindingKey(serviceInstanceId, bindingId));
+	}
+
+	/**
+	 * Remember the response to a bind request, if it is an application binding.
+	 *
+	 * @param request the request
+	 * @param response the response
+	 */
+	public void putBinding(CreateServiceInstanceBindingRequest request, CreateServiceInstanceBindingResponse response) {
+		putBinding(request, response, getBindingGeneration(request.getServiceInstanceId(), request.getBindingId()));
+	}
+
+	/**
+	 * Remember the response to a bind request, if it is an application binding and the binding was not evicted
+	 * since the generation was read.
+	 *
+	 * @param request the request
+	 * @param response the response
+	 * @param generation the generation read before the request was passed on
+	 */
+	public void putBinding(CreateServiceInstanceBindingRequest request, CreateServiceInstanceBindingResponse response,
+						   long generation) {
+		String fingerprint = RequestFingerprint.of(request);
+		if (fingerprint != null && response instanceof CreateServiceInstanceAppBindingResponse) {
+			CreateServiceInstanceAppBindingResponse appBinding = (CreateServiceInstanceAppBindingResponse) response;
+			Entry entry = new Entry(fingerprint);
+			entry.syslogDrainUrl = appBinding.getSyslogDrainUrl();
+			entry.volumeMounts = appBinding.getVolumeMounts();
+			if (appBinding.getCredentials() != null) {
+				entry.credentials = encryptCredentials(appBinding.getCredentials());
+			}
+			put(bindingKey(request.getServiceInstanceId(), request.getBindingId()), entry, generation);
+		}
+	}
+
+	/**
+	 * Forget the response to the provision request for a service instance.
+	 *
+	 * @param serviceInstanceId the ID of the service instance
+	 */
+	public void evictServiceInstance(String serviceInstanceId) {
+		evict(instanceKey(serviceInstanceId));
+	}
+
+	/**
+	 * Forget the response to the bind request for a binding.
+	 *
+	 * @param serviceInstanceId the ID of the service instance
+	 * @param bindingId the ID of the binding
+	 */
+	public void evictBinding(String serviceInstanceId, String bindingId) {
+		evict(bindingKey(serviceInstanceId, bindingId));
+	}
+
+	/**
+	 * Forget all remembered responses.
+	 */
+	public void clear() {
+		this.entries.clear();
+	}
+
+	int size() {
+		return this.entries.size();
+	}
+
+	private Entry get(String key, String fingerprint) {
+		Entry entry = this.entries.get(key);
+		if (entry == null || fingerprint == null) {
+			return null;
+		}
+		if (System.nanoTime() - entry.expiryNanos >= 0) {
+			this.entries.remove(key, entry);
+			return null;
+		}
+		return entry.fingerprint.equals(fingerprint) ? entry : null;
+	}
+
+	private long generation(String key) {
+		return this.generations.get(stripe(key));
+	}
+
+	private void evict(String key) {
+		this.generations.incrementAndGet(stripe(key));
+		this.entries.remove(key);
+	}
+
+	private void put(String key, Entry entry, long generation) {
+		long now = System.nanoTime();
+		entry.expiryNanos = now + this.timeToLiveNanos;
+		this.entries.put(key, entry);
+		if (generation(key) != generation) {
+			this.entries.remove(key, entry);
+			return;
+		}
+		if (this.entries.size() > this.maximumSize) {
+			this.entries.values().removeIf(existing -> now - existing.expiryNanos >= 0);
+			Iterator<String> iterator = this.entries.keySet().iterator();
+			while (this.entries.size() > this.maximumSize && iterator.hasNext()) {
+				if (!iterator.next().equals(key)) {
+					iterator.remove();
+				}
+			}
+		}
+	}
+
+	private byte[] encryptCredentials(Map<String, Object> credentials) {
+		byte[] plaintext = null;
+		try {
+			plaintext = objectMapper.writeValueAsBytes(credentials);
+			byte[] iv = new byte[IV_LENGTH];
+			random.nextBytes(iv);
+			Cipher cipher = this.cipher.get();
+			cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH, iv));
+			byte[] ciphertext = cipher.doFinal(plaintext);
+			return ByteBuffer.allocate(IV_LENGTH + ciphertext.length).put(iv).put(ciphertext).array();
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to encrypt binding credentials", e);
+		} finally {
+			if (plaintext != null) {
+				Arrays.fill(plaintext, (byte) 0);
+			}
+		}
+	}
+
+	private Map<String, Object> decryptCredentials(byte[] encrypted) {
+		byte[] plaintext = null;
+		try {
+			Cipher cipher = this.cipher.get();
+			cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH, encrypted, 0, IV_LENGTH));
+			plaintext = cipher.doFinal(encrypted, IV_LENGTH, encrypted.length - IV_LENGTH);
+			return objectMapper.readValue(plaintext, CREDENTIALS_TYPE);
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to decrypt binding credentials", e);
+		} finally {
+			if (plaintext != null) {
+				Arrays.fill(plaintext, (byte) 0);
+			}
+		}
+	}
+
+	private static Cipher createCipher() {
+		try {
+			return Cipher.getInstance(CIPHER_ALGORITHM);
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("Unable to create " + CIPHER_ALGORITHM + " instance", e);
+		}
+	}
+
+	private static int stripe(String key) {
+		int hash = key.hashCode();
+		return (hash ^ (hash >>> 16)) & (GENERATION_STRIPES - 1);
+	}
+
+	private static String instanceKey(String serviceInstanceId) {
+		return "i:" + serviceInstanceId;
+	}
+
+	private static String bindingKey(String serviceInstanceId, String bindingId) {
+		return "b:" + serviceInstanceId + "/" + bindingId;
+	}
+
+	private static final class Entry {
+		private final String fingerprint;
+
+		private volatile long expiryNanos;
+
+		private String dashboardUrl;
+
+		private String syslogDrainUrl;
+
+		private List<VolumeMount> volumeMounts;
+
+		private byte[] credentials;
+
+		private Entry(String fingerprint) {
+			this.fingerprint = fingerprint;
+		}
+	}
+}
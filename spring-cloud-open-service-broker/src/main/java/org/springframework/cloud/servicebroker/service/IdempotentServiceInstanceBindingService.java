@@ -0,0 +1,62 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingResponse;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceBindingRequest;
+
+/**
+ * A {@link ServiceInstanceBindingService} that answers a repeated bind request from the {@link IdempotencyCache}
+ * instead of passing it to another {@link ServiceInstanceBindingService}. Deleting a binding forgets the remembered
+ * bind response, and a bind that completes after a concurrent delete of its binding is not remembered.
+ *
+ * @see IdempotencyCache
+ */
+public class IdempotentServiceInstanceBindingService implements ServiceInstanceBindingService {
+
+	private final ServiceInstanceBindingService delegate;
+
+	private final IdempotencyCache cache;
+
+	public IdempotentServiceInstanceBindingService(ServiceInstanceBindingService delegate, IdempotencyCache cache) {
+		this.delegate = delegate;
+		this.cache = cache;
+	}
+
+	@Override
+	public CreateServiceInstanceBindingResponse createServiceInstanceBinding(CreateServiceInstanceBindingRequest request) {
+		long generation = cache.getBindingGeneration(request.getServiceInstanceId(), request.getBindingId());
+		CreateServiceInstanceBindingResponse response = cache.getBinding(request);
+		if (response == null) {
+			response = delegate.createServiceInstanceBinding(request);
+			cache.putBinding(request, response, generation);
+		}
+		return response;
+	}
+
+	@Override
+	public void deleteServiceInstanceBinding(DeleteServiceInstanceBindingRequest request) {
+		cache.evictBinding(request.getServiceInstanceId(), request.getBindingId());
+		try {
+			delegate.deleteServiceInstanceBinding(request);
+		} finally {
+			cache.evictBinding(request.getServiceInstanceId(), request.getBindingId());
+		}
+	}
+}
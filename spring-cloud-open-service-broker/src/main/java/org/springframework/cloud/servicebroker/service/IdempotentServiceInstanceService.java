@@ -0,0 +1,84 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationRequest;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationResponse;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceResponse;
+
+/**
+ * A {@link ServiceInstanceService} that answers a repeated provision request from the {@link IdempotencyCache}
+ * instead of passing it to another {@link ServiceInstanceService}. Updating or deleting a service instance forgets
+ * the remembered provision response, both before and after the operation, so that a provision response remembered
+ * while the operation waited for its lock is not kept. A provision that completes after a concurrent update or
+ * delete has evicted its service instance is not remembered.
+ *
+ * @see IdempotencyCache
+ */
+public class IdempotentServiceInstanceService implements ServiceInstanceService {
+
+	private final ServiceInstanceService delegate;
+
+	private final IdempotencyCache cache;
+
+	public IdempotentServiceInstanceService(ServiceInstanceService delegate, IdempotencyCache cache) {
+		this.delegate = delegate;
+		this.cache = cache;
+	}
+
+	@Override
+	public CreateServiceInstanceResponse createServiceInstance(CreateServiceInstanceRequest request) {
+		long generation = cache.getServiceInstanceGeneration(request.getServiceInstanceId());
+		CreateServiceInstanceResponse response = cache.getServiceInstance(request);
+		if (response == null) {
+			response = delegate.createServiceInstance(request);
+			cache.putServiceInstance(request, response, generation);
+		}
+		return response;
+	}
+
+	@Override
+	public GetLastServiceOperationResponse getLastOperation(GetLastServiceOperationRequest request) {
+		return delegate.getLastOperation(request);
+	}
+
+	@Override
+	public DeleteServiceInstanceResponse deleteServiceInstance(DeleteServiceInstanceRequest request) {
+		cache.evictServiceInstance(request.getServiceInstanceId());
+		try {
+			return delegate.deleteServiceInstance(request);
+		} finally {
+			cache.evictServiceInstance(request.getServiceInstanceId());
+		}
+	}
+
+	@Override
+	public UpdateServiceInstanceResponse updateServiceInstance(UpdateServiceInstanceRequest request) {
+		cache.evictServiceInstance(request.getServiceInstanceId());
+		try {
+			return delegate.updateServiceInstance(request);
+		} finally {
+			cache.evictServiceInstance(request.getServiceInstanceId());
+		}
+	}
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link ServiceInstanceParametersStore} that holds the parameters of service instances in memory. The parameters
+ * are lost when the service broker is restarted, after which each service instance is compared again from its next
+ * update.
+ */
+public class InMemoryServiceInstanceParametersStore implements ServiceInstanceParametersStore {
+
+	private final Map<String, ServiceInstanceParameters> parameters = new ConcurrentHashMap<>();
+
+	@Override
+	public ServiceInstanceParameters getParameters(String serviceInstanceId) {
+		return parameters.get(serviceInstanceId);
+	}
+
+	@Override
+	public void saveParameters(ServiceInstanceParameters parameters) {
+		this.parameters.put(parameters.getServiceInstanceId(), parameters);
+	}
+
+	@Override
+	public void deleteParameters(String serviceInstanceId) {
+		parameters.remove(serviceInstanceId);
+	}
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.springframework.cloud.servicebroker.model.OperationState;
+import org.springframework.cloud.servicebroker.model.ServiceInstanceOperation;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * An implementation of {@link OperationStore} that keeps operations in a relational database, so that the state
+ * of an operation started by one replica of a service broker can be read by any other replica.
+ * <p>
+ * The store keeps a single row per service instance, keyed by the service instance ID, so the state of the last
+ * operation is always found with one primary key lookup. The table is expected to exist; a schema is provided
+ * in {@code org/springframework/cloud/servicebroker/service/schema-operation-store.sql}.
+ */
+public class JdbcOperationStore implements OperationStore {
+	private static final Logger log = getLogger(JdbcOperationStore.class);
+
+	public static final String DEFAULT_TABLE_NAME = "SERVICE_INSTANCE_OPERATION";
+
+	private static final String COLUMNS = "SERVICE_INSTANCE_ID, OPERATION_ID, OPERATION_STATE, DESCRIPTION, " +
+			"DELETE_OPERATION, CREATED_AT, UPDATED_AT, VERSION";
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final String selectSql;
+	private final String selectManySql;
+	private final String insertSql;
+	private final String replaceSql;
+	private final String selectVersionSql;
+	private final String updateStateSql;
+	private final String deleteSql;
+
+	private final RowMapper<ServiceInstanceOperation> rowMapper = this::mapOperation;
+
+	public JdbcOperationStore(DataSource dataSource) {
+		this(new JdbcTemplate(dataSource));
+	}
+
+	public JdbcOperationStore(JdbcTemplate jdbcTemplate) {
+		this(jdbcTemplate, DEFAULT_TABLE_NAME);
+	}
+
+	public JdbcOperationStore(JdbcTemplate jdbcTemplate, String tableName) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = new TransactionTemplate(
+				new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+		this.selectSql = "SELECT " + COLUMNS + " FROM " + tableName + " WHERE SERVICE_INSTANCE_ID = ?";
+		this.selectManySql = "SELECT " + COLUMNS + " FROM " + tableName + " WHERE SERVICE_INSTANCE_ID IN (%s)";
+		this.insertSql = "INSERT INTO " + tableName + " (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, 0)";
+		this.replaceSql = "UPDATE " + tableName + " SET OPERATION_ID = ?, OPERATION_STATE = ?, DESCRIPTION = ?, " +
+				"DELETE_OPERATION = ?, CREATED_AT = ?, UPDATED_AT = ?, VERSION = VERSION + 1 " +
+				"WHERE SERVICE_INSTANCE_ID = ?";
+		this.selectVersionSql = "SELECT VERSION FROM " + tableName + " WHERE SERVICE_INSTANCE_ID = ?";
+		this.updateStateSql = "UPDATE " + tableName + " SET OPERATION_STATE = ?, DESCRIPTION = ?, UPDATED_AT = ?, " +
+				"VERSION = VERSION + 1 WHERE SERVICE_INSTANCE_ID = ? AND VERSION = ?";
+		this.deleteSql = "DELETE FROM " + tableName + " WHERE SERVICE_INSTANCE_ID = ?";
+	}
+
+	@Override
+	public ServiceInstanceOperation getOperation(String serviceInstanceId) {
+		List<ServiceInstanceOperation> operations = jdbcTemplate.query(selectSql, rowMapper, serviceInstanceId);
+		return operations.isEmpty() ? null : operations.get(0);
+	}
+
+	@Override
+	public Map<String, ServiceInstanceOperation> getOperations(Collection<String> serviceInstanceIds) {
+		Map<String, ServiceInstanceOperation> operations = new HashMap<>();
+		Set<String> ids = new LinkedHashSet<>(serviceInstanceIds);
+		if (ids.isEmpty()) {
+			return operations;
+		}
+
+		String sql = String.format(selectManySql, String.join(", ", Collections.nCopies(ids.size(), "?")));
+		for (ServiceInstanceOperation operation : jdbcTemplate.query(sql, rowMapper, ids.toArray())) {
+			operations.put(operation.getServiceInstanceId(), operation);
+		}
+		return operations;
+	}
+
+	@Override
+	public ServiceInstanceOperation saveOperation(ServiceInstanceOperation operation) {
+		Long version = replace(operation);
+		while (version == null) {
+			try {
+				jdbcTemplate.update(insertSql,
+						operation.getServiceInstanceId(),
+						operation.getOperation(),
+						operation.getState().name(),
+						operation.getDescription(),
+						operation.isDeleteOperation(),
+						Timestamp.from(operation.getCreatedAt()),
+						Timestamp.from(operation.getUpdatedAt()));
+				version = 0L;
+			} catch (DuplicateKeyException e) {
+				log.debug("Operation inserted concurrently, replacing: serviceInstanceId={}",
+						operation.getServiceInstanceId());
+				version = replace(operation);
+			}
+		}
+
+		return ServiceInstanceOperation.builder()
+				.serviceInstanceId(operation.getServiceInstanceId())
+				.operation(operation.getOperation())
+				.state(operation.getState())
+				.description(operation.getDescription())
+				.deleteOperation(operation.isDeleteOperation())
+				.createdAt(operation.getCreatedAt())
+				.updatedAt(operation.getUpdatedAt())
+				.version(version)
+				.build();
+	}
+
+	/**
+	 * Replace the saved operation and read its new version in one transaction, so that the version returned is the
+	 * one written by this replacement rather than by a concurrent update.
+	 *
+	 * @return the new version, or {@literal null} if no operation was saved for the service instance
+	 */
+	private Long replace(ServiceInstanceOperation operation) {
+		return transactionTemplate.execute(status -> {
+			int updated = jdbcTemplate.update(replaceSql,
+					operation.getOperation(),
+					operation.getState().name(),
+					operation.getDescription(),
+					operation.isDeleteOperation(),
+					Timestamp.from(operation.getCreatedAt()),
+					Timestamp.from(operation.getUpdatedAt()),
+					operation.getServiceInstanceId());
+			return updated == 0 ? null :
+					jdbcTemplate.queryForObject(selectVersionSql, Long.class, operation.getServiceInstanceId());
+		});
+	}
+
+	@Override
+	public boolean updateOperation(ServiceInstanceOperation operation) {
+		return jdbcTemplate.update(updateStateSql, toUpdateStateArgs(operation)) > 0;
+	}
+
+	@Override
+	public List<ServiceInstanceOperation> updateOperations(Collection<ServiceInstanceOperation> operations) {
+		List<ServiceInstanceOperation> pending = new ArrayList<>(operations);
+		List<Object[]> batchArgs = new ArrayList<>(pending.size());
+		for (ServiceInstanceOperation operation : pending) {
+			batchArgs.add(toUpdateStateArgs(operation));
+		}
+
+		int[] counts = jdbcTemplate.batchUpdate(updateStateSql, batchArgs);
+
+		// drivers that report Statement.SUCCESS_NO_INFO for batched statements are assumed to have applied them
+		List<ServiceInstanceOperation> rejected = new ArrayList<>();
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] == 0) {
+				rejected.add(pending.get(i));
+			}
+		}
+		return rejected;
+	}
+
+	private Object[] toUpdateStateArgs(ServiceInstanceOperation operation) {
+		return new Object[] {
+				operation.getState().name(),
+				operation.getDescription(),
+				Timestamp.from(operation.getUpdatedAt()),
+				operation.getServiceInstanceId(),
+				operation.getVersion()
+		};
+	}
+
+	@Override
+	public void deleteOperation(String serviceInstanceId) {
+		jdbcTemplate.update(deleteSql, serviceInstanceId);
+	}
+
+	private ServiceInstanceOperation mapOperation(ResultSet rs, int rowNum) throws SQLException {
+		return ServiceInstanceOperation.builder()
+				.serviceInstanceId(rs.getString("SERVICE_INSTANCE_ID"))
+				.operation(rs.getString("OPERATION_ID"))
+				.state(OperationState.valueOf(rs.getString("OPERATION_STATE")))
+				.description(rs.getString("DESCRIPTION"))
+				.deleteOperation(rs.getBoolean("DELETE_OPERATION"))
+				.createdAt(toInstant(rs.getTimestamp("CREATED_AT")))
+				.updatedAt(toInstant(rs.getTimestamp("UPDATED_AT")))
+				.version(rs.getLong("VERSION"))
+				.build();
+	}
+
+	private Instant toInstant(Timestamp timestamp) {
+		return timestamp == null ? null : timestamp.toInstant();
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.service;
+
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingResponse;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceBindingRequest;
+
+/**
+ * A {@link ServiceInstanceBindingService} that serializes binding operations with all other operations on the
+ * same service instance before passing them to another {@link ServiceInstanceBindingService}.
+ *
+ * @see ServiceInstanceLockManager
+ */
+public class LockingServiceInstanceBindingService implements ServiceInstanceBindingService {
+
+	private final ServiceInstanceBindingService delegate;
+
+	private final ServiceInstanceLockManager lockManager;
+
+	public LockingServiceInstanceBindingService(ServiceInstanceBindingService delegate,
+												ServiceInstanceLockManager lockManager) {
+		this.delegate = delegate;
+		this.lockManager = lockManager;
+	}
+
+	@Override
+	public CreateServiceInstanceBindingResponse createServiceInstanceBinding(CreateServiceInstanceBindingRequest request) {
+		return lockManager.execute(request.getServiceInstanceId(), () -> delegate.createServiceInstanceBinding(request));
+	}
+
+	@Override
+	public void deleteServiceInstanceBinding(DeleteServiceInstanceBindingRequest request) {
+		lockManager.execute(request.getServiceInstanceId(), () -> delegate.deleteServiceInstanceBinding(request));
+	}
+}
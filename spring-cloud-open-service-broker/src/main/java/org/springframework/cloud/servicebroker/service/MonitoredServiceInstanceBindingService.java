@@ -0,0 +1,69 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingResponse;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerActivity.Call;
+
+/**
+ * A {@link ServiceInstanceBindingService} that records the calls to another {@link ServiceInstanceBindingService}
+ * in a {@link ServiceBrokerActivity}.
+ *
+ * @see ServiceBrokerActivity
+ */
+public class MonitoredServiceInstanceBindingService implements ServiceInstanceBindingService {
+
+	private final ServiceInstanceBindingService delegate;
+
+	private final ServiceBrokerActivity activity;
+
+	public MonitoredServiceInstanceBindingService(ServiceInstanceBindingService delegate,
+												  ServiceBrokerActivity activity) {
+		this.delegate = delegate;
+		this.activity = activity;
+	}
+
+	@Override
+	public CreateServiceInstanceBindingResponse createServiceInstanceBinding(CreateServiceInstanceBindingRequest request) {
+		Call call = activity.start("createServiceInstanceBinding", request.getServiceDefinitionId(),
+				request.getPlanId(), request.getCfInstanceId(), request.getServiceInstanceId());
+		boolean failed = true;
+		try {
+			CreateServiceInstanceBindingResponse response = delegate.createServiceInstanceBinding(request);
+			failed = false;
+			return response;
+		} finally {
+			activity.finish(call, failed);
+		}
+	}
+
+	@Override
+	public void deleteServiceInstanceBinding(DeleteServiceInstanceBindingRequest request) {
+		Call call = activity.start("deleteServiceInstanceBinding", request.getServiceDefinitionId(),
+				request.getPlanId(), request.getCfInstanceId(), request.getServiceInstanceId());
+		boolean failed = true;
+		try {
+			delegate.deleteServiceInstanceBinding(request);
+			failed = false;
+		} finally {
+			activity.finish(call, failed);
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.util.function.Supplier;
+
+import org.springframework.cloud.servicebroker.model.AsyncServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationRequest;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationResponse;
+import org.springframework.cloud.servicebroker.model.OperationState;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerActivity.Call;
+
+/**
+ * A {@link ServiceInstanceService} that records the calls to another {@link ServiceInstanceService} and the
+ * asynchronous operations it accepts in a {@link ServiceBrokerActivity}.
+ *
+ * @see ServiceBrokerActivity
+ */
+public class MonitoredServiceInstanceService implements ServiceInstanceService {
+
+	private final ServiceInstanceService delegate;
+
+	private final ServiceBrokerActivity activity;
+
+	public MonitoredServiceInstanceService(ServiceInstanceService delegate, ServiceBrokerActivity activity) {
+		this.delegate = delegate;
+		this.activity = activity;
+	}
+
+	@Override
+	public CreateServiceInstanceResponse createServiceInstance(CreateServiceInstanceRequest request) {
+		return execute(activity.start("createServiceInstance", request.getServiceDefinitionId(),
+				request.getPlanId(), request.getCfInstanceId(), request.getServiceInstanceId()),
+				() -> delegate.createServiceInstance(request));
+	}
+
+	@Override
+	public GetLastServiceOperationResponse getLastOperation(GetLastServiceOperationRequest request) {
+		Call call = activity.start("getLastOperation", request.getServiceDefinitionId(), request.getPlanId(),
+				request.getCfInstanceId(), request.getServiceInstanceId());
+		boolean failed = true;
+		try {
+			GetLastServiceOperationResponse response = delegate.getLastOperation(request);
+			if (response != null) {
+				activity.operationPolled(request.getServiceInstanceId(), response.getState(),
+						response.getDescription());
+			}
+			failed = false;
+			return response;
+		} finally {
+			activity.finish(call, failed);
+		}
+	}
+
+	@Override
+	public DeleteServiceInstanceResponse deleteServiceInstance(DeleteServiceInstanceRequest request) {
+		DeleteServiceInstanceResponse response = execute(activity.start("deleteServiceInstance",
+				request.getServiceDefinitionId(), request.getPlanId(), request.getCfInstanceId(),
+				request.getServiceInstanceId()),
+				() -> delegate.deleteServiceInstance(request));
+		if (response != null && !response.isAsync()) {
+			activity.operationPolled(request.getServiceInstanceId(), OperationState.SUCCEEDED, null);
+		}
+		return response;
+	}
+
+	@Override
+	public UpdateServiceInstanceResponse updateServiceInstance(UpdateServiceInstanceRequest request) {
+		return execute(activity.start("updateServiceInstance", request.getServiceDefinitionId(),
+				request.getPlanId(), request.getCfInstanceId(), request.getServiceInstanceId()),
+				() -> delegate.updateServiceInstance(request));
+	}
+
+	private <T extends AsyncServiceInstanceResponse> T execute(Call call, Supplier<T> operation) {
+		boolean failed = true;
+		try {
+			T response = operation.get();
+			if (response != null && response.isAsync()) {
+				activity.operationAccepted(call, response.getOperation());
+			}
+			failed = false;
+			return response;
+		} finally {
+			activity.finish(call, failed);
+		}
+	}
+}
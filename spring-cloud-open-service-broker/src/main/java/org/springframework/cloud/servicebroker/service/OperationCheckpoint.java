@@ -0,0 +1,130 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.util.Objects;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import org.springframework.cloud.servicebroker.model.OperationState;
+
+/**
+ * The state of an asynchronous operation on a service instance that is saved when a service broker is stopped,
+ * so that another instance of the service broker can continue to answer requests for the last operation.
+ *
+ * @see OperationCheckpointStore
+ * @see ServiceBrokerDrain
+ */
+public class OperationCheckpoint {
+
+	@JsonProperty
+	private String serviceInstanceId;
+
+	@JsonProperty
+	private String operation;
+
+	@JsonProperty
+	private String delegateOperation;
+
+	@JsonProperty
+	private boolean deleteOperation;
+
+	@JsonProperty
+	private OperationState state;
+
+	@JsonProperty
+	private String description;
+
+	OperationCheckpoint() {
+	}
+
+	/**
+	 * Construct a checkpoint.
+	 *
+	 * @param serviceInstanceId the ID of the service instance
+	 * @param operation the operation ID returned to the platform
+	 * @param delegateOperation the operation ID returned by the {@link ServiceInstanceService} that continues the
+	 * operation asynchronously, or {@literal null}
+	 * @param deleteOperation whether the operation deletes the service instance
+	 * @param state the state of the operation
+	 * @param description the description of the state, or {@literal null}
+	 */
+	public OperationCheckpoint(String serviceInstanceId, String operation, String delegateOperation,
+							   boolean deleteOperation, OperationState state, String description) {
+		this.serviceInstanceId = serviceInstanceId;
+		this.operation = operation;
+		this.delegateOperation = delegateOperation;
+		this.deleteOperation = deleteOperation;
+		this.state = state;
+		this.description = description;
+	}
+
+	public String getServiceInstanceId() {
+		return this.serviceInstanceId;
+	}
+
+	public String getOperation() {
+		return this.operation;
+	}
+
+	public String getDelegateOperation() {
+		return this.delegateOperation;
+	}
+
+	public boolean isDeleteOperation() {
+		return this.deleteOperation;
+	}
+
+	public OperationState getState() {
+		return this.state;
+	}
+
+	public String getDescription() {
+		return this.description;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof OperationCheckpoint)) return false;
+		OperationCheckpoint that = (OperationCheckpoint) o;
+		return deleteOperation == that.deleteOperation &&
+				Objects.equals(serviceInstanceId, that.serviceInstanceId) &&
+				Objects.equals(operation, that.operation) &&
+				Objects.equals(delegateOperation, that.delegateOperation) &&
+				state == that.state &&
+				Objects.equals(description, that.description);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(serviceInstanceId, operation, delegateOperation, deleteOperation, state, description);
+	}
+
+	@Override
+	public String toString() {
+		return "OperationCheckpoint{" +
+				"serviceInstanceId='" + serviceInstanceId + '\'' +
+				", operation='" + operation + '\'' +
+				", delegateOperation='" + delegateOperation + '\'' +
+				", deleteOperation=" + deleteOperation +
+				", state=" + state +
+				", description='" + description + '\'' +
+				'}';
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.util.List;
+
+/**
+ * This interface is implemented by stores that keep the asynchronous operations a service broker was following
+ * when it was stopped, so that the next instance of the service broker can resume them. The store must survive
+ * the service broker instance, for example on a persistent volume or in a database.
+ *
+ * @see ServiceBrokerDrain
+ */
+public interface OperationCheckpointStore {
+
+	/**
+	 * Save the operations, replacing any operations saved before.
+	 *
+	 * @param checkpoints the operations to save
+	 */
+	void save(List<OperationCheckpoint> checkpoints);
+
+	/**
+	 * Load the saved operations.
+	 *
+	 * @return the operations, or an empty list if none were saved
+	 */
+	List<OperationCheckpoint> load();
+
+	/**
+	 * Remove the saved operations, once they have been resumed.
+	 */
+	void clear();
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The time a service broker waits for a create, update or delete operation on a service instance to complete
+ * before answering the platform that the operation continues asynchronously, and the {@link Executor} that runs
+ * the operations.
+ * <p>
+ * Platforms abandon a synchronous request after a timeout, about 60 seconds for Cloud Foundry, and may then
+ * start orphan mitigation. The deadline should be well below that timeout.
+ *
+ * @see DeadlineServiceInstanceService
+ */
+public class OperationDeadline {
+	public static final Duration DEFAULT_DEADLINE = Duration.ofSeconds(30);
+
+	public static final int DEFAULT_MAX_THREADS = 64;
+
+	private final Duration deadline;
+
+	private final Executor executor;
+
+	/**
+	 * Construct an operation deadline of {@link #DEFAULT_DEADLINE}.
+	 */
+	public OperationDeadline() {
+		this(DEFAULT_DEADLINE);
+	}
+
+	/**
+	 * Construct an operation deadline that runs operations on a pool of up to {@link #DEFAULT_MAX_THREADS} daemon
+	 * threads. Operations started while all the threads are busy are rejected.
+	 *
+	 * @param deadline the time to wait for an operation to complete
+	 */
+	public OperationDeadline(Duration deadline) {
+		this(deadline, createExecutor());
+	}
+
+	/**
+	 * Construct an operation deadline.
+	 *
+	 * @param deadline the time to wait for an operation to complete
+	 * @param executor the executor that runs the operations, which must not run them on the calling thread
+	 */
+	public OperationDeadline(Duration deadline, Executor executor) {
+		if (deadline == null || deadline.isNegative() || deadline.isZero()) {
+			throw new IllegalArgumentException("The deadline must be positive");
+		}
+		if (executor == null) {
+			throw new IllegalArgumentException("An executor must be provided");
+		}
+		this.deadline = deadline;
+		this.executor = executor;
+	}
+
+	public Duration getDeadline() {
+		return this.deadline;
+	}
+
+	public Executor getExecutor() {
+		return this.executor;
+	}
+
+	private static ExecutorService createExecutor() {
+		AtomicInteger count = new AtomicInteger();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(DEFAULT_MAX_THREADS, DEFAULT_MAX_THREADS,
+				60, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+					Thread thread = new Thread(runnable, "service-broker-operation-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.cloud.servicebroker.model.ServiceInstanceOperation;
+
+/**
+ * This interface is implemented by stores that hold the state of the last asynchronous operation on each service
+ * instance, so that any replica of a service broker can answer requests for the state of the last operation.
+ * <p>
+ * A service broker that returns asynchronous responses saves a new operation when the work is started, and
+ * updates its state as the work progresses. When an {@code OperationStore} is configured, requests for the
+ * last operation on a service instance are answered from the store if it holds a matching operation, and
+ * are passed to the {@link ServiceInstanceService} otherwise.
+ */
+public interface OperationStore {
+
+	/**
+	 * Get the last operation on a service instance.
+	 *
+	 * @param serviceInstanceId the ID of the service instance
+	 * @return the last operation, or null if no operation is known for the service instance
+	 */
+	ServiceInstanceOperation getOperation(String serviceInstanceId);
+
+	/**
+	 * Get the last operations on several service instances. Stores that can read several operations at once
+	 * should override this method, which gets each operation in turn.
+	 *
+	 * @param serviceInstanceIds the IDs of the service instances
+	 * @return the last operations by service instance ID, without entries for service instances with no known
+	 *         operation
+	 */
+	default Map<String, ServiceInstanceOperation> getOperations(Collection<String> serviceInstanceIds) {
+		Map<String, ServiceInstanceOperation> operations = new HashMap<>();
+		for (String serviceInstanceId : serviceInstanceIds) {
+			ServiceInstanceOperation operation = getOperation(serviceInstanceId);
+			if (operation != null) {
+				operations.put(serviceInstanceId, operation);
+			}
+		}
+		return operations;
+	}
+
+	/**
+	 * Save a new operation on a service instance, replacing any operation previously stored for the
+	 * service instance regardless of its version.
+	 *
+	 * @param operation the operation to save
+	 * @return the operation as stored, including its version
+	 */
+	ServiceInstanceOperation saveOperation(ServiceInstanceOperation operation);
+
+	/**
+	 * Update the state and description of an operation. The update is applied only if the version of the
+	 * given operation matches the version of the stored operation.
+	 *
+	 * @param operation the operation with its updated state, as returned by {@link #getOperation(String)}
+	 *                  or {@link #saveOperation(ServiceInstanceOperation)}
+	 * @return {@literal true} if the update was applied, {@literal false} if the stored operation was
+	 *         changed or removed concurrently
+	 */
+	boolean updateOperation(ServiceInstanceOperation operation);
+
+	/**
+	 * Update the state and description of several operations in one batch, applying the same version
+	 * check as {@link #updateOperation(ServiceInstanceOperation)} to each operation.
+	 *
+	 * @param operations the operations with their updated states
+	 * @return the operations that were not applied because the stored operation was changed or removed
+	 *         concurrently
+	 */
+	List<ServiceInstanceOperation> updateOperations(Collection<ServiceInstanceOperation> operations);
+
+	/**
+	 * Remove any operation stored for a service instance.
+	 *
+	 * @param serviceInstanceId the ID of the service instance
+	 */
+	void deleteOperation(String serviceInstanceId);
+
+}
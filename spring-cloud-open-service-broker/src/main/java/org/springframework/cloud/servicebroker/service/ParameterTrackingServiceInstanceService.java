@@ -0,0 +1,178 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceDoesNotExistException;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationRequest;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationResponse;
+import org.springframework.cloud.servicebroker.model.OperationState;
+import org.springframework.cloud.servicebroker.model.ParameterChanges;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceResponse;
+
+/**
+ * A {@link ServiceInstanceService} that saves the plan and parameters of each service instance in a
+ * {@link ServiceInstanceParametersStore} and compares update requests with them before passing the requests to
+ * another {@link ServiceInstanceService}.
+ * <p>
+ * An update request that changes neither the plan, the context nor any parameter is answered immediately without
+ * calling the other service. Other update requests carry their
+ * {@link UpdateServiceInstanceRequest#getParameterChanges() changes}, so that the service can apply only the parts of the configuration that changed. The parameters of an
+ * update are merged into the saved parameters, since the platform sends only the parameters the user changed.
+ * Parameters read into a type registered in {@link org.springframework.cloud.servicebroker.model.ParameterTypes}
+ * are saved as a map of the properties of that type.
+ * <p>
+ * The parameters of an asynchronous operation are saved when a request for the last operation reports that it
+ * succeeded. Parameters are forgotten when an update fails, or when the previous plan sent by the platform does not
+ * match the saved plan, so that the next update is passed on without changes. The parameters of a deleted service
+ * instance are forgotten once the other service reports that the delete succeeded, or, for an asynchronous
+ * delete, when a request for the last operation reports that it succeeded or that the service instance no longer
+ * exists.
+ *
+ * @see ParameterChanges
+ */
+public class ParameterTrackingServiceInstanceService implements ServiceInstanceService {
+
+	private final ServiceInstanceService delegate;
+
+	private final ServiceInstanceParametersStore store;
+
+	private final Map<String, ServiceInstanceParameters> pending = new ConcurrentHashMap<>();
+
+	private final Set<String> pendingDeletes = ConcurrentHashMap.newKeySet();
+
+	public ParameterTrackingServiceInstanceService(ServiceInstanceService delegate,
+												   ServiceInstanceParametersStore store) {
+		this.delegate = delegate;
+		this.store = store;
+	}
+
+	@Override
+	public CreateServiceInstanceResponse createServiceInstance(CreateServiceInstanceRequest request) {
+		CreateServiceInstanceResponse response = delegate.createServiceInstance(request);
+		saveParameters(new ServiceInstanceParameters(request.getServiceInstanceId(), request.getPlanId(),
+				ParameterChanges.merge(null, ParameterChanges.parametersOf(request)), request.getContext()),
+				response != null && response.isAsync());
+		return response;
+	}
+
+	@Override
+	public GetLastServiceOperationResponse getLastOperation(GetLastServiceOperationRequest request) {
+		String serviceInstanceId = request.getServiceInstanceId();
+		GetLastServiceOperationResponse response;
+		try {
+			response = delegate.getLastOperation(request);
+		} catch (ServiceInstanceDoesNotExistException e) {
+			if (pendingDeletes.remove(serviceInstanceId)) {
+				store.deleteParameters(serviceInstanceId);
+			}
+			throw e;
+		}
+		if (response != null && response.getState() != OperationState.IN_PROGRESS) {
+			boolean succeeded = response.getState() == OperationState.SUCCEEDED;
+			ServiceInstanceParameters parameters = pending.remove(serviceInstanceId);
+			if (parameters != null && succeeded) {
+				store.saveParameters(parameters);
+			}
+			if (pendingDeletes.remove(serviceInstanceId) && succeeded) {
+				store.deleteParameters(serviceInstanceId);
+			}
+		}
+		return response;
+	}
+
+	@Override
+	public DeleteServiceInstanceResponse deleteServiceInstance(DeleteServiceInstanceRequest request) {
+		String serviceInstanceId = request.getServiceInstanceId();
+		DeleteServiceInstanceResponse response;
+		try {
+			response = delegate.deleteServiceInstance(request);
+		} catch (ServiceInstanceDoesNotExistException e) {
+			forgetParameters(serviceInstanceId);
+			throw e;
+		}
+		if (response != null && response.isAsync()) {
+			pending.remove(serviceInstanceId);
+			pendingDeletes.add(serviceInstanceId);
+		} else {
+			forgetParameters(serviceInstanceId);
+		}
+		return response;
+	}
+
+	@Override
+	public UpdateServiceInstanceResponse updateServiceInstance(UpdateServiceInstanceRequest request) {
+		String serviceInstanceId = request.getServiceInstanceId();
+		Map<String, Object> parameters = ParameterChanges.parametersOf(request);
+		ServiceInstanceParameters previous = store.getParameters(serviceInstanceId);
+		if (previous != null) {
+			UpdateServiceInstanceRequest.PreviousValues previousValues = request.getPreviousValues();
+			if (previousValues != null && previousValues.getPlanId() != null &&
+					!previousValues.getPlanId().equals(previous.getPlanId())) {
+				store.deleteParameters(serviceInstanceId);
+				previous = null;
+			} else {
+				ParameterChanges changes = ParameterChanges.between(previous.getPlanId(), previous.getParameters(),
+						previous.getContext(), request.getPlanId(), parameters, request.getContext());
+				if (changes.isEmpty()) {
+					return UpdateServiceInstanceResponse.builder().build();
+				}
+				request.setParameterChanges(changes);
+			}
+		}
+
+		UpdateServiceInstanceResponse response;
+		try {
+			response = delegate.updateServiceInstance(request);
+		} catch (RuntimeException e) {
+			pending.remove(serviceInstanceId);
+			store.deleteParameters(serviceInstanceId);
+			throw e;
+		}
+		saveParameters(new ServiceInstanceParameters(serviceInstanceId, request.getPlanId(),
+				ParameterChanges.merge(previous == null ? null : previous.getParameters(), parameters),
+				request.getContext() != null || previous == null ? request.getContext() : previous.getContext()),
+				response != null && response.isAsync());
+		return response;
+	}
+
+	private void forgetParameters(String serviceInstanceId) {
+		pending.remove(serviceInstanceId);
+		pendingDeletes.remove(serviceInstanceId);
+		store.deleteParameters(serviceInstanceId);
+	}
+
+	private void saveParameters(ServiceInstanceParameters parameters, boolean async) {
+		pendingDeletes.remove(parameters.getServiceInstanceId());
+		if (async) {
+			store.deleteParameters(parameters.getServiceInstanceId());
+			pending.put(parameters.getServiceInstanceId(), parameters);
+		} else {
+			pending.remove(parameters.getServiceInstanceId());
+			store.saveParameters(parameters);
+		}
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceDoesNotExistException;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationRequest;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationResponse;
+import org.springframework.cloud.servicebroker.model.OperationState;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceResponse;
+
+/**
+ * A {@link ServiceInstanceService} that reserves a slot in a {@link ServiceInstanceQuota} before passing a
+ * provision request to another {@link ServiceInstanceService}, and releases it when the provisioning fails or the
+ * service instance is deleted. Updates that change the plan move the slot to the new plan, and move it back if the
+ * update fails. The slots of asynchronous operations are released, or moved back to the previous plan, when a
+ * request for the last operation reports their result.
+ *
+ * @see ServiceInstanceQuota
+ */
+public class QuotaEnforcingServiceInstanceService implements ServiceInstanceService {
+
+	private final ServiceInstanceService delegate;
+
+	private final ServiceInstanceQuota quota;
+
+	private final Map<String, PendingOperation> pendingOperations = new ConcurrentHashMap<>();
+
+	public QuotaEnforcingServiceInstanceService(ServiceInstanceService delegate, ServiceInstanceQuota quota) {
+		this.delegate = delegate;
+		this.quota = quota;
+	}
+
+	@Override
+	public CreateServiceInstanceResponse createServiceInstance(CreateServiceInstanceRequest request) {
+		boolean reserved = quota.reserve(request);
+		CreateServiceInstanceResponse response;
+		try {
+			response = delegate.createServiceInstance(request);
+		} catch (RuntimeException e) {
+			if (reserved) {
+				quota.release(request.getServiceInstanceId());
+			}
+			throw e;
+		}
+		if (response != null && response.isAsync()) {
+			pendingOperations.put(request.getServiceInstanceId(), PendingOperation.CREATE);
+		}
+		return response;
+	}
+
+	@Override
+	public GetLastServiceOperationResponse getLastOperation(GetLastServiceOperationRequest request) {
+		GetLastServiceOperationResponse response = delegate.getLastOperation(request);
+		if (response != null && response.getState() != OperationState.IN_PROGRESS) {
+			PendingOperation pending = pendingOperations.remove(request.getServiceInstanceId());
+			if (pending == null) {
+				return response;
+			}
+			boolean succeeded = response.getState() == OperationState.SUCCEEDED;
+			if (pending.previousPlanId != null) {
+				if (!succeeded) {
+					quota.changePlan(request.getServiceInstanceId(), pending.previousPlanId, false);
+				}
+			} else if (pending.delete == succeeded) {
+				quota.release(request.getServiceInstanceId());
+			}
+		}
+		return response;
+	}
+
+	@Override
+	public DeleteServiceInstanceResponse deleteServiceInstance(DeleteServiceInstanceRequest request) {
+		DeleteServiceInstanceResponse response;
+		try {
+			response = delegate.deleteServiceInstance(request);
+		} catch (ServiceInstanceDoesNotExistException e) {
+			pendingOperations.remove(request.getServiceInstanceId());
+			quota.release(request.getServiceInstanceId());
+			throw e;
+		}
+		if (response != null && response.isAsync()) {
+			pendingOperations.put(request.getServiceInstanceId(), PendingOperation.DELETE);
+		} else {
+			pendingOperations.remove(request.getServiceInstanceId());
+			quota.release(request.getServiceInstanceId());
+		}
+		return response;
+	}
+
+	@Override
+	public UpdateServiceInstanceResponse updateServiceInstance(UpdateServiceInstanceRequest request) {
+		String previousPlanId = quota.changePlan(request.getServiceInstanceId(), request.getPlanId());
+		UpdateServiceInstanceResponse response;
+		try {
+			response = delegate.updateServiceInstance(request);
+		} catch (RuntimeException e) {
+			if (previousPlanId != null) {
+				quota.changePlan(request.getServiceInstanceId(), previousPlanId, false);
+			}
+			throw e;
+		}
+		if (previousPlanId != null && response != null && response.isAsync()) {
+			pendingOperations.put(request.getServiceInstanceId(), new PendingOperation(false, previousPlanId));
+		}
+		return response;
+	}
+
+	private static final class PendingOperation {
+		private static final PendingOperation CREATE = new PendingOperation(false, null);
+
+		private static final PendingOperation DELETE = new PendingOperation(true, null);
+
+		private final boolean delete;
+
+		private final String previousPlanId;
+
+		private PendingOperation(boolean delete, String previousPlanId) {
+			this.delete = delete;
+			this.previousPlanId = previousPlanId;
+		}
+	}
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingResponse;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceBindingRequest;
+
+/**
+ * A {@link ServiceInstanceBindingService} that passes each request to the {@link ServiceOffering} with the service
+ * definition ID of the request, with a single map lookup.
+ *
+ * @see RoutingServiceInstanceService
+ */
+public class RoutingServiceInstanceBindingService implements ServiceInstanceBindingService {
+
+	private final Map<String, ServiceOffering> offerings;
+
+	public RoutingServiceInstanceBindingService(List<ServiceOffering> offerings) {
+		this.offerings = ServiceOffering.index(offerings);
+	}
+
+	@Override
+	public CreateServiceInstanceBindingResponse createServiceInstanceBinding(CreateServiceInstanceBindingRequest request) {
+		ServiceOffering offering = ServiceOffering.find(offerings, request.getServiceDefinitionId());
+		return offering.execute(() ->
+				offering.getServiceInstanceBindingService().createServiceInstanceBinding(request));
+	}
+
+	@Override
+	public void deleteServiceInstanceBinding(DeleteServiceInstanceBindingRequest request) {
+		ServiceOffering offering = ServiceOffering.find(offerings, request.getServiceDefinitionId());
+		offering.execute(() -> {
+			offering.getServiceInstanceBindingService().deleteServiceInstanceBinding(request);
+			return null;
+		});
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerInvalidParametersException;
+import org.springframework.cloud.servicebroker.model.AsyncServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationRequest;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationResponse;
+import org.springframework.cloud.servicebroker.model.OperationState;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceResponse;
+
+/**
+ * A {@link ServiceInstanceService} that passes each request to the {@link ServiceOffering} with the service
+ * definition ID of the request, with a single map lookup.
+ * <p>
+ * Requests for the last operation that do not include a service definition ID are passed to the offering that
+ * accepted the asynchronous operation of the service instance, for as long as the operation is in progress, or to
+ * the only offering if there is one. Otherwise they fail with a {@link ServiceBrokerInvalidParametersException},
+ * which the platform can retry, rather than reporting the service instance as gone.
+ * Requests for service definitions without an offering fail with a
+ * {@link org.springframework.cloud.servicebroker.exception.ServiceDefinitionDoesNotExistException}.
+ *
+ * @see RoutingServiceInstanceBindingService
+ */
+public class RoutingServiceInstanceService implements ServiceInstanceService {
+
+	private final Map<String, ServiceOffering> offerings;
+
+	private final Map<String, ServiceOffering> asyncOperations = new ConcurrentHashMap<>();
+
+	public RoutingServiceInstanceService(List<ServiceOffering> offerings) {
+		this.offerings = ServiceOffering.index(offerings);
+	}
+
+	@Override
+	public CreateServiceInstanceResponse createServiceInstance(CreateServiceInstanceRequest request) {
+		ServiceOffering offering = ServiceOffering.find(offerings, request.getServiceDefinitionId());
+		return accepted(request.getServiceInstanceId(), offering,
+				offering.execute(() -> offering.getServiceInstanceService().createServiceInstance(request)));
+	}
+
+	@Override
+	public GetLastServiceOperationResponse getLastOperation(GetLastServiceOperationRequest request) {
+		String serviceInstanceId = request.getServiceInstanceId();
+		ServiceOffering offering = request.getServiceDefinitionId() == null ?
+				findAsyncOperation(serviceInstanceId) :
+				ServiceOffering.find(offerings, request.getServiceDefinitionId());
+
+		GetLastServiceOperationResponse response =
+				offering.execute(() -> offering.getServiceInstanceService().getLastOperation(request));
+		if (response != null && response.getState() != OperationState.IN_PROGRESS) {
+			asyncOperations.remove(serviceInstanceId, offering);
+		}
+		return response;
+	}
+
+	@Override
+	public DeleteServiceInstanceResponse deleteServiceInstance(DeleteServiceInstanceRequest request) {
+		ServiceOffering offering = ServiceOffering.find(offerings, request.getServiceDefinitionId());
+		return accepted(request.getServiceInstanceId(), offering,
+				offering.execute(() -> offering.getServiceInstanceService().deleteServiceInstance(request)));
+	}
+
+	@Override
+	public UpdateServiceInstanceResponse updateServiceInstance(UpdateServiceInstanceRequest request) {
+		ServiceOffering offering = ServiceOffering.find(offerings, request.getServiceDefinitionId());
+		return accepted(request.getServiceInstanceId(), offering,
+				offering.execute(() -> offering.getServiceInstanceService().updateServiceInstance(request)));
+	}
+
+	/**
+	 * Find the offering following the asynchronous operation of a service instance, for a request without a
+	 * service definition ID. The operation may have been accepted by another replica or before a restart, so
+	 * not knowing it does not mean that the service instance is gone.
+	 */
+	private ServiceOffering findAsyncOperation(String serviceInstanceId) {
+		ServiceOffering offering = asyncOperations.get(serviceInstanceId);
+		if (offering == null && offerings.size() == 1) {
+			offering = offerings.values().iterator().next();
+		}
+		if (offering == null) {
+			throw new ServiceBrokerInvalidParametersException("The service_id parameter is required to get the " +
+					"last operation on service instance " + serviceInstanceId);
+		}
+		return offering;
+	}
+
+	Collection<ServiceOffering> getOfferings() {
+		return this.offerings.values();
+	}
+
+	private <T extends AsyncServiceInstanceResponse> T accepted(String serviceInstanceId, ServiceOffering offering,
+																 T response) {
+		if (response != null && response.isAsync()) {
+			asyncOperations.put(serviceInstanceId, offering);
+		}
+		return response;
+	}
+}
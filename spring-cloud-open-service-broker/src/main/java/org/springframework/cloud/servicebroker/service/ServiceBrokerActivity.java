@@ -0,0 +1,398 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.springframework.cloud.servicebroker.model.OperationState;
+
+/**
+ * Records the service broker operations in progress, the most recently completed operations and the asynchronous
+ * operations the platform is following, so that they can be inspected while the broker is running.
+ * <p>
+ * Recording a call adds it to a concurrent set of calls in progress and, when it completes, writes it to a fixed
+ * size ring of recent calls. No locks are taken, and the memory used does not grow with the number of calls.
+ * Asynchronous operations are tracked from the response that accepts them until a request for the last operation
+ * reports that they succeeded or failed, up to a maximum number of operations. An operation that has not been
+ * accepted or polled on this broker for longer than the idle timeout is forgotten, since the platform may have
+ * stopped polling or may be polling another replica. When the maximum is reached, the operation that has been
+ * idle longest is forgotten to make room for a new one.
+ *
+ * @see MonitoredServiceInstanceService
+ * @see MonitoredServiceInstanceBindingService
+ */
+public class ServiceBrokerActivity {
+	public static final int DEFAULT_RECENT_CALLS = 256;
+
+	public static final int DEFAULT_MAX_OPERATIONS = 10_000;
+
+	public static final Duration DEFAULT_OPERATION_IDLE_TIMEOUT = Duration.ofHours(1);
+
+	private final Set<Call> inFlight = ConcurrentHashMap.newKeySet();
+
+	private final AtomicReferenceArray<Call> recentCalls;
+
+	private final AtomicLong recentCallCount = new AtomicLong();
+
+	private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+
+	private final int maxOperations;
+
+	private final long operationIdleNanos;
+
+	private final LongAdder completedCalls = new LongAdder();
+
+	private final LongAdder failedCalls = new LongAdder();
+
+	private final LongSupplier nanoTime;
+
+	/**
+	 * Construct an activity record with the default sizes.
+	 */
+	public ServiceBrokerActivity() {
+		this(DEFAULT_RECENT_CALLS, DEFAULT_MAX_OPERATIONS);
+	}
+
+	/**
+	 * Construct an activity record.
+	 *
+	 * @param recentCalls the number of completed calls remembered
+	 * @param maxOperations the maximum number of asynchronous operations tracked
+	 */
+	public ServiceBrokerActivity(int recentCalls, int maxOperations) {
+		this(recentCalls, maxOperations, DEFAULT_OPERATION_IDLE_TIMEOUT);
+	}
+
+	/**
+	 * Construct an activity record.
+	 *
+	 * @param recentCalls the number of completed calls remembered
+	 * @param maxOperations the maximum number of asynchronous operations tracked
+	 * @param operationIdleTimeout the time after which an operation that has not been polled is forgotten
+	 */
+	public ServiceBrokerActivity(int recentCalls, int maxOperations, Duration operationIdleTimeout) {
+		this(recentCalls, maxOperations, operationIdleTimeout, System::nanoTime);
+	}
+
+	ServiceBrokerActivity(int recentCalls, int maxOperations, Duration operationIdleTimeout,
+						  LongSupplier nanoTime) {
+		if (recentCalls < 1) {
+			throw new IllegalArgumentException("The number of recent calls must be positive");
+		}
+		if (maxOperations < 0) {
+			throw new IllegalArgumentException("The maximum number of operations must not be negative");
+		}
+		this.recentCalls = new AtomicReferenceArray<>(recentCalls);
+		this.maxOperations = maxOperations;
+		this.operationIdleNanos = operationIdleTimeout.toNanos();
+		this.nanoTime = nanoTime;
+	}
+
+	/**
+	 * Record the start of a call. The returned call must be passed to {@link #finish(Call, boolean)}.
+	 *
+	 * @param operation the name of the operation, such as {@literal createServiceInstance}
+	 * @param serviceDefinitionId the ID of the service definition, or {@literal null}
+	 * @param planId the ID of the plan, or {@literal null}
+	 * @param cfInstanceId the ID of the platform instance, or {@literal null}
+	 * @param serviceInstanceId the ID of the service instance
+	 * @return the call
+	 */
+	public Call start(String operation, String serviceDefinitionId, String planId, String cfInstanceId,
+					  String serviceInstanceId) {
+		Call call = new Call(operation, serviceDefinitionId, planId, cfInstanceId, serviceInstanceId,
+				nanoTime.getAsLong());
+		inFlight.add(call);
+		return call;
+	}
+
+	/**
+	 * Record the completion of a call.
+	 *
+	 * @param call the call returned by {@link #start}
+	 * @param failed whether the call completed with an exception
+	 */
+	public void finish(Call call, boolean failed) {
+		call.finish(nanoTime.getAsLong(), failed);
+		inFlight.remove(call);
+		completedCalls.increment();
+		if (failed) {
+			failedCalls.increment();
+		}
+		int slot = (int) (recentCallCount.getAndIncrement() % recentCalls.length());
+		recentCalls.set(slot, call);
+	}
+
+	/**
+	 * Record that an operation on a service instance continues asynchronously.
+	 *
+	 * @param call the call that accepted the operation
+	 * @param operation the operation ID returned to the platform, or {@literal null}
+	 */
+	public void operationAccepted(Call call, String operation) {
+		String serviceInstanceId = call.getServiceInstanceId();
+		if (serviceInstanceId == null || maxOperations == 0) {
+			return;
+		}
+		long now = nanoTime.getAsLong();
+		if (operations.size() >= maxOperations && !operations.containsKey(serviceInstanceId)) {
+			forgetIdleOperations(now);
+			if (operations.size() >= maxOperations) {
+				forgetLongestIdleOperation(now);
+			}
+		}
+		operations.put(serviceInstanceId, new Operation(call, operation, now));
+	}
+
+	/**
+	 * Record the state of the last operation on a service instance, as reported to the platform. Operations
+	 * that succeeded or failed are no longer tracked.
+	 *
+	 * @param serviceInstanceId the ID of the service instance
+	 * @param state the state of the operation
+	 * @param description the description of the state, or {@literal null}
+	 */
+	public void operationPolled(String serviceInstanceId, OperationState state, String description) {
+		if (serviceInstanceId == null) {
+			return;
+		}
+		if (state == OperationState.IN_PROGRESS) {
+			Operation operation = operations.get(serviceInstanceId);
+			if (operation != null) {
+				operation.polled(nanoTime.getAsLong(), description);
+			}
+		} else {
+			operations.remove(serviceInstanceId);
+		}
+	}
+
+	/**
+	 * Get the calls in progress.
+	 *
+	 * @return a snapshot of the calls
+	 */
+	public List<Call> getInFlightCalls() {
+		return new ArrayList<>(inFlight);
+	}
+
+	/**
+	 * Get the most recently completed calls, at most the number given to the constructor.
+	 *
+	 * @return a snapshot of the calls, in no particular order
+	 */
+	public List<Call> getRecentCalls() {
+		List<Call> calls = new ArrayList<>(recentCalls.length());
+		for (int i = 0; i < recentCalls.length(); i++) {
+			Call call = recentCalls.get(i);
+			if (call != null) {
+				calls.add(call);
+			}
+		}
+		return calls;
+	}
+
+	/**
+	 * Get the asynchronous operations that have not been reported as succeeded or failed.
+	 *
+	 * @return a snapshot of the operations
+	 */
+	public Collection<Operation> getOperations() {
+		forgetIdleOperations(nanoTime.getAsLong());
+		return new ArrayList<>(operations.values());
+	}
+
+	private void forgetIdleOperations(long now) {
+		operations.values().removeIf(operation -> operation.idleNanos(now) > operationIdleNanos);
+	}
+
+	private void forgetLongestIdleOperation(long now) {
+		Map.Entry<String, Operation> longestIdle = null;
+		for (Map.Entry<String, Operation> entry : operations.entrySet()) {
+			if (longestIdle == null || entry.getValue().idleNanos(now) > longestIdle.getValue().idleNanos(now)) {
+				longestIdle = entry;
+			}
+		}
+		if (longestIdle != null) {
+			operations.remove(longestIdle.getKey(), longestIdle.getValue());
+		}
+	}
+
+	public long getCompletedCalls() {
+		return completedCalls.sum();
+	}
+
+	public long getFailedCalls() {
+		return failedCalls.sum();
+	}
+
+	/**
+	 * Get the time elapsed since an instant recorded by this activity record.
+	 *
+	 * @param startNanos the instant, as returned by {@link Call#getStartNanos()} or
+	 *                   {@link Operation#getAcceptedNanos()}
+	 * @return the elapsed time
+	 */
+	public Duration age(long startNanos) {
+		return Duration.ofNanos(nanoTime.getAsLong() - startNanos);
+	}
+
+	/**
+	 * A call to a service broker operation.
+	 */
+	public static final class Call {
+		private final String operation;
+
+		private final String serviceDefinitionId;
+
+		private final String planId;
+
+		private final String cfInstanceId;
+
+		private final String serviceInstanceId;
+
+		private final long startNanos;
+
+		private volatile long durationNanos = -1;
+
+		private volatile boolean failed;
+
+		private Call(String operation, String serviceDefinitionId, String planId, String cfInstanceId,
+					 String serviceInstanceId, long startNanos) {
+			this.operation = operation;
+			this.serviceDefinitionId = serviceDefinitionId;
+			this.planId = planId;
+			this.cfInstanceId = cfInstanceId;
+			this.serviceInstanceId = serviceInstanceId;
+			this.startNanos = startNanos;
+		}
+
+		private void finish(long endNanos, boolean failed) {
+			this.failed = failed;
+			this.durationNanos = endNanos - this.startNanos;
+		}
+
+		public String getOperation() {
+			return this.operation;
+		}
+
+		public String getServiceDefinitionId() {
+			return this.serviceDefinitionId;
+		}
+
+		public String getPlanId() {
+			return this.planId;
+		}
+
+		public String getCfInstanceId() {
+			return this.cfInstanceId;
+		}
+
+		public String getServiceInstanceId() {
+			return this.serviceInstanceId;
+		}
+
+		public long getStartNanos() {
+			return this.startNanos;
+		}
+
+		/**
+		 * Get the duration of a completed call.
+		 *
+		 * @return the duration, or {@literal null} if the call is in progress
+		 */
+		public Duration getDuration() {
+			long duration = this.durationNanos;
+			return duration < 0 ? null : Duration.ofNanos(duration);
+		}
+
+		public boolean isFailed() {
+			return this.failed;
+		}
+	}
+
+	/**
+	 * An asynchronous operation on a service instance.
+	 */
+	public static final class Operation {
+		private final Call call;
+
+		private final String operation;
+
+		private final long acceptedNanos;
+
+		private volatile long lastPolledNanos;
+
+		private volatile String description;
+
+		private Operation(Call call, String operation, long acceptedNanos) {
+			this.call = call;
+			this.operation = operation;
+			this.acceptedNanos = acceptedNanos;
+		}
+
+		private void polled(long polledNanos, String description) {
+			this.description = description;
+			this.lastPolledNanos = polledNanos;
+		}
+
+		private long idleNanos(long now) {
+			long lastPolled = this.lastPolledNanos;
+			return now - (lastPolled == 0 ? this.acceptedNanos : lastPolled);
+		}
+
+		/**
+		 * Get the call that accepted the operation.
+		 *
+		 * @return the call
+		 */
+		public Call getCall() {
+			return this.call;
+		}
+
+		public String getOperation() {
+			return this.operation;
+		}
+
+		public long getAcceptedNanos() {
+			return this.acceptedNanos;
+		}
+
+		/**
+		 * Get the instant of the last request for the state of the operation.
+		 *
+		 * @return the instant, or {@literal 0} if the platform has not requested the state yet
+		 */
+		public long getLastPolledNanos() {
+			return this.lastPolledNanos;
+		}
+
+		public String getDescription() {
+			return this.description;
+		}
+	}
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerOverloadedException;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Drains a service broker before it is stopped, and resumes the work of the previous instance when it is started.
+ * <p>
+ * While draining, new create, update and delete operations on service instances and bindings are rejected with a
+ * {@link ServiceBrokerOverloadedException}, so that the platform retries them on another instance. Operations in
+ * progress and operations promoted by a {@link DeadlineServiceInstanceService} are given until the timeout to
+ * complete. The promoted operations the platform is still following are then saved to an
+ * {@link OperationCheckpointStore}, if one is provided, and loaded again by {@link #resume()} on the next start.
+ * <p>
+ * During a rolling deployment the next instance may start before the previous instance has saved its operations.
+ * A request for the last operation of a service instance that no registered service is following therefore loads
+ * the store again, at most once per second, and the operations found are resumed and removed from the store.
+ *
+ * @see DrainingServiceInstanceService
+ * @see DrainingServiceInstanceBindingService
+ */
+public class ServiceBrokerDrain {
+	private static final Logger log = getLogger(ServiceBrokerDrain.class);
+
+	public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+
+	private static final Duration RETRY_AFTER = Duration.ofSeconds(5);
+
+	private static final long RESTORE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private final Duration timeout;
+
+	private final OperationCheckpointStore checkpointStore;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	private final Object monitor = new Object();
+
+	private volatile boolean draining;
+
+	private final List<DeadlineServiceInstanceService> services = new CopyOnWriteArrayList<>();
+
+	private volatile boolean resumed;
+
+	private volatile long lastRestore;
+
+	private volatile boolean restoredOnMiss;
+
+	/**
+	 * Construct a drain with the {@link #DEFAULT_TIMEOUT} that does not save operations.
+	 */
+	public ServiceBrokerDrain() {
+		this(DEFAULT_TIMEOUT, null);
+	}
+
+	/**
+	 * Construct a drain.
+	 *
+	 * @param timeout the maximum time to wait for operations in progress when draining
+	 * @param checkpointStore the store for the operations the platform is still following, or {@literal null}
+	 */
+	public ServiceBrokerDrain(Duration timeout, OperationCheckpointStore checkpointStore) {
+		if (timeout == null || timeout.isNegative()) {
+			throw new IllegalArgumentException("The timeout must not be negative");
+		}
+		this.timeout = timeout;
+		this.checkpointStore = checkpointStore;
+	}
+
+	/**
+	 * Register a service whose promoted operations are awaited and saved when draining. If the drain has already
+	 * been resumed, the saved operations are resumed by the service now.
+	 *
+	 * @param service the service
+	 */
+	public void register(DeadlineServiceInstanceService service) {
+		register(Collections.singletonList(service));
+	}
+
+	/**
+	 * Register the services whose promoted operations are awaited and saved when draining. If the drain has
+	 * already been resumed, the saved operations are resumed by the services now.
+	 *
+	 * @param services the services
+	 */
+	public synchronized void register(Collection<DeadlineServiceInstanceService> services) {
+		for (DeadlineServiceInstanceService service : services) {
+			if (!this.services.contains(service)) {
+				this.services.add(service);
+				service.setDrain(this);
+			}
+		}
+		if (resumed) {
+			restore();
+		}
+	}
+
+	/**
+	 * Run an operation unless the service broker is draining.
+	 *
+	 * @param operation the operation to run
+	 * @param <T> the result type of the operation
+	 * @return the result of the operation
+	 * @throws ServiceBrokerOverloadedException if the service broker is draining
+	 */
+	public <T> T execute(Supplier<T> operation) {
+		inFlight.incrementAndGet();
+		try {
+			if (draining) {
+				throw new ServiceBrokerOverloadedException("The service broker is shutting down", RETRY_AFTER);
+			}
+			return operation.get();
+		} finally {
+			if (inFlight.decrementAndGet() == 0 && draining) {
+				synchronized (monitor) {
+					monitor.notifyAll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Run an operation that produces no result unless the service broker is draining.
+	 *
+	 * @param operation the operation to run
+	 * @throws ServiceBrokerOverloadedException if the service broker is draining
+	 */
+	public void execute(Runnable operation) {
+		execute(() -> {
+			operation.run();
+			return null;
+		});
+	}
+
+	/**
+	 * Stop accepting new operations, wait for the operations in progress up to the timeout, and save the promoted
+	 * operations the platform is still following.
+	 *
+	 * @return {@literal true} if all operations completed within the timeout
+	 */
+	public boolean drain() {
+		draining = true;
+		long deadline = System.nanoTime() + timeout.toNanos();
+
+		boolean drained = awaitInFlight(deadline);
+		if (!services.isEmpty()) {
+			List<OperationCheckpoint> checkpoints = new ArrayList<>();
+			for (DeadlineServiceInstanceService service : services) {
+				drained &= service.awaitPromotedOperations(
+						Duration.ofNanos(Math.max(0, deadline - System.nanoTime())));
+				checkpoints.addAll(service.checkpoint());
+			}
+			if (checkpointStore != null) {
+				checkpointStore.save(checkpoints);
+				log.info("Saved {} operations for the next service broker instance", checkpoints.size());
+			}
+		}
+
+		if (!drained) {
+			log.warn("Operations still in progress after draining for {}", timeout);
+		}
+		return drained;
+	}
+
+	/**
+	 * Accept new operations again, and resume the promoted operations saved by the previous instance of the
+	 * service broker.
+	 */
+	public synchronized void resume() {
+		draining = false;
+		resumed = true;
+		if (!services.isEmpty()) {
+			restore();
+		}
+	}
+
+	public boolean isDraining() {
+		return this.draining;
+	}
+
+	public int getInFlight() {
+		return this.inFlight.get();
+	}
+
+	/**
+	 * Load the store again for a request for the last operation that no registered service is following, unless it
+	 * was loaded for such a request less than a second ago.
+	 *
+	 * @return {@literal true} if operations were resumed
+	 */
+	boolean restoreOnMiss() {
+		if (checkpointStore == null || !resumed ||
+				(restoredOnMiss && System.nanoTime() - lastRestore < RESTORE_INTERVAL_NANOS)) {
+			return false;
+		}
+		synchronized (this) {
+			long now = System.nanoTime();
+			if (restoredOnMiss && now - lastRestore < RESTORE_INTERVAL_NANOS) {
+				return false;
+			}
+			lastRestore = now;
+			restoredOnMiss = true;
+			return restore();
+		}
+	}
+
+	private synchronized boolean restore() {
+		if (checkpointStore == null) {
+			return false;
+		}
+		List<OperationCheckpoint> checkpoints = checkpointStore.load();
+		if (checkpoints.isEmpty()) {
+			return false;
+		}
+		for (DeadlineServiceInstanceService service : services) {
+			service.resume(checkpoints);
+		}
+		checkpointStore.clear();
+		log.info("Resumed {} operations saved by the previous service broker instance", checkpoints.size());
+		return true;
+	}
+
+	private boolean awaitInFlight(long deadline) {
+		synchronized (monitor) {
+			while (inFlight.get() > 0) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					return false;
+				}
+				try {
+					TimeUnit.NANOSECONDS.timedWait(monitor, remaining);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
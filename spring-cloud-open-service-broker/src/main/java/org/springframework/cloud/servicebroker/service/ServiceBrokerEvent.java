@@ -0,0 +1,188 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.springframework.cloud.servicebroker.model.AsyncServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationResponse;
+import org.springframework.cloud.servicebroker.model.OperationState;
+import org.springframework.cloud.servicebroker.model.ServiceBrokerRequest;
+import org.springframework.cloud.servicebroker.trace.TraceContext;
+
+/**
+ * An operation of a service broker, delivered to {@link ServiceBrokerEventListener}s before the operation starts
+ * and after it completes.
+ * <p>
+ * An operation that continues asynchronously produces two events after it: one when it is accepted, in the
+ * {@link OperationState#IN_PROGRESS} state, and one when a request for the last operation reports that it
+ * succeeded or failed.
+ * <p>
+ * Each event carries the {@link TraceContext} of the request that produced it, so that listeners can correlate the
+ * events they handle with the log lines of the request.
+ */
+public final class ServiceBrokerEvent {
+
+	/**
+	 * The operations that produce events.
+	 */
+	public enum Type {
+		CREATE_SERVICE_INSTANCE,
+		UPDATE_SERVICE_INSTANCE,
+		DELETE_SERVICE_INSTANCE,
+		CREATE_SERVICE_INSTANCE_BINDING,
+		DELETE_SERVICE_INSTANCE_BINDING
+	}
+
+	private final Type type;
+
+	private final ServiceBrokerRequest request;
+
+	private final Object response;
+
+	private final Throwable failure;
+
+	private final OperationState state;
+
+	private final Instant timestamp;
+
+	private final Duration duration;
+
+	private final TraceContext traceContext;
+
+	private ServiceBrokerEvent(Type type, ServiceBrokerRequest request, Object response, Throwable failure,
+							   OperationState state, Instant timestamp, Duration duration) {
+		this.type = type;
+		this.request = request;
+		this.response = response;
+		this.failure = failure;
+		this.state = state;
+		this.timestamp = timestamp;
+		this.duration = duration;
+		this.traceContext = TraceContext.fromMdc();
+	}
+
+	static ServiceBrokerEvent before(Type type, ServiceBrokerRequest request) {
+		return new ServiceBrokerEvent(type, request, null, null, null, Instant.now(), null);
+	}
+
+	static ServiceBrokerEvent after(ServiceBrokerEvent before, Object response, Throwable failure) {
+		OperationState state;
+		if (failure != null) {
+			state = OperationState.FAILED;
+		} else if (response instanceof AsyncServiceInstanceResponse &&
+				((AsyncServiceInstanceResponse) response).isAsync()) {
+			state = OperationState.IN_PROGRESS;
+		} else {
+			state = OperationState.SUCCEEDED;
+		}
+		Instant now = Instant.now();
+		return new ServiceBrokerEvent(before.type, before.request, response, failure, state, now,
+				Duration.between(before.timestamp, now));
+	}
+
+	static ServiceBrokerEvent completed(ServiceBrokerEvent before, GetLastServiceOperationResponse response,
+										OperationState state) {
+		Instant now = Instant.now();
+		return new ServiceBrokerEvent(before.type, before.request, response, null, state, now,
+				Duration.between(before.timestamp, now));
+	}
+
+	public Type getType() {
+		return this.type;
+	}
+
+	/**
+	 * Get the request of the operation, one of the request types of {@link ServiceInstanceService} and
+	 * {@link ServiceInstanceBindingService}.
+	 *
+	 * @return the request
+	 */
+	public ServiceBrokerRequest getRequest() {
+		return this.request;
+	}
+
+	/**
+	 * Get the response of a completed operation. For an asynchronous operation that succeeded or failed, this is
+	 * the response to the request for the last operation that reported it.
+	 *
+	 * @return the response, or {@literal null} before the operation, if it failed or if it has no response
+	 */
+	public Object getResponse() {
+		return this.response;
+	}
+
+	/**
+	 * Get the exception a completed operation failed with.
+	 *
+	 * @return the exception, or {@literal null} if the operation did not fail
+	 */
+	public Throwable getFailure() {
+		return this.failure;
+	}
+
+	/**
+	 * Get the state of the operation: {@link OperationState#IN_PROGRESS} when an asynchronous operation has been
+	 * accepted, and {@link OperationState#SUCCEEDED} or {@link OperationState#FAILED} when it has completed.
+	 *
+	 * @return the state, or {@literal null} before the operation
+	 */
+	public OperationState getState() {
+		return this.state;
+	}
+
+	/**
+	 * Get the time the operation started, or completed for an event after the operation.
+	 *
+	 * @return the time of the event
+	 */
+	public Instant getTimestamp() {
+		return this.timestamp;
+	}
+
+	/**
+	 * Get the time a completed operation took.
+	 *
+	 * @return the duration, or {@literal null} before the operation
+	 */
+	public Duration getDuration() {
+		return this.duration;
+	}
+
+	/**
+	 * Get the trace context of the request that produced the event: the request that started the operation, or
+	 * for an asynchronous operation that succeeded or failed, the request for the last operation that reported it.
+	 *
+	 * @return the trace context, or {@literal null} if the request was not traced
+	 */
+	public TraceContext getTraceContext() {
+		return this.traceContext;
+	}
+
+	@Override
+	public String toString() {
+		return "ServiceBrokerEvent{" +
+				"type=" + type +
+				", failure=" + failure +
+				", state=" + state +
+				", timestamp=" + timestamp +
+				", duration=" + duration +
+				'}';
+	}
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.springframework.cloud.servicebroker.trace.MdcScope;
+import org.springframework.cloud.servicebroker.trace.TraceContext;
+import org.springframework.util.Assert;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Delivers {@link ServiceBrokerEvent}s to {@link ServiceBrokerEventListener}s.
+ * <p>
+ * Events before an operation are delivered to the listeners immediately. Events after an operation are added to a
+ * bounded queue and delivered in batches of up to the batch size by a single daemon thread, in the order the
+ * operations completed. When the queue is full, a completed operation waits up to the offer timeout for space in the
+ * queue, slowing down requests while the listeners catch up, and its event is dropped if no space becomes available
+ * so that a stuck listener cannot stop the service broker. Dropped events are counted.
+ * <p>
+ * A service broker that handles requests on an event loop, such as a WebFlux application, must not wait for space
+ * in the queue. Its dispatcher is constructed with an offer timeout of zero, so that events are dropped as soon as
+ * the queue is full.
+ * <p>
+ * A batch of events from the same trace is delivered with the {@link TraceContext} of the events in the SLF4J
+ * {@link org.slf4j.MDC}. Listeners that handle batches of events from several requests can put the context of each
+ * event in the MDC with {@link ServiceBrokerEvent#getTraceContext()}.
+ * <p>
+ * Events remaining in the queue are delivered when the dispatcher is {@link #close() closed}.
+ *
+ * @see EventPublishingServiceInstanceService
+ * @see EventPublishingServiceInstanceBindingService
+ */
+public class ServiceBrokerEventDispatcher implements AutoCloseable {
+	private static final Logger log = getLogger(ServiceBrokerEventDispatcher.class);
+
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	public static final int DEFAULT_BATCH_SIZE = 64;
+
+	public static final Duration DEFAULT_OFFER_TIMEOUT = Duration.ofMillis(50);
+
+	private static final long POLL_INTERVAL_MILLIS = 100;
+
+	private final List<ServiceBrokerEventListener> listeners;
+
+	private final BlockingQueue<ServiceBrokerEvent> queue;
+
+	private final int batchSize;
+
+	private final long offerTimeoutNanos;
+
+	private final Thread thread;
+
+	private final AtomicLong delivered = new AtomicLong();
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	private volatile boolean closed;
+
+	/**
+	 * Construct a dispatcher with the default capacity, batch size and offer timeout.
+	 *
+	 * @param listeners the listeners to deliver events to
+	 */
+	public ServiceBrokerEventDispatcher(List<ServiceBrokerEventListener> listeners) {
+		this(listeners, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_OFFER_TIMEOUT);
+	}
+
+	/**
+	 * Construct a dispatcher with the default capacity and batch size that never waits for space in the queue, for
+	 * service brokers that handle requests on an event loop.
+	 *
+	 * @param listeners the listeners to deliver events to
+	 * @return the dispatcher
+	 */
+	public static ServiceBrokerEventDispatcher nonBlocking(List<ServiceBrokerEventListener> listeners) {
+		return new ServiceBrokerEventDispatcher(listeners, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, Duration.ZERO);
+	}
+
+	/**
+	 * Construct a dispatcher.
+	 *
+	 * @param listeners the listeners to deliver events to
+	 * @param capacity the maximum number of events after operations waiting to be delivered
+	 * @param batchSize the maximum number of events delivered to a listener at once
+	 * @param offerTimeout the time a completed operation waits for space in a full queue before its event is dropped
+	 */
+	public ServiceBrokerEventDispatcher(List<ServiceBrokerEventListener> listeners, int capacity, int batchSize,
+										Duration offerTimeout) {
+		Assert.notEmpty(listeners, "At least one event listener must be provided");
+		Assert.isTrue(capacity > 0, "The capacity must be positive");
+		Assert.isTrue(batchSize > 0, "The batch size must be positive");
+		Assert.isTrue(offerTimeout != null && !offerTimeout.isNegative(), "The offer timeout must not be negative");
+		this.listeners = new ArrayList<>(listeners);
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.batchSize = batchSize;
+		this.offerTimeoutNanos = offerTimeout.toNanos();
+		this.thread = new Thread(this::run, "service-broker-events");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * Deliver an event before an operation to the listeners, on the calling thread.
+	 *
+	 * @param event the event
+	 */
+	public void beforeOperation(ServiceBrokerEvent event) {
+		for (ServiceBrokerEventListener listener : listeners) {
+			listener.beforeOperation(event);
+		}
+	}
+
+	/**
+	 * Queue an event after an operation for delivery to the listeners.
+	 *
+	 * @param event the event
+	 * @return {@literal true} if the event was queued, {@literal false} if it was dropped
+	 */
+	public boolean afterOperation(ServiceBrokerEvent event) {
+		boolean queued;
+		try {
+			queued = !closed && (queue.offer(event) ||
+					(offerTimeoutNanos > 0 && queue.offer(event, offerTimeoutNanos, TimeUnit.NANOSECONDS)));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			queued = false;
+		}
+		if (!queued) {
+			long count = dropped.incrementAndGet();
+			log.warn("Dropped event after {}, {} events dropped", event.getType(), count);
+		}
+		return queued;
+	}
+
+	/**
+	 * Get the number of events after operations waiting to be delivered.
+	 *
+	 * @return the number of queued events
+	 */
+	public int getQueued() {
+		return this.queue.size();
+	}
+
+	/**
+	 * Get the number of events after operations delivered to the listeners.
+	 *
+	 * @return the number of delivered events
+	 */
+	public long getDelivered() {
+		return this.delivered.get();
+	}
+
+	/**
+	 * Get the number of events after operations dropped because the queue was full or the dispatcher was closed.
+	 *
+	 * @return the number of dropped events
+	 */
+	public long getDropped() {
+		return this.dropped.get();
+	}
+
+	/**
+	 * Stop accepting events and deliver the events remaining in the queue.
+	 */
+	@Override
+	public void close() {
+		this.closed = true;
+		try {
+			this.thread.join(TimeUnit.SECONDS.toMillis(10));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void run() {
+		List<ServiceBrokerEvent> batch = new ArrayList<>(batchSize);
+		while (!closed) {
+			try {
+				ServiceBrokerEvent first = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+				if (first != null) {
+					batch.add(first);
+					queue.drainTo(batch, batchSize - 1);
+					deliver(batch);
+				}
+			} catch (InterruptedException e) {
+				log.warn("Event dispatcher interrupted, delivering queued events");
+				break;
+			}
+		}
+		while (queue.drainTo(batch, batchSize) > 0) {
+			deliver(batch);
+		}
+	}
+
+	private void deliver(List<ServiceBrokerEvent> batch) {
+		List<ServiceBrokerEvent> events = Collections.unmodifiableList(new ArrayList<>(batch));
+		batch.clear();
+		TraceContext traceContext = getTraceContext(events);
+		try (MdcScope scope = traceContext == null ? MdcScope.EMPTY : traceContext.putInMdc()) {
+			for (ServiceBrokerEventListener listener : listeners) {
+				try {
+					listener.afterOperations(events);
+				} catch (RuntimeException e) {
+					log.warn("Event listener " + listener + " failed to handle " + events.size() + " events", e);
+				}
+			}
+		}
+		delivered.addAndGet(events.size());
+	}
+
+	private static TraceContext getTraceContext(List<ServiceBrokerEvent> events) {
+		TraceContext traceContext = events.get(0).getTraceContext();
+		for (int i = 1; i < events.size() && traceContext != null; i++) {
+			TraceContext other = events.get(i).getTraceContext();
+			if (other == null || !Objects.equals(traceContext.getTraceId(), other.getTraceId())) {
+				traceContext = null;
+			}
+		}
+		return traceContext;
+	}
+}
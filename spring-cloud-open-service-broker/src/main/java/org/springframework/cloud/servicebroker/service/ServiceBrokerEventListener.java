@@ -0,0 +1,52 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.util.List;
+
+/**
+ * This interface is implemented by components that take part in or observe the operations of a service broker, such
+ * as billing, inventory updates or notifications, without being part of the {@link ServiceInstanceService} or
+ * {@link ServiceInstanceBindingService}.
+ * <p>
+ * Events before an operation are delivered on the thread of the request, before the operation starts. Events after
+ * an operation are delivered in batches on the thread of a {@link ServiceBrokerEventDispatcher}, so that listeners
+ * do not delay the response to the platform.
+ *
+ * @see ServiceBrokerEventDispatcher
+ */
+public interface ServiceBrokerEventListener {
+
+	/**
+	 * Called before an operation starts. An exception thrown by this method rejects the operation and is reported to
+	 * the platform.
+	 *
+	 * @param event the operation about to start, without a response
+	 */
+	default void beforeOperation(ServiceBrokerEvent event) {
+	}
+
+	/**
+	 * Called with operations that have completed, in the order they completed. Exceptions thrown by this method are
+	 * logged and the events are not delivered again.
+	 *
+	 * @param events the completed operations, with their responses or failures
+	 */
+	void afterOperations(List<ServiceBrokerEvent> events);
+
+}
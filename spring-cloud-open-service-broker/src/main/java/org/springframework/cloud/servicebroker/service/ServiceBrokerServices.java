@@ -0,0 +1,253 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The optional collaborators that decorate the {@link ServiceInstanceService} and
+ * {@link ServiceInstanceBindingService} of a service broker, applied in one fixed order wherever the services of a
+ * broker are built.
+ * <p>
+ * From the innermost to the outermost, the services are decorated with a
+ * {@link StoredOperationServiceInstanceService}, a {@link ParameterTrackingServiceInstanceService}, a
+ * {@link QuotaEnforcingServiceInstanceService}, an {@link AdmissionControlledServiceInstanceService}, a
+ * {@link LockingServiceInstanceService}, a
+ * {@link DeadlineServiceInstanceService}, a {@link DrainingServiceInstanceService}, an
+ * {@link EventPublishingServiceInstanceService}, an {@link IdempotentServiceInstanceService}, a
+ * {@link MonitoredServiceInstanceService} and a {@link TracingServiceInstanceService}, and with the binding
+ * counterparts of each. A decorator is skipped when its collaborator is not provided, except for tracing, which
+ * is always applied. The deadline service, and those of the {@link ServiceOffering offerings} of a
+ * {@link RoutingServiceInstanceService}, are registered with the {@link ServiceBrokerDrain}.
+ * <p>
+ * Locking is applied outside admission control, so that the time an operation waits for another operation on
+ * the same service instance is not counted as latency by the {@link AdmissionController}, and inside the
+ * deadline, so that an operation promoted to an asynchronous operation keeps its lock until it completes and its
+ * wait for the lock runs on the executor of the {@link OperationDeadline}.
+ * <p>
+ * Services decorated for a non-blocking stack, such as WebFlux, are called on event loop threads. There the
+ * deadline services, including those of the offerings, do not wait for the deadline and promote every operation
+ * the platform accepts an asynchronous response for as soon as it is started.
+ */
+public final class ServiceBrokerServices {
+
+	private final ServiceInstanceParametersStore parametersStore;
+
+	private final ServiceInstanceQuota quota;
+
+	private final ServiceInstanceLockManager lockManager;
+
+	private final AdmissionController admissionController;
+
+	private final OperationDeadline operationDeadline;
+
+	private final ServiceBrokerDrain drain;
+
+	private final ServiceBrokerEventDispatcher eventDispatcher;
+
+	private final IdempotencyCache idempotencyCache;
+
+	private final ServiceBrokerActivity activity;
+
+	private final boolean nonBlocking;
+
+	private ServiceBrokerServices(ServiceInstanceParametersStore parametersStore, ServiceInstanceQuota quota,
+								  ServiceInstanceLockManager lockManager, AdmissionController admissionController,
+								  OperationDeadline operationDeadline, ServiceBrokerDrain drain,
+								  ServiceBrokerEventDispatcher eventDispatcher, IdempotencyCache idempotencyCache,
+								  ServiceBrokerActivity activity, boolean nonBlocking) {
+		this.parametersStore = parametersStore;
+		this.quota = quota;
+		this.lockManager = lockManager;
+		this.admissionController = admissionController;
+		this.operationDeadline = operationDeadline;
+		this.drain = drain;
+		this.eventDispatcher = eventDispatcher;
+		this.idempotencyCache = idempotencyCache;
+		this.activity = activity;
+		this.nonBlocking = nonBlocking;
+	}
+
+	/**
+	 * Decorate the service instance service of a broker.
+	 *
+	 * @param service the service provided by the broker
+	 * @param operationStore the store that answers requests for the last operation and is kept up to date with
+	 * operations promoted by the {@link OperationDeadline}, or {@literal null}
+	 * @return the decorated service
+	 */
+	public ServiceInstanceService decorate(ServiceInstanceService service, OperationStore operationStore) {
+		List<DeadlineServiceInstanceService> deadlineServices = new ArrayList<>();
+		if (service instanceof RoutingServiceInstanceService) {
+			for (ServiceOffering offering : ((RoutingServiceInstanceService) service).getOfferings()) {
+				if (offering.getDeadlineService() != null) {
+					deadlineServices.add(offering.getDeadlineService());
+				}
+			}
+		}
+		if (operationStore != null) {
+			service = new StoredOperationServiceInstanceService(service, operationStore);
+		}
+		if (parametersStore != null) {
+			service = new ParameterTrackingServiceInstanceService(service, parametersStore);
+		}
+		if (quota != null) {
+			service = new QuotaEnforcingServiceInstanceService(service, quota);
+		}
+		if (admissionController != null) {
+			service = new AdmissionControlledServiceInstanceService(service, admissionController);
+		}
+		if (lockManager != null) {
+			service = new LockingServiceInstanceService(service, lockManager);
+		}
+		if (operationDeadline != null) {
+			DeadlineServiceInstanceService deadlineService =
+					new DeadlineServiceInstanceService(service, operationDeadline, operationStore);
+			deadlineServices.add(deadlineService);
+			service = deadlineService;
+		}
+		if (nonBlocking) {
+			deadlineServices.forEach(deadlineService -> deadlineService.setNonBlocking(true));
+		}
+		if (drain != null) {
+			drain.register(deadlineServices);
+			service = new DrainingServiceInstanceService(service, drain);
+		}
+		if (eventDispatcher != null) {
+			service = new EventPublishingServiceInstanceService(service, eventDispatcher);
+		}
+		if (idempotencyCache != null) {
+			service = new IdempotentServiceInstanceService(service, idempotencyCache);
+		}
+		if (activity != null) {
+			service = new MonitoredServiceInstanceService(service, activity);
+		}
+		return new TracingServiceInstanceService(service);
+	}
+
+	/**
+	 * Decorate the service instance binding service of a broker.
+	 *
+	 * @param service the service provided by the broker
+	 * @return the decorated service
+	 */
+	public ServiceInstanceBindingService decorate(ServiceInstanceBindingService service) {
+		if (admissionController != null) {
+			service = new AdmissionControlledServiceInstanceBindingService(service, admissionController);
+		}
+		if (lockManager != null) {
+			service = new LockingServiceInstanceBindingService(service, lockManager);
+		}
+		if (drain != null) {
+			service = new DrainingServiceInstanceBindingService(service, drain);
+		}
+		if (eventDispatcher != null) {
+			service = new EventPublishingServiceInstanceBindingService(service, eventDispatcher);
+		}
+		if (idempotencyCache != null) {
+			service = new IdempotentServiceInstanceBindingService(service, idempotencyCache);
+		}
+		if (activity != null) {
+			service = new MonitoredServiceInstanceBindingService(service, activity);
+		}
+		return new TracingServiceInstanceBindingService(service);
+	}
+
+	public static ServiceBrokerServicesBuilder builder() {
+		return new ServiceBrokerServicesBuilder();
+	}
+
+	public static class ServiceBrokerServicesBuilder {
+		private ServiceInstanceParametersStore parametersStore;
+		private ServiceInstanceQuota quota;
+		private ServiceInstanceLockManager lockManager;
+		private AdmissionController admissionController;
+		private OperationDeadline operationDeadline;
+		private ServiceBrokerDrain drain;
+		private ServiceBrokerEventDispatcher eventDispatcher;
+		private IdempotencyCache idempotencyCache;
+		private ServiceBrokerActivity activity;
+		private boolean nonBlocking;
+
+		ServiceBrokerServicesBuilder() {
+		}
+
+		public ServiceBrokerServicesBuilder parametersStore(ServiceInstanceParametersStore parametersStore) {
+			this.parametersStore = parametersStore;
+			return this;
+		}
+
+		public ServiceBrokerServicesBuilder quota(ServiceInstanceQuota quota) {
+			this.quota = quota;
+			return this;
+		}
+
+		public ServiceBrokerServicesBuilder lockManager(ServiceInstanceLockManager lockManager) {
+			this.lockManager = lockManager;
+			return this;
+		}
+
+		public ServiceBrokerServicesBuilder admissionController(AdmissionController admissionController) {
+			this.admissionController = admissionController;
+			return this;
+		}
+
+		public ServiceBrokerServicesBuilder operationDeadline(OperationDeadline operationDeadline) {
+			this.operationDeadline = operationDeadline;
+			return this;
+		}
+
+		public ServiceBrokerServicesBuilder drain(ServiceBrokerDrain drain) {
+			this.drain = drain;
+			return this;
+		}
+
+		public ServiceBrokerServicesBuilder eventDispatcher(ServiceBrokerEventDispatcher eventDispatcher) {
+			this.eventDispatcher = eventDispatcher;
+			return this;
+		}
+
+		public ServiceBrokerServicesBuilder idempotencyCache(IdempotencyCache idempotencyCache) {
+			this.idempotencyCache = idempotencyCache;
+			return this;
+		}
+
+		public ServiceBrokerServicesBuilder activity(ServiceBrokerActivity activity) {
+			this.activity = activity;
+			return this;
+		}
+
+		/**
+		 * Set whether the services are called on threads that must not block, such as the event loop threads
+		 * of WebFlux. Operations are then promoted to asynchronous operations without waiting for the
+		 * {@link OperationDeadline}.
+		 *
+		 * @param nonBlocking {@literal true} if the services must not block
+		 * @return the builder
+		 */
+		public ServiceBrokerServicesBuilder nonBlocking(boolean nonBlocking) {
+			this.nonBlocking = nonBlocking;
+			return this;
+		}
+
+		public ServiceBrokerServices build() {
+			return new ServiceBrokerServices(parametersStore, quota, lockManager, admissionController,
+					operationDeadline, drain, eventDispatcher, idempotencyCache, activity, nonBlocking);
+		}
+	}
+}
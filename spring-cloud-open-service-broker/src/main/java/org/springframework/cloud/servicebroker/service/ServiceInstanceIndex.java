@@ -0,0 +1,737 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+
+import org.slf4j.Logger;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerException;
+import org.springframework.cloud.servicebroker.model.OperationState;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * An index from service instance ID to the service definition, plan, operation state, organization and space of
+ * the service instance, for brokers that track too many service instances to keep them in on-heap maps.
+ * <p>
+ * Service instances are identified by GUID, and each is stored as a fixed-size record in a direct or
+ * memory-mapped {@link ByteBuffer}, in an open-addressing hash table keyed by the 128 bits of the GUID. Service
+ * definition and plan IDs are stored as codes into a small table of the IDs seen so far. Looking up a service
+ * instance with {@link #find(String, Entry)} fills a reusable {@link Entry} and does not allocate.
+ * <p>
+ * An index created with {@link #open(Path, int)} is kept in a file, and opening the same file again after a
+ * restart maps the existing records. Records are written to the file by the operating system; call
+ * {@link #flush()} to force them to storage. A write that is interrupted by a crash of the operating system can
+ * leave the file inconsistent, in which case the index should be deleted and rebuilt.
+ * <p>
+ * Reads are lock-free unless they race with a write, and writes are serialized. The table grows when it is three
+ * quarters full, up to {@value #MAX_CAPACITY} records.
+ */
+public class ServiceInstanceIndex implements Closeable {
+	private static final Logger log = getLogger(ServiceInstanceIndex.class);
+
+	public static final int MAX_CAPACITY = 1 << 24;
+
+	private static final int MIN_CAPACITY = 16;
+
+	private static final int MAGIC = 0x53494958;
+
+	private static final int FORMAT_VERSION = 1;
+
+	private static final int HEADER_SIZE = 64;
+
+	private static final int SYMBOLS_SIZE = 64 * 1024;
+
+	private static final int SLOTS_OFFSET = HEADER_SIZE + SYMBOLS_SIZE;
+
+	private static final int SLOT_SIZE = 64;
+
+	private static final int HEADER_MAGIC = 0;
+	private static final int HEADER_VERSION = 4;
+	private static final int HEADER_CAPACITY = 8;
+	private static final int HEADER_SIZE_FIELD = 12;
+	private static final int HEADER_SYMBOL_BYTES = 16;
+
+	private static final int SLOT_INSTANCE_HIGH = 0;
+	private static final int SLOT_INSTANCE_LOW = 8;
+	private static final int SLOT_ORGANIZATION_HIGH = 16;
+	private static final int SLOT_ORGANIZATION_LOW = 24;
+	private static final int SLOT_SPACE_HIGH = 32;
+	private static final int SLOT_SPACE_LOW = 40;
+	private static final int SLOT_SERVICE_DEFINITION = 48;
+	private static final int SLOT_PLAN = 52;
+	private static final int SLOT_STATE = 56;
+	private static final int SLOT_FLAGS = 57;
+
+	private static final byte FLAG_USED = 1;
+	private static final byte FLAG_ORGANIZATION = 2;
+	private static final byte FLAG_SPACE = 4;
+
+	private static final OperationState[] STATES = OperationState.values();
+
+	private final Path path;
+
+	private final StampedLock lock = new StampedLock();
+
+	private final Map<String, Integer> symbolCodes = new HashMap<>();
+
+	private volatile String[] symbols;
+
+	private volatile Table table;
+
+	private int size;
+
+	private ServiceInstanceIndex(Path path, Table table, String[] symbols, int size) {
+		this.path = path;
+		this.table = table;
+		this.symbols = symbols;
+		this.size = size;
+		for (int i = 0; i < symbols.length; i++) {
+			symbolCodes.put(symbols[i], i);
+		}
+	}
+
+	/**
+	 * Create an index in direct memory, which does not survive a restart.
+	 *
+	 * @param expectedInstances the number of service instances to size the table for
+	 * @return the index
+	 */
+	public static ServiceInstanceIndex inMemory(int expectedInstances) {
+		int capacity = capacityFor(expectedInstances);
+		Table table = new Table(ByteBuffer.allocateDirect(bufferSize(capacity)), capacity);
+		table.buffer.putInt(HEADER_MAGIC, MAGIC);
+		table.buffer.putInt(HEADER_VERSION, FORMAT_VERSION);
+		table.buffer.putInt(HEADER_CAPACITY, capacity);
+		return new ServiceInstanceIndex(null, table, new String[0], 0);
+	}
+
+	/**
+	 * Open an index kept in a file, mapping the records in the file if it exists and creating it otherwise.
+	 *
+	 * @param path the file that holds the index
+	 * @param expectedInstances the number of service instances to size a new table for
+	 * @return the index
+	 * @throws IOException if the file cannot be read or created
+	 * @throws IllegalStateException if the file exists but does not hold an index
+	 */
+	public static ServiceInstanceIndex open(Path path, int expectedInstances) throws IOException {
+		if (Files.exists(path) && Files.size(path) > 0) {
+			ByteBuffer buffer = map(path, (int) Files.size(path));
+			if (buffer.getInt(HEADER_MAGIC) != MAGIC || buffer.getInt(HEADER_VERSION) != FORMAT_VERSION) {
+				throw new IllegalStateException("File " + path + " does not hold a service instance index");
+			}
+			int capacity = buffer.getInt(HEADER_CAPACITY);
+			if (buffer.capacity() != bufferSize(capacity)) {
+				throw new IllegalStateException("Service instance index " + path + " is truncated");
+			}
+			String[] symbols = readSymbols(buffer);
+			int size = buffer.getInt(HEADER_SIZE_FIELD);
+			log.debug("Opened service instance index: path={}, size={}, capacity={}", path, size, capacity);
+			return new ServiceInstanceIndex(path, new Table(buffer, capacity), symbols, size);
+		}
+
+		int capacity = capacityFor(expectedInstances);
+		ByteBuffer buffer = map(path, bufferSize(capacity));
+		buffer.putInt(HEADER_MAGIC, MAGIC);
+		buffer.putInt(HEADER_VERSION, FORMAT_VERSION);
+		buffer.putInt(HEADER_CAPACITY, capacity);
+		log.debug("Created service instance index: path={}, capacity={}", path, capacity);
+		return new ServiceInstanceIndex(path, new Table(buffer, capacity), new String[0], 0);
+	}
+
+	/**
+	 * Add a service instance to the index, or replace the record of a service instance that is already indexed.
+	 *
+	 * @param serviceInstanceId the service instance GUID
+	 * @param serviceDefinitionId the ID of the service definition of the service instance
+	 * @param planId the ID of the plan of the service instance
+	 * @param state the state of the last operation on the service instance, or {@literal null}
+	 * @param organizationGuid the GUID of the organization that owns the service instance, or {@literal null}
+	 * @param spaceGuid the GUID of the space that owns the service instance, or {@literal null}
+	 * @throws IllegalArgumentException if a GUID is not in canonical form, or an ID is missing
+	 */
+	public void put(String serviceInstanceId, String serviceDefinitionId, String planId, OperationState state,
+					String organizationGuid, String spaceGuid) {
+		requireGuid(serviceInstanceId, "service instance ID");
+		if (serviceDefinitionId == null || planId == null) {
+			throw new IllegalArgumentException("A service definition ID and a plan ID must be provided");
+		}
+		if (organizationGuid != null) {
+			requireGuid(organizationGuid, "organization GUID");
+		}
+		if (spaceGuid != null) {
+			requireGuid(spaceGuid, "space GUID");
+		}
+
+		long high = highBits(serviceInstanceId);
+		long low = lowBits(serviceInstanceId);
+
+		long stamp = lock.writeLock();
+		try {
+			int serviceDefinitionCode = symbolCode(serviceDefinitionId);
+			int planCode = symbolCode(planId);
+
+			Table current = table;
+			int slot = current.find(high, low);
+			if (slot < 0) {
+				if ((size + 1) * 4L > current.capacity * 3L) {
+					current = grow(current);
+				}
+				slot = current.insertionSlot(high, low);
+				size++;
+			}
+
+			ByteBuffer buffer = current.buffer;
+			int offset = Table.offset(slot);
+			buffer.putLong(offset + SLOT_INSTANCE_HIGH, high);
+			buffer.putLong(offset + SLOT_INSTANCE_LOW, low);
+			buffer.putLong(offset + SLOT_ORGANIZATION_HIGH, organizationGuid == null ? 0 : highBits(organizationGuid));
+			buffer.putLong(offset + SLOT_ORGANIZATION_LOW, organizationGuid == null ? 0 : lowBits(organizationGuid));
+			buffer.putLong(offset + SLOT_SPACE_HIGH, spaceGuid == null ? 0 : highBits(spaceGuid));
+			buffer.putLong(offset + SLOT_SPACE_LOW, spaceGuid == null ? 0 : lowBits(spaceGuid));
+			buffer.putInt(offset + SLOT_SERVICE_DEFINITION, serviceDefinitionCode);
+			buffer.putInt(offset + SLOT_PLAN, planCode);
+			buffer.put(offset + SLOT_STATE, encodeState(state));
+			buffer.put(offset + SLOT_FLAGS, (byte) (FLAG_USED |
+					(organizationGuid == null ? 0 : FLAG_ORGANIZATION) |
+					(spaceGuid == null ? 0 : FLAG_SPACE)));
+			buffer.putInt(HEADER_SIZE_FIELD, size);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Change the operation state of an indexed service instance.
+	 *
+	 * @param serviceInstanceId the service instance GUID
+	 * @param state the state of the last operation on the service instance, or {@literal null}
+	 * @return {@literal true} if the service instance is indexed
+	 */
+	public boolean updateState(String serviceInstanceId, OperationState state) {
+		if (!isGuid(serviceInstanceId)) {
+			return false;
+		}
+		long high = highBits(serviceInstanceId);
+		long low = lowBits(serviceInstanceId);
+
+		long stamp = lock.writeLock();
+		try {
+			int slot = table.find(high, low);
+			if (slot < 0) {
+				return false;
+			}
+			table.buffer.put(Table.offset(slot) + SLOT_STATE, encodeState(state));
+			return true;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Remove a service instance from the index.
+	 *
+	 * @param serviceInstanceId the service instance GUID
+	 * @return {@literal true} if the service instance was indexed
+	 */
+	public boolean remove(String serviceInstanceId) {
+		if (!isGuid(serviceInstanceId)) {
+			return false;
+		}
+		long high = highBits(serviceInstanceId);
+		long low = lowBits(serviceInstanceId);
+
+		long stamp = lock.writeLock();
+		try {
+			int slot = table.find(high, low);
+			if (slot < 0) {
+				return false;
+			}
+			table.remove(slot);
+			size--;
+			table.buffer.putInt(HEADER_SIZE_FIELD, size);
+			return true;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Look up a service instance, filling the provided entry with its record. Does not allocate, so an entry can
+	 * be reused for many lookups by one thread.
+	 *
+	 * @param serviceInstanceId the service instance GUID
+	 * @param entry the entry to fill
+	 * @return {@literal true} if the service instance is indexed, {@literal false} otherwise, in which case the
+	 * entry is not changed
+	 */
+	public boolean find(String serviceInstanceId, Entry entry) {
+		if (!isGuid(serviceInstanceId)) {
+			return false;
+		}
+		long high = highBits(serviceInstanceId);
+		long low = lowBits(serviceInstanceId);
+
+		long stamp = lock.tryOptimisticRead();
+		if (stamp != 0) {
+			try {
+				boolean found = read(high, low, entry);
+				if (lock.validate(stamp)) {
+					return found;
+				}
+			} catch (RuntimeException e) {
+				// a concurrent write made the optimistic read inconsistent; read again under the lock
+			}
+		}
+
+		stamp = lock.readLock();
+		try {
+			return read(high, low, entry);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Determine whether a service instance is indexed.
+	 *
+	 * @param serviceInstanceId the service instance GUID
+	 * @return {@literal true} if the service instance is indexed
+	 */
+	public boolean contains(String serviceInstanceId) {
+		if (!isGuid(serviceInstanceId)) {
+			return false;
+		}
+		long high = highBits(serviceInstanceId);
+		long low = lowBits(serviceInstanceId);
+
+		long stamp = lock.tryOptimisticRead();
+		if (stamp != 0) {
+			boolean found = table.find(high, low) >= 0;
+			if (lock.validate(stamp)) {
+				return found;
+			}
+		}
+
+		stamp = lock.readLock();
+		try {
+			return table.find(high, low) >= 0;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	public int size() {
+		long stamp = lock.readLock();
+		try {
+			return size;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Force the records of an index kept in a file to storage. Does nothing for an index in direct memory.
+	 */
+	public void flush() {
+		long stamp = lock.readLock();
+		try {
+			if (table.buffer instanceof MappedByteBuffer) {
+				((MappedByteBuffer) table.buffer).force();
+			}
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Flush the index. The memory of the index is released when the index is no longer referenced.
+	 */
+	@Override
+	public void close() {
+		flush();
+	}
+
+	private boolean read(long high, long low, Entry entry) {
+		Table current = table;
+		int slot = current.find(high, low);
+		if (slot < 0) {
+			return false;
+		}
+
+		ByteBuffer buffer = current.buffer;
+		int offset = Table.offset(slot);
+		String[] currentSymbols = symbols;
+		byte flags = buffer.get(offset + SLOT_FLAGS);
+		entry.instanceHigh = high;
+		entry.instanceLow = low;
+		entry.serviceDefinitionId = currentSymbols[buffer.getInt(offset + SLOT_SERVICE_DEFINITION)];
+		entry.planId = currentSymbols[buffer.getInt(offset + SLOT_PLAN)];
+		entry.state = decodeState(buffer.get(offset + SLOT_STATE));
+		entry.hasOrganization = (flags & FLAG_ORGANIZATION) != 0;
+		entry.organizationHigh = buffer.getLong(offset + SLOT_ORGANIZATION_HIGH);
+		entry.organizationLow = buffer.getLong(offset + SLOT_ORGANIZATION_LOW);
+		entry.hasSpace = (flags & FLAG_SPACE) != 0;
+		entry.spaceHigh = buffer.getLong(offset + SLOT_SPACE_HIGH);
+		entry.spaceLow = buffer.getLong(offset + SLOT_SPACE_LOW);
+		return true;
+	}
+
+	private int symbolCode(String symbol) {
+		Integer code = symbolCodes.get(symbol);
+		if (code != null) {
+			return code;
+		}
+
+		byte[] bytes = symbol.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buffer = table.buffer;
+		int used = buffer.getInt(HEADER_SYMBOL_BYTES);
+		if (bytes.length > Short.MAX_VALUE || used + 2 + bytes.length > SYMBOLS_SIZE) {
+			throw new IllegalStateException("Service instance index has no room for the ID '" + symbol + "'; " +
+					"service definition and plan IDs are limited to " + SYMBOLS_SIZE + " bytes in total");
+		}
+		buffer.putShort(HEADER_SIZE + used, (short) bytes.length);
+		for (int i = 0; i < bytes.length; i++) {
+			buffer.put(HEADER_SIZE + used + 2 + i, bytes[i]);
+		}
+		buffer.putInt(HEADER_SYMBOL_BYTES, used + 2 + bytes.length);
+
+		String[] current = symbols;
+		String[] updated = Arrays.copyOf(current, current.length + 1);
+		updated[current.length] = symbol;
+		symbols = updated;
+		symbolCodes.put(symbol, current.length);
+		return current.length;
+	}
+
+	private static String[] readSymbols(ByteBuffer buffer) {
+		int used = buffer.getInt(HEADER_SYMBOL_BYTES);
+		String[] symbols = new String[0];
+		int position = 0;
+		while (position < used) {
+			int length = buffer.getShort(HEADER_SIZE + position);
+			byte[] bytes = new byte[length];
+			for (int i = 0; i < length; i++) {
+				bytes[i] = buffer.get(HEADER_SIZE + position + 2 + i);
+			}
+			symbols = Arrays.copyOf(symbols, symbols.length + 1);
+			symbols[symbols.length - 1] = new String(bytes, StandardCharsets.UTF_8);
+			position += 2 + length;
+		}
+		return symbols;
+	}
+
+	private Table grow(Table current) {
+		if (current.capacity >= MAX_CAPACITY) {
+			throw new IllegalStateException("Service instance index is full: capacity=" + current.capacity);
+		}
+
+		int capacity = current.capacity * 2;
+		log.debug("Growing service instance index: path={}, size={}, capacity={}", path, size, capacity);
+
+		ByteBuffer buffer;
+		Path resized = path == null ? null : path.resolveSibling(path.getFileName() + ".resize");
+		try {
+			buffer = resized == null ? ByteBuffer.allocateDirect(bufferSize(capacity)) :
+					map(resized, bufferSize(capacity));
+		} catch (IOException e) {
+			throw new ServiceBrokerException("Error growing service instance index " + path, e);
+		}
+
+		for (int i = 0; i < SLOTS_OFFSET; i++) {
+			buffer.put(i, current.buffer.get(i));
+		}
+		buffer.putInt(HEADER_CAPACITY, capacity);
+
+		Table grown = new Table(buffer, capacity);
+		for (int slot = 0; slot < current.capacity; slot++) {
+			if (current.isUsed(slot)) {
+				int offset = Table.offset(slot);
+				int target = grown.insertionSlot(current.buffer.getLong(offset + SLOT_INSTANCE_HIGH),
+						current.buffer.getLong(offset + SLOT_INSTANCE_LOW));
+				Table.copySlot(current.buffer, offset, buffer, Table.offset(target));
+			}
+		}
+
+		if (resized != null) {
+			try {
+				((MappedByteBuffer) buffer).force();
+				Files.move(resized, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				throw new ServiceBrokerException("Error growing service instance index " + path, e);
+			}
+		}
+
+		table = grown;
+		return grown;
+	}
+
+	private static ByteBuffer map(Path path, int size) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		}
+	}
+
+	private static int capacityFor(int expectedInstances) {
+		long required = Math.max(MIN_CAPACITY, expectedInstances * 4L / 3 + 1);
+		if (required > MAX_CAPACITY) {
+			throw new IllegalArgumentException("A service instance index can hold at most " +
+					MAX_CAPACITY * 3 / 4 + " service instances");
+		}
+		return Integer.highestOneBit((int) required - 1) << 1;
+	}
+
+	private static int bufferSize(int capacity) {
+		return SLOTS_OFFSET + capacity * SLOT_SIZE;
+	}
+
+	private static byte encodeState(OperationState state) {
+		return (byte) (state == null ? 0 : state.ordinal() + 1);
+	}
+
+	private static OperationState decodeState(byte state) {
+		return state == 0 ? null : STATES[state - 1];
+	}
+
+	private static void requireGuid(String guid, String description) {
+		if (!isGuid(guid)) {
+			throw new IllegalArgumentException("The " + description + " must be a GUID in canonical form: " + guid);
+		}
+	}
+
+	static boolean isGuid(String value) {
+		if (value == null || value.length() != 36) {
+			return false;
+		}
+		for (int i = 0; i < 36; i++) {
+			char c = value.charAt(i);
+			if (i == 8 || i == 13 || i == 18 || i == 23) {
+				if (c != '-') {
+					return false;
+				}
+			} else if (hexDigit(c) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	static long highBits(String guid) {
+		return hex(guid, 0, 8) << 32 | hex(guid, 9, 13) << 16 | hex(guid, 14, 18);
+	}
+
+	static long lowBits(String guid) {
+		return hex(guid, 19, 23) << 48 | hex(guid, 24, 36);
+	}
+
+	private static long hex(String value, int start, int end) {
+		long result = 0;
+		for (int i = start; i < end; i++) {
+			result = result << 4 | hexDigit(value.charAt(i));
+		}
+		return result;
+	}
+
+	private static int hexDigit(char c) {
+		if (c >= '0' && c <= '9') {
+			return c - '0';
+		} else if (c >= 'a' && c <= 'f') {
+			return c - 'a' + 10;
+		} else if (c >= 'A' && c <= 'F') {
+			return c - 'A' + 10;
+		}
+		return -1;
+	}
+
+	private static boolean equalsGuid(long high, long low, String guid) {
+		return isGuid(guid) && highBits(guid) == high && lowBits(guid) == low;
+	}
+
+	/**
+	 * The record of an indexed service instance. Filled by {@link #find(String, Entry)}, and not thread-safe.
+	 */
+	public static final class Entry {
+		private long instanceHigh;
+		private long instanceLow;
+		private String serviceDefinitionId;
+		private String planId;
+		private OperationState state;
+		private boolean hasOrganization;
+		private long organizationHigh;
+		private long organizationLow;
+		private boolean hasSpace;
+		private long spaceHigh;
+		private long spaceLow;
+
+		public String getServiceInstanceId() {
+			return new UUID(instanceHigh, instanceLow).toString();
+		}
+
+		public String getServiceDefinitionId() {
+			return this.serviceDefinitionId;
+		}
+
+		public String getPlanId() {
+			return this.planId;
+		}
+
+		public OperationState getState() {
+			return this.state;
+		}
+
+		public String getOrganizationGuid() {
+			return hasOrganization ? new UUID(organizationHigh, organizationLow).toString() : null;
+		}
+
+		public String getSpaceGuid() {
+			return hasSpace ? new UUID(spaceHigh, spaceLow).toString() : null;
+		}
+
+		/**
+		 * Determine whether the service instance is owned by an organization, without allocating.
+		 */
+		public boolean isInOrganization(String organizationGuid) {
+			return hasOrganization && equalsGuid(organizationHigh, organizationLow, organizationGuid);
+		}
+
+		/**
+		 * Determine whether the service instance is owned by a space, without allocating.
+		 */
+		public boolean isInSpace(String spaceGuid) {
+			return hasSpace && equalsGuid(spaceHigh, spaceLow, spaceGuid);
+		}
+
+		@Override
+		public String toString() {
+			return "Entry{" +
+					"serviceInstanceId='" + getServiceInstanceId() + '\'' +
+					", serviceDefinitionId='" + serviceDefinitionId + '\'' +
+					", planId='" + planId + '\'' +
+					", state=" + state +
+					", organizationGuid='" + getOrganizationGuid() + '\'' +
+					", spaceGuid='" + getSpaceGuid() + '\'' +
+					'}';
+		}
+	}
+
+	/**
+	 * The slots of an index, held together with their capacity so that a reader sees a consistent pair while
+	 * the index grows.
+	 */
+	private static final class Table {
+		private final ByteBuffer buffer;
+
+		private final int capacity;
+
+		private final int mask;
+
+		private Table(ByteBuffer buffer, int capacity) {
+			this.buffer = buffer;
+			this.capacity = capacity;
+			this.mask = capacity - 1;
+		}
+
+		private static int offset(int slot) {
+			return SLOTS_OFFSET + slot * SLOT_SIZE;
+		}
+
+		private int home(long high, long low) {
+			long hash = high * 0x9E3779B97F4A7C15L ^ low;
+			hash ^= hash >>> 33;
+			hash *= 0xFF51AFD7ED558CCDL;
+			hash ^= hash >>> 33;
+			return (int) hash & mask;
+		}
+
+		private boolean isUsed(int slot) {
+			return (buffer.get(offset(slot) + SLOT_FLAGS) & FLAG_USED) != 0;
+		}
+
+		private int find(long high, long low) {
+			int slot = home(high, low);
+			for (int probes = 0; probes < capacity; probes++) {
+				if (!isUsed(slot)) {
+					return -1;
+				}
+				int offset = offset(slot);
+				if (buffer.getLong(offset + SLOT_INSTANCE_HIGH) == high &&
+						buffer.getLong(offset + SLOT_INSTANCE_LOW) == low) {
+					return slot;
+				}
+				slot = (slot + 1) & mask;
+			}
+			return -1;
+		}
+
+		private int insertionSlot(long high, long low) {
+			int slot = home(high, low);
+			while (isUsed(slot)) {
+				slot = (slot + 1) & mask;
+			}
+			return slot;
+		}
+
+		/**
+		 * Remove the record in a slot, shifting later records of the same probe sequence back so that no
+		 * tombstones are needed.
+		 */
+		private void remove(int slot) {
+			int hole = slot;
+			int next = slot;
+			while (true) {
+				next = (next + 1) & mask;
+				if (!isUsed(next)) {
+					break;
+				}
+				int offset = offset(next);
+				int home = home(buffer.getLong(offset + SLOT_INSTANCE_HIGH), buffer.getLong(offset + SLOT_INSTANCE_LOW));
+				boolean reachable = hole <= next ? (hole < home && home <= next) : (hole < home || home <= next);
+				if (!reachable) {
+					copySlot(buffer, offset, buffer, offset(hole));
+					hole = next;
+				}
+			}
+			int offset = offset(hole);
+			for (int i = 0; i < SLOT_SIZE; i += 8) {
+				buffer.putLong(offset + i, 0);
+			}
+		}
+
+		private static void copySlot(ByteBuffer source, int sourceOffset, ByteBuffer target, int targetOffset) {
+			for (int i = 0; i < SLOT_SIZE; i += 8) {
+				target.putLong(targetOffset + i, source.getLong(sourceOffset + i));
+			}
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerConcurrencyException;
+
+/**
+ * Serializes operations on the same service instance while allowing operations on different service instances
+ * to proceed in parallel.
+ * <p>
+ * Service instance IDs are hashed onto a fixed set of lock stripes, so the memory used by the lock manager does
+ * not grow with the number of service instances. A caller that can not acquire the lock for a service instance
+ * within the configured timeout fails with a {@link ServiceBrokerConcurrencyException}.
+ * <p>
+ * Waiting for a lock blocks the calling thread. In a WebFlux application that thread is an event loop thread,
+ * so the timeout should be kept short there, or an {@link OperationDeadline} provided so that create, update and
+ * delete operations that accept an asynchronous response wait for their lock on its executor instead.
+ */
+public class ServiceInstanceLockManager {
+	public static final int DEFAULT_STRIPES = 1024;
+
+	public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+
+	private final ReentrantLock[] locks;
+
+	private final int mask;
+
+	private final long timeoutNanos;
+
+	/**
+	 * Construct a lock manager with the default number of stripes and timeout.
+	 */
+	public ServiceInstanceLockManager() {
+		this(DEFAULT_STRIPES, DEFAULT_TIMEOUT);
+	}
+
+	/**
+	 * Construct a lock manager.
+	 *
+	 * @param stripes the number of locks shared by all service instances; rounded up to a power of two
+	 * @param timeout the maximum time to wait for an operation on the same service instance to complete
+	 */
+	public ServiceInstanceLockManager(int stripes, Duration timeout) {
+		if (stripes < 1) {
+			throw new IllegalArgumentException("The number of lock stripes must be positive");
+		}
+		int size = Integer.highestOneBit(stripes);
+		if (size < stripes) {
+			size <<= 1;
+		}
+		this.locks = new ReentrantLock[size];
+		for (int i = 0; i < size; i++) {
+			this.locks[i] = new ReentrantLock();
+		}
+		this.mask = size - 1;
+		this.timeoutNanos = timeout.toNanos();
+	}
+
+	/**
+	 * Run an operation while holding the lock for a service instance.
+	 *
+	 * @param serviceInstanceId the ID of the service instance the operation applies to
+	 * @param operation the operation to run
+	 * @param <T> the result type of the operation
+	 * @return the result of the operation
+	 * @throws ServiceBrokerConcurrencyException if the lock could not be acquired within the timeout
+	 */
+	public <T> T execute(String serviceInstanceId, Supplier<T> operation) {
+		ReentrantLock lock = lockFor(serviceInstanceId);
+		acquire(lock, serviceInstanceId);
+		try {
+			return operation.get();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Run an operation that produces no result while holding the lock for a service instance.
+	 *
+	 * @param serviceInstanceId the ID of the service instance the operation applies to
+	 * @param operation the operation to run
+	 * @throws ServiceBrokerConcurrencyException if the lock could not be acquired within the timeout
+	 */
+	public void execute(String serviceInstanceId, Runnable operation) {
+		execute(serviceInstanceId, () -> {
+			operation.run();
+			return null;
+		});
+	}
+
+	private ReentrantLock lockFor(String serviceInstanceId) {
+		int h = serviceInstanceId == null ? 0 : serviceInstanceId.hashCode();
+		// spread the high bits so that IDs differing only in their last characters use different stripes
+		h ^= (h >>> 16);
+		return locks[h & mask];
+	}
+
+	private void acquire(ReentrantLock lock, String serviceInstanceId) {
+		try {
+			if (!lock.tryLock(timeoutNanos, TimeUnit.NANOSECONDS)) {
+				throw new ServiceBrokerConcurrencyException(
+						"Another operation for this service instance is in progress: serviceInstanceId="
+								+ serviceInstanceId);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ServiceBrokerConcurrencyException(
+					"Interrupted while waiting for another operation for this service instance: serviceInstanceId="
+							+ serviceInstanceId, e);
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.cloud.servicebroker.model.Context;
+
+/**
+ * The plan, parameters and context a service instance was provisioned or last updated with.
+ *
+ * @see ServiceInstanceParametersStore
+ */
+public final class ServiceInstanceParameters {
+	private final String serviceInstanceId;
+
+	private final String planId;
+
+	private final Map<String, Object> parameters;
+
+	private final Context context;
+
+	/**
+	 * Construct the parameters of a service instance without a context.
+	 *
+	 * @param serviceInstanceId the ID of the service instance
+	 * @param planId the ID of the plan of the service instance
+	 * @param parameters the parameters of the service instance, or {@literal null} if it has none
+	 */
+	public ServiceInstanceParameters(String serviceInstanceId, String planId, Map<String, Object> parameters) {
+		this(serviceInstanceId, planId, parameters, null);
+	}
+
+	/**
+	 * Construct the parameters of a service instance.
+	 *
+	 * @param serviceInstanceId the ID of the service instance
+	 * @param planId the ID of the plan of the service instance
+	 * @param parameters the parameters of the service instance, or {@literal null} if it has none
+	 * @param context the context of the last request for the service instance, or {@literal null} if it is not
+	 * known
+	 */
+	public ServiceInstanceParameters(String serviceInstanceId, String planId, Map<String, Object> parameters,
+									 Context context) {
+		this.serviceInstanceId = serviceInstanceId;
+		this.planId = planId;
+		this.parameters = parameters == null ? Collections.emptyMap() :
+				Collections.unmodifiableMap(new LinkedHashMap<>(parameters));
+		this.context = context;
+	}
+
+	public String getServiceInstanceId() {
+		return this.serviceInstanceId;
+	}
+
+	public String getPlanId() {
+		return this.planId;
+	}
+
+	public Map<String, Object> getParameters() {
+		return this.parameters;
+	}
+
+	public Context getContext() {
+		return this.context;
+	}
+
+	@Override
+	public String toString() {
+		return "ServiceInstanceParameters{" +
+				"serviceInstanceId='" + serviceInstanceId + '\'' +
+				", planId='" + planId + '\'' +
+				", parameters=" + parameters.keySet() +
+				'}';
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+/**
+ * This interface is implemented by stores that hold the plan and parameters each service instance was provisioned
+ * or last updated with, so that update requests can be compared with them.
+ *
+ * @see ParameterTrackingServiceInstanceService
+ */
+public interface ServiceInstanceParametersStore {
+
+	/**
+	 * Get the parameters of a service instance.
+	 *
+	 * @param serviceInstanceId the ID of the service instance
+	 * @return the parameters, or {@literal null} if none are known for the service instance
+	 */
+	ServiceInstanceParameters getParameters(String serviceInstanceId);
+
+	/**
+	 * Save the parameters of a service instance, replacing any parameters saved before.
+	 *
+	 * @param parameters the parameters to save
+	 */
+	void saveParameters(ServiceInstanceParameters parameters);
+
+	/**
+	 * Remove any parameters saved for a service instance.
+	 *
+	 * @param serviceInstanceId the ID of the service instance
+	 */
+	void deleteParameters(String serviceInstanceId);
+
+}
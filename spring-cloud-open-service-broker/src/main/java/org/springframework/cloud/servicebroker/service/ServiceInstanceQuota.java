@@ -0,0 +1,347 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceQuotaExceededException;
+import org.springframework.cloud.servicebroker.model.CloudFoundryContext;
+import org.springframework.cloud.servicebroker.model.Context;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.KubernetesContext;
+
+/**
+ * Limits the number of service instances in each organization, space, namespace and plan.
+ * <p>
+ * The service instances in each scope are counted in memory, with one counter for each organization, space,
+ * namespace or plan that has a limit. A slot is reserved with a compare-and-set on the counter when a service
+ * instance is provisioned, so that concurrent requests can not exceed a limit, and is released when the service
+ * instance is deleted or the provisioning fails. The counters are rebuilt from a {@link ServiceInstanceQuotaSource}
+ * when the quota is built.
+ * <p>
+ * The organization and space are taken from a {@link CloudFoundryContext}, or from the request if the platform did
+ * not send one, and the namespace from a {@link KubernetesContext}. Scopes a request does not identify are not
+ * limited.
+ *
+ * @see QuotaEnforcingServiceInstanceService
+ */
+public class ServiceInstanceQuota {
+	public static final int UNLIMITED = Integer.MAX_VALUE;
+
+	/**
+	 * The scopes that service instances are counted in.
+	 */
+	public enum Scope {
+		ORGANIZATION("organization"),
+		SPACE("space"),
+		NAMESPACE("namespace"),
+		PLAN("plan");
+
+		private final String description;
+
+		Scope(String description) {
+			this.description = description;
+		}
+
+		private String key(String id) {
+			return ordinal() + id;
+		}
+	}
+
+	private static final Scope[] CONTEXT_SCOPES = {Scope.ORGANIZATION, Scope.SPACE, Scope.NAMESPACE};
+
+	private final int[] limits;
+
+	private final Map<String, Integer> planLimits;
+
+	private final ServiceInstanceQuotaSource source;
+
+	private volatile Counters counters = new Counters();
+
+	private ServiceInstanceQuota(int[] limits, Map<String, Integer> planLimits, ServiceInstanceQuotaSource source) {
+		this.limits = limits;
+		this.planLimits = planLimits;
+		this.source = source;
+	}
+
+	/**
+	 * Reserve a slot for a service instance that is being provisioned. A service instance that already holds a slot
+	 * is not counted again.
+	 *
+	 * @param request the provision request
+	 * @return {@literal true} if a slot was reserved, {@literal false} if the service instance already held one
+	 * @throws ServiceInstanceQuotaExceededException if a limit has been reached
+	 */
+	@SuppressWarnings("deprecation")
+	public boolean reserve(CreateServiceInstanceRequest request) {
+		Context context = request.getContext();
+		String organizationGuid = request.getOrganizationGuid();
+		String spaceGuid = request.getSpaceGuid();
+		String namespace = null;
+		if (context instanceof CloudFoundryContext) {
+			organizationGuid = ((CloudFoundryContext) context).getOrganizationGuid();
+			spaceGuid = ((CloudFoundryContext) context).getSpaceGuid();
+		} else if (context instanceof KubernetesContext) {
+			namespace = ((KubernetesContext) context).getNamespace();
+		}
+		return reserve(request.getServiceInstanceId(), request.getPlanId(), organizationGuid, spaceGuid, namespace,
+				true);
+	}
+
+	/**
+	 * Count a service instance that already exists, without checking the limits.
+	 *
+	 * @param serviceInstanceId the ID of the service instance
+	 * @param planId the ID of the plan of the service instance
+	 * @param organizationGuid the GUID of the organization of the service instance, or {@literal null}
+	 * @param spaceGuid the GUID of the space of the service instance, or {@literal null}
+	 * @param namespace the namespace of the service instance, or {@literal null}
+	 */
+	public void restore(String serviceInstanceId, String planId, String organizationGuid, String spaceGuid,
+						String namespace) {
+		reserve(serviceInstanceId, planId, organizationGuid, spaceGuid, namespace, false);
+	}
+
+	/**
+	 * Move the slot of a service instance to another plan.
+	 *
+	 * @param serviceInstanceId the ID of the service instance
+	 * @param planId the ID of the new plan
+	 * @return the ID of the previous plan, or {@literal null} if the plan did not change or the service instance
+	 * holds no slot
+	 * @throws ServiceInstanceQuotaExceededException if the limit of the new plan has been reached
+	 */
+	public String changePlan(String serviceInstanceId, String planId) {
+		return changePlan(serviceInstanceId, planId, true);
+	}
+
+	/**
+	 * Release the slot of a service instance that was deleted or failed to be provisioned.
+	 *
+	 * @param serviceInstanceId the ID of the service instance
+	 */
+	public void release(String serviceInstanceId) {
+		Counters counters = this.counters;
+		Reservation reservation = counters.reservations.remove(serviceInstanceId);
+		if (reservation != null) {
+			for (String key : reservation.keys) {
+				release(counters, key);
+			}
+			release(counters, reservation.planKey);
+		}
+	}
+
+	/**
+	 * Get the number of service instances counted in a scope. Only scopes with a limit are counted.
+	 *
+	 * @param scope the scope
+	 * @param id the ID of the organization, space, namespace or plan
+	 * @return the number of service instances
+	 */
+	public int getCount(Scope scope, String id) {
+		AtomicInteger counter = this.counters.counters.get(scope.key(id));
+		return counter == null ? 0 : counter.get();
+	}
+
+	/**
+	 * Discard the counters and count the service instances of the {@link ServiceInstanceQuotaSource} again.
+	 */
+	public void rebuild() {
+		this.counters = new Counters();
+		if (this.source != null) {
+			this.source.load(this);
+		}
+	}
+
+	public static ServiceInstanceQuotaBuilder builder() {
+		return new ServiceInstanceQuotaBuilder();
+	}
+
+	String changePlan(String serviceInstanceId, String planId, boolean enforce) {
+		Counters counters = this.counters;
+		Reservation reservation = counters.reservations.get(serviceInstanceId);
+		if (reservation == null || planId == null || planId.equals(reservation.planId)) {
+			return null;
+		}
+		String planKey = acquire(counters, Scope.PLAN, planId, getPlanLimit(planId), enforce);
+		counters.reservations.put(serviceInstanceId, new Reservation(reservation.keys, planId, planKey));
+		release(counters, reservation.planKey);
+		return reservation.planId;
+	}
+
+	private boolean reserve(String serviceInstanceId, String planId, String organizationGuid, String spaceGuid,
+							String namespace, boolean enforce) {
+		Counters counters = this.counters;
+		if (counters.reservations.containsKey(serviceInstanceId)) {
+			return false;
+		}
+
+		String[] ids = {organizationGuid, spaceGuid, namespace};
+		String[] keys = new String[ids.length];
+		String planKey;
+		int acquired = 0;
+		try {
+			for (; acquired < ids.length; acquired++) {
+				keys[acquired] = acquire(counters, CONTEXT_SCOPES[acquired], ids[acquired],
+						limits[CONTEXT_SCOPES[acquired].ordinal()], enforce);
+			}
+			planKey = acquire(counters, Scope.PLAN, planId, getPlanLimit(planId), enforce);
+		} catch (ServiceInstanceQuotaExceededException e) {
+			for (int i = 0; i < acquired; i++) {
+				release(counters, keys[i]);
+			}
+			throw e;
+		}
+
+		if (counters.reservations.putIfAbsent(serviceInstanceId, new Reservation(keys, planId, planKey)) != null) {
+			for (String key : keys) {
+				release(counters, key);
+			}
+			release(counters, planKey);
+			return false;
+		}
+		return true;
+	}
+
+	private static String acquire(Counters counters, Scope scope, String id, int limit, boolean enforce) {
+		if (id == null || limit == UNLIMITED) {
+			return null;
+		}
+		String key = scope.key(id);
+		AtomicInteger counter = counters.counters.computeIfAbsent(key, k -> new AtomicInteger());
+		if (!enforce) {
+			counter.incrementAndGet();
+			return key;
+		}
+		for (;;) {
+			int count = counter.get();
+			if (count >= limit) {
+				throw new ServiceInstanceQuotaExceededException("The " + scope.description + " '" + id +
+						"' has reached its quota of " + limit + " service instances");
+			}
+			if (counter.compareAndSet(count, count + 1)) {
+				return key;
+			}
+		}
+	}
+
+	private static void release(Counters counters, String key) {
+		if (key != null) {
+			AtomicInteger counter = counters.counters.get(key);
+			if (counter != null) {
+				counter.decrementAndGet();
+			}
+		}
+	}
+
+	private int getPlanLimit(String planId) {
+		Integer limit = planLimits.get(planId);
+		return limit == null ? limits[Scope.PLAN.ordinal()] : limit;
+	}
+
+	private static final class Counters {
+		private final Map<String, AtomicInteger> counters = new ConcurrentHashMap<>();
+
+		private final Map<String, Reservation> reservations = new ConcurrentHashMap<>();
+	}
+
+	private static final class Reservation {
+		private final String[] keys;
+
+		private final String planId;
+
+		private final String planKey;
+
+		private Reservation(String[] keys, String planId, String planKey) {
+			this.keys = keys;
+			this.planId = planId;
+			this.planKey = planKey;
+		}
+	}
+
+	public static class ServiceInstanceQuotaBuilder {
+		private final int[] limits = {UNLIMITED, UNLIMITED, UNLIMITED, UNLIMITED};
+
+		private final Map<String, Integer> planLimits = new HashMap<>();
+
+		private ServiceInstanceQuotaSource source;
+
+		ServiceInstanceQuotaBuilder() {
+		}
+
+		public ServiceInstanceQuotaBuilder organizationLimit(int limit) {
+			return limit(Scope.ORGANIZATION, limit);
+		}
+
+		public ServiceInstanceQuotaBuilder spaceLimit(int limit) {
+			return limit(Scope.SPACE, limit);
+		}
+
+		public ServiceInstanceQuotaBuilder namespaceLimit(int limit) {
+			return limit(Scope.NAMESPACE, limit);
+		}
+
+		/**
+		 * Limit the number of service instances of each plan that has no limit of its own.
+		 *
+		 * @param limit the maximum number of service instances of a plan
+		 * @return the builder
+		 */
+		public ServiceInstanceQuotaBuilder planLimit(int limit) {
+			return limit(Scope.PLAN, limit);
+		}
+
+		public ServiceInstanceQuotaBuilder planLimit(String planId, int limit) {
+			checkLimit(limit);
+			this.planLimits.put(planId, limit);
+			return this;
+		}
+
+		public ServiceInstanceQuotaBuilder source(ServiceInstanceQuotaSource source) {
+			this.source = source;
+			return this;
+		}
+
+		/**
+		 * Build the quota and count the service instances of the {@link ServiceInstanceQuotaSource}, if one was
+		 * provided.
+		 *
+		 * @return the quota
+		 */
+		public ServiceInstanceQuota build() {
+			ServiceInstanceQuota quota = new ServiceInstanceQuota(limits.clone(), new HashMap<>(planLimits), source);
+			quota.rebuild();
+			return quota;
+		}
+
+		private ServiceInstanceQuotaBuilder limit(Scope scope, int limit) {
+			checkLimit(limit);
+			this.limits[scope.ordinal()] = limit;
+			return this;
+		}
+
+		private static void checkLimit(int limit) {
+			if (limit < 0) {
+				throw new IllegalArgumentException("A quota limit must not be negative");
+			}
+		}
+	}
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+/**
+ * This interface is implemented by sources of the service instances that already exist, such as the database of a
+ * service broker, so that a {@link ServiceInstanceQuota} can count them when it is built.
+ *
+ * @see ServiceInstanceQuota
+ */
+public interface ServiceInstanceQuotaSource {
+
+	/**
+	 * Count the service instances that already exist by calling
+	 * {@link ServiceInstanceQuota#restore(String, String, String, String, String)} for each of them.
+	 *
+	 * @param quota the quota to restore the service instances in
+	 */
+	void load(ServiceInstanceQuota quota);
+
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerOverloadedException;
+import org.springframework.cloud.servicebroker.exception.ServiceDefinitionDoesNotExistException;
+import org.springframework.util.Assert;
+
+/**
+ * One of the services offered by a broker, with the {@link ServiceInstanceService} and
+ * {@link ServiceInstanceBindingService} that implement it. Requests are dispatched to an offering by a
+ * {@link RoutingServiceInstanceService} and a {@link RoutingServiceInstanceBindingService}.
+ * <p>
+ * Each offering can have its own {@link AdmissionController} that limits its concurrent operations, and its own
+ * {@link OperationDeadline} whose executor runs its provision, update and deprovision operations and whose
+ * deadline promotes them to asynchronous operations, so that a slow offering can not hold the threads another
+ * offering needs. The calls to each offering are counted separately. When the services of the broker are built
+ * with a {@link ServiceBrokerDrain}, the operations promoted by the deadline of each offering are drained and
+ * resumed with the others.
+ */
+public final class ServiceOffering {
+
+	private final String serviceDefinitionId;
+
+	private final ServiceInstanceService serviceInstanceService;
+
+	private final ServiceInstanceBindingService serviceInstanceBindingService;
+
+	private final AdmissionController admissionController;
+
+	private final OperationDeadline operationDeadline;
+
+	private final DeadlineServiceInstanceService deadlineService;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	private final LongAdder completed = new LongAdder();
+
+	private final LongAdder failed = new LongAdder();
+
+	private final LongAdder rejected = new LongAdder();
+
+	private final LongAdder totalNanos = new LongAdder();
+
+	private ServiceOffering(String serviceDefinitionId, ServiceInstanceService serviceInstanceService,
+							ServiceInstanceBindingService serviceInstanceBindingService,
+							AdmissionController admissionController, OperationDeadline operationDeadline,
+							OperationStore operationStore) {
+		this.serviceDefinitionId = serviceDefinitionId;
+		this.admissionController = admissionController;
+		this.operationDeadline = operationDeadline;
+
+		if (admissionController != null) {
+			serviceInstanceService =
+					new AdmissionControlledServiceInstanceService(serviceInstanceService, admissionController);
+			serviceInstanceBindingService = new AdmissionControlledServiceInstanceBindingService(
+					serviceInstanceBindingService, admissionController);
+		}
+		if (operationDeadline != null) {
+			this.deadlineService =
+					new DeadlineServiceInstanceService(serviceInstanceService, operationDeadline, operationStore);
+			serviceInstanceService = this.deadlineService;
+		} else {
+			this.deadlineService = null;
+		}
+		this.serviceInstanceService = serviceInstanceService;
+		this.serviceInstanceBindingService = serviceInstanceBindingService;
+	}
+
+	public String getServiceDefinitionId() {
+		return this.serviceDefinitionId;
+	}
+
+	/**
+	 * Get the admission controller that limits the concurrent operations of the offering.
+	 *
+	 * @return the admission controller, or {@literal null} if operations are not limited
+	 */
+	public AdmissionController getAdmissionController() {
+		return this.admissionController;
+	}
+
+	/**
+	 * Get the deadline and executor of the provision, update and deprovision operations of the offering.
+	 *
+	 * @return the operation deadline, or {@literal null} if operations run on the calling thread
+	 */
+	public OperationDeadline getOperationDeadline() {
+		return this.operationDeadline;
+	}
+
+	/**
+	 * Get the number of calls to the offering in progress.
+	 */
+	public int getInFlightCalls() {
+		return this.inFlight.get();
+	}
+
+	/**
+	 * Get the number of calls to the offering that completed without an exception.
+	 */
+	public long getCompletedCalls() {
+		return this.completed.sum();
+	}
+
+	/**
+	 * Get the number of calls to the offering that failed with an exception.
+	 */
+	public long getFailedCalls() {
+		return this.failed.sum();
+	}
+
+	/**
+	 * Get the number of calls to the offering rejected because it was processing too many operations.
+	 */
+	public long getRejectedCalls() {
+		return this.rejected.sum();
+	}
+
+	/**
+	 * Get the total time taken by the completed and failed calls to the offering.
+	 */
+	public Duration getTotalDuration() {
+		return Duration.ofNanos(this.totalNanos.sum());
+	}
+
+	ServiceInstanceService getServiceInstanceService() {
+		return this.serviceInstanceService;
+	}
+
+	ServiceInstanceBindingService getServiceInstanceBindingService() {
+		return this.serviceInstanceBindingService;
+	}
+
+	DeadlineServiceInstanceService getDeadlineService() {
+		return this.deadlineService;
+	}
+
+	<T> T execute(Supplier<T> operation) {
+		inFlight.incrementAndGet();
+		long start = System.nanoTime();
+		LongAdder outcome = failed;
+		try {
+			T result = operation.get();
+			outcome = completed;
+			return result;
+		} catch (ServiceBrokerOverloadedException e) {
+			outcome = rejected;
+			throw e;
+		} finally {
+			inFlight.decrementAndGet();
+			outcome.increment();
+			if (outcome != rejected) {
+				totalNanos.add(System.nanoTime() - start);
+			}
+		}
+	}
+
+	static Map<String, ServiceOffering> index(List<ServiceOffering> offerings) {
+		Assert.notEmpty(offerings, "At least one service offering must be provided");
+		Map<String, ServiceOffering> index = new HashMap<>();
+		for (ServiceOffering offering : offerings) {
+			if (index.putIfAbsent(offering.getServiceDefinitionId(), offering) != null) {
+				throw new IllegalArgumentException("More than one service offering has the service definition ID '" +
+						offering.getServiceDefinitionId() + "'");
+			}
+		}
+		return index;
+	}
+
+	static ServiceOffering find(Map<String, ServiceOffering> offerings, String serviceDefinitionId) {
+		ServiceOffering offering = serviceDefinitionId == null ? null : offerings.get(serviceDefinitionId);
+		if (offering == null) {
+			throw new ServiceDefinitionDoesNotExistException(serviceDefinitionId);
+		}
+		return offering;
+	}
+
+	@Override
+	public String toString() {
+		return "ServiceOffering{" +
+				"serviceDefinitionId='" + serviceDefinitionId + '\'' +
+				'}';
+	}
+
+	public static ServiceOfferingBuilder builder() {
+		return new ServiceOfferingBuilder();
+	}
+
+	public static class ServiceOfferingBuilder {
+		private String serviceDefinitionId;
+		private ServiceInstanceService serviceInstanceService;
+		private ServiceInstanceBindingService serviceInstanceBindingService;
+		private AdmissionController admissionController;
+		private OperationDeadline operationDeadline;
+		private OperationStore operationStore;
+
+		ServiceOfferingBuilder() {
+		}
+
+		public ServiceOfferingBuilder serviceDefinitionId(String serviceDefinitionId) {
+			this.serviceDefinitionId = serviceDefinitionId;
+			return this;
+		}
+
+		public ServiceOfferingBuilder serviceInstanceService(ServiceInstanceService serviceInstanceService) {
+			this.serviceInstanceService = serviceInstanceService;
+			return this;
+		}
+
+		public ServiceOfferingBuilder serviceInstanceBindingService(
+				ServiceInstanceBindingService serviceInstanceBindingService) {
+			this.serviceInstanceBindingService = serviceInstanceBindingService;
+			return this;
+		}
+
+		public ServiceOfferingBuilder admissionController(AdmissionController admissionController) {
+			this.admissionController = admissionController;
+			return this;
+		}
+
+		/**
+		 * Limit the offering to a fixed number of concurrent operations.
+		 */
+		public ServiceOfferingBuilder concurrencyLimit(int limit) {
+			this.admissionController = new AdmissionController(limit, limit, limit,
+					AdmissionController.DEFAULT_TOLERANCE);
+			return this;
+		}
+
+		public ServiceOfferingBuilder operationDeadline(OperationDeadline operationDeadline) {
+			this.operationDeadline = operationDeadline;
+			return this;
+		}
+
+		/**
+		 * Run the provision, update and deprovision operations of the offering on an executor, continuing them
+		 * asynchronously when they take longer than a timeout.
+		 */
+		public ServiceOfferingBuilder executor(Executor executor, Duration timeout) {
+			this.operationDeadline = new OperationDeadline(timeout, executor);
+			return this;
+		}
+
+		public ServiceOfferingBuilder operationStore(OperationStore operationStore) {
+			this.operationStore = operationStore;
+			return this;
+		}
+
+		public ServiceOffering build() {
+			Assert.hasText(serviceDefinitionId, "A service offering must have a service definition ID");
+			Assert.notNull(serviceInstanceService,
+					"Service offering '" + serviceDefinitionId + "' must have a ServiceInstanceService");
+			return new ServiceOffering(serviceDefinitionId, serviceInstanceService,
+					serviceInstanceBindingService == null ?
+							new NonBindableServiceInstanceBindingService() : serviceInstanceBindingService,
+					admissionController, operationDeadline, operationStore);
+		}
+	}
+}
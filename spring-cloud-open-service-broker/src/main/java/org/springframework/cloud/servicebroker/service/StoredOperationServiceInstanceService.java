@@ -0,0 +1,75 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.util.Objects;
+
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationRequest;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationResponse;
+import org.springframework.cloud.servicebroker.model.ServiceInstanceOperation;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceResponse;
+
+/**
+ * A {@link ServiceInstanceService} that answers requests for the last operation on a service instance from an
+ * {@link OperationStore} when the store holds a matching operation, and passes all other requests to another
+ * {@link ServiceInstanceService}.
+ * <p>
+ * This service is applied inside the other decorators of {@link ServiceBrokerServices}, so that the result of an
+ * operation read from the store settles quotas, saves tracked parameters and publishes completion events in the
+ * same way as a result reported by the service broker.
+ */
+public class StoredOperationServiceInstanceService implements ServiceInstanceService {
+
+	private final ServiceInstanceService delegate;
+
+	private final OperationStore operationStore;
+
+	public StoredOperationServiceInstanceService(ServiceInstanceService delegate, OperationStore operationStore) {
+		this.delegate = delegate;
+		this.operationStore = operationStore;
+	}
+
+	@Override
+	public CreateServiceInstanceResponse createServiceInstance(CreateServiceInstanceRequest request) {
+		return delegate.createServiceInstance(request);
+	}
+
+	@Override
+	public GetLastServiceOperationResponse getLastOperation(GetLastServiceOperationRequest request) {
+		ServiceInstanceOperation operation = operationStore.getOperation(request.getServiceInstanceId());
+		if (operation == null ||
+				(request.getOperation() != null && !Objects.equals(request.getOperation(), operation.getOperation()))) {
+			return delegate.getLastOperation(request);
+		}
+		return operation.toResponse();
+	}
+
+	@Override
+	public DeleteServiceInstanceResponse deleteServiceInstance(DeleteServiceInstanceRequest request) {
+		return delegate.deleteServiceInstance(request);
+	}
+
+	@Override
+	public UpdateServiceInstanceResponse updateServiceInstance(UpdateServiceInstanceRequest request) {
+		return delegate.updateServiceInstance(request);
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.service;
+
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingResponse;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.trace.MdcScope;
+import org.springframework.cloud.servicebroker.trace.TraceContext;
+
+/**
+ * A {@link ServiceInstanceBindingService} that puts the identifiers of each request in the SLF4J MDC while another
+ * {@link ServiceInstanceBindingService} processes it. The trace ID is left to the web layer.
+ *
+ * @see TraceContext
+ */
+public class TracingServiceInstanceBindingService implements ServiceInstanceBindingService {
+
+	private final ServiceInstanceBindingService delegate;
+
+	public TracingServiceInstanceBindingService(ServiceInstanceBindingService delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public CreateServiceInstanceBindingResponse createServiceInstanceBinding(CreateServiceInstanceBindingRequest request) {
+		try (MdcScope ignored = TraceContext.of(null, request.getCfInstanceId(), request.getServiceInstanceId(),
+				request.getBindingId(), request.getServiceDefinitionId(), request.getPlanId()).putInMdc()) {
+			return delegate.createServiceInstanceBinding(request);
+		}
+	}
+
+	@Override
+	public void deleteServiceInstanceBinding(DeleteServiceInstanceBindingRequest request) {
+		try (MdcScope ignored = TraceContext.of(null, request.getCfInstanceId(), request.getServiceInstanceId(),
+				request.getBindingId(), request.getServiceDefinitionId(), request.getPlanId()).putInMdc()) {
+			delegate.deleteServiceInstanceBinding(request);
+		}
+	}
+}
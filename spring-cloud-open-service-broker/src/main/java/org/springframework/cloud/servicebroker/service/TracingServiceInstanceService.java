@@ -0,0 +1,81 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.service;
+
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationRequest;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationResponse;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.trace.MdcScope;
+import org.springframework.cloud.servicebroker.trace.TraceContext;
+
+/**
+ * A {@link ServiceInstanceService} that puts the identifiers of each request in the SLF4J MDC while another
+ * {@link ServiceInstanceService} processes it. The trace ID is left to the web layer.
+ *
+ * @see TraceContext
+ */
+public class TracingServiceInstanceService implements ServiceInstanceService {
+
+	private final ServiceInstanceService delegate;
+
+	public TracingServiceInstanceService(ServiceInstanceService delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public CreateServiceInstanceResponse createServiceInstance(CreateServiceInstanceRequest request) {
+		try (MdcScope ignored = putInMdc(request.getCfInstanceId(), request.getServiceInstanceId(),
+				request.getServiceDefinitionId(), request.getPlanId())) {
+			return delegate.createServiceInstance(request);
+		}
+	}
+
+	@Override
+	public GetLastServiceOperationResponse getLastOperation(GetLastServiceOperationRequest request) {
+		try (MdcScope ignored = putInMdc(request.getCfInstanceId(), request.getServiceInstanceId(),
+				request.getServiceDefinitionId(), request.getPlanId())) {
+			return delegate.getLastOperation(request);
+		}
+	}
+
+	@Override
+	public DeleteServiceInstanceResponse deleteServiceInstance(DeleteServiceInstanceRequest request) {
+		try (MdcScope ignored = putInMdc(request.getCfInstanceId(), request.getServiceInstanceId(),
+				request.getServiceDefinitionId(), request.getPlanId())) {
+			return delegate.deleteServiceInstance(request);
+		}
+	}
+
+	@Override
+	public UpdateServiceInstanceResponse updateServiceInstance(UpdateServiceInstanceRequest request) {
+		try (MdcScope ignored = putInMdc(request.getCfInstanceId(), request.getServiceInstanceId(),
+				request.getServiceDefinitionId(), request.getPlanId())) {
+			return delegate.updateServiceInstance(request);
+		}
+	}
+
+	private static MdcScope putInMdc(String cfInstanceId, String serviceInstanceId, String serviceDefinitionId,
+									 String planId) {
+		return TraceContext.of(null, cfInstanceId, serviceInstanceId, null, serviceDefinitionId, planId)
+				.putInMdc();
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.trace;
+
+import org.slf4j.MDC;
+
+/**
+ * Values put in the SLF4J {@link MDC} for the duration of a block. Closing the scope restores the values the keys
+ * had before, so scopes can be nested.
+ */
+public final class MdcScope implements AutoCloseable {
+
+	/**
+	 * A scope that puts nothing in the MDC.
+	 */
+	public static final MdcScope EMPTY = new MdcScope(new String[0], new String[0], new String[0]);
+
+	private final String[] keys;
+
+	private final String[] values;
+
+	private final String[] previousValues;
+
+	private MdcScope(String[] keys, String[] values, String[] previousValues) {
+		this.keys = keys;
+		this.values = values;
+		this.previousValues = previousValues;
+	}
+
+	/**
+	 * Put values in the MDC. Keys with a {@literal null} value are left unchanged.
+	 *
+	 * @param keys the MDC keys
+	 * @param values the values, in the same order as the keys
+	 * @return a scope that restores the previous values when closed
+	 */
+	static MdcScope put(String[] keys, String[] values) {
+		String[] previousValues = new String[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			if (values[i] != null) {
+				previousValues[i] = MDC.get(keys[i]);
+				MDC.put(keys[i], values[i]);
+			}
+		}
+		return new MdcScope(keys, values, previousValues);
+	}
+
+	@Override
+	public void close() {
+		for (int i = 0; i < keys.length; i++) {
+			if (values[i] == null) {
+				continue;
+			}
+			if (previousValues[i] != null) {
+				MDC.put(keys[i], previousValues[i]);
+			} else {
+				MDC.remove(keys[i]);
+			}
+		}
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.trace;
+
+import java.util.Map;
+
+import org.slf4j.MDC;
+
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * A {@link TaskDecorator} that runs each task with the SLF4J {@link MDC} values of the thread that submitted it, so
+ * that log lines from asynchronous work can be correlated with the request that started it. The MDC of the
+ * executing thread is restored when the task completes.
+ */
+public class MdcTaskDecorator implements TaskDecorator {
+
+	@Override
+	public Runnable decorate(Runnable runnable) {
+		Map<String, String> context = MDC.getCopyOfContextMap();
+		return () -> {
+			Map<String, String> previous = MDC.getCopyOfContextMap();
+			setContextMap(context);
+			try {
+				runnable.run();
+			} finally {
+				setContextMap(previous);
+			}
+		};
+	}
+
+	private static void setContextMap(Map<String, String> context) {
+		if (context == null) {
+			MDC.clear();
+		} else {
+			MDC.setContextMap(context);
+		}
+	}
+}
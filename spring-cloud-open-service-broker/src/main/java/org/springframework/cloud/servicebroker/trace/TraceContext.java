@@ -0,0 +1,208 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.trace;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.MDC;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * The trace ID and service broker identifiers of a request, used to correlate log lines. The values are put in the
+ * SLF4J {@link org.slf4j.MDC} under the keys defined by this class while a request is processed. In WebFlux
+ * applications the context is also stored in the Reactor context under the {@code TraceContext.class} key and in
+ * the exchange attributes under {@link #ATTRIBUTE}.
+ */
+public final class TraceContext {
+
+	/**
+	 * W3C trace context header.
+	 */
+	public static final String TRACEPARENT_HEADER = "traceparent";
+
+	/**
+	 * Service broker API request identity header.
+	 */
+	public static final String REQUEST_IDENTITY_HEADER = "X-Broker-API-Request-Identity";
+
+	/**
+	 * Request or exchange attribute holding the {@link TraceContext} of the current request.
+	 */
+	public static final String ATTRIBUTE = TraceContext.class.getName();
+
+	public static final String TRACE_ID = "traceId";
+
+	public static final String CF_INSTANCE_ID = "cfInstanceId";
+
+	public static final String SERVICE_INSTANCE_ID = "serviceInstanceId";
+
+	public static final String BINDING_ID = "bindingId";
+
+	public static final String SERVICE_DEFINITION_ID = "serviceDefinitionId";
+
+	public static final String PLAN_ID = "planId";
+
+	static final String[] MDC_KEYS =
+			{TRACE_ID, CF_INSTANCE_ID, SERVICE_INSTANCE_ID, BINDING_ID, SERVICE_DEFINITION_ID, PLAN_ID};
+
+	private static final int TRACEPARENT_LENGTH = 55;
+
+	private static final int TRACE_ID_START = 3;
+
+	private static final int TRACE_ID_END = 35;
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private final String[] values;
+
+	private TraceContext(String[] values) {
+		this.values = values;
+	}
+
+	/**
+	 * Create a context. Any of the values can be {@literal null}.
+	 *
+	 * @param traceId the trace ID
+	 * @param cfInstanceId the platform instance ID
+	 * @param serviceInstanceId the service instance ID
+	 * @param bindingId the service binding ID
+	 * @param serviceDefinitionId the service definition ID
+	 * @param planId the plan ID
+	 * @return the context
+	 */
+	public static TraceContext of(String traceId, String cfInstanceId, String serviceInstanceId, String bindingId,
+								  String serviceDefinitionId, String planId) {
+		return new TraceContext(new String[] {traceId, cfInstanceId, serviceInstanceId, bindingId,
+				serviceDefinitionId, planId});
+	}
+
+	/**
+	 * Create a context from the values in the MDC of the current thread.
+	 *
+	 * @return the context, or {@literal null} if none of the values is in the MDC
+	 */
+	public static TraceContext fromMdc() {
+		String[] values = new String[MDC_KEYS.length];
+		boolean empty = true;
+		for (int i = 0; i < MDC_KEYS.length; i++) {
+			values[i] = MDC.get(MDC_KEYS[i]);
+			empty &= values[i] == null;
+		}
+		return empty ? null : new TraceContext(values);
+	}
+
+	/**
+	 * Get the trace ID for a request from its headers. The trace ID of a valid {@literal traceparent} header is used
+	 * first, then the {@literal X-Broker-API-Request-Identity} header. A random trace ID is generated when neither
+	 * header is present, so that the log lines of the request can still be correlated.
+	 *
+	 * @param traceparent the value of the {@literal traceparent} header, or {@literal null}
+	 * @param requestIdentity the value of the {@literal X-Broker-API-Request-Identity} header, or {@literal null}
+	 * @return the trace ID
+	 */
+	public static String resolveTraceId(String traceparent, String requestIdentity) {
+		String traceId = parseTraceparent(traceparent);
+		if (traceId != null) {
+			return traceId;
+		}
+		if (StringUtils.hasText(requestIdentity)) {
+			return requestIdentity;
+		}
+		return generateTraceId();
+	}
+
+	/**
+	 * Put the non-null values of this context in the MDC.
+	 *
+	 * @return a scope that restores the previous MDC values when closed
+	 */
+	public MdcScope putInMdc() {
+		return MdcScope.put(MDC_KEYS, values);
+	}
+
+	public String getTraceId() {
+		return values[0];
+	}
+
+	public String getCfInstanceId() {
+		return values[1];
+	}
+
+	public String getServiceInstanceId() {
+		return values[2];
+	}
+
+	public String getBindingId() {
+		return values[3];
+	}
+
+	public String getServiceDefinitionId() {
+		return values[4];
+	}
+
+	public String getPlanId() {
+		return values[5];
+	}
+
+	/**
+	 * Parse a {@literal version-traceid-parentid-flags} header, ignoring versions other than {@literal 00} and
+	 * the invalid all-zero trace ID.
+	 */
+	private static String parseTraceparent(String traceparent) {
+		if (traceparent == null || traceparent.length() != TRACEPARENT_LENGTH ||
+				!traceparent.startsWith("00-") || traceparent.charAt(TRACE_ID_END) != '-') {
+			return null;
+		}
+
+		boolean nonZero = false;
+		for (int i = TRACE_ID_START; i < TRACE_ID_END; i++) {
+			char c = traceparent.charAt(i);
+			if (Character.digit(c, 16) < 0 || Character.isUpperCase(c)) {
+				return null;
+			}
+			nonZero |= c != '0';
+		}
+		return nonZero ? traceparent.substring(TRACE_ID_START, TRACE_ID_END) : null;
+	}
+
+	private static String generateTraceId() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		char[] traceId = new char[TRACE_ID_END - TRACE_ID_START];
+		long bits = 0;
+		for (int i = 0; i < traceId.length; i++) {
+			if (i % 16 == 0) {
+				bits = random.nextLong();
+			}
+			traceId[i] = HEX_DIGITS[(int) (bits & 0xf)];
+			bits >>>= 4;
+		}
+		return new String(traceId);
+	}
+
+	@Override
+	public String toString() {
+		return "TraceContext{" +
+				"traceId='" + getTraceId() + '\'' +
+				", cfInstanceId='" + getCfInstanceId() + '\'' +
+				", serviceInstanceId='" + getServiceInstanceId() + '\'' +
+				", bindingId='" + getBindingId() + '\'' +
+				", serviceDefinitionId='" + getServiceDefinitionId() + '\'' +
+				", planId='" + getPlanId() + '\'' +
+				'}';
+	}
+}
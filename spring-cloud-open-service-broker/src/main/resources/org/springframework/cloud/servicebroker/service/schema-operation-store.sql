@@ -0,0 +1,14 @@
+-- Schema for JdbcOperationStore. One row holds the last operation on a service instance, so
+-- last_operation requests are answered with a single primary key lookup.
+CREATE TABLE SERVICE_INSTANCE_OPERATION (
+	SERVICE_INSTANCE_ID VARCHAR(255) NOT NULL PRIMARY KEY,
+	OPERATION_ID VARCHAR(255),
+	OPERATION_STATE VARCHAR(16) NOT NULL,
+	DESCRIPTION VARCHAR(2000),
+	DELETE_OPERATION BOOLEAN NOT NULL,
+	CREATED_AT TIMESTAMP NOT NULL,
+	UPDATED_AT TIMESTAMP NOT NULL,
+	VERSION BIGINT NOT NULL
+);
+
+CREATE INDEX SERVICE_INSTANCE_OPERATION_STATE_IDX ON SERVICE_INSTANCE_OPERATION (OPERATION_STATE, UPDATED_AT);
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.model;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.Supplier;
+
+/**
+ * Reports the bytes allocated to build each of the model objects that the framework builds on every request or
+ * that brokers build for the catalog, measured with the allocation counter of the current thread.
+ * <p>
+ * Run from the IDE or with {@code java -cp <test classpath>}. The optional arguments are the number of warm-up
+ * and measured builds for each model object.
+ */
+public class ModelBuilderAllocationBenchmark {
+
+	private static volatile Object sink;
+
+	public static void main(String[] args) {
+		int warmup = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+			throw new IllegalStateException("Thread allocation counters are not supported by this JVM");
+		}
+		com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) bean;
+
+		report("context", measure(threadMXBean, warmup, iterations, () -> Context.builder()
+				.platform("test-platform")
+				.property("field1", "value1")
+				.build()));
+		report("provision request", measure(threadMXBean, warmup, iterations, () -> CreateServiceInstanceRequest.builder()
+				.serviceDefinitionId("service-definition-id")
+				.planId("plan-id")
+				.build()));
+		report("bind resource", measure(threadMXBean, warmup, iterations, () -> BindResource.builder()
+				.appGuid("app-guid")
+				.build()));
+		report("method schema", measure(threadMXBean, warmup, iterations, () -> MethodSchema.builder()
+				.build()));
+		report("plan", measure(threadMXBean, warmup, iterations, () -> Plan.builder()
+				.id("plan-id")
+				.name("plan-name")
+				.description("Plan")
+				.metadata("field1", "value1")
+				.build()));
+		report("service definition", measure(threadMXBean, warmup, iterations, () -> ServiceDefinition.builder()
+				.id("service-definition-id")
+				.name("service-definition-name")
+				.description("Service Definition")
+				.plans(Plan.builder().id("plan-one").build(), Plan.builder().id("plan-two").build())
+				.tags("tag1", "tag2")
+				.build()));
+	}
+
+	private static long measure(com.sun.management.ThreadMXBean threadMXBean, int warmup, int iterations,
+								Supplier<Object> builder) {
+		for (int i = 0; i < warmup; i++) {
+			sink = builder.get();
+		}
+
+		long threadId = Thread.currentThread().getId();
+		long start = threadMXBean.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < iterations; i++) {
+			sink = builder.get();
+		}
+		return (threadMXBean.getThreadAllocatedBytes(threadId) - start) / iterations;
+	}
+
+	private static void report(String model, long bytesPerBuild) {
+		System.out.printf("%-20s %6d bytes/build%n", model, bytesPerBuild);
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.model;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ParameterTypesModuleTest {
+
+	private static final String PARAMETERS = "{\"parameter1\": 1, \"parameter2\": \"foo\", \"parameter3\": true}";
+
+	private final ObjectMapper objectMapper = new ObjectMapper().registerModule(typesModule());
+
+	@Test
+	public void parametersAreReadIntoServiceType() throws IOException {
+		CreateServiceInstanceRequest request = objectMapper.readValue("{" +
+				"\"service_id\": \"typed-service-id\", \"plan_id\": \"plan-id\", " +
+				"\"parameters\": " + PARAMETERS + "}", CreateServiceInstanceRequest.class);
+
+		ServiceParameters parameters = request.getParameters(ServiceParameters.class);
+		assertEquals(1, parameters.parameter1);
+		assertEquals("foo", parameters.parameter2);
+		assertTrue(parameters.parameter3);
+		assertSame(parameters, request.getParameters(ServiceParameters.class));
+		assertNull(request.getParameters());
+	}
+
+	@Test
+	public void planTypeTakesPrecedenceOverServiceType() throws IOException {
+		CreateServiceInstanceBindingRequest request = objectMapper.readValue("{" +
+				"\"service_id\": \"typed-service-id\", \"plan_id\": \"typed-plan-id\", " +
+				"\"parameters\": " + PARAMETERS + "}", CreateServiceInstanceBindingRequest.class);
+
+		PlanParameters parameters = request.getParameters(PlanParameters.class);
+		assertEquals("foo", parameters.parameter2);
+		assertNull(request.getParameters());
+	}
+
+	@Test
+	public void parametersBeforeIdsAreReadIntoType() throws IOException {
+		UpdateServiceInstanceRequest request = objectMapper.readValue("{" +
+				"\"parameters\": " + PARAMETERS + ", " +
+				"\"service_id\": \"service-id\", \"plan_id\": \"typed-plan-id\"}", UpdateServiceInstanceRequest.class);
+
+		assertEquals("foo", request.getParameters(PlanParameters.class).parameter2);
+		assertEquals("typed-plan-id", request.getPlanId());
+		assertNull(request.getParameters());
+	}
+
+	@Test
+	public void parametersBeforeIdsAreReadIntoTypeWithRequestBodyLimits() throws IOException {
+		RequestBodyLimitsModule limitsModule = new RequestBodyLimitsModule(RequestBodyLimits.builder()
+				.defaults(RequestBodyLimit.builder().maxDepth(3).build())
+				.build());
+		String body = "{" +
+				"\"parameters\": " + PARAMETERS + ", " +
+				"\"service_id\": \"service-id\", \"plan_id\": \"typed-plan-id\"}";
+
+		ObjectMapper limitedFirst = new ObjectMapper().registerModule(limitsModule).registerModule(typesModule());
+		ObjectMapper typedFirst = new ObjectMapper().registerModule(typesModule()).registerModule(limitsModule);
+
+		for (ObjectMapper mapper : new ObjectMapper[] {limitedFirst, typedFirst}) {
+			UpdateServiceInstanceRequest request = mapper.readValue(body, UpdateServiceInstanceRequest.class);
+			assertEquals("foo", request.getParameters(PlanParameters.class).parameter2);
+			assertNull(request.getParameters());
+		}
+	}
+
+	@Test
+	public void parametersWithoutRegisteredTypeAreReadIntoMap() throws IOException {
+		CreateServiceInstanceRequest request = objectMapper.readValue("{" +
+				"\"parameters\": " + PARAMETERS + ", " +
+				"\"service_id\": \"service-id\", \"plan_id\": \"plan-id\"}", CreateServiceInstanceRequest.class);
+
+		assertEquals(1, request.getParameters().get("parameter1"));
+		assertEquals("foo", request.getParameters().get("parameter2"));
+	}
+
+	@Test
+	public void typedParametersAreComparedByProperties() throws IOException {
+		UpdateServiceInstanceRequest request = objectMapper.readValue("{" +
+				"\"service_id\": \"typed-service-id\", \"plan_id\": \"plan-id\", " +
+				"\"parameters\": " + PARAMETERS + "}", UpdateServiceInstanceRequest.class);
+		Map<String, Object> previous = new HashMap<>();
+		previous.put("parameter1", 1);
+		previous.put("parameter2", "bar");
+		previous.put("parameter3", true);
+
+		ParameterChanges changes = ParameterChanges.of(request, previous);
+
+		assertEquals(Collections.singleton("parameter2"), changes.getModifiedKeys());
+		assertTrue(changes.getAddedKeys().isEmpty());
+	}
+
+	@Test(expected = JsonMappingException.class)
+	public void parametersNotMatchingTypeAreRejected() throws IOException {
+		objectMapper.readValue("{" +
+				"\"service_id\": \"typed-service-id\", \"plan_id\": \"plan-id\", " +
+				"\"parameters\": {\"parameter1\": \"not a number\"}}", CreateServiceInstanceRequest.class);
+	}
+
+	private static ParameterTypesModule typesModule() {
+		return new ParameterTypesModule(ParameterTypes.builder()
+				.service("typed-service-id", ServiceParameters.class)
+				.plan("typed-plan-id", PlanParameters.class)
+				.build());
+	}
+
+	public static class ServiceParameters {
+		public int parameter1;
+		public String parameter2;
+		public boolean parameter3;
+	}
+
+	public static class PlanParameters {
+		public String parameter2;
+		public Object parameter1;
+		public Object parameter3;
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RequestBodyLimitsModuleTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new RequestBodyLimitsModule(
+			RequestBodyLimits.builder()
+					.defaults(RequestBodyLimit.builder()
+							.maxBytes(1024)
+							.maxDepth(3)
+							.maxKeysPerObject(5)
+							.maxStringLength(20)
+							.build())
+					.bind(RequestBodyLimit.builder()
+							.maxDepth(2)
+							.build())
+					.plan("large-plan-id", RequestBodyLimit.builder()
+							.maxBytes(4096)
+							.maxDepth(5)
+							.maxKeysPerObject(20)
+							.maxStringLength(100)
+							.build())
+					.build()));
+
+	@Test
+	public void bodyWithinLimitsIsRead() throws IOException {
+		CreateServiceInstanceRequest request = read("{" +
+				"\"service_id\": \"service-id\", \"plan_id\": \"plan-id\", " +
+				"\"parameters\": {\"size\": {\"disk\": 10}}}", CreateServiceInstanceRequest.class);
+
+		assertEquals("plan-id", request.getPlanId());
+		assertEquals(Collections.singletonMap("disk", 10), request.getParameters().get("size"));
+	}
+
+	@Test
+	public void bodyNestedTooDeeplyIsRejected() {
+		assertRejected("{\"plan_id\": \"plan-id\", \"parameters\": {\"a\": {\"b\": {\"c\": 1}}}}",
+				CreateServiceInstanceRequest.class, "maximum nesting depth of 3");
+	}
+
+	@Test
+	public void objectWithTooManyKeysIsRejected() {
+		assertRejected("{\"plan_id\": \"plan-id\", " +
+						"\"parameters\": {\"a\": 1, \"b\": 2, \"c\": 3, \"d\": 4, \"e\": 5, \"f\": 6}}",
+				UpdateServiceInstanceRequest.class, "maximum of 5 keys per object");
+	}
+
+	@Test
+	public void stringTooLongIsRejected() {
+		assertRejected("{\"plan_id\": \"plan-id\", \"parameters\": {\"name\": \"" + repeat('x', 21) + "\"}}",
+				CreateServiceInstanceRequest.class, "maximum string length of 20");
+	}
+
+	@Test
+	public void bodyTooLargeIsRejectedBeforeItIsRead() {
+		StringBuilder parameters = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			parameters.append(i == 0 ? "" : ", ").append(i);
+		}
+		assertRejected("{\"plan_id\": \"plan-id\", \"parameters\": {\"values\": [" + parameters + "]}}",
+				CreateServiceInstanceRequest.class, "maximum size of 1024 bytes");
+	}
+
+	@Test
+	public void endpointLimitIsApplied() {
+		assertRejected("{\"plan_id\": \"plan-id\", \"parameters\": {\"a\": {\"b\": 1}}}",
+				CreateServiceInstanceBindingRequest.class, "maximum nesting depth of 2");
+	}
+
+	@Test
+	public void planLimitIsApplied() throws IOException {
+		CreateServiceInstanceRequest request = read("{" +
+				"\"parameters\": {\"name\": \"" + repeat('x', 50) + "\", \"a\": {\"b\": {\"c\": 1}}}, " +
+				"\"plan_id\": \"large-plan-id\"}", CreateServiceInstanceRequest.class);
+
+		assertEquals("large-plan-id", request.getPlanId());
+	}
+
+	@Test
+	public void bodyReadBeforePlanIdIsCheckedAgainstPlanLimit() {
+		assertRejected("{\"parameters\": {\"name\": \"" + repeat('x', 50) + "\"}, \"plan_id\": \"plan-id\"}",
+				CreateServiceInstanceRequest.class, "maximum string length of 20");
+		assertRejected("{\"parameters\": {\"name\": \"" + repeat('x', 50) + "\"}}",
+				UpdateServiceInstanceRequest.class, "maximum string length of 20");
+	}
+
+	private <T> T read(String body, Class<T> type) throws IOException {
+		return objectMapper.readValue(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), type);
+	}
+
+	private void assertRejected(String body, Class<?> type, String description) {
+		try {
+			read(body, type);
+			fail("Expected the body to be rejected");
+		} catch (JsonProcessingException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("Request body exceeds the " + description));
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private static String repeat(char c, int count) {
+		char[] chars = new char[count];
+		Arrays.fill(chars, c);
+		return new String(chars);
+	}
+}
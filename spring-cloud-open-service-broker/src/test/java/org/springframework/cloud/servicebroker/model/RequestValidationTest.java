@@ -0,0 +1,97 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RequestValidationTest {
+
+	private static final List<String> VALUES = Arrays.asList(null, "", "id");
+
+	private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+	@Test
+	public void createServiceInstanceRequestChecksMatchBeanValidation() {
+		for (String serviceDefinitionId : VALUES) {
+			for (String planId : VALUES) {
+				assertSameFields(CreateServiceInstanceRequest.builder()
+						.serviceDefinitionId(serviceDefinitionId)
+						.planId(planId)
+						.build());
+			}
+		}
+	}
+
+	@Test
+	public void updateServiceInstanceRequestChecksMatchBeanValidation() {
+		for (String serviceDefinitionId : VALUES) {
+			for (String planId : VALUES) {
+				assertSameFields(UpdateServiceInstanceRequest.builder()
+						.serviceDefinitionId(serviceDefinitionId)
+						.planId(planId)
+						.build());
+			}
+		}
+	}
+
+	@Test
+	public void createServiceInstanceBindingRequestChecksMatchBeanValidation() {
+		for (String serviceDefinitionId : VALUES) {
+			for (String planId : VALUES) {
+				assertSameFields(CreateServiceInstanceBindingRequest.builder()
+						.serviceDefinitionId(serviceDefinitionId)
+						.planId(planId)
+						.build());
+			}
+		}
+	}
+
+	@Test
+	public void onlyRequestBodiesAreSupported() {
+		assertTrue(RequestValidation.supports(CreateServiceInstanceRequest.class));
+		assertTrue(RequestValidation.supports(UpdateServiceInstanceRequest.class));
+		assertTrue(RequestValidation.supports(CreateServiceInstanceBindingRequest.class));
+		assertFalse(RequestValidation.supports(Catalog.class));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unsupportedRequestIsRejected() {
+		RequestValidation.getMissingFields(new DeleteServiceInstanceRequest());
+	}
+
+	private <T> void assertSameFields(T request) {
+		Set<String> expected = new TreeSet<>();
+		for (ConstraintViolation<T> violation : validator.validate(request)) {
+			expected.add(violation.getPropertyPath().toString());
+		}
+		assertEquals(expected, RequestValidation.getMissingFields(request));
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.router;
+
+import org.junit.Test;
+import org.springframework.cloud.servicebroker.router.ServiceBrokerRequestPath.Endpoint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ServiceBrokerRequestPathTest {
+
+	@Test
+	public void catalogPathIsParsed() {
+		assertPath("/v2/catalog", Endpoint.CATALOG, null, null, null);
+		assertPath("/v2/catalog/", Endpoint.CATALOG, null, null, null);
+		assertPath("/cf-abc/v2/catalog", Endpoint.CATALOG, "cf-abc", null, null);
+		assertPath("/v2/v2/catalog", Endpoint.CATALOG, "v2", null, null);
+	}
+
+	@Test
+	public void serviceInstancePathsAreParsed() {
+		assertPath("/v2/service_instances/instance-id", Endpoint.SERVICE_INSTANCE, null, "instance-id", null);
+		assertPath("/cf-abc/v2/service_instances/instance-id", Endpoint.SERVICE_INSTANCE,
+				"cf-abc", "instance-id", null);
+		assertPath("/v2/service_instances/instance-id/last_operation", Endpoint.LAST_OPERATION,
+				null, "instance-id", null);
+		assertPath("/cf-abc/v2/service_instances/instance-id/last_operation", Endpoint.LAST_OPERATION,
+				"cf-abc", "instance-id", null);
+	}
+
+	@Test
+	public void serviceBindingPathsAreParsed() {
+		assertPath("/v2/service_instances/instance-id/service_bindings/binding-id", Endpoint.SERVICE_BINDING,
+				null, "instance-id", "binding-id");
+		assertPath("/cf-abc/v2/service_instances/instance-id/service_bindings/binding-id", Endpoint.SERVICE_BINDING,
+				"cf-abc", "instance-id", "binding-id");
+	}
+
+	@Test
+	public void encodedSegmentsAreDecoded() {
+		assertPath("/cf%20abc/v2/service_instances/instance%2Did", Endpoint.SERVICE_INSTANCE,
+				"cf abc", "instance-id", null);
+	}
+
+	@Test
+	public void otherPathsAreNotParsed() {
+		assertNull(ServiceBrokerRequestPath.parse("/"));
+		assertNull(ServiceBrokerRequestPath.parse("/v2"));
+		assertNull(ServiceBrokerRequestPath.parse("/v2/catalogs"));
+		assertNull(ServiceBrokerRequestPath.parse("/v3/catalog"));
+		assertNull(ServiceBrokerRequestPath.parse("/v2//catalog"));
+		assertNull(ServiceBrokerRequestPath.parse("/v2/service_instances"));
+		assertNull(ServiceBrokerRequestPath.parse("/v2/service_instances/instance-id/other"));
+		assertNull(ServiceBrokerRequestPath.parse("/v2/service_instances/instance-id/service_bindings"));
+		assertNull(ServiceBrokerRequestPath.parse("/a/b/v2/catalog"));
+		assertNull(ServiceBrokerRequestPath.parse("/cf/v2/service_instances/i/service_bindings/b/extra"));
+		assertNull(ServiceBrokerRequestPath.parse("/v2/service_instances/instance%ZZ"));
+	}
+
+	private void assertPath(String path, Endpoint endpoint, String cfInstanceId, String instanceId,
+							String bindingId) {
+		ServiceBrokerRequestPath parsed = ServiceBrokerRequestPath.parse(path);
+		assertEquals(endpoint, parsed.getEndpoint());
+		assertEquals(cfInstanceId, parsed.getCfInstanceId());
+		assertEquals(instanceId, parsed.getInstanceId());
+		assertEquals(bindingId, parsed.getBindingId());
+	}
+}
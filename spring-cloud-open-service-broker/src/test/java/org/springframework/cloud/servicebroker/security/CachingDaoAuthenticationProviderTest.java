@@ -0,0 +1,177 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.security;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CachingDaoAuthenticationProviderTest {
+
+	private static final String USERNAME = "broker";
+
+	private static final String PASSWORD = "password";
+
+	private final CountingPasswordEncoder passwordEncoder = new CountingPasswordEncoder();
+
+	private InMemoryUserDetailsManager userDetailsService;
+
+	@Before
+	public void setUp() {
+		userDetailsService = new InMemoryUserDetailsManager(
+				Collections.singletonList(user(USERNAME, PASSWORD)));
+	}
+
+	@Test
+	public void successfulVerificationIsRemembered() {
+		CachingDaoAuthenticationProvider provider = provider(CachingDaoAuthenticationProvider.DEFAULT_TIME_TO_LIVE, 10);
+
+		for (int i = 0; i < 5; i++) {
+			Authentication authentication = provider.authenticate(token(USERNAME, PASSWORD));
+			assertTrue(authentication.isAuthenticated());
+			assertEquals(USERNAME, authentication.getName());
+		}
+
+		assertEquals(1, passwordEncoder.matches.get());
+		assertEquals(1, provider.size());
+	}
+
+	@Test
+	public void failedVerificationIsNotRemembered() {
+		CachingDaoAuthenticationProvider provider = provider(CachingDaoAuthenticationProvider.DEFAULT_TIME_TO_LIVE, 10);
+
+		assertRejected(provider, token(USERNAME, "wrong"));
+		assertRejected(provider, token(USERNAME, "wrong"));
+
+		assertEquals(2, passwordEncoder.matches.get());
+		assertEquals(0, provider.size());
+	}
+
+	@Test
+	public void rotatedPasswordIsVerifiedAgain() {
+		CachingDaoAuthenticationProvider provider = provider(CachingDaoAuthenticationProvider.DEFAULT_TIME_TO_LIVE, 10);
+		provider.authenticate(token(USERNAME, PASSWORD));
+
+		userDetailsService.updateUser(user(USERNAME, "rotated"));
+
+		assertRejected(provider, token(USERNAME, PASSWORD));
+		assertTrue(provider.authenticate(token(USERNAME, "rotated")).isAuthenticated());
+		assertEquals(3, passwordEncoder.matches.get());
+	}
+
+	@Test
+	public void expiredVerificationIsVerifiedAgain() throws InterruptedException {
+		CachingDaoAuthenticationProvider provider = provider(Duration.ofMillis(1), 10);
+		provider.authenticate(token(USERNAME, PASSWORD));
+
+		Thread.sleep(10);
+		provider.authenticate(token(USERNAME, PASSWORD));
+
+		assertEquals(2, passwordEncoder.matches.get());
+	}
+
+	@Test
+	public void clearedCacheIsVerifiedAgain() {
+		CachingDaoAuthenticationProvider provider = provider(CachingDaoAuthenticationProvider.DEFAULT_TIME_TO_LIVE, 10);
+		provider.authenticate(token(USERNAME, PASSWORD));
+
+		provider.clearCache();
+		provider.authenticate(token(USERNAME, PASSWORD));
+
+		assertEquals(2, passwordEncoder.matches.get());
+	}
+
+	@Test
+	public void cacheSizeIsBounded() {
+		for (int i = 0; i < 5; i++) {
+			userDetailsService.createUser(user("user-" + i, PASSWORD));
+		}
+		CachingDaoAuthenticationProvider provider = provider(CachingDaoAuthenticationProvider.DEFAULT_TIME_TO_LIVE, 2);
+
+		for (int i = 0; i < 5; i++) {
+			provider.authenticate(token("user-" + i, PASSWORD));
+		}
+
+		assertEquals(2, provider.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void timeToLiveMustBePositive() {
+		new CachingDaoAuthenticationProvider(Duration.ZERO, 10);
+	}
+
+	private CachingDaoAuthenticationProvider provider(Duration timeToLive, int maximumSize) {
+		CachingDaoAuthenticationProvider provider = new CachingDaoAuthenticationProvider(timeToLive, maximumSize);
+		provider.setUserDetailsService(userDetailsService);
+		provider.setPasswordEncoder(passwordEncoder);
+		return provider;
+	}
+
+	private UserDetails user(String username, String password) {
+		return User.withUsername(username)
+				.password(passwordEncoder.encode(password))
+				.roles("BROKER")
+				.build();
+	}
+
+	private static UsernamePasswordAuthenticationToken token(String username, String password) {
+		return new UsernamePasswordAuthenticationToken(username, password);
+	}
+
+	private static void assertRejected(CachingDaoAuthenticationProvider provider,
+			UsernamePasswordAuthenticationToken token) {
+		try {
+			provider.authenticate(token);
+			fail("expected BadCredentialsException");
+		} catch (BadCredentialsException e) {
+			// expected
+		}
+	}
+
+	private static class CountingPasswordEncoder implements PasswordEncoder {
+		private final PasswordEncoder delegate = new BCryptPasswordEncoder(4);
+
+		private final AtomicInteger matches = new AtomicInteger();
+
+		@Override
+		public String encode(CharSequence rawPassword) {
+			return delegate.encode(rawPassword);
+		}
+
+		@Override
+		public boolean matches(CharSequence rawPassword, String encodedPassword) {
+			matches.incrementAndGet();
+			return delegate.matches(rawPassword, encodedPassword);
+		}
+	}
+}
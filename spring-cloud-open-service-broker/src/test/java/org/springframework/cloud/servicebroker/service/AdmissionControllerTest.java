@@ -0,0 +1,174 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerOverloadedException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AdmissionControllerTest {
+
+	private final AtomicLong clock = new AtomicLong();
+
+	@Test
+	public void operationResultIsReturned() {
+		AdmissionController admissionController = new AdmissionController();
+
+		assertEquals("result", admissionController.execute(() -> "result"));
+		assertEquals(0, admissionController.getInFlight());
+	}
+
+	@Test
+	public void operationOverLimitIsRejected() {
+		AdmissionController admissionController = admissionController(1, 1, 1);
+
+		try {
+			admissionController.execute(() -> admissionController.execute(() -> "nested"));
+			fail("expected ServiceBrokerOverloadedException");
+		} catch (ServiceBrokerOverloadedException e) {
+			assertEquals(Duration.ofSeconds(1), e.getRetryAfter());
+		}
+
+		assertEquals(0, admissionController.getInFlight());
+		assertEquals("result", admissionController.execute(() -> "result"));
+	}
+
+	@Test
+	public void retryAfterFollowsRecentLatency() {
+		AdmissionController admissionController = admissionController(1, 1, 1);
+		admissionController.execute(() -> advance(2500));
+
+		try {
+			admissionController.execute(() -> admissionController.execute(() -> "nested"));
+			fail("expected ServiceBrokerOverloadedException");
+		} catch (ServiceBrokerOverloadedException e) {
+			assertEquals(Duration.ofSeconds(3), e.getRetryAfter());
+		}
+	}
+
+	@Test
+	public void limitIsReducedWhenLatencyRises() {
+		AdmissionController admissionController = admissionController(10, 2, 20);
+
+		for (int i = 0; i < 10; i++) {
+			admissionController.execute(() -> advance(10));
+		}
+		assertEquals(10, admissionController.getLimit());
+
+		for (int i = 0; i < 20; i++) {
+			admissionController.execute(() -> advance(100));
+		}
+		int reduced = admissionController.getLimit();
+		assertTrue("limit " + reduced, reduced < 10);
+
+		for (int i = 0; i < 100; i++) {
+			admissionController.execute(() -> advance(1000));
+		}
+		assertEquals(2, admissionController.getLimit());
+	}
+
+	@Test
+	public void limitIsReducedWhenClockIsNegative() {
+		clock.set(Long.MIN_VALUE / 2);
+		AdmissionController admissionController = admissionController(10, 2, 20);
+
+		for (int i = 0; i < 10; i++) {
+			admissionController.execute(() -> advance(10));
+		}
+		for (int i = 0; i < 20; i++) {
+			admissionController.execute(() -> advance(100));
+		}
+
+		int reduced = admissionController.getLimit();
+		assertTrue("limit " + reduced, reduced < 10);
+	}
+
+	@Test
+	public void limitGrowsWhileInUseAndLatencyIsStable() {
+		AdmissionController admissionController = admissionController(2, 1, 10);
+
+		for (int i = 0; i < 50; i++) {
+			admissionController.execute(() -> {
+				advance(10);
+				admissionController.execute(() -> advance(10));
+			});
+		}
+
+		assertTrue("limit " + admissionController.getLimit(), admissionController.getLimit() > 2);
+	}
+
+	@Test
+	public void limitDoesNotGrowWhileIdle() {
+		AdmissionController admissionController = admissionController(10, 1, 100);
+
+		for (int i = 0; i < 100; i++) {
+			admissionController.execute(() -> advance(10));
+		}
+
+		assertEquals(10, admissionController.getLimit());
+	}
+
+	@Test
+	public void operationsCompletingConcurrentlyKeepTheLimitInRange() throws Exception {
+		AdmissionController admissionController =
+				new AdmissionController(10, 2, 20, AdmissionController.DEFAULT_TOLERANCE);
+
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			threads.add(new Thread(() -> {
+				for (int j = 0; j < 10_000; j++) {
+					try {
+						admissionController.execute(Thread::yield);
+					} catch (ServiceBrokerOverloadedException e) {
+						// rejected operations are not counted
+					}
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(0, admissionController.getInFlight());
+		int limit = admissionController.getLimit();
+		assertTrue("limit " + limit, limit >= 2 && limit <= 20);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidLimitsAreRejected() {
+		new AdmissionController(1, 2, 10, AdmissionController.DEFAULT_TOLERANCE);
+	}
+
+	private AdmissionController admissionController(int initialLimit, int minLimit, int maxLimit) {
+		return new AdmissionController(initialLimit, minLimit, maxLimit, AdmissionController.DEFAULT_TOLERANCE,
+				clock::get);
+	}
+
+	private void advance(long millis) {
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.servicebroker.model.Catalog;
+import org.springframework.cloud.servicebroker.model.ServiceDefinition;
+import org.springframework.cloud.servicebroker.service.CatalogViewService.CatalogView;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+public class CatalogViewServiceTest {
+
+	private Catalog catalog;
+
+	private AtomicInteger computedViews;
+
+	private CatalogViewService viewService;
+
+	@Before
+	public void setup() {
+		catalog = buildCatalog("service-one");
+		computedViews = new AtomicInteger();
+		viewService = new CatalogViewService((TestCatalogService) () -> catalog, (catalog, key) -> {
+			computedViews.incrementAndGet();
+			return "2.10".equals(key.getApiVersion()) ? Catalog.builder().build() : catalog;
+		});
+	}
+
+	@Test
+	public void viewIsComputedOncePerKey() {
+		CatalogView first = viewService.getCatalogView(new CatalogViewKey("cf-1", "2.13"));
+		CatalogView second = viewService.getCatalogView(new CatalogViewKey("cf-1", "2.13"));
+
+		assertSame(first, second);
+		assertEquals(1, computedViews.get());
+	}
+
+	@Test
+	public void viewsDifferByKey() {
+		CatalogView current = viewService.getCatalogView(new CatalogViewKey("cf-1", "2.13"));
+		CatalogView old = viewService.getCatalogView(new CatalogViewKey("cf-1", "2.10"));
+
+		assertNotEquals(current.getEtag(), old.getEtag());
+		assertEquals("{\"services\":[]}", new String(old.getContent()));
+		assertEquals(2, computedViews.get());
+	}
+
+	@Test
+	public void viewsAreRecomputedWhenCatalogChanges() {
+		CatalogView before = viewService.getCatalogView(new CatalogViewKey(null, null));
+
+		catalog = buildCatalog("service-two");
+		CatalogView after = viewService.getCatalogView(new CatalogViewKey(null, null));
+
+		assertNotEquals(before.getEtag(), after.getEtag());
+		assertEquals(2, computedViews.get());
+	}
+
+	@Test
+	public void viewsAreRecomputedWhenInvalidated() {
+		viewService.getCatalogView(new CatalogViewKey(null, null));
+
+		viewService.invalidate();
+		viewService.getCatalogView(new CatalogViewKey(null, null));
+
+		assertEquals(2, computedViews.get());
+	}
+
+	@Test
+	public void leastRecentlyUsedViewIsDiscardedAtTheLimit() {
+		viewService = new CatalogViewService((TestCatalogService) () -> catalog, (catalog, key) -> {
+			computedViews.incrementAndGet();
+			return catalog;
+		}, new ObjectMapper(), 2);
+
+		viewService.getCatalogView(new CatalogViewKey("cf-1", "2.13"));
+		viewService.getCatalogView(new CatalogViewKey("cf-2", "2.13"));
+		viewService.getCatalogView(new CatalogViewKey("cf-1", "2.13"));
+		viewService.getCatalogView(new CatalogViewKey("cf-3", "2.13"));
+		assertEquals(3, computedViews.get());
+
+		viewService.getCatalogView(new CatalogViewKey("cf-1", "2.13"));
+		assertEquals(3, computedViews.get());
+
+		viewService.getCatalogView(new CatalogViewKey("cf-2", "2.13"));
+		assertEquals(4, computedViews.get());
+	}
+
+	@Test
+	public void viewsOfUnknownVersionFormatsAreNotCached() {
+		viewService.getCatalogView(new CatalogViewKey("cf-1", "not-a-version"));
+		viewService.getCatalogView(new CatalogViewKey("cf-1", "not-a-version"));
+
+		assertEquals(2, computedViews.get());
+	}
+
+	private Catalog buildCatalog(String serviceId) {
+		return Catalog.builder()
+				.serviceDefinitions(ServiceDefinition.builder()
+						.id(serviceId)
+						.name(serviceId)
+						.description("Description")
+						.build())
+				.build();
+	}
+
+	private interface TestCatalogService extends CatalogService {
+		@Override
+		default ServiceDefinition getServiceDefinition(String serviceId) {
+			return null;
+		}
+	}
+}
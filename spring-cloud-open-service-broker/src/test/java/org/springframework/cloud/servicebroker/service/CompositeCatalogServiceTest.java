@@ -0,0 +1,149 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerException;
+import org.springframework.cloud.servicebroker.model.Catalog;
+import org.springframework.cloud.servicebroker.model.Plan;
+import org.springframework.cloud.servicebroker.model.ServiceDefinition;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class CompositeCatalogServiceTest {
+
+	private final ServiceDefinition serviceOne = serviceDefinition("service-one-id", "service-one", "plan-one-id");
+
+	private final ServiceDefinition serviceTwo = serviceDefinition("service-two-id", "service-two", "plan-two-id");
+
+	private final ServiceDefinition serviceThree = serviceDefinition("service-three-id", "service-three",
+			"plan-three-id");
+
+	@Test
+	public void catalogsAreMergedInOrder() {
+		CompositeCatalogService service = CompositeCatalogService.of(Arrays.asList(
+				Catalog.builder().serviceDefinitions(serviceOne, serviceTwo).build(),
+				Catalog.builder().serviceDefinitions(serviceThree).build()));
+
+		assertEquals(Arrays.asList(serviceOne, serviceTwo, serviceThree),
+				service.getCatalog().getServiceDefinitions());
+		assertSame(serviceThree, service.getServiceDefinition("service-three-id"));
+		assertNull(service.getServiceDefinition("unknown-id"));
+	}
+
+	@Test
+	public void duplicateServiceDefinitionIdsAreRejected() {
+		assertCollision("service definition ID 'service-one-id' is offered by delegate 0 (BeanCatalogService) " +
+						"and delegate 1 (BeanCatalogService)",
+				serviceOne, serviceDefinition("service-one-id", "other-service", "other-plan-id"));
+	}
+
+	@Test
+	public void duplicateServiceDefinitionNamesAreRejected() {
+		assertCollision("service definition name 'service-one'",
+				serviceOne, serviceDefinition("other-service-id", "service-one", "other-plan-id"));
+	}
+
+	@Test
+	public void duplicatePlanIdsAreRejected() {
+		assertCollision("plan ID 'plan-one-id'",
+				serviceOne, serviceDefinition("other-service-id", "other-service", "plan-one-id"));
+	}
+
+	@Test
+	public void delegateFailureIsReported() {
+		CatalogService failing = new CatalogService() {
+			@Override
+			public Catalog getCatalog() {
+				throw new IllegalStateException("unavailable");
+			}
+
+			@Override
+			public ServiceDefinition getServiceDefinition(String serviceId) {
+				return null;
+			}
+		};
+
+		try {
+			new CompositeCatalogService(Arrays.asList(
+					new BeanCatalogService(Catalog.builder().serviceDefinitions(serviceOne).build()), failing));
+			fail("expected ServiceBrokerException");
+		} catch (ServiceBrokerException e) {
+			assertThat(e.getMessage(), containsString("delegate 1"));
+			assertEquals("unavailable", e.getCause().getMessage());
+		}
+	}
+
+	@Test
+	public void refreshReplacesMergedCatalog() {
+		AtomicReference<Catalog> catalog = new AtomicReference<>(Catalog.builder()
+				.serviceDefinitions(serviceOne)
+				.build());
+		CatalogService changing = new CatalogService() {
+			@Override
+			public Catalog getCatalog() {
+				return catalog.get();
+			}
+
+			@Override
+			public ServiceDefinition getServiceDefinition(String serviceId) {
+				return null;
+			}
+		};
+		CompositeCatalogService service = new CompositeCatalogService(Arrays.asList(changing,
+				new BeanCatalogService(Catalog.builder().serviceDefinitions(serviceTwo).build())), Runnable::run);
+		Catalog merged = service.getCatalog();
+
+		catalog.set(Catalog.builder().serviceDefinitions(serviceThree).build());
+		service.refresh();
+
+		assertNotSame(merged, service.getCatalog());
+		assertSame(serviceThree, service.getServiceDefinition("service-three-id"));
+		assertNull(service.getServiceDefinition("service-one-id"));
+	}
+
+	private void assertCollision(String expectedMessage, ServiceDefinition first, ServiceDefinition second) {
+		try {
+			CompositeCatalogService.of(Arrays.asList(
+					Catalog.builder().serviceDefinitions(first).build(),
+					Catalog.builder().serviceDefinitions(second).build()));
+			fail("expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			assertThat(e.getMessage(), containsString(expectedMessage));
+		}
+	}
+
+	private static ServiceDefinition serviceDefinition(String id, String name, String planId) {
+		return ServiceDefinition.builder()
+				.id(id)
+				.name(name)
+				.description("Description")
+				.plans(Plan.builder().id(planId).name(planId).description("Plan").build())
+				.build();
+	}
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerOverloadedException;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceExistsException;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationRequest;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationResponse;
+import org.springframework.cloud.servicebroker.model.OperationState;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceResponse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DeadlineServiceInstanceServiceTest {
+
+	private static final String SERVICE_INSTANCE_ID = "service-instance-id";
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	private final OperationDeadline deadline = new OperationDeadline(Duration.ofMillis(100), executor);
+
+	private final SlowServiceInstanceService delegate = new SlowServiceInstanceService();
+
+	@After
+	public void tearDown() {
+		delegate.release.countDown();
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void fastOperationIsSynchronous() {
+		delegate.release.countDown();
+		DeadlineServiceInstanceService service = new DeadlineServiceInstanceService(delegate, deadline);
+
+		CreateServiceInstanceResponse response = service.createServiceInstance(createRequest(true));
+
+		assertFalse(response.isAsync());
+		assertEquals("https://dashboard.example.com", response.getDashboardUrl());
+	}
+
+	@Test
+	public void slowOperationIsPromotedAndReportsItsResult() throws Exception {
+		DeadlineServiceInstanceService service = new DeadlineServiceInstanceService(delegate, deadline);
+
+		CreateServiceInstanceResponse response = service.createServiceInstance(createRequest(true));
+
+		assertTrue(response.isAsync());
+		assertNotNull(response.getOperation());
+		assertEquals(OperationState.IN_PROGRESS,
+				service.getLastOperation(lastOperationRequest(response.getOperation())).getState());
+
+		delegate.release.countDown();
+		assertTrue(delegate.completed.await(5, TimeUnit.SECONDS));
+
+		GetLastServiceOperationResponse lastOperation = awaitCompletion(service, response.getOperation());
+		assertEquals(OperationState.SUCCEEDED, lastOperation.getState());
+		assertFalse(lastOperation.isDeleteOperation());
+	}
+
+	@Test
+	public void nonBlockingServiceDoesNotWaitForTheDeadline() throws Exception {
+		DeadlineServiceInstanceService service = new DeadlineServiceInstanceService(delegate,
+				new OperationDeadline(Duration.ofSeconds(30), executor));
+		service.setNonBlocking(true);
+
+		long start = System.nanoTime();
+		CreateServiceInstanceResponse response = service.createServiceInstance(createRequest(true));
+
+		assertTrue(response.isAsync());
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+
+		delegate.release.countDown();
+		GetLastServiceOperationResponse lastOperation = awaitCompletion(service, response.getOperation());
+		assertEquals(OperationState.SUCCEEDED, lastOperation.getState());
+	}
+
+	@Test
+	public void failureOfPromotedOperationIsReported() throws Exception {
+		delegate.failure = new ServiceInstanceExistsException(SERVICE_INSTANCE_ID, "service-definition-id");
+		DeadlineServiceInstanceService service = new DeadlineServiceInstanceService(delegate, deadline);
+
+		CreateServiceInstanceResponse response = service.createServiceInstance(createRequest(true));
+		delegate.release.countDown();
+
+		GetLastServiceOperationResponse lastOperation = awaitCompletion(service, response.getOperation());
+		assertEquals(OperationState.FAILED, lastOperation.getState());
+		assertEquals(delegate.failure.getMessage(), lastOperation.getDescription());
+	}
+
+	@Test
+	public void promotedDeleteIsReportedAsDelete() throws Exception {
+		DeadlineServiceInstanceService service = new DeadlineServiceInstanceService(delegate, deadline);
+
+		DeleteServiceInstanceRequest request = new DeleteServiceInstanceRequest();
+		request.setServiceInstanceId(SERVICE_INSTANCE_ID);
+		request.setAsyncAccepted(true);
+		DeleteServiceInstanceResponse response = service.deleteServiceInstance(request);
+		assertTrue(response.isAsync());
+		delegate.release.countDown();
+
+		GetLastServiceOperationResponse lastOperation = awaitCompletion(service, response.getOperation());
+		assertEquals(OperationState.SUCCEEDED, lastOperation.getState());
+		assertTrue(lastOperation.isDeleteOperation());
+	}
+
+	@Test
+	public void operationIsNotPromotedWhenAsyncIsNotAccepted() {
+		DeadlineServiceInstanceService service = new DeadlineServiceInstanceService(delegate, deadline);
+		delegate.delay = Duration.ofMillis(300);
+		delegate.release.countDown();
+
+		CreateServiceInstanceResponse response = service.createServiceInstance(createRequest(false));
+
+		assertFalse(response.isAsync());
+	}
+
+	@Test(expected = ServiceInstanceExistsException.class)
+	public void failureBeforeDeadlineIsThrown() {
+		delegate.failure = new ServiceInstanceExistsException(SERVICE_INSTANCE_ID, "service-definition-id");
+		delegate.release.countDown();
+		DeadlineServiceInstanceService service = new DeadlineServiceInstanceService(delegate, deadline);
+
+		service.createServiceInstance(createRequest(true));
+	}
+
+	@Test
+	public void lastOperationOfDelegateIsRequestedWithoutChangingTheRequest() throws Exception {
+		delegate.asyncOperation = "delegate-operation";
+		DeadlineServiceInstanceService service = new DeadlineServiceInstanceService(delegate, deadline);
+
+		CreateServiceInstanceResponse response = service.createServiceInstance(createRequest(true));
+		delegate.release.countDown();
+		assertTrue(delegate.completed.await(5, TimeUnit.SECONDS));
+
+		GetLastServiceOperationRequest request = lastOperationRequest(response.getOperation());
+		long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (delegate.lastOperationRequest == null && System.nanoTime() < end) {
+			service.getLastOperation(request);
+			Thread.sleep(10);
+		}
+
+		assertEquals("delegate-operation", delegate.lastOperationRequest.getOperation());
+		assertEquals(response.getOperation(), request.getOperation());
+	}
+
+	@Test
+	public void oldestIdleOperationsAreForgottenAtTheLimit() {
+		DeadlineServiceInstanceService service = new DeadlineServiceInstanceService(delegate, deadline, null, 2);
+		service.resume(Arrays.asList(
+				new OperationCheckpoint("first-id", "first", null, false, OperationState.SUCCEEDED, null),
+				new OperationCheckpoint("second-id", "second", null, false, OperationState.SUCCEEDED, null)));
+
+		assertTrue(service.createServiceInstance(createRequest(true)).isAsync());
+
+		GetLastServiceOperationRequest second = lastOperationRequest("second");
+		second.setServiceInstanceId("second-id");
+		assertEquals(OperationState.SUCCEEDED, service.getLastOperation(second).getState());
+		GetLastServiceOperationRequest first = lastOperationRequest("first");
+		first.setServiceInstanceId("first-id");
+		try {
+			service.getLastOperation(first);
+			fail("Expected the first operation to be forgotten");
+		} catch (IllegalStateException e) {
+			assertEquals("Last operation should be answered by the deadline service", e.getMessage());
+		}
+	}
+
+	@Test(expected = ServiceBrokerOverloadedException.class)
+	public void operationRejectedByExecutorIsRejected() {
+		OperationDeadline saturated = new OperationDeadline(Duration.ofMillis(100), runnable -> {
+			throw new RejectedExecutionException();
+		});
+		DeadlineServiceInstanceService service = new DeadlineServiceInstanceService(delegate, saturated);
+
+		service.createServiceInstance(createRequest(true));
+	}
+
+	private static GetLastServiceOperationResponse awaitCompletion(DeadlineServiceInstanceService service,
+																   String operation) throws InterruptedException {
+		long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (System.nanoTime() < end) {
+			GetLastServiceOperationResponse response = service.getLastOperation(lastOperationRequest(operation));
+			if (response.getState() != OperationState.IN_PROGRESS) {
+				return response;
+			}
+			Thread.sleep(10);
+		}
+		throw new AssertionError("Promoted operation did not complete");
+	}
+
+	private static CreateServiceInstanceRequest createRequest(boolean asyncAccepted) {
+		CreateServiceInstanceRequest request = CreateServiceInstanceRequest.builder()
+				.serviceDefinitionId("service-definition-id")
+				.planId("plan-id")
+				.build();
+		request.setServiceInstanceId(SERVICE_INSTANCE_ID);
+		request.setAsyncAccepted(asyncAccepted);
+		return request;
+	}
+
+	private static GetLastServiceOperationRequest lastOperationRequest(String operation) {
+		GetLastServiceOperationRequest request = new GetLastServiceOperationRequest();
+		request.setServiceInstanceId(SERVICE_INSTANCE_ID);
+		request.setOperation(operation);
+		return request;
+	}
+
+	private static class SlowServiceInstanceService implements ServiceInstanceService {
+		private final CountDownLatch release = new CountDownLatch(1);
+
+		private final CountDownLatch completed = new CountDownLatch(1);
+
+		private volatile Duration delay = Duration.ZERO;
+
+		private volatile RuntimeException failure;
+
+		private volatile String asyncOperation;
+
+		private volatile GetLastServiceOperationRequest lastOperationRequest;
+
+		@Override
+		public CreateServiceInstanceResponse createServiceInstance(CreateServiceInstanceRequest request) {
+			await();
+			return CreateServiceInstanceResponse.builder()
+					.dashboardUrl("https://dashboard.example.com")
+					.async(asyncOperation != null)
+					.operation(asyncOperation)
+					.build();
+		}
+
+		@Override
+		public GetLastServiceOperationResponse getLastOperation(GetLastServiceOperationRequest request) {
+			if (asyncOperation == null) {
+				throw new IllegalStateException("Last operation should be answered by the deadline service");
+			}
+			lastOperationRequest = request;
+			return GetLastServiceOperationResponse.builder().operationState(OperationState.IN_PROGRESS).build();
+		}
+
+		@Override
+		public DeleteServiceInstanceResponse deleteServiceInstance(DeleteServiceInstanceRequest request) {
+			await();
+			return DeleteServiceInstanceResponse.builder().build();
+		}
+
+		@Override
+		public UpdateServiceInstanceResponse updateServiceInstance(UpdateServiceInstanceRequest request) {
+			await();
+			return UpdateServiceInstanceResponse.builder().build();
+		}
+
+		private void await() {
+			try {
+				release.await();
+				Thread.sleep(delay.toMillis());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			completed.countDown();
+			if (failure != null) {
+				throw failure;
+			}
+		}
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.servicebroker.model.OperationState;
+import org.springframework.cloud.servicebroker.model.ServiceInstanceOperation;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class JdbcOperationStoreTest {
+
+	private EmbeddedDatabase database;
+
+	private JdbcOperationStore store;
+
+	@Before
+	public void setup() {
+		database = new EmbeddedDatabaseBuilder()
+				.setType(EmbeddedDatabaseType.H2)
+				.generateUniqueName(true)
+				.addScript("org/springframework/cloud/servicebroker/service/schema-operation-store.sql")
+				.build();
+		store = new JdbcOperationStore(database);
+	}
+
+	@After
+	public void tearDown() {
+		database.shutdown();
+	}
+
+	@Test
+	public void unknownOperationIsNotFound() {
+		assertNull(store.getOperation("instance-id"));
+	}
+
+	@Test
+	public void savedOperationIsFound() {
+		ServiceInstanceOperation saved = store.saveOperation(buildOperation("instance-id", "create"));
+
+		ServiceInstanceOperation found = store.getOperation("instance-id");
+		assertEquals("create", found.getOperation());
+		assertEquals(OperationState.IN_PROGRESS, found.getState());
+		assertFalse(found.isDeleteOperation());
+		assertEquals(saved.getVersion(), found.getVersion());
+	}
+
+	@Test
+	public void savedOperationReplacesPreviousOperation() {
+		store.saveOperation(buildOperation("instance-id", "create"));
+		ServiceInstanceOperation replaced = store.saveOperation(ServiceInstanceOperation.builder()
+				.serviceInstanceId("instance-id")
+				.operation("delete")
+				.deleteOperation(true)
+				.build());
+
+		ServiceInstanceOperation found = store.getOperation("instance-id");
+		assertEquals("delete", found.getOperation());
+		assertTrue(found.isDeleteOperation());
+		assertEquals(1, replaced.getVersion());
+		assertEquals(1, found.getVersion());
+	}
+
+	@Test
+	public void savedOperationsAreFoundTogether() {
+		store.saveOperation(buildOperation("instance-1", "create"));
+		store.saveOperation(buildOperation("instance-2", "update"));
+
+		Map<String, ServiceInstanceOperation> found = store.getOperations(
+				Arrays.asList("instance-1", "instance-2", "instance-3"));
+
+		assertEquals(2, found.size());
+		assertEquals("create", found.get("instance-1").getOperation());
+		assertEquals("update", found.get("instance-2").getOperation());
+		assertTrue(store.getOperations(Collections.emptyList()).isEmpty());
+	}
+
+	@Test
+	public void updateWithCurrentVersionIsApplied() {
+		ServiceInstanceOperation saved = store.saveOperation(buildOperation("instance-id", "create"));
+
+		assertTrue(store.updateOperation(saved.withState(OperationState.SUCCEEDED, "done")));
+
+		ServiceInstanceOperation found = store.getOperation("instance-id");
+		assertEquals(OperationState.SUCCEEDED, found.getState());
+		assertEquals("done", found.getDescription());
+		assertEquals(saved.getVersion() + 1, found.getVersion());
+	}
+
+	@Test
+	public void updateWithStaleVersionIsRejected() {
+		ServiceInstanceOperation saved = store.saveOperation(buildOperation("instance-id", "create"));
+		assertTrue(store.updateOperation(saved.withState(OperationState.FAILED, "first")));
+
+		assertFalse(store.updateOperation(saved.withState(OperationState.SUCCEEDED, "second")));
+
+		ServiceInstanceOperation found = store.getOperation("instance-id");
+		assertEquals(OperationState.FAILED, found.getState());
+		assertEquals("first", found.getDescription());
+	}
+
+	@Test
+	public void batchUpdateReturnsRejectedOperations() {
+		ServiceInstanceOperation first = store.saveOperation(buildOperation("instance-1", "create"));
+		ServiceInstanceOperation second = store.saveOperation(buildOperation("instance-2", "create"));
+		store.updateOperation(second.withState(OperationState.FAILED, "failed"));
+
+		ServiceInstanceOperation staleSecond = second.withState(OperationState.SUCCEEDED, "done");
+		List<ServiceInstanceOperation> rejected = store.updateOperations(Arrays.asList(
+				first.withState(OperationState.SUCCEEDED, "done"), staleSecond));
+
+		assertThat(rejected, contains(staleSecond));
+		assertEquals(OperationState.SUCCEEDED, store.getOperation("instance-1").getState());
+		assertEquals(OperationState.FAILED, store.getOperation("instance-2").getState());
+	}
+
+	@Test
+	public void deletedOperationIsNotFound() {
+		store.saveOperation(buildOperation("instance-id", "create"));
+
+		store.deleteOperation("instance-id");
+
+		assertNull(store.getOperation("instance-id"));
+	}
+
+	private ServiceInstanceOperation buildOperation(String serviceInstanceId, String operation) {
+		return ServiceInstanceOperation.builder()
+				.serviceInstanceId(serviceInstanceId)
+				.operation(operation)
+				.state(OperationState.IN_PROGRESS)
+				.build();
+	}
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerException;
+import org.springframework.cloud.servicebroker.model.Context;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationRequest;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationResponse;
+import org.springframework.cloud.servicebroker.model.OperationState;
+import org.springframework.cloud.servicebroker.model.ParameterChanges;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceRequest.PreviousValues;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceResponse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ParameterTrackingServiceInstanceServiceTest {
+
+	private static final String SERVICE_INSTANCE_ID = "service-instance-id";
+
+	private final RecordingServiceInstanceService delegate = new RecordingServiceInstanceService();
+
+	private final InMemoryServiceInstanceParametersStore store = new InMemoryServiceInstanceParametersStore();
+
+	private final ServiceInstanceService service = new ParameterTrackingServiceInstanceService(delegate, store);
+
+	@Test
+	public void changesAreComparedByKey() {
+		Map<String, Object> previous = new HashMap<>();
+		previous.put("size", 1);
+		previous.put("region", "east");
+		previous.put("backup", Collections.singletonMap("retention", 7L));
+		Map<String, Object> current = new HashMap<>();
+		current.put("size", 1.0);
+		current.put("backup", Collections.singletonMap("retention", 14));
+		current.put("replicas", 3);
+		current.put("region", null);
+
+		ParameterChanges changes = ParameterChanges.between("small", previous, "large", current);
+
+		assertTrue(changes.isPlanChanged());
+		assertEquals(Collections.singleton("replicas"), changes.getAddedKeys());
+		assertEquals(Collections.singleton("region"), changes.getRemovedKeys());
+		assertEquals(Collections.singleton("backup"), changes.getModifiedKeys());
+		assertFalse(changes.isParameterChanged("size"));
+		assertFalse(changes.isEmpty());
+		assertTrue(ParameterChanges.between("small", previous, "small", previous).isEmpty());
+		assertTrue(ParameterChanges.between("small", previous, "small",
+				Collections.singletonMap("size", 1)).isEmpty());
+	}
+
+	@Test
+	public void parametersOmittedFromUpdateAreKept() {
+		service.createServiceInstance(createRequest());
+		UpdateServiceInstanceRequest request = UpdateServiceInstanceRequest.builder()
+				.planId("plan-id")
+				.previousValues(new PreviousValues("plan-id"))
+				.parameters("replicas", 3)
+				.build();
+		request.setServiceInstanceId(SERVICE_INSTANCE_ID);
+		service.updateServiceInstance(request);
+
+		assertEquals(1, delegate.updates.size());
+		assertEquals(Collections.singleton("replicas"), delegate.updates.get(0).getParameterChanges().getAddedKeys());
+		assertTrue(delegate.updates.get(0).getParameterChanges().getRemovedKeys().isEmpty());
+		Map<String, Object> parameters = store.getParameters(SERVICE_INSTANCE_ID).getParameters();
+		assertEquals("small", parameters.get("size"));
+		assertEquals(3, parameters.get("replicas"));
+
+		service.updateServiceInstance(updateRequest("plan-id", "small"));
+		assertEquals(1, delegate.updates.size());
+	}
+
+	@Test
+	public void parametersSetToNullAreRemoved() {
+		service.createServiceInstance(createRequest());
+		service.updateServiceInstance(updateRequest("plan-id", null));
+
+		assertEquals(Collections.singleton("size"), delegate.updates.get(0).getParameterChanges().getRemovedKeys());
+		assertFalse(store.getParameters(SERVICE_INSTANCE_ID).getParameters().containsKey("size"));
+	}
+
+	@Test
+	public void contextChangesArePassedThrough() {
+		service.createServiceInstance(createRequest());
+		UpdateServiceInstanceRequest request = UpdateServiceInstanceRequest.builder()
+				.planId("plan-id")
+				.previousValues(new PreviousValues("plan-id"))
+				.parameters("size", "small")
+				.context(Context.builder().platform("test").property("space", "other").build())
+				.build();
+		request.setServiceInstanceId(SERVICE_INSTANCE_ID);
+		service.updateServiceInstance(request);
+
+		assertEquals(1, delegate.updates.size());
+		ParameterChanges changes = delegate.updates.get(0).getParameterChanges();
+		assertTrue(changes.isContextChanged());
+		assertFalse(changes.isEmpty());
+	}
+
+	@Test
+	public void updateWithoutChangesIsAnsweredImmediately() {
+		service.createServiceInstance(createRequest());
+		UpdateServiceInstanceResponse response = service.updateServiceInstance(updateRequest("plan-id", "small"));
+
+		assertFalse(response.isAsync());
+		assertTrue(delegate.updates.isEmpty());
+	}
+
+	@Test
+	public void updateCarriesChanges() {
+		service.createServiceInstance(createRequest());
+		service.updateServiceInstance(updateRequest("plan-id", "large"));
+		service.updateServiceInstance(updateRequest("other-plan-id", "large"));
+
+		assertEquals(2, delegate.updates.size());
+		ParameterChanges first = delegate.updates.get(0).getParameterChanges();
+		assertFalse(first.isPlanChanged());
+		assertEquals(new LinkedHashSet<>(Arrays.asList("size")), first.getModifiedKeys());
+		ParameterChanges second = delegate.updates.get(1).getParameterChanges();
+		assertTrue(second.isPlanChanged());
+		assertTrue(second.getModifiedKeys().isEmpty());
+	}
+
+	@Test
+	public void parametersOfAsynchronousOperationsAreSavedWhenTheySucceed() {
+		delegate.async = true;
+		service.createServiceInstance(createRequest());
+		assertNull(store.getParameters(SERVICE_INSTANCE_ID));
+
+		GetLastServiceOperationRequest lastOperation = new GetLastServiceOperationRequest();
+		lastOperation.setServiceInstanceId(SERVICE_INSTANCE_ID);
+		service.getLastOperation(lastOperation);
+
+		assertEquals("plan-id", store.getParameters(SERVICE_INSTANCE_ID).getPlanId());
+	}
+
+	@Test
+	public void parametersAreKeptWhenDeleteFails() {
+		service.createServiceInstance(createRequest());
+		delegate.deleteFailure = new ServiceBrokerException("delete failed");
+
+		try {
+			service.deleteServiceInstance(deleteRequest());
+			fail("Expected the delete to fail");
+		} catch (ServiceBrokerException e) {
+			assertNotNull(store.getParameters(SERVICE_INSTANCE_ID));
+		}
+	}
+
+	@Test
+	public void parametersOfAsynchronousDeleteAreForgottenWhenItSucceeds() {
+		service.createServiceInstance(createRequest());
+		delegate.async = true;
+		service.deleteServiceInstance(deleteRequest());
+		assertNotNull(store.getParameters(SERVICE_INSTANCE_ID));
+
+		GetLastServiceOperationRequest lastOperation = new GetLastServiceOperationRequest();
+		lastOperation.setServiceInstanceId(SERVICE_INSTANCE_ID);
+		delegate.lastOperationState = OperationState.IN_PROGRESS;
+		service.getLastOperation(lastOperation);
+		assertNotNull(store.getParameters(SERVICE_INSTANCE_ID));
+
+		delegate.lastOperationState = OperationState.SUCCEEDED;
+		service.getLastOperation(lastOperation);
+		assertNull(store.getParameters(SERVICE_INSTANCE_ID));
+	}
+
+	@Test
+	public void parametersAreForgottenWhenPreviousPlanDoesNotMatch() {
+		service.createServiceInstance(createRequest());
+		UpdateServiceInstanceRequest request = UpdateServiceInstanceRequest.builder()
+				.planId("plan-id")
+				.previousValues(new PreviousValues("unknown-plan-id"))
+				.parameters("size", "small")
+				.build();
+		request.setServiceInstanceId(SERVICE_INSTANCE_ID);
+		service.updateServiceInstance(request);
+
+		assertEquals(1, delegate.updates.size());
+		assertNull(delegate.updates.get(0).getParameterChanges());
+	}
+
+	private static CreateServiceInstanceRequest createRequest() {
+		CreateServiceInstanceRequest request = CreateServiceInstanceRequest.builder()
+				.serviceDefinitionId("service-definition-id")
+				.planId("plan-id")
+				.parameters("size", "small")
+				.context(Context.builder().platform("test").property("space", "space").build())
+				.build();
+		request.setServiceInstanceId(SERVICE_INSTANCE_ID);
+		return request;
+	}
+
+	private static DeleteServiceInstanceRequest deleteRequest() {
+		DeleteServiceInstanceRequest request = new DeleteServiceInstanceRequest();
+		request.setServiceInstanceId(SERVICE_INSTANCE_ID);
+		return request;
+	}
+
+	private static UpdateServiceInstanceRequest updateRequest(String planId, String size) {
+		UpdateServiceInstanceRequest request = UpdateServiceInstanceRequest.builder()
+				.serviceDefinitionId("service-definition-id")
+				.planId(planId)
+				.previousValues(new PreviousValues("plan-id"))
+				.parameters("size", size)
+				.build();
+		request.setServiceInstanceId(SERVICE_INSTANCE_ID);
+		return request;
+	}
+
+	private static class RecordingServiceInstanceService implements ServiceInstanceService {
+		private final List<UpdateServiceInstanceRequest> updates = new ArrayList<>();
+
+		private boolean async;
+
+		private OperationState lastOperationState = OperationState.SUCCEEDED;
+
+		private RuntimeException deleteFailure;
+
+		@Override
+		public CreateServiceInstanceResponse createServiceInstance(CreateServiceInstanceRequest request) {
+			return CreateServiceInstanceResponse.builder().async(async).build();
+		}
+
+		@Override
+		public GetLastServiceOperationResponse getLastOperation(GetLastServiceOperationRequest request) {
+			return GetLastServiceOperationResponse.builder().operationState(lastOperationState).build();
+		}
+
+		@Override
+		public DeleteServiceInstanceResponse deleteServiceInstance(DeleteServiceInstanceRequest request) {
+			if (deleteFailure != null) {
+				throw deleteFailure;
+			}
+			return DeleteServiceInstanceResponse.builder().async(async).build();
+		}
+
+		@Override
+		public UpdateServiceInstanceResponse updateServiceInstance(UpdateServiceInstanceRequest request) {
+			updates.add(request);
+			return UpdateServiceInstanceResponse.builder().async(async).build();
+		}
+	}
+}
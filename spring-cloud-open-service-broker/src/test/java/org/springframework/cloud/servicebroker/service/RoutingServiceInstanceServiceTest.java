@@ -0,0 +1,203 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerInvalidParametersException;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerOverloadedException;
+import org.springframework.cloud.servicebroker.exception.ServiceDefinitionDoesNotExistException;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationRequest;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationResponse;
+import org.springframework.cloud.servicebroker.model.OperationState;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceResponse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RoutingServiceInstanceServiceTest {
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	private final NamedServiceInstanceService database = new NamedServiceInstanceService("database", release);
+
+	private final NamedServiceInstanceService queue = new NamedServiceInstanceService("queue", null);
+
+	private final ServiceOffering databaseOffering = ServiceOffering.builder()
+			.serviceDefinitionId("database-service-id")
+			.serviceInstanceService(database)
+			.concurrencyLimit(1)
+			.executor(executor, Duration.ofMillis(100))
+			.build();
+
+	private final ServiceOffering queueOffering = ServiceOffering.builder()
+			.serviceDefinitionId("queue-service-id")
+			.serviceInstanceService(queue)
+			.build();
+
+	private final RoutingServiceInstanceService service =
+			new RoutingServiceInstanceService(Arrays.asList(databaseOffering, queueOffering));
+
+	@After
+	public void tearDown() {
+		release.countDown();
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void requestsAreRoutedByServiceDefinitionId() {
+		release.countDown();
+
+		assertEquals("database", service.createServiceInstance(createRequest("database-service-id", false))
+				.getDashboardUrl());
+		assertEquals("queue", service.createServiceInstance(createRequest("queue-service-id", false))
+				.getDashboardUrl());
+
+		assertEquals(1, databaseOffering.getCompletedCalls());
+		assertEquals(1, queueOffering.getCompletedCalls());
+	}
+
+	@Test(expected = ServiceDefinitionDoesNotExistException.class)
+	public void unknownServiceDefinitionIsRejected() {
+		service.createServiceInstance(createRequest("unknown-service-id", false));
+	}
+
+	@Test
+	public void slowOfferingDoesNotBlockOtherOfferings() throws Exception {
+		Future<CreateServiceInstanceResponse> blocked =
+				executor.submit(() -> service.createServiceInstance(createRequest("database-service-id", false)));
+		while (databaseOffering.getInFlightCalls() == 0) {
+			Thread.sleep(5);
+		}
+
+		try {
+			service.createServiceInstance(createRequest("database-service-id", false));
+			fail("Expected the database offering to be at its concurrency limit");
+		} catch (ServiceBrokerOverloadedException e) {
+			assertEquals(1, databaseOffering.getRejectedCalls());
+		}
+
+		assertEquals("queue", service.createServiceInstance(createRequest("queue-service-id", false))
+				.getDashboardUrl());
+		assertEquals(0, queueOffering.getRejectedCalls());
+
+		release.countDown();
+		assertEquals("database", blocked.get(5, TimeUnit.SECONDS).getDashboardUrl());
+	}
+
+	@Test
+	public void lastOperationWithoutServiceDefinitionIdIsRoutedToOfferingThatAcceptedIt() throws Exception {
+		CreateServiceInstanceResponse response =
+				service.createServiceInstance(createRequest("database-service-id", true));
+		assertTrue(response.isAsync());
+
+		GetLastServiceOperationRequest request = new GetLastServiceOperationRequest();
+		request.setServiceInstanceId("service-instance-id");
+		request.setOperation(response.getOperation());
+		assertEquals(OperationState.IN_PROGRESS, service.getLastOperation(request).getState());
+
+		release.countDown();
+		long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		GetLastServiceOperationResponse lastOperation;
+		do {
+			Thread.sleep(10);
+			lastOperation = service.getLastOperation(request);
+		} while (lastOperation.getState() == OperationState.IN_PROGRESS && System.nanoTime() < end);
+		assertEquals(OperationState.SUCCEEDED, lastOperation.getState());
+		assertEquals(0, queueOffering.getCompletedCalls());
+	}
+
+	@Test(expected = ServiceBrokerInvalidParametersException.class)
+	public void lastOperationWithoutServiceDefinitionIdOrAcceptedOperationIsRejected() {
+		GetLastServiceOperationRequest request = new GetLastServiceOperationRequest();
+		request.setServiceInstanceId("service-instance-id");
+		service.getLastOperation(request);
+	}
+
+	private static CreateServiceInstanceRequest createRequest(String serviceDefinitionId, boolean asyncAccepted) {
+		CreateServiceInstanceRequest request = CreateServiceInstanceRequest.builder()
+				.serviceDefinitionId(serviceDefinitionId)
+				.planId("plan-id")
+				.build();
+		request.setServiceInstanceId("service-instance-id");
+		request.setAsyncAccepted(asyncAccepted);
+		return request;
+	}
+
+	private static class NamedServiceInstanceService implements ServiceInstanceService {
+		private final String name;
+
+		private final CountDownLatch release;
+
+		private NamedServiceInstanceService(String name, CountDownLatch release) {
+			this.name = name;
+			this.release = release;
+		}
+
+		@Override
+		public CreateServiceInstanceResponse createServiceInstance(CreateServiceInstanceRequest request) {
+			await();
+			return CreateServiceInstanceResponse.builder()
+					.dashboardUrl(name)
+					.build();
+		}
+
+		@Override
+		public GetLastServiceOperationResponse getLastOperation(GetLastServiceOperationRequest request) {
+			throw new IllegalStateException("Last operation should be answered by the deadline service");
+		}
+
+		@Override
+		public DeleteServiceInstanceResponse deleteServiceInstance(DeleteServiceInstanceRequest request) {
+			await();
+			return DeleteServiceInstanceResponse.builder().build();
+		}
+
+		@Override
+		public UpdateServiceInstanceResponse updateServiceInstance(UpdateServiceInstanceRequest request) {
+			await();
+			return UpdateServiceInstanceResponse.builder().build();
+		}
+
+		private void await() {
+			if (release != null) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceExistsException;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationRequest;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationResponse;
+import org.springframework.cloud.servicebroker.model.OperationState;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerActivity.Call;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerActivity.Operation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ServiceBrokerActivityTest {
+
+	private static final String SERVICE_INSTANCE_ID = "service-instance-id";
+
+	private final AtomicLong nanoTime = new AtomicLong(1000);
+
+	private final ServiceBrokerActivity activity = new ServiceBrokerActivity(4, 2, Duration.ofSeconds(10),
+			nanoTime::get);
+
+	@Test
+	public void callIsInFlightUntilFinished() {
+		Call call = activity.start("createServiceInstance", "service-definition-id", "plan-id", "cf-instance-id",
+				SERVICE_INSTANCE_ID);
+		nanoTime.addAndGet(500);
+
+		assertEquals(1, activity.getInFlightCalls().size());
+		assertEquals(Duration.ofNanos(500), activity.age(call.getStartNanos()));
+		assertNull(call.getDuration());
+
+		activity.finish(call, false);
+
+		assertTrue(activity.getInFlightCalls().isEmpty());
+		assertEquals(1, activity.getRecentCalls().size());
+		assertEquals(Duration.ofNanos(500), call.getDuration());
+		assertEquals(1, activity.getCompletedCalls());
+		assertEquals(0, activity.getFailedCalls());
+	}
+
+	@Test
+	public void recentCallsAreBounded() {
+		for (int i = 0; i < 10; i++) {
+			activity.finish(activity.start("getLastOperation", null, null, null, "id-" + i), i % 2 == 0);
+		}
+
+		List<Call> recentCalls = activity.getRecentCalls();
+		assertEquals(4, recentCalls.size());
+		for (Call call : recentCalls) {
+			assertTrue(Integer.parseInt(call.getServiceInstanceId().substring(3)) >= 6);
+		}
+		assertEquals(10, activity.getCompletedCalls());
+		assertEquals(5, activity.getFailedCalls());
+	}
+
+	@Test
+	public void asyncOperationIsTrackedUntilCompleted() {
+		MonitoredServiceInstanceService service =
+				new MonitoredServiceInstanceService(new AsyncServiceInstanceService(), activity);
+
+		service.createServiceInstance(createRequest(SERVICE_INSTANCE_ID));
+		nanoTime.addAndGet(100);
+		service.getLastOperation(lastOperationRequest(OperationState.IN_PROGRESS));
+
+		Operation operation = activity.getOperations().iterator().next();
+		assertEquals("create", operation.getOperation());
+		assertEquals("createServiceInstance", operation.getCall().getOperation());
+		assertEquals(1100, operation.getLastPolledNanos());
+		assertEquals("working", operation.getDescription());
+
+		service.getLastOperation(lastOperationRequest(OperationState.SUCCEEDED));
+
+		assertTrue(activity.getOperations().isEmpty());
+		assertEquals(3, activity.getCompletedCalls());
+	}
+
+	@Test
+	public void trackedOperationsAreBounded() {
+		MonitoredServiceInstanceService service =
+				new MonitoredServiceInstanceService(new AsyncServiceInstanceService(), activity);
+
+		service.createServiceInstance(createRequest("id-1"));
+		nanoTime.addAndGet(100);
+		service.createServiceInstance(createRequest("id-2"));
+		nanoTime.addAndGet(100);
+		service.createServiceInstance(createRequest("id-3"));
+
+		assertEquals(2, activity.getOperations().size());
+		for (Operation operation : activity.getOperations()) {
+			assertFalse("id-1".equals(operation.getCall().getServiceInstanceId()));
+		}
+	}
+
+	@Test
+	public void idleOperationsAreForgotten() {
+		MonitoredServiceInstanceService service =
+				new MonitoredServiceInstanceService(new AsyncServiceInstanceService(), activity);
+
+		service.createServiceInstance(createRequest(SERVICE_INSTANCE_ID));
+		service.createServiceInstance(createRequest("id-2"));
+		nanoTime.addAndGet(Duration.ofSeconds(6).toNanos());
+		service.getLastOperation(lastOperationRequest(OperationState.IN_PROGRESS));
+		nanoTime.addAndGet(Duration.ofSeconds(6).toNanos());
+
+		assertEquals(1, activity.getOperations().size());
+		assertEquals(SERVICE_INSTANCE_ID, activity.getOperations().iterator().next().getCall().getServiceInstanceId());
+
+		nanoTime.addAndGet(Duration.ofSeconds(6).toNanos());
+
+		assertTrue(activity.getOperations().isEmpty());
+	}
+
+	@Test
+	public void failedCallIsRecorded() {
+		MonitoredServiceInstanceService service =
+				new MonitoredServiceInstanceService(new AsyncServiceInstanceService(), activity);
+
+		try {
+			service.createServiceInstance(createRequest("existing"));
+			fail("expected ServiceInstanceExistsException");
+		} catch (ServiceInstanceExistsException e) {
+			// expected
+		}
+
+		assertTrue(activity.getInFlightCalls().isEmpty());
+		assertTrue(activity.getOperations().isEmpty());
+		assertTrue(activity.getRecentCalls().get(0).isFailed());
+		assertEquals(1, activity.getFailedCalls());
+	}
+
+	private static CreateServiceInstanceRequest createRequest(String serviceInstanceId) {
+		CreateServiceInstanceRequest request = CreateServiceInstanceRequest.builder()
+				.serviceDefinitionId("service-definition-id")
+				.planId("plan-id")
+				.build();
+		request.setServiceInstanceId(serviceInstanceId);
+		request.setAsyncAccepted(true);
+		return request;
+	}
+
+	private static GetLastServiceOperationRequest lastOperationRequest(OperationState state) {
+		GetLastServiceOperationRequest request = new GetLastServiceOperationRequest();
+		request.setServiceInstanceId(SERVICE_INSTANCE_ID);
+		request.setOperation(state.name());
+		return request;
+	}
+
+	private static class AsyncServiceInstanceService implements ServiceInstanceService {
+		@Override
+		public CreateServiceInstanceResponse createServiceInstance(CreateServiceInstanceRequest request) {
+			if ("existing".equals(request.getServiceInstanceId())) {
+				throw new ServiceInstanceExistsException(request.getServiceInstanceId(),
+						request.getServiceDefinitionId());
+			}
+			return CreateServiceInstanceResponse.builder()
+					.async(true)
+					.operation("create")
+					.build();
+		}
+
+		@Override
+		public GetLastServiceOperationResponse getLastOperation(GetLastServiceOperationRequest request) {
+			return GetLastServiceOperationResponse.builder()
+					.operationState(OperationState.valueOf(request.getOperation()))
+					.description("working")
+					.build();
+		}
+
+		@Override
+		public DeleteServiceInstanceResponse deleteServiceInstance(DeleteServiceInstanceRequest request) {
+			return DeleteServiceInstanceResponse.builder().build();
+		}
+
+		@Override
+		public UpdateServiceInstanceResponse updateServiceInstance(UpdateServiceInstanceRequest request) {
+			return UpdateServiceInstanceResponse.builder().build();
+		}
+	}
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerOverloadedException;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationRequest;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationResponse;
+import org.springframework.cloud.servicebroker.model.OperationState;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceResponse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ServiceBrokerDrainTest {
+
+	private static final String SERVICE_INSTANCE_ID = "service-instance-id";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	@After
+	public void tearDown() {
+		release.countDown();
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void operationsAreRejectedWhileDraining() {
+		ServiceBrokerDrain drain = new ServiceBrokerDrain();
+
+		assertTrue(drain.drain());
+		assertTrue(drain.isDraining());
+		try {
+			drain.execute(() -> "created");
+			fail("Expected the operation to be rejected");
+		} catch (ServiceBrokerOverloadedException e) {
+			assertEquals(0, drain.getInFlight());
+		}
+
+		drain.resume();
+		assertEquals("created", drain.execute(() -> "created"));
+	}
+
+	@Test
+	public void drainWaitsForOperationsInProgress() throws Exception {
+		ServiceBrokerDrain drain = new ServiceBrokerDrain(Duration.ofSeconds(5), null);
+		CountDownLatch started = new CountDownLatch(1);
+		Future<String> operation = executor.submit(() -> drain.execute(() -> {
+			started.countDown();
+			await(release);
+			return "created";
+		}));
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		Future<Boolean> drained = executor.submit(drain::drain);
+		Thread.sleep(50);
+		assertFalse(drained.isDone());
+
+		release.countDown();
+		assertTrue(drained.get(5, TimeUnit.SECONDS));
+		assertEquals("created", operation.get());
+	}
+
+	@Test
+	public void drainGivesUpAfterTimeout() throws Exception {
+		ServiceBrokerDrain drain = new ServiceBrokerDrain(Duration.ofMillis(50), null);
+		CountDownLatch started = new CountDownLatch(1);
+		executor.submit(() -> drain.execute(() -> {
+			started.countDown();
+			await(release);
+		}));
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		assertFalse(drain.drain());
+		assertEquals(1, drain.getInFlight());
+	}
+
+	@Test
+	public void promotedOperationsAreResumedByNextInstance() throws Exception {
+		FileOperationCheckpointStore store =
+				new FileOperationCheckpointStore(folder.getRoot().toPath().resolve("operations.json"));
+		OperationDeadline deadline = new OperationDeadline(Duration.ofMillis(50), executor);
+
+		ServiceBrokerDrain drain = new ServiceBrokerDrain(Duration.ofSeconds(5), store);
+		DeadlineServiceInstanceService service =
+				new DeadlineServiceInstanceService(new BlockingServiceInstanceService(), deadline);
+		drain.register(service);
+		drain.resume();
+
+		CreateServiceInstanceResponse response = new DrainingServiceInstanceService(service, drain)
+				.createServiceInstance(createRequest());
+		assertTrue(response.isAsync());
+
+		release.countDown();
+		assertTrue(drain.drain());
+		assertEquals(1, store.load().size());
+
+		ServiceBrokerDrain nextDrain = new ServiceBrokerDrain(Duration.ofSeconds(5), store);
+		nextDrain.resume();
+		DeadlineServiceInstanceService nextService =
+				new DeadlineServiceInstanceService(new BlockingServiceInstanceService(), deadline);
+		nextDrain.register(nextService);
+
+		GetLastServiceOperationResponse lastOperation =
+				nextService.getLastOperation(lastOperationRequest(response.getOperation()));
+		assertEquals(OperationState.SUCCEEDED, lastOperation.getState());
+		assertTrue(store.load().isEmpty());
+	}
+
+	@Test
+	public void promotedOperationsSavedAfterNextInstanceStartedAreResumed() throws Exception {
+		FileOperationCheckpointStore store =
+				new FileOperationCheckpointStore(folder.getRoot().toPath().resolve("operations.json"));
+		OperationDeadline deadline = new OperationDeadline(Duration.ofMillis(50), executor);
+
+		ServiceBrokerDrain drain = new ServiceBrokerDrain(Duration.ofSeconds(5), store);
+		DeadlineServiceInstanceService service =
+				new DeadlineServiceInstanceService(new BlockingServiceInstanceService(), deadline);
+		drain.register(service);
+		drain.resume();
+
+		ServiceBrokerDrain nextDrain = new ServiceBrokerDrain(Duration.ofSeconds(5), store);
+		DeadlineServiceInstanceService nextService =
+				new DeadlineServiceInstanceService(new BlockingServiceInstanceService(), deadline);
+		nextDrain.register(nextService);
+		nextDrain.resume();
+
+		CreateServiceInstanceResponse response = service.createServiceInstance(createRequest());
+		assertTrue(response.isAsync());
+		release.countDown();
+		assertTrue(drain.drain());
+
+		GetLastServiceOperationResponse lastOperation =
+				nextService.getLastOperation(lastOperationRequest(response.getOperation()));
+		assertEquals(OperationState.SUCCEEDED, lastOperation.getState());
+		assertTrue(store.load().isEmpty());
+	}
+
+	@Test
+	public void promotedOperationsOfEveryRegisteredServiceAreSaved() {
+		FileOperationCheckpointStore store =
+				new FileOperationCheckpointStore(folder.getRoot().toPath().resolve("operations.json"));
+		OperationDeadline deadline = new OperationDeadline(Duration.ofMillis(50), executor);
+
+		ServiceBrokerDrain drain = new ServiceBrokerDrain(Duration.ofMillis(50), store);
+		DeadlineServiceInstanceService service =
+				new DeadlineServiceInstanceService(new BlockingServiceInstanceService(), deadline);
+		DeadlineServiceInstanceService otherService =
+				new DeadlineServiceInstanceService(new BlockingServiceInstanceService(), deadline);
+		drain.register(service);
+		drain.register(otherService);
+
+		assertTrue(service.createServiceInstance(createRequest()).isAsync());
+		assertTrue(otherService.createServiceInstance(createRequest()).isAsync());
+
+		assertFalse(drain.drain());
+		assertEquals(2, store.load().size());
+	}
+
+	@Test
+	public void promotedOperationsStillRunningAreReportedAsFailed() {
+		FileOperationCheckpointStore store =
+				new FileOperationCheckpointStore(folder.getRoot().toPath().resolve("operations.json"));
+		OperationDeadline deadline = new OperationDeadline(Duration.ofMillis(50), executor);
+
+		ServiceBrokerDrain drain = new ServiceBrokerDrain(Duration.ofMillis(50), store);
+		DeadlineServiceInstanceService service =
+				new DeadlineServiceInstanceService(new BlockingServiceInstanceService(), deadline);
+		drain.register(service);
+
+		CreateServiceInstanceResponse response = service.createServiceInstance(createRequest());
+		assertTrue(response.isAsync());
+
+		assertFalse(drain.drain());
+		assertEquals(OperationState.FAILED, store.load().get(0).getState());
+		assertEquals(OperationState.FAILED,
+				service.getLastOperation(lastOperationRequest(response.getOperation())).getState());
+	}
+
+	private static CreateServiceInstanceRequest createRequest() {
+		CreateServiceInstanceRequest request = CreateServiceInstanceRequest.builder()
+				.serviceDefinitionId("service-definition-id")
+				.planId("plan-id")
+				.build();
+		request.setServiceInstanceId(SERVICE_INSTANCE_ID);
+		request.setAsyncAccepted(true);
+		return request;
+	}
+
+	private static GetLastServiceOperationRequest lastOperationRequest(String operation) {
+		GetLastServiceOperationRequest request = new GetLastServiceOperationRequest();
+		request.setServiceInstanceId(SERVICE_INSTANCE_ID);
+		request.setOperation(operation);
+		return request;
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private class BlockingServiceInstanceService implements ServiceInstanceService {
+		@Override
+		public CreateServiceInstanceResponse createServiceInstance(CreateServiceInstanceRequest request) {
+			await(release);
+			return CreateServiceInstanceResponse.builder().build();
+		}
+
+		@Override
+		public GetLastServiceOperationResponse getLastOperation(GetLastServiceOperationRequest request) {
+			throw new IllegalStateException("Last operation should be answered by the deadline service");
+		}
+
+		@Override
+		public DeleteServiceInstanceResponse deleteServiceInstance(DeleteServiceInstanceRequest request) {
+			await(release);
+			return DeleteServiceInstanceResponse.builder().build();
+		}
+
+		@Override
+		public UpdateServiceInstanceResponse updateServiceInstance(UpdateServiceInstanceRequest request) {
+			await(release);
+			return UpdateServiceInstanceResponse.builder().build();
+		}
+	}
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.slf4j.MDC;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceBindingExistsException;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceDoesNotExistException;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingResponse;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationRequest;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationResponse;
+import org.springframework.cloud.servicebroker.model.OperationState;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.service.ServiceBrokerEvent.Type;
+import org.springframework.cloud.servicebroker.trace.MdcScope;
+import org.springframework.cloud.servicebroker.trace.TraceContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ServiceBrokerEventDispatcherTest {
+
+	@Test
+	public void eventsArePublishedBeforeAndAfterOperations() {
+		RecordingListener listener = new RecordingListener();
+		CreateServiceInstanceResponse created = CreateServiceInstanceResponse.builder().build();
+		ServiceBrokerEventDispatcher dispatcher = new ServiceBrokerEventDispatcher(Collections.singletonList(listener));
+		ServiceInstanceService service = new EventPublishingServiceInstanceService(new ServiceInstanceService() {
+			@Override
+			public CreateServiceInstanceResponse createServiceInstance(CreateServiceInstanceRequest request) {
+				assertEquals(1, listener.before.size());
+				return created;
+			}
+
+			@Override
+			public GetLastServiceOperationResponse getLastOperation(GetLastServiceOperationRequest request) {
+				return GetLastServiceOperationResponse.builder().build();
+			}
+
+			@Override
+			public DeleteServiceInstanceResponse deleteServiceInstance(DeleteServiceInstanceRequest request) {
+				return DeleteServiceInstanceResponse.builder().build();
+			}
+
+			@Override
+			public UpdateServiceInstanceResponse updateServiceInstance(UpdateServiceInstanceRequest request) {
+				return UpdateServiceInstanceResponse.builder().build();
+			}
+		}, dispatcher);
+
+		CreateServiceInstanceRequest request = CreateServiceInstanceRequest.builder().build();
+		service.createServiceInstance(request);
+		service.getLastOperation(new GetLastServiceOperationRequest());
+		dispatcher.close();
+
+		assertEquals(Type.CREATE_SERVICE_INSTANCE, listener.before.get(0).getType());
+		assertNull(listener.before.get(0).getResponse());
+		assertEquals(1, listener.after.size());
+		ServiceBrokerEvent after = listener.after.get(0);
+		assertSame(request, after.getRequest());
+		assertSame(created, after.getResponse());
+		assertNull(after.getFailure());
+		assertEquals(OperationState.SUCCEEDED, after.getState());
+		assertFalse(after.getDuration().isNegative());
+		assertEquals(1, dispatcher.getDelivered());
+	}
+
+	@Test
+	public void failedOperationsArePublished() {
+		RecordingListener listener = new RecordingListener();
+		ServiceBrokerEventDispatcher dispatcher = new ServiceBrokerEventDispatcher(Collections.singletonList(listener));
+		ServiceInstanceBindingService service = new EventPublishingServiceInstanceBindingService(
+				new ServiceInstanceBindingService() {
+					@Override
+					public CreateServiceInstanceBindingResponse createServiceInstanceBinding(
+							CreateServiceInstanceBindingRequest request) {
+						throw new ServiceInstanceBindingExistsException("service-instance-id", "binding-id");
+					}
+
+					@Override
+					public void deleteServiceInstanceBinding(DeleteServiceInstanceBindingRequest request) {
+					}
+				}, dispatcher);
+
+		try {
+			service.createServiceInstanceBinding(CreateServiceInstanceBindingRequest.builder().build());
+			fail("Expected the binding to fail");
+		} catch (ServiceInstanceBindingExistsException e) {
+			service.deleteServiceInstanceBinding(new DeleteServiceInstanceBindingRequest());
+		}
+		dispatcher.close();
+
+		assertEquals(2, listener.after.size());
+		assertTrue(listener.after.get(0).getFailure() instanceof ServiceInstanceBindingExistsException);
+		assertEquals(Type.DELETE_SERVICE_INSTANCE_BINDING, listener.after.get(1).getType());
+		assertNull(listener.after.get(1).getFailure());
+	}
+
+	@Test
+	public void asynchronousOperationsArePublishedWhenTheyComplete() {
+		RecordingListener listener = new RecordingListener();
+		ServiceBrokerEventDispatcher dispatcher = new ServiceBrokerEventDispatcher(Collections.singletonList(listener));
+		AtomicReference<OperationState> state = new AtomicReference<>(OperationState.IN_PROGRESS);
+		ServiceInstanceService service = new EventPublishingServiceInstanceService(new ServiceInstanceService() {
+			@Override
+			public CreateServiceInstanceResponse createServiceInstance(CreateServiceInstanceRequest request) {
+				return CreateServiceInstanceResponse.builder().async(true).operation("create").build();
+			}
+
+			@Override
+			public GetLastServiceOperationResponse getLastOperation(GetLastServiceOperationRequest request) {
+				if (state.get() == null) {
+					throw new ServiceInstanceDoesNotExistException(request.getServiceInstanceId());
+				}
+				return GetLastServiceOperationResponse.builder().operationState(state.get()).build();
+			}
+
+			@Override
+			public DeleteServiceInstanceResponse deleteServiceInstance(DeleteServiceInstanceRequest request) {
+				return DeleteServiceInstanceResponse.builder().async(true).build();
+			}
+
+			@Override
+			public UpdateServiceInstanceResponse updateServiceInstance(UpdateServiceInstanceRequest request) {
+				return UpdateServiceInstanceResponse.builder().build();
+			}
+		}, dispatcher);
+
+		CreateServiceInstanceRequest create = CreateServiceInstanceRequest.builder().build();
+		create.setServiceInstanceId("service-instance-id");
+		service.createServiceInstance(create);
+		service.getLastOperation(lastOperationRequest("create"));
+		state.set(OperationState.SUCCEEDED);
+		service.getLastOperation(lastOperationRequest("other"));
+		service.getLastOperation(lastOperationRequest("create"));
+		service.getLastOperation(lastOperationRequest("create"));
+
+		DeleteServiceInstanceRequest delete = new DeleteServiceInstanceRequest();
+		delete.setServiceInstanceId("service-instance-id");
+		service.deleteServiceInstance(delete);
+		state.set(null);
+		try {
+			service.getLastOperation(lastOperationRequest(null));
+			fail("Expected the service instance to be gone");
+		} catch (ServiceInstanceDoesNotExistException e) {
+			dispatcher.close();
+		}
+
+		assertEquals(4, listener.after.size());
+		assertEquals(OperationState.IN_PROGRESS, listener.after.get(0).getState());
+		ServiceBrokerEvent created = listener.after.get(1);
+		assertEquals(Type.CREATE_SERVICE_INSTANCE, created.getType());
+		assertSame(create, created.getRequest());
+		assertEquals(OperationState.SUCCEEDED, created.getState());
+		assertTrue(created.getResponse() instanceof GetLastServiceOperationResponse);
+		assertEquals(OperationState.IN_PROGRESS, listener.after.get(2).getState());
+		ServiceBrokerEvent deleted = listener.after.get(3);
+		assertEquals(Type.DELETE_SERVICE_INSTANCE, deleted.getType());
+		assertEquals(OperationState.SUCCEEDED, deleted.getState());
+	}
+
+	@Test
+	public void eventsAreDeliveredInBatches() throws InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+		List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+		ServiceBrokerEventDispatcher dispatcher = new ServiceBrokerEventDispatcher(Collections.singletonList(events -> {
+			awaitQuietly(release);
+			batchSizes.add(events.size());
+		}), 100, 4, Duration.ZERO);
+
+		for (int i = 0; i < 10; i++) {
+			assertTrue(dispatcher.afterOperation(event()));
+		}
+		release.countDown();
+		dispatcher.close();
+
+		assertEquals(10, dispatcher.getDelivered());
+		assertEquals(10, batchSizes.stream().mapToInt(Integer::intValue).sum());
+		assertTrue(batchSizes.stream().allMatch(size -> size <= 4));
+		assertTrue(batchSizes.size() < 10);
+	}
+
+	@Test
+	public void eventsAreDroppedWhenQueueStaysFull() throws InterruptedException {
+		CountDownLatch delivering = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ServiceBrokerEventDispatcher dispatcher = new ServiceBrokerEventDispatcher(Collections.singletonList(events -> {
+			delivering.countDown();
+			awaitQuietly(release);
+		}), 2, 1, Duration.ofMillis(10));
+
+		assertTrue(dispatcher.afterOperation(event()));
+		assertTrue(delivering.await(5, TimeUnit.SECONDS));
+		assertTrue(dispatcher.afterOperation(event()));
+		assertTrue(dispatcher.afterOperation(event()));
+		assertFalse(dispatcher.afterOperation(event()));
+		assertEquals(1, dispatcher.getDropped());
+
+		release.countDown();
+		dispatcher.close();
+		assertEquals(3, dispatcher.getDelivered());
+	}
+
+	@Test
+	public void nonBlockingDispatcherDropsEventsWithoutWaiting() throws InterruptedException {
+		CountDownLatch delivering = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ServiceBrokerEventDispatcher dispatcher = ServiceBrokerEventDispatcher.nonBlocking(
+				Collections.singletonList(events -> {
+					delivering.countDown();
+					awaitQuietly(release);
+				}));
+
+		assertTrue(dispatcher.afterOperation(event()));
+		assertTrue(delivering.await(5, TimeUnit.SECONDS));
+		for (int i = 0; i < ServiceBrokerEventDispatcher.DEFAULT_CAPACITY; i++) {
+			assertTrue(dispatcher.afterOperation(event()));
+		}
+		long start = System.nanoTime();
+		assertFalse(dispatcher.afterOperation(event()));
+		assertTrue(System.nanoTime() - start < ServiceBrokerEventDispatcher.DEFAULT_OFFER_TIMEOUT.toNanos());
+		assertEquals(1, dispatcher.getDropped());
+
+		release.countDown();
+		dispatcher.close();
+	}
+
+	@Test
+	public void eventsAreDeliveredWithTheirTraceContext() {
+		List<String> traceIds = new CopyOnWriteArrayList<>();
+		ServiceBrokerEventDispatcher dispatcher = new ServiceBrokerEventDispatcher(Collections.singletonList(
+				events -> traceIds.add(MDC.get(TraceContext.TRACE_ID))));
+
+		ServiceBrokerEvent event;
+		try (MdcScope scope = TraceContext.of("trace-id", null, "service-instance-id", null, null, null)
+				.putInMdc()) {
+			event = event();
+		}
+		assertEquals("trace-id", event.getTraceContext().getTraceId());
+		assertTrue(dispatcher.afterOperation(event));
+		dispatcher.close();
+
+		assertEquals(Collections.singletonList("trace-id"), traceIds);
+	}
+
+	private static ServiceBrokerEvent event() {
+		return ServiceBrokerEvent.after(ServiceBrokerEvent.before(Type.DELETE_SERVICE_INSTANCE,
+				new DeleteServiceInstanceRequest()), null, null);
+	}
+
+	private static GetLastServiceOperationRequest lastOperationRequest(String operation) {
+		GetLastServiceOperationRequest request = new GetLastServiceOperationRequest();
+		request.setServiceInstanceId("service-instance-id");
+		request.setOperation(operation);
+		return request;
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static class RecordingListener implements ServiceBrokerEventListener {
+		private final List<ServiceBrokerEvent> before = new ArrayList<>();
+
+		private final List<ServiceBrokerEvent> after = new CopyOnWriteArrayList<>();
+
+		@Override
+		public void beforeOperation(ServiceBrokerEvent event) {
+			before.add(event);
+		}
+
+		@Override
+		public void afterOperations(List<ServiceBrokerEvent> events) {
+			after.addAll(events);
+		}
+	}
+}
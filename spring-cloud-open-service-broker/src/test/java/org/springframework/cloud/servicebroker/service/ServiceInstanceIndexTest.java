@@ -0,0 +1,171 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.cloud.servicebroker.model.OperationState;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ServiceInstanceIndexTest {
+
+	private static final String ORGANIZATION_GUID = "2b1e4a7c-0d5f-4b8e-9a3c-6f1d2e7b8c90";
+
+	private static final String SPACE_GUID = "f0e1d2c3-b4a5-4968-8776-5a4b3c2d1e0f";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void indexedInstanceIsFound() {
+		ServiceInstanceIndex index = ServiceInstanceIndex.inMemory(16);
+		String instanceId = UUID.randomUUID().toString();
+
+		index.put(instanceId, "service-one-id", "plan-one-id", OperationState.IN_PROGRESS,
+				ORGANIZATION_GUID, SPACE_GUID);
+
+		ServiceInstanceIndex.Entry entry = new ServiceInstanceIndex.Entry();
+		assertTrue(index.find(instanceId, entry));
+		assertEquals(instanceId, entry.getServiceInstanceId());
+		assertEquals("service-one-id", entry.getServiceDefinitionId());
+		assertEquals("plan-one-id", entry.getPlanId());
+		assertEquals(OperationState.IN_PROGRESS, entry.getState());
+		assertEquals(ORGANIZATION_GUID, entry.getOrganizationGuid());
+		assertEquals(SPACE_GUID, entry.getSpaceGuid());
+		assertTrue(entry.isInOrganization(ORGANIZATION_GUID.toUpperCase()));
+		assertFalse(entry.isInSpace(ORGANIZATION_GUID));
+		assertEquals(1, index.size());
+	}
+
+	@Test
+	public void instanceWithoutOwnerIsFound() {
+		ServiceInstanceIndex index = ServiceInstanceIndex.inMemory(16);
+		String instanceId = UUID.randomUUID().toString();
+
+		index.put(instanceId, "service-one-id", "plan-one-id", null, null, null);
+
+		ServiceInstanceIndex.Entry entry = new ServiceInstanceIndex.Entry();
+		assertTrue(index.find(instanceId, entry));
+		assertNull(entry.getState());
+		assertNull(entry.getOrganizationGuid());
+		assertNull(entry.getSpaceGuid());
+		assertFalse(entry.isInOrganization(ORGANIZATION_GUID));
+	}
+
+	@Test
+	public void unknownInstanceIsNotFound() {
+		ServiceInstanceIndex index = ServiceInstanceIndex.inMemory(16);
+
+		assertFalse(index.find(UUID.randomUUID().toString(), new ServiceInstanceIndex.Entry()));
+		assertFalse(index.find("not-a-guid", new ServiceInstanceIndex.Entry()));
+		assertFalse(index.contains(UUID.randomUUID().toString()));
+	}
+
+	@Test
+	public void instanceIsReplaced() {
+		ServiceInstanceIndex index = ServiceInstanceIndex.inMemory(16);
+		String instanceId = UUID.randomUUID().toString();
+
+		index.put(instanceId, "service-one-id", "plan-one-id", OperationState.IN_PROGRESS, null, null);
+		index.put(instanceId, "service-one-id", "plan-two-id", OperationState.SUCCEEDED, null, null);
+
+		ServiceInstanceIndex.Entry entry = new ServiceInstanceIndex.Entry();
+		assertTrue(index.find(instanceId, entry));
+		assertEquals("plan-two-id", entry.getPlanId());
+		assertEquals(OperationState.SUCCEEDED, entry.getState());
+		assertEquals(1, index.size());
+	}
+
+	@Test
+	public void stateIsUpdated() {
+		ServiceInstanceIndex index = ServiceInstanceIndex.inMemory(16);
+		String instanceId = UUID.randomUUID().toString();
+		index.put(instanceId, "service-one-id", "plan-one-id", OperationState.IN_PROGRESS, null, null);
+
+		assertTrue(index.updateState(instanceId, OperationState.FAILED));
+		assertFalse(index.updateState(UUID.randomUUID().toString(), OperationState.FAILED));
+
+		ServiceInstanceIndex.Entry entry = new ServiceInstanceIndex.Entry();
+		assertTrue(index.find(instanceId, entry));
+		assertEquals(OperationState.FAILED, entry.getState());
+	}
+
+	@Test
+	public void indexGrowsAndKeepsInstancesFoundAfterRemovals() {
+		ServiceInstanceIndex index = ServiceInstanceIndex.inMemory(16);
+		List<String> instanceIds = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			String instanceId = UUID.randomUUID().toString();
+			instanceIds.add(instanceId);
+			index.put(instanceId, "service-" + (i % 3), "plan-" + (i % 7), OperationState.SUCCEEDED, null, null);
+		}
+
+		for (int i = 0; i < instanceIds.size(); i += 2) {
+			assertTrue(index.remove(instanceIds.get(i)));
+		}
+		assertEquals(500, index.size());
+
+		ServiceInstanceIndex.Entry entry = new ServiceInstanceIndex.Entry();
+		for (int i = 0; i < instanceIds.size(); i++) {
+			assertEquals(i % 2 == 1, index.find(instanceIds.get(i), entry));
+			if (i % 2 == 1) {
+				assertEquals("plan-" + (i % 7), entry.getPlanId());
+			}
+		}
+	}
+
+	@Test
+	public void indexInFileSurvivesReopening() throws Exception {
+		Path path = folder.getRoot().toPath().resolve("instances.idx");
+		List<String> instanceIds = new ArrayList<>();
+
+		try (ServiceInstanceIndex index = ServiceInstanceIndex.open(path, 16)) {
+			for (int i = 0; i < 100; i++) {
+				String instanceId = UUID.randomUUID().toString();
+				instanceIds.add(instanceId);
+				index.put(instanceId, "service-one-id", "plan-" + (i % 2), OperationState.SUCCEEDED,
+						ORGANIZATION_GUID, null);
+			}
+		}
+
+		try (ServiceInstanceIndex index = ServiceInstanceIndex.open(path, 16)) {
+			assertEquals(100, index.size());
+			ServiceInstanceIndex.Entry entry = new ServiceInstanceIndex.Entry();
+			for (int i = 0; i < instanceIds.size(); i++) {
+				assertTrue(index.find(instanceIds.get(i), entry));
+				assertEquals("plan-" + (i % 2), entry.getPlanId());
+				assertTrue(entry.isInOrganization(ORGANIZATION_GUID));
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void instanceIdMustBeGuid() {
+		ServiceInstanceIndex.inMemory(16).put("instance-id", "service-one-id", "plan-one-id", null, null, null);
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerConcurrencyException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ServiceInstanceLockManagerTest {
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void operationResultIsReturned() {
+		ServiceInstanceLockManager lockManager = new ServiceInstanceLockManager();
+
+		assertEquals("result", lockManager.execute("instance-id", () -> "result"));
+	}
+
+	@Test(expected = ServiceBrokerConcurrencyException.class)
+	public void operationOnLockedInstanceTimesOut() throws Exception {
+		ServiceInstanceLockManager lockManager = new ServiceInstanceLockManager(16, Duration.ofMillis(50));
+		CountDownLatch locked = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		executor.submit(() -> lockManager.execute("instance-id", () -> {
+			locked.countDown();
+			await(release);
+		}));
+
+		try {
+			assertTrue(locked.await(5, TimeUnit.SECONDS));
+			lockManager.execute("instance-id", () -> "never");
+		} finally {
+			release.countDown();
+		}
+	}
+
+	@Test
+	public void operationOnOtherInstanceIsNotBlocked() throws Exception {
+		ServiceInstanceLockManager lockManager = new ServiceInstanceLockManager(1024, Duration.ofMillis(50));
+		CountDownLatch locked = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		executor.submit(() -> lockManager.execute("instance-1", () -> {
+			locked.countDown();
+			await(release);
+		}));
+
+		try {
+			assertTrue(locked.await(5, TimeUnit.SECONDS));
+			assertEquals("result", lockManager.execute("instance-2", () -> "result"));
+		} finally {
+			release.countDown();
+		}
+	}
+
+	@Test
+	public void operationProceedsWhenInstanceIsReleased() throws Exception {
+		ServiceInstanceLockManager lockManager = new ServiceInstanceLockManager(16, Duration.ofSeconds(5));
+		CountDownLatch locked = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		executor.submit(() -> lockManager.execute("instance-id", () -> {
+			locked.countDown();
+			await(release);
+		}));
+		assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+		Future<String> waiting = executor.submit(() -> lockManager.execute("instance-id", () -> "result"));
+		release.countDown();
+
+		assertEquals("result", waiting.get(5, TimeUnit.SECONDS));
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
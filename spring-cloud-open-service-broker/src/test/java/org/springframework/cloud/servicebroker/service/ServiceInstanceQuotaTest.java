@@ -0,0 +1,265 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceQuotaExceededException;
+import org.springframework.cloud.servicebroker.model.Context;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationRequest;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationResponse;
+import org.springframework.cloud.servicebroker.model.OperationState;
+import org.springframework.cloud.servicebroker.model.ServiceInstanceOperation;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.service.ServiceInstanceQuota.Scope;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ServiceInstanceQuotaTest {
+
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+	@Test
+	public void provisionIsRejectedWhenSpaceQuotaIsReached() throws Exception {
+		ServiceInstanceQuota quota = ServiceInstanceQuota.builder()
+				.spaceLimit(2)
+				.planLimit(10)
+				.build();
+		ServiceInstanceService service = new QuotaEnforcingServiceInstanceService(new StubServiceInstanceService(),
+				quota);
+
+		service.createServiceInstance(createRequest("instance-1", "space-1"));
+		service.createServiceInstance(createRequest("instance-2", "space-1"));
+		service.createServiceInstance(createRequest("instance-2", "space-1"));
+		try {
+			service.createServiceInstance(createRequest("instance-3", "space-1"));
+			fail("Expected the space quota to be exceeded");
+		} catch (ServiceInstanceQuotaExceededException e) {
+			assertEquals("The space 'space-1' has reached its quota of 2 service instances", e.getMessage());
+		}
+		assertEquals(2, quota.getCount(Scope.SPACE, "space-1"));
+		assertEquals(2, quota.getCount(Scope.PLAN, "plan-id"));
+
+		service.createServiceInstance(createRequest("instance-3", "space-2"));
+		service.deleteServiceInstance(deleteRequest("instance-1"));
+		service.createServiceInstance(createRequest("instance-4", "space-1"));
+		assertEquals(2, quota.getCount(Scope.SPACE, "space-1"));
+		assertEquals(0, quota.getCount(Scope.ORGANIZATION, "org-id"));
+	}
+
+	@Test
+	public void slotIsReleasedWhenProvisioningFails() throws Exception {
+		ServiceInstanceQuota quota = ServiceInstanceQuota.builder().organizationLimit(1).build();
+		StubServiceInstanceService delegate = new StubServiceInstanceService();
+		ServiceInstanceService service = new QuotaEnforcingServiceInstanceService(delegate, quota);
+
+		delegate.fail = true;
+		try {
+			service.createServiceInstance(createRequest("instance-1", "space-1"));
+			fail("Expected the provisioning to fail");
+		} catch (IllegalStateException e) {
+			assertEquals(0, quota.getCount(Scope.ORGANIZATION, "org-id"));
+		}
+
+		delegate.fail = false;
+		delegate.async = true;
+		service.createServiceInstance(createRequest("instance-1", "space-1"));
+		assertEquals(1, quota.getCount(Scope.ORGANIZATION, "org-id"));
+		delegate.state = OperationState.FAILED;
+		GetLastServiceOperationRequest lastOperation = new GetLastServiceOperationRequest();
+		lastOperation.setServiceInstanceId("instance-1");
+		service.getLastOperation(lastOperation);
+		assertEquals(0, quota.getCount(Scope.ORGANIZATION, "org-id"));
+	}
+
+	@Test
+	public void planChangeMovesSlot() throws Exception {
+		ServiceInstanceQuota quota = ServiceInstanceQuota.builder()
+				.planLimit("large-plan-id", 1)
+				.source(restored -> restored.restore("instance-1", "large-plan-id", "org-id", "space-1", null))
+				.build();
+		ServiceInstanceService service = new QuotaEnforcingServiceInstanceService(new StubServiceInstanceService(),
+				quota);
+		assertEquals(1, quota.getCount(Scope.PLAN, "large-plan-id"));
+
+		service.createServiceInstance(createRequest("instance-2", "space-1"));
+		try {
+			service.updateServiceInstance(updateRequest("instance-2", "large-plan-id"));
+			fail("Expected the plan quota to be exceeded");
+		} catch (ServiceInstanceQuotaExceededException e) {
+			assertTrue(e.getMessage().contains("large-plan-id"));
+		}
+
+		service.updateServiceInstance(updateRequest("instance-1", "plan-id"));
+		service.updateServiceInstance(updateRequest("instance-2", "large-plan-id"));
+		assertEquals(1, quota.getCount(Scope.PLAN, "large-plan-id"));
+	}
+
+	@Test
+	public void failedAsynchronousPlanChangeMovesSlotBack() throws Exception {
+		ServiceInstanceQuota quota = ServiceInstanceQuota.builder()
+				.planLimit(10)
+				.planLimit("large-plan-id", 1)
+				.build();
+		StubServiceInstanceService delegate = new StubServiceInstanceService();
+		ServiceInstanceService service = new QuotaEnforcingServiceInstanceService(delegate, quota);
+
+		service.createServiceInstance(createRequest("instance-1", "space-1"));
+		delegate.async = true;
+		service.updateServiceInstance(updateRequest("instance-1", "large-plan-id"));
+		assertEquals(1, quota.getCount(Scope.PLAN, "large-plan-id"));
+
+		delegate.state = OperationState.FAILED;
+		GetLastServiceOperationRequest lastOperation = new GetLastServiceOperationRequest();
+		lastOperation.setServiceInstanceId("instance-1");
+		service.getLastOperation(lastOperation);
+		assertEquals(0, quota.getCount(Scope.PLAN, "large-plan-id"));
+		assertEquals(1, quota.getCount(Scope.PLAN, "plan-id"));
+
+		service.getLastOperation(lastOperation);
+		assertEquals(1, quota.getCount(Scope.PLAN, "plan-id"));
+	}
+
+	@Test
+	public void failedAsynchronousProvisioningReadFromOperationStoreReleasesSlot() throws Exception {
+		ServiceInstanceQuota quota = ServiceInstanceQuota.builder().spaceLimit(1).build();
+		StubServiceInstanceService delegate = new StubServiceInstanceService();
+		delegate.async = true;
+		delegate.state = OperationState.IN_PROGRESS;
+		StubOperationStore operationStore = new StubOperationStore();
+		ServiceInstanceService service = ServiceBrokerServices.builder()
+				.quota(quota)
+				.build()
+				.decorate(delegate, operationStore);
+
+		service.createServiceInstance(createRequest("instance-1", "space-1"));
+		assertEquals(1, quota.getCount(Scope.SPACE, "space-1"));
+
+		operationStore.saveOperation(ServiceInstanceOperation.builder()
+				.serviceInstanceId("instance-1")
+				.state(OperationState.FAILED)
+				.build());
+		GetLastServiceOperationRequest lastOperation = new GetLastServiceOperationRequest();
+		lastOperation.setServiceInstanceId("instance-1");
+		assertEquals(OperationState.FAILED, service.getLastOperation(lastOperation).getState());
+		assertEquals(0, quota.getCount(Scope.SPACE, "space-1"));
+
+		service.createServiceInstance(createRequest("instance-2", "space-1"));
+		assertEquals(1, quota.getCount(Scope.SPACE, "space-1"));
+	}
+
+	@Test
+	public void concurrentReservationsDoNotExceedLimit() throws Exception {
+		ServiceInstanceQuota quota = ServiceInstanceQuota.builder().spaceLimit(50).build();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Callable<Boolean>> reservations = new ArrayList<>();
+			for (int i = 0; i < 200; i++) {
+				CreateServiceInstanceRequest request = createRequest("instance-" + i, "space-1");
+				reservations.add(() -> {
+					try {
+						return quota.reserve(request);
+					} catch (ServiceInstanceQuotaExceededException e) {
+						return false;
+					}
+				});
+			}
+			int reserved = 0;
+			for (Future<Boolean> result : executor.invokeAll(reservations)) {
+				reserved += result.get() ? 1 : 0;
+			}
+			assertEquals(50, reserved);
+			assertEquals(50, quota.getCount(Scope.SPACE, "space-1"));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static CreateServiceInstanceRequest createRequest(String serviceInstanceId, String spaceGuid)
+			throws Exception {
+		Context context = OBJECT_MAPPER.readValue("{\"platform\":\"cloudfoundry\"," +
+				"\"organization_guid\":\"org-id\",\"space_guid\":\"" + spaceGuid + "\"}", Context.class);
+		CreateServiceInstanceRequest request = CreateServiceInstanceRequest.builder()
+				.serviceDefinitionId("service-definition-id")
+				.planId("plan-id")
+				.context(context)
+				.build();
+		request.setServiceInstanceId(serviceInstanceId);
+		return request;
+	}
+
+	private static DeleteServiceInstanceRequest deleteRequest(String serviceInstanceId) {
+		DeleteServiceInstanceRequest request = new DeleteServiceInstanceRequest();
+		request.setServiceInstanceId(serviceInstanceId);
+		return request;
+	}
+
+	private static UpdateServiceInstanceRequest updateRequest(String serviceInstanceId, String planId) {
+		UpdateServiceInstanceRequest request = UpdateServiceInstanceRequest.builder()
+				.serviceDefinitionId("service-definition-id")
+				.planId(planId)
+				.build();
+		request.setServiceInstanceId(serviceInstanceId);
+		return request;
+	}
+
+	private static class StubServiceInstanceService implements ServiceInstanceService {
+		private boolean fail;
+
+		private boolean async;
+
+		private OperationState state = OperationState.SUCCEEDED;
+
+		@Override
+		public CreateServiceInstanceResponse createServiceInstance(CreateServiceInstanceRequest request) {
+			if (fail) {
+				throw new IllegalStateException("Provisioning failed");
+			}
+			return CreateServiceInstanceResponse.builder().async(async).build();
+		}
+
+		@Override
+		public GetLastServiceOperationResponse getLastOperation(GetLastServiceOperationRequest request) {
+			return GetLastServiceOperationResponse.builder().operationState(state).build();
+		}
+
+		@Override
+		public DeleteServiceInstanceResponse deleteServiceInstance(DeleteServiceInstanceRequest request) {
+			return DeleteServiceInstanceResponse.builder().build();
+		}
+
+		@Override
+		public UpdateServiceInstanceResponse updateServiceInstance(UpdateServiceInstanceRequest request) {
+			return UpdateServiceInstanceResponse.builder().async(async).build();
+		}
+	}
+}
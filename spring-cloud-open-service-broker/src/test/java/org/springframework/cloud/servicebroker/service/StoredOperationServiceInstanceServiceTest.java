@@ -0,0 +1,116 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.service;
+
+import org.junit.Test;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationRequest;
+import org.springframework.cloud.servicebroker.model.GetLastServiceOperationResponse;
+import org.springframework.cloud.servicebroker.model.OperationState;
+import org.springframework.cloud.servicebroker.model.ServiceInstanceOperation;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceResponse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StoredOperationServiceInstanceServiceTest {
+
+	private static final String SERVICE_INSTANCE_ID = "service-instance-id";
+
+	private final CountingServiceInstanceService delegate = new CountingServiceInstanceService();
+
+	private final StubOperationStore operationStore = new StubOperationStore();
+
+	private final ServiceInstanceService service =
+			new StoredOperationServiceInstanceService(delegate, operationStore);
+
+	@Test
+	public void lastOperationIsAnsweredFromStore() {
+		operationStore.saveOperation(ServiceInstanceOperation.builder()
+				.serviceInstanceId(SERVICE_INSTANCE_ID)
+				.operation("task-1")
+				.state(OperationState.SUCCEEDED)
+				.description("all gone")
+				.deleteOperation(true)
+				.build());
+
+		GetLastServiceOperationResponse response = service.getLastOperation(lastOperationRequest("task-1"));
+
+		assertEquals(OperationState.SUCCEEDED, response.getState());
+		assertEquals("all gone", response.getDescription());
+		assertTrue(response.isDeleteOperation());
+		assertEquals(0, delegate.lastOperationRequests);
+	}
+
+	@Test
+	public void lastOperationForOtherStoredOperationIsPassedOn() {
+		operationStore.saveOperation(ServiceInstanceOperation.builder()
+				.serviceInstanceId(SERVICE_INSTANCE_ID)
+				.operation("task-1")
+				.state(OperationState.FAILED)
+				.build());
+
+		GetLastServiceOperationResponse response = service.getLastOperation(lastOperationRequest("task-2"));
+
+		assertEquals(OperationState.IN_PROGRESS, response.getState());
+		assertEquals(1, delegate.lastOperationRequests);
+	}
+
+	@Test
+	public void lastOperationOfUnknownServiceInstanceIsPassedOn() {
+		GetLastServiceOperationResponse response = service.getLastOperation(lastOperationRequest(null));
+
+		assertEquals(OperationState.IN_PROGRESS, response.getState());
+		assertEquals(1, delegate.lastOperationRequests);
+	}
+
+	private static GetLastServiceOperationRequest lastOperationRequest(String operation) {
+		GetLastServiceOperationRequest request = new GetLastServiceOperationRequest();
+		request.setServiceInstanceId(SERVICE_INSTANCE_ID);
+		request.setOperation(operation);
+		return request;
+	}
+
+	private static class CountingServiceInstanceService implements ServiceInstanceService {
+		private int lastOperationRequests;
+
+		@Override
+		public CreateServiceInstanceResponse createServiceInstance(CreateServiceInstanceRequest request) {
+			return CreateServiceInstanceResponse.builder().build();
+		}
+
+		@Override
+		public GetLastServiceOperationResponse getLastOperation(GetLastServiceOperationRequest request) {
+			lastOperationRequests++;
+			return GetLastServiceOperationResponse.builder().operationState(OperationState.IN_PROGRESS).build();
+		}
+
+		@Override
+		public DeleteServiceInstanceResponse deleteServiceInstance(DeleteServiceInstanceRequest request) {
+			return DeleteServiceInstanceResponse.builder().build();
+		}
+
+		@Override
+		public UpdateServiceInstanceResponse updateServiceInstance(UpdateServiceInstanceRequest request) {
+			return UpdateServiceInstanceResponse.builder().build();
+		}
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.cloud.servicebroker.model.ServiceInstanceOperation;
+
+class StubOperationStore implements OperationStore {
+	private final Map<String, ServiceInstanceOperation> operations = new ConcurrentHashMap<>();
+
+	@Override
+	public ServiceInstanceOperation getOperation(String serviceInstanceId) {
+		return operations.get(serviceInstanceId);
+	}
+
+	@Override
+	public ServiceInstanceOperation saveOperation(ServiceInstanceOperation operation) {
+		operations.put(operation.getServiceInstanceId(), operation);
+		return operation;
+	}
+
+	@Override
+	public boolean updateOperation(ServiceInstanceOperation operation) {
+		return operations.replace(operation.getServiceInstanceId(), operation) != null;
+	}
+
+	@Override
+	public List<ServiceInstanceOperation> updateOperations(Collection<ServiceInstanceOperation> operations) {
+		List<ServiceInstanceOperation> missed = new ArrayList<>();
+		for (ServiceInstanceOperation operation : operations) {
+			if (!updateOperation(operation)) {
+				missed.add(operation);
+			}
+		}
+		return missed;
+	}
+
+	@Override
+	public void deleteOperation(String serviceInstanceId) {
+		operations.remove(serviceInstanceId);
+	}
+}
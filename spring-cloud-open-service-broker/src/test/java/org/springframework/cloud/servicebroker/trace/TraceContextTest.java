@@ -0,0 +1,99 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.servicebroker.trace;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Test;
+import org.slf4j.MDC;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TraceContextTest {
+
+	private static final String TRACE_ID = "4bf92f3577b34da6a3ce929d0e0e4736";
+
+	@After
+	public void clearMdc() {
+		MDC.clear();
+	}
+
+	@Test
+	public void traceIdIsTakenFromTraceparent() {
+		assertEquals(TRACE_ID, TraceContext.resolveTraceId("00-" + TRACE_ID + "-00f067aa0ba902b7-01", "request-id"));
+	}
+
+	@Test
+	public void invalidTraceparentFallsBackToRequestIdentity() {
+		assertEquals("request-id", TraceContext.resolveTraceId("00-" + TRACE_ID + "-00f067aa0ba902b7", "request-id"));
+		assertEquals("request-id", TraceContext.resolveTraceId("01-" + TRACE_ID + "-00f067aa0ba902b7-01", "request-id"));
+		assertEquals("request-id", TraceContext.resolveTraceId(
+				"00-" + TRACE_ID.toUpperCase() + "-00f067aa0ba902b7-01", "request-id"));
+		assertEquals("request-id", TraceContext.resolveTraceId(
+				"00-00000000000000000000000000000000-00f067aa0ba902b7-01", "request-id"));
+	}
+
+	@Test
+	public void traceIdIsGeneratedWithoutHeaders() {
+		String traceId = TraceContext.resolveTraceId(null, null);
+		assertTrue(traceId, traceId.matches("[0-9a-f]{32}"));
+		assertNotEquals(traceId, TraceContext.resolveTraceId(null, " "));
+	}
+
+	@Test
+	public void scopeRestoresPreviousMdcValues() {
+		MDC.put(TraceContext.TRACE_ID, "outer-trace");
+		MDC.put(TraceContext.PLAN_ID, "outer-plan");
+
+		try (MdcScope ignored = TraceContext.of(null, "cf", "instance", "binding", "service", "plan").putInMdc()) {
+			assertEquals("outer-trace", MDC.get(TraceContext.TRACE_ID));
+			assertEquals("cf", MDC.get(TraceContext.CF_INSTANCE_ID));
+			assertEquals("instance", MDC.get(TraceContext.SERVICE_INSTANCE_ID));
+			assertEquals("binding", MDC.get(TraceContext.BINDING_ID));
+			assertEquals("service", MDC.get(TraceContext.SERVICE_DEFINITION_ID));
+			assertEquals("plan", MDC.get(TraceContext.PLAN_ID));
+		}
+
+		assertEquals("outer-trace", MDC.get(TraceContext.TRACE_ID));
+		assertEquals("outer-plan", MDC.get(TraceContext.PLAN_ID));
+		assertNull(MDC.get(TraceContext.CF_INSTANCE_ID));
+		assertNull(MDC.get(TraceContext.SERVICE_INSTANCE_ID));
+	}
+
+	@Test
+	public void taskDecoratorRunsTasksWithSubmittingThreadMdc() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			executor.submit(() -> MDC.put(TraceContext.TRACE_ID, "stale")).get();
+
+			MDC.put(TraceContext.TRACE_ID, TRACE_ID);
+			Future<?> decorated = executor.submit(new MdcTaskDecorator().decorate(
+					() -> assertEquals(TRACE_ID, MDC.get(TraceContext.TRACE_ID))));
+			decorated.get();
+
+			assertEquals("stale", executor.submit(() -> MDC.get(TraceContext.TRACE_ID)).get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+}